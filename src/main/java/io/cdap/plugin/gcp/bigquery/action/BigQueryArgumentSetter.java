@@ -35,6 +35,7 @@ import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.annotation.Plugin;
 import io.cdap.cdap.etl.api.action.Action;
 import io.cdap.cdap.etl.api.action.ActionContext;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobPoller;
 import io.cdap.plugin.gcp.common.GCPUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -87,7 +88,7 @@ public final class BigQueryArgumentSetter extends AbstractBigQueryAction {
     LOG.debug("The BigQuery SQL  {}", queryConfig.getQuery());
 
     // Wait for the query to complete
-    queryJob.waitFor();
+    queryJob = BigQueryJobPoller.await(BigQueryJobPoller.getInstance().track(queryJob));
 
     // Check for errors
     if (queryJob.getStatus().getError() != null) {
@@ -44,6 +44,7 @@ import io.cdap.cdap.etl.api.action.Action;
 import io.cdap.cdap.etl.api.action.ActionContext;
 import io.cdap.plugin.common.ConfigUtil;
 import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobPoller;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.CmekUtils;
 import io.cdap.plugin.gcp.common.GCPConfig;
@@ -133,7 +134,7 @@ public final class BigQueryExecute extends AbstractBigQueryAction {
     LOG.debug("The BigQuery SQL is {}", config.getSql());
 
     // Wait for the query to complete
-    queryJob.waitFor();
+    queryJob = BigQueryJobPoller.await(BigQueryJobPoller.getInstance().track(queryJob));
 
     // Check for errors
     if (queryJob.getStatus().getError() != null) {
@@ -71,6 +71,10 @@ public class BigQueryRelation implements Relation {
 
       // Build selected columns for this dataset based on initial columns present in relation.
       Map<String, Expression> selectedColumns = getSelectedColumns(columns);
+      // Select from the statement of a dataset which was not stored in a table yet.
+      if (sourceDataset.isPending()) {
+        return buildNestedSelect(selectedColumns, sourceDataset.getPendingSQLStatement(), datasetName, null);
+      }
       // Build source table identifier using the Project, Dataset and Table
       String sourceTable = String.format("%s.%s.%s",
                                          sourceDataset.getBigQueryProject(),
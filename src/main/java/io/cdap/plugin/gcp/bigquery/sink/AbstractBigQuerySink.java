@@ -36,6 +36,7 @@ import io.cdap.plugin.gcp.bigquery.util.BigQueryTypeSize;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.CmekUtils;
 import io.cdap.plugin.gcp.common.GCPUtils;
+import io.cdap.plugin.gcp.common.UploadBufferManager;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
@@ -207,13 +208,22 @@ public abstract class AbstractBigQuerySink extends BatchSink<StructuredRecord, S
                                  config.isAllowSchemaRelaxation());
     baseConfiguration.setStrings(BigQueryConfiguration.OUTPUT_TABLE_WRITE_DISPOSITION_KEY,
                                  config.getWriteDisposition().name());
+    baseConfiguration.setEnum(BigQueryConstants.CONFIG_WRITE_METHOD, config.getWriteMethod());
+    baseConfiguration.setInt(BigQueryConstants.CONFIG_MAX_CONCURRENT_LOAD_JOBS, config.getMaxConcurrentLoadJobs());
+    baseConfiguration.setLong(BigQueryConstants.CONFIG_STAGING_MAX_FILE_SIZE, config.getStagingFileSizeBytes());
+    baseConfiguration.setEnum(BigQueryConstants.CONFIG_STAGING_FORMAT, config.getStagingFormat());
+    baseConfiguration.setInt(BigQueryConstants.CONFIG_PARQUET_ROW_GROUP_SIZE, config.getParquetRowGroupSizeBytes());
+    baseConfiguration.setEnum(BigQueryConstants.CONFIG_STAGING_COMPRESSION, config.getStagingCompression());
+    baseConfiguration.setInt(BigQueryConstants.CONFIG_STAGING_DEFLATE_LEVEL, config.getStagingDeflateLevel());
     // this setting is needed because gcs has default chunk size of 64MB. This is large default chunk size which can
     // cause OOM issue if there are many tables being written. See this - CDAP-16670
     String gcsChunkSize = "8388608";
     if (!Strings.isNullOrEmpty(config.getGcsChunkSize())) {
       gcsChunkSize = config.getGcsChunkSize();
     }
-    baseConfiguration.set("fs.gs.outputstream.upload.chunk.size", gcsChunkSize);
+    baseConfiguration.set(BigQueryConstants.CONFIG_GCS_CHUNK_SIZE, gcsChunkSize);
+    baseConfiguration.setLong(UploadBufferManager.CONFIG_UPLOAD_BUFFER_BUDGET,
+                              config.getExecutorUploadBufferMemoryBytes());
     return baseConfiguration;
   }
 
@@ -17,6 +17,7 @@ package io.cdap.plugin.gcp.bigquery.sink;
 
 import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.kms.v1.CryptoKeyName;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
@@ -48,7 +49,19 @@ public abstract class AbstractBigQuerySinkConfig extends BigQueryBaseConfig {
   public static final String NAME_LOCATION = "location";
   private static final String NAME_GCS_CHUNK_SIZE = "gcsChunkSize";
   protected static final String NAME_UPDATE_SCHEMA = "allowSchemaRelaxation";
+  public static final String NAME_WRITE_METHOD = "writeMethod";
+  public static final String NAME_MAX_CONCURRENT_LOAD_JOBS = "maxConcurrentLoadJobs";
+  public static final int DEFAULT_MAX_CONCURRENT_LOAD_JOBS = 4;
+  public static final String NAME_STAGING_FILE_SIZE = "stagingFileSize";
+  public static final String NAME_STAGING_FORMAT = "stagingFormat";
+  public static final String NAME_PARQUET_ROW_GROUP_SIZE = "parquetRowGroupSize";
+  public static final String NAME_STAGING_COMPRESSION = "stagingCompression";
+  public static final String NAME_STAGING_DEFLATE_LEVEL = "stagingDeflateLevel";
+  public static final int DEFAULT_STAGING_DEFLATE_LEVEL = 6;
+  public static final String NAME_EXECUTOR_UPLOAD_BUFFER_MEMORY = "executorUploadBufferMemory";
   private static final String SCHEME = "gs://";
+  // Row group sizes are passed to Parquet as an int number of bytes
+  private static final int MAX_PARQUET_ROW_GROUP_SIZE_MB = 1024;
 
   @Name(Constants.Reference.REFERENCE_NAME)
   @Description(Constants.Reference.REFERENCE_NAME_DESCRIPTION)
@@ -81,6 +94,70 @@ public abstract class AbstractBigQuerySinkConfig extends BigQueryBaseConfig {
     "This value is ignored if the dataset or temporary bucket already exist.")
   protected String location;
 
+  @Name(NAME_WRITE_METHOD)
+  @Macro
+  @Nullable
+  @Description("Method used to write records into BigQuery. 'LOAD_JOB' stages the records as files in the temporary " +
+    "bucket and loads them with BigQuery load jobs. 'STORAGE_WRITE_API' streams the records directly into BigQuery " +
+    "using the Storage Write API and commits them atomically when all tasks have finished. The Storage Write API " +
+    "can only be used to insert records, without truncating the table. Defaults to 'LOAD_JOB'.")
+  protected String writeMethod;
+
+  @Name(NAME_MAX_CONCURRENT_LOAD_JOBS)
+  @Macro
+  @Nullable
+  @Description("Maximum number of load jobs that run at the same time when the staged files have to be loaded in " +
+    "several batches, because there are more of them than a single load job accepts. Defaults to 4.")
+  protected Integer maxConcurrentLoadJobs;
+
+  @Name(NAME_STAGING_FILE_SIZE)
+  @Macro
+  @Nullable
+  @Description("Target size in megabytes of the files staged in GCS before they are loaded into BigQuery. " +
+    "A task starts a new file once the current one reaches this size, so that large tasks produce several files " +
+    "that are loaded in parallel. By default, each task writes a single file regardless of its size.")
+  protected Integer stagingFileSize;
+
+  @Name(NAME_STAGING_FORMAT)
+  @Macro
+  @Nullable
+  @Description("Format of the files staged in GCS before they are loaded into BigQuery. 'AVRO' writes Avro files " +
+    "row by row. 'PARQUET' writes columnar Parquet files, which are usually smaller for wide tables. Schemas with " +
+    "datetime fields are always staged as newline delimited json. Defaults to 'AVRO'.")
+  protected String stagingFormat;
+
+  @Name(NAME_PARQUET_ROW_GROUP_SIZE)
+  @Macro
+  @Nullable
+  @Description("Size in megabytes of the row groups in the Parquet staging files. Each task buffers a row group in " +
+    "memory before writing it. Only used when the staging format is 'PARQUET'. Defaults to 32.")
+  protected Integer parquetRowGroupSize;
+
+  @Name(NAME_STAGING_COMPRESSION)
+  @Macro
+  @Nullable
+  @Description("Compression codec of the Avro files staged in GCS. 'NONE' uploads uncompressed files, 'SNAPPY' " +
+    "compresses them with little CPU overhead and 'DEFLATE' compresses them the most at the highest CPU cost. " +
+    "Compressing trades executor CPU for less data uploaded to GCS. Only used when the staging format is 'AVRO'. " +
+    "Defaults to 'NONE'.")
+  protected String stagingCompression;
+
+  @Name(NAME_STAGING_DEFLATE_LEVEL)
+  @Macro
+  @Nullable
+  @Description("Deflate compression level of the Avro staging files, from 1 (fastest) to 9 (smallest). " +
+    "Only used when the staging compression is 'DEFLATE'. Defaults to 6.")
+  protected Integer stagingDeflateLevel;
+
+  @Name(NAME_EXECUTOR_UPLOAD_BUFFER_MEMORY)
+  @Macro
+  @Nullable
+  @Description("Memory in megabytes shared by the upload buffers of all the files written to GCS by an executor, " +
+    "across tasks and plugins. When set, the GCS chunk size of each new staging file is reduced so that the open " +
+    "files fit in this memory, down to the minimum chunk size of 256 KB, and grows back up to the GCS chunk size as " +
+    "files are closed. By default, every file uses the GCS chunk size.")
+  protected Integer executorUploadBufferMemory;
+
   public AbstractBigQuerySinkConfig(BigQueryConnectorConfig connection, String dataset, String cmekKey, String bucket) {
     super(connection, dataset, cmekKey, bucket);
   }
@@ -108,6 +185,46 @@ public abstract class AbstractBigQuerySinkConfig extends BigQueryBaseConfig {
     return allowSchemaRelaxation == null ? false : allowSchemaRelaxation;
   }
 
+  public WriteMethod getWriteMethod() {
+    return Strings.isNullOrEmpty(writeMethod) ? WriteMethod.LOAD_JOB : WriteMethod.valueOf(writeMethod.toUpperCase());
+  }
+
+  public int getMaxConcurrentLoadJobs() {
+    return maxConcurrentLoadJobs == null ? DEFAULT_MAX_CONCURRENT_LOAD_JOBS : maxConcurrentLoadJobs;
+  }
+
+  public StagingFormat getStagingFormat() {
+    return Strings.isNullOrEmpty(stagingFormat) ? StagingFormat.AVRO
+      : StagingFormat.valueOf(stagingFormat.toUpperCase());
+  }
+
+  public int getParquetRowGroupSizeBytes() {
+    return parquetRowGroupSize == null ? ParquetOutputFormat.DEFAULT_ROW_GROUP_SIZE : parquetRowGroupSize * 1024 * 1024;
+  }
+
+  public StagingCompression getStagingCompression() {
+    return Strings.isNullOrEmpty(stagingCompression) ? StagingCompression.NONE
+      : StagingCompression.valueOf(stagingCompression.toUpperCase());
+  }
+
+  public int getStagingDeflateLevel() {
+    return stagingDeflateLevel == null ? DEFAULT_STAGING_DEFLATE_LEVEL : stagingDeflateLevel;
+  }
+
+  /**
+   * @return memory for the upload buffers of an executor in bytes, or 0 if it is not limited
+   */
+  public long getExecutorUploadBufferMemoryBytes() {
+    return executorUploadBufferMemory == null ? 0L : executorUploadBufferMemory * 1024L * 1024L;
+  }
+
+  /**
+   * @return target size of a staging file in bytes, or 0 if staging files are not split by size
+   */
+  public long getStagingFileSizeBytes() {
+    return stagingFileSize == null ? 0L : stagingFileSize * 1024L * 1024L;
+  }
+
   public JobInfo.WriteDisposition getWriteDisposition() {
     return isTruncateTableSet() ? JobInfo.WriteDisposition.WRITE_TRUNCATE
       : JobInfo.WriteDisposition.WRITE_APPEND;
@@ -137,6 +254,76 @@ public abstract class AbstractBigQuerySinkConfig extends BigQueryBaseConfig {
     if (!containsMacro(NAME_CMEK_KEY)) {
       validateCmekKey(collector, arguments);
     }
+    if (!containsMacro(NAME_WRITE_METHOD)) {
+      validateWriteMethod(collector);
+    }
+    if (!containsMacro(NAME_MAX_CONCURRENT_LOAD_JOBS) && maxConcurrentLoadJobs != null && maxConcurrentLoadJobs < 1) {
+      collector.addFailure(String.format("Maximum concurrent load jobs has invalid value '%d'.", maxConcurrentLoadJobs),
+                           "Set it to a positive number.")
+        .withConfigProperty(NAME_MAX_CONCURRENT_LOAD_JOBS);
+    }
+    if (!containsMacro(NAME_STAGING_FILE_SIZE) && stagingFileSize != null && stagingFileSize < 1) {
+      collector.addFailure(String.format("Staging file size has invalid value '%d'.", stagingFileSize),
+                           "Set it to a positive number of megabytes.")
+        .withConfigProperty(NAME_STAGING_FILE_SIZE);
+    }
+    if (!containsMacro(NAME_STAGING_FORMAT)) {
+      try {
+        getStagingFormat();
+      } catch (IllegalArgumentException e) {
+        collector.addFailure(String.format("Staging format has incorrect value '%s'.", stagingFormat),
+                             "Set the staging format to 'AVRO' or 'PARQUET'.")
+          .withConfigProperty(NAME_STAGING_FORMAT);
+      }
+    }
+    if (!containsMacro(NAME_PARQUET_ROW_GROUP_SIZE) && parquetRowGroupSize != null
+      && (parquetRowGroupSize < 1 || parquetRowGroupSize > MAX_PARQUET_ROW_GROUP_SIZE_MB)) {
+      collector.addFailure(String.format("Parquet row group size has invalid value '%d'.", parquetRowGroupSize),
+                           String.format("Set it to a number of megabytes between 1 and %d.",
+                                         MAX_PARQUET_ROW_GROUP_SIZE_MB))
+        .withConfigProperty(NAME_PARQUET_ROW_GROUP_SIZE);
+    }
+    if (!containsMacro(NAME_STAGING_COMPRESSION)) {
+      try {
+        getStagingCompression();
+      } catch (IllegalArgumentException e) {
+        collector.addFailure(String.format("Staging compression has incorrect value '%s'.", stagingCompression),
+                             "Set the staging compression to 'NONE', 'SNAPPY' or 'DEFLATE'.")
+          .withConfigProperty(NAME_STAGING_COMPRESSION);
+      }
+    }
+    if (!containsMacro(NAME_STAGING_DEFLATE_LEVEL) && stagingDeflateLevel != null
+      && (stagingDeflateLevel < StagingCompression.MIN_DEFLATE_LEVEL
+      || stagingDeflateLevel > StagingCompression.MAX_DEFLATE_LEVEL)) {
+      collector.addFailure(String.format("Staging deflate level has invalid value '%d'.", stagingDeflateLevel),
+                           String.format("Set it to a number between %d and %d.", StagingCompression.MIN_DEFLATE_LEVEL,
+                                         StagingCompression.MAX_DEFLATE_LEVEL))
+        .withConfigProperty(NAME_STAGING_DEFLATE_LEVEL);
+    }
+    if (!containsMacro(NAME_EXECUTOR_UPLOAD_BUFFER_MEMORY) && executorUploadBufferMemory != null
+      && executorUploadBufferMemory < 1) {
+      collector.addFailure(String.format("Executor upload buffer memory has invalid value '%d'.",
+                                         executorUploadBufferMemory),
+                           "Set it to a positive number of megabytes.")
+        .withConfigProperty(NAME_EXECUTOR_UPLOAD_BUFFER_MEMORY);
+    }
+  }
+
+  private void validateWriteMethod(FailureCollector collector) {
+    WriteMethod method;
+    try {
+      method = getWriteMethod();
+    } catch (IllegalArgumentException e) {
+      collector.addFailure(String.format("Write method has incorrect value '%s'.", writeMethod),
+                           "Set the write method to 'LOAD_JOB' or 'STORAGE_WRITE_API'.")
+        .withConfigProperty(NAME_WRITE_METHOD);
+      return;
+    }
+    if (method == WriteMethod.STORAGE_WRITE_API && !containsMacro(NAME_TRUNCATE_TABLE) && isTruncateTableSet()) {
+      collector.addFailure("Truncate is not supported with the Storage Write API write method.",
+                           "Set Truncate to false, or change the write method to 'LOAD_JOB'.")
+        .withConfigProperty(NAME_TRUNCATE_TABLE).withConfigProperty(NAME_WRITE_METHOD);
+    }
   }
 
   void validateCmekKey(FailureCollector failureCollector, Map<String, String> arguments) {
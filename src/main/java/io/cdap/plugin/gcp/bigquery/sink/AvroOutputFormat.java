@@ -16,70 +16,87 @@
 
 package io.cdap.plugin.gcp.bigquery.sink;
 
-import org.apache.avro.Schema;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.common.UploadBufferManager;
 import org.apache.avro.file.CodecFactory;
-import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.hadoop.io.AvroSerialization;
-import org.apache.avro.mapred.AvroKey;
-import org.apache.avro.mapreduce.AvroJob;
-import org.apache.avro.mapreduce.AvroKeyOutputFormat;
+import org.apache.avro.mapreduce.AvroOutputFormatBase;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import javax.annotation.Nullable;
 
 /**
  * avro output format.
  */
-public class AvroOutputFormat extends AvroKeyOutputFormat<GenericRecord> {
-  public AvroOutputFormat() {
-    super();
-  }
+public class AvroOutputFormat extends AvroOutputFormatBase<StructuredRecord, NullWritable> {
+  static final int DEFAULT_MAX_OPEN_FILES = 4;
 
-  public AvroOutputFormat(RecordWriterFactory recordWriterFactory) {
-    super(recordWriterFactory);
+  /**
+   * Get a Record Writer instance which uses the schema of each record to write it.
+   *
+   * @param context the execution context
+   * @return Record Writer Instance
+   */
+  @Override
+  public RecordWriter<StructuredRecord, NullWritable> getRecordWriter(TaskAttemptContext context)
+    throws IOException {
+    return getRecordWriter(context, null);
   }
 
   /**
+   * Get a Record Writer instance which uses a supplied schema to write output records.
    *
-   * @param context
-   * @return
-   * @throws IOException
+   * @param context the execution context
+   * @param schema output schema, if null the schema of each record is used
+   * @return Record Writer Instance
    */
-  public RecordWriter<AvroKey<GenericRecord>, NullWritable> getRecordWriter(TaskAttemptContext context)
-    throws IOException {
+  public RecordWriter<StructuredRecord, NullWritable> getRecordWriter(TaskAttemptContext context,
+                                                                      @Nullable Schema schema) throws IOException {
     Configuration conf = context.getConfiguration();
+    return new AvroRecordWriter(schema, getCodec(context), index -> createOutputStream(context, index),
+                                getSyncInterval(context),
+                                conf.getInt(BigQueryConstants.CONFIG_STAGING_MAX_OPEN_FILES, DEFAULT_MAX_OPEN_FILES),
+                                conf.getLong(BigQueryConstants.CONFIG_STAGING_MAX_FILE_SIZE, 0L));
+  }
 
-    // Get the writer schema.
-    Schema writerSchema = AvroJob.getOutputKeySchema(conf);
-    boolean isMapOnly = context.getNumReduceTasks() == 0;
-    if (isMapOnly) {
-      Schema mapOutputSchema = AvroJob.getMapOutputKeySchema(conf);
-      if (mapOutputSchema != null) {
-        writerSchema = mapOutputSchema;
-      }
+  /**
+   * Returns the codec set with {@link BigQueryConstants#CONFIG_STAGING_COMPRESSION}, or the one set with the standard
+   * Avro output properties if there is none.
+   */
+  private static CodecFactory getCodec(TaskAttemptContext context) {
+    Configuration conf = context.getConfiguration();
+    if (conf.get(BigQueryConstants.CONFIG_STAGING_COMPRESSION) == null) {
+      return getCompressionCodec(context);
     }
-
-    GenericData dataModel = AvroSerialization.createDataModel(conf);
-    return create(writerSchema, dataModel, getCompressionCodec(context),
-                  getAvroFileOutputStream(context), getSyncInterval(context));
+    return conf.getEnum(BigQueryConstants.CONFIG_STAGING_COMPRESSION, StagingCompression.NONE)
+      .getCodec(conf.getInt(BigQueryConstants.CONFIG_STAGING_DEFLATE_LEVEL, CodecFactory.DEFAULT_DEFLATE_LEVEL));
   }
 
   /**
-   * Creates a new record writer instance.
-   *
-   * @param writerSchema The writer schema for the records to write.
-   * @param compressionCodec The compression type for the writer file.
-   * @param outputStream The target output stream for the records.
-   * @param syncInterval The sync interval for the writer file.
+   * Creates the output stream for a container file in the task work directory. The first file uses the default file
+   * name, additional files get the index appended to it. The upload buffer of each file is leased from the
+   * {@link UploadBufferManager}.
    */
-  private RecordWriter<AvroKey<GenericRecord>, NullWritable> create(
-    Schema writerSchema, GenericData dataModel, CodecFactory compressionCodec,
-    OutputStream outputStream, int syncInterval) throws IOException {
-    return new AvroRecordWriter(writerSchema, dataModel, compressionCodec, outputStream, syncInterval);
+  private OutputStream createOutputStream(TaskAttemptContext context, int index) throws IOException {
+    if (index > 0) {
+      Path path = getDefaultWorkFile(context, "-" + index + org.apache.avro.mapred.AvroOutputFormat.EXT);
+      return UploadBufferManager.getInstance().create(path, context.getConfiguration());
+    }
+    UploadBufferManager.Lease lease = UploadBufferManager.getInstance().acquire(context.getConfiguration());
+    try {
+      return lease.wrap(getAvroFileOutputStream(new TaskAttemptContextImpl(lease.getConfiguration(),
+                                                                            context.getTaskAttemptID())));
+    } catch (IOException | RuntimeException e) {
+      lease.close();
+      throw e;
+    }
   }
 }
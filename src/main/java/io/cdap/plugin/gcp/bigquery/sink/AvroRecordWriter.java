@@ -16,13 +16,12 @@
 
 package io.cdap.plugin.gcp.bigquery.sink;
 
-import org.apache.avro.Schema;
+import com.google.common.io.CountingOutputStream;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaHash;
 import org.apache.avro.file.CodecFactory;
-import org.apache.avro.file.DataFileConstants;
 import org.apache.avro.file.DataFileWriter;
-import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.mapred.AvroKey;
 import org.apache.avro.mapreduce.Syncable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.RecordWriter;
@@ -30,88 +29,168 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import javax.annotation.Nullable;
 
 /**
- * avro record writer
+ * avro record writer.
+ * <p>
+ * Each Avro container file holds records of a single schema. When records of different schemas are interleaved, a
+ * small number of container files is kept open, one per schema, and the least recently used one is closed when the
+ * limit is reached. A container file is also closed once it reaches the maximum file size, and further records of
+ * its schema are written to a new file.
  */
-public class AvroRecordWriter extends RecordWriter<AvroKey<GenericRecord>, NullWritable> implements Syncable {
-  /** A writer for the Avro container file. */
-  private DataFileWriter<GenericRecord> mAvroFileWriter;
-  private Schema prevSchema;
-  private GenericData dataModel;
-  private CodecFactory compressionCodec;
-  private OutputStream outputStream;
-  private int syncInterval;
+public class AvroRecordWriter extends RecordWriter<StructuredRecord, NullWritable>
+  implements Syncable, StagingRecordWriter {
+  private final Schema outputSchema;
+  private final CodecFactory compressionCodec;
+  private final OutputStreamFactory outputStreamFactory;
+  private final int syncInterval;
+  private final int maxOpenFiles;
+  private final long maxFileSize;
+  /** Open container files by schema, in access order. */
+  private final LinkedHashMap<SchemaHash, ContainerFile> openFiles;
+  private int fileCount;
+  private Schema lastSchema;
+  private ContainerFile lastFile;
 
   /**
    * Constructor.
    *
-   * @param writerSchema The writer schema for the records in the Avro container file.
-   * @param compressionCodec A compression codec factory for the Avro container file.
-   * @param outputStream The output stream to write the Avro container file to.
-   * @param syncInterval The sync interval for the Avro container file.
-   * @throws IOException If the record writer cannot be opened.
+   * @param outputSchema The schema of the records in the Avro container files. If null, the schema of each record
+   *                     is used.
+   * @param compressionCodec A compression codec factory for the Avro container files.
+   * @param outputStreamFactory Factory for the output streams to write the Avro container files to.
+   * @param syncInterval The sync interval for the Avro container files.
+   * @param maxOpenFiles The maximum number of container files to keep open at the same time.
+   * @param maxFileSize The size in bytes after which a container file is closed, or 0 for no limit.
    */
-  public AvroRecordWriter(Schema writerSchema, GenericData dataModel, CodecFactory compressionCodec,
-                          OutputStream outputStream, int syncInterval) throws IOException {
-    this.dataModel = dataModel;
+  public AvroRecordWriter(@Nullable Schema outputSchema, CodecFactory compressionCodec,
+                          OutputStreamFactory outputStreamFactory, int syncInterval, int maxOpenFiles,
+                          long maxFileSize) {
+    this.outputSchema = outputSchema;
     this.compressionCodec = compressionCodec;
-    this.outputStream = outputStream;
+    this.outputStreamFactory = outputStreamFactory;
     this.syncInterval = syncInterval;
-  }
-  /**
-   * Constructor.
-   *
-   * @param writerSchema The writer schema for the records in the Avro container file.
-   * @param compressionCodec A compression codec factory for the Avro container file.
-   * @param outputStream The output stream to write the Avro container file to.
-   * @throws IOException If the record writer cannot be opened.
-   */
-  public AvroRecordWriter(Schema writerSchema, GenericData dataModel,
-                          CodecFactory compressionCodec, OutputStream outputStream) throws IOException {
-    this(writerSchema, dataModel, compressionCodec, outputStream,
-         DataFileConstants.DEFAULT_SYNC_INTERVAL);
+    this.maxOpenFiles = Math.max(1, maxOpenFiles);
+    this.maxFileSize = maxFileSize;
+    this.openFiles = new LinkedHashMap<>(16, 0.75f, true);
   }
 
   /** {@inheritDoc} */
   @Override
-  public void write(AvroKey<GenericRecord> record, NullWritable ignore) throws IOException {
-    // Create an Avro container file and a writer to it.
-    Schema writerSchema = record.datum().getSchema();
-    if (mAvroFileWriter == null) {
-      createFileWriter(writerSchema);
+  public void write(StructuredRecord record, NullWritable ignore) throws IOException {
+    Schema writerSchema = outputSchema == null ? record.getSchema() : outputSchema;
+    // Records usually share the same schema instance, so most of the time no lookup is needed.
+    ContainerFile file = writerSchema == lastSchema ? lastFile : getContainerFile(writerSchema);
+    file.writer.append(record);
+
+    if (maxFileSize > 0 && file.out.getCount() >= maxFileSize) {
+      openFiles.remove(file.schemaHash);
+      file.writer.close();
+      lastSchema = null;
+      lastFile = null;
     }
+  }
 
-    if (prevSchema != null && !prevSchema.equals(writerSchema)) {
-      mAvroFileWriter.sync();
-      mAvroFileWriter.close();
-      createFileWriter(writerSchema);
+  private ContainerFile getContainerFile(Schema writerSchema) throws IOException {
+    // The schema hash is computed once per schema instance, so this lookup does not compare schemas.
+    SchemaHash schemaHash = writerSchema.getSchemaHash();
+    ContainerFile file = openFiles.get(schemaHash);
+    if (file == null) {
+      if (openFiles.size() >= maxOpenFiles) {
+        Iterator<ContainerFile> iterator = openFiles.values().iterator();
+        ContainerFile eldest = iterator.next();
+        iterator.remove();
+        eldest.writer.close();
+      }
+      file = createContainerFile(writerSchema, schemaHash);
+      openFiles.put(schemaHash, file);
     }
-    mAvroFileWriter.append(record.datum());
+    lastSchema = writerSchema;
+    lastFile = file;
+    return file;
   }
 
-  private void createFileWriter(Schema writerSchema) throws IOException {
-    mAvroFileWriter = new DataFileWriter<GenericRecord>(dataModel.createDatumWriter(writerSchema));
-    mAvroFileWriter.setCodec(compressionCodec);
-    mAvroFileWriter.setSyncInterval(syncInterval);
-    mAvroFileWriter.create(writerSchema, outputStream);
-    prevSchema = writerSchema;
+  private ContainerFile createContainerFile(Schema writerSchema, SchemaHash schemaHash) throws IOException {
+    BigQueryAvroConverter converter = new BigQueryAvroConverter(writerSchema);
+    CountingOutputStream out = new CountingOutputStream(outputStreamFactory.create(fileCount++));
+    DataFileWriter<StructuredRecord> writer = new DataFileWriter<>(converter);
+    writer.setCodec(compressionCodec);
+    writer.setSyncInterval(syncInterval);
+    writer.create(converter.getAvroSchema(), out);
+    return new ContainerFile(schemaHash, writer, out);
   }
 
   /** {@inheritDoc} */
   @Override
   public void close(TaskAttemptContext context) throws IOException {
-    if (mAvroFileWriter != null) {
-      mAvroFileWriter.close();
+    closeOpenFiles();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void closeOpenFiles() throws IOException {
+    IOException failure = null;
+    for (ContainerFile file : openFiles.values()) {
+      try {
+        file.writer.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    openFiles.clear();
+    lastSchema = null;
+    lastFile = null;
+    if (failure != null) {
+      throw failure;
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public int getOpenFileCount() {
+    return openFiles.size();
+  }
+
   /** {@inheritDoc} */
   @Override
   public long sync() throws IOException {
-    if (mAvroFileWriter != null) {
-      return mAvroFileWriter.sync();
+    if (lastFile != null) {
+      return lastFile.writer.sync();
     }
     return 0;
   }
+
+  /**
+   * Creates the output streams for the Avro container files.
+   */
+  public interface OutputStreamFactory {
+
+    /**
+     * @param index index of the container file, starting from 0
+     * @return output stream to write the container file to
+     */
+    OutputStream create(int index) throws IOException;
+  }
+
+  /**
+   * An open Avro container file.
+   */
+  private static final class ContainerFile {
+    private final SchemaHash schemaHash;
+    private final DataFileWriter<StructuredRecord> writer;
+    private final CountingOutputStream out;
+
+    private ContainerFile(SchemaHash schemaHash, DataFileWriter<StructuredRecord> writer, CountingOutputStream out) {
+      this.schemaHash = schemaHash;
+      this.writer = writer;
+      this.out = out;
+    }
+  }
 }
@@ -16,28 +16,285 @@
 package io.cdap.plugin.gcp.bigquery.sink;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
-import io.cdap.cdap.api.data.schema.Schema;
-import io.cdap.plugin.common.RecordConverter;
-import io.cdap.plugin.format.avro.StructuredToAvroTransformer;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.mapred.AvroKey;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
- * BigQueryAvroConverter converts a {@link StructuredRecord} to {@link AvroKey<GenericRecord>}
+ * BigQueryAvroConverter encodes a {@link StructuredRecord} directly into Avro binary format.
+ * <p>
+ * The Avro schema is derived from the CDAP schema the same way as in
+ * {@link io.cdap.plugin.format.avro.StructuredToAvroTransformer}, and an encoder is compiled for each field once,
+ * so records are written without building an intermediate {@link org.apache.avro.generic.GenericRecord}.
  */
-public class BigQueryAvroConverter extends RecordConverter<StructuredRecord, AvroKey<GenericRecord>> {
+public class BigQueryAvroConverter implements DatumWriter<StructuredRecord> {
 
-  private final StructuredToAvroTransformer structuredToAvroTransformer;
+  private final Schema avroSchema;
+  private final RecordEncoder encoder;
 
-  BigQueryAvroConverter() {
-    structuredToAvroTransformer = new StructuredToAvroTransformer(null);
+  /**
+   * @param schema schema of the written records. Only the fields of this schema are written, and their values are
+   *               looked up by name in each record.
+   */
+  public BigQueryAvroConverter(io.cdap.cdap.api.data.schema.Schema schema) {
+    this.avroSchema = new Schema.Parser().parse(schema.toString());
+    this.encoder = new RecordEncoder(avroSchema);
+  }
+
+  /**
+   * @return the Avro schema the records are encoded with
+   */
+  public Schema getAvroSchema() {
+    return avroSchema;
   }
 
   @Override
-  public AvroKey<GenericRecord> transform(StructuredRecord record, @Nullable Schema schema) throws IOException {
-    return new AvroKey<>(structuredToAvroTransformer.transform(record, schema == null ? record.getSchema() : schema));
+  public void setSchema(Schema schema) {
+    if (!avroSchema.equals(schema)) {
+      throw new IllegalArgumentException(String.format("Schema '%s' does not match the converter schema '%s'.",
+                                                       schema, avroSchema));
+    }
+  }
+
+  @Override
+  public void write(StructuredRecord record, Encoder out) throws IOException {
+    encoder.encode(record, out);
+  }
+
+  private static ValueEncoder createEncoder(String name, Schema schema) {
+    Schema.Type type = schema.getType();
+    if (type == Schema.Type.NULL || type == Schema.Type.UNION) {
+      return createValueEncoder(name, schema);
+    }
+    ValueEncoder encoder = createValueEncoder(name, schema);
+    return (value, out) -> {
+      if (value == null) {
+        throw new IllegalArgumentException(String.format("Field '%s' is not nullable but has a null value.", name));
+      }
+      encoder.encode(value, out);
+    };
+  }
+
+  private static ValueEncoder createValueEncoder(String name, Schema schema) {
+    switch (schema.getType()) {
+      case NULL:
+        return (value, out) -> out.writeNull();
+      case BOOLEAN:
+        return (value, out) -> out.writeBoolean((Boolean) value);
+      case INT:
+        return (value, out) -> out.writeInt((Integer) value);
+      case LONG:
+        return (value, out) -> out.writeLong((Long) value);
+      case FLOAT:
+        return (value, out) -> out.writeFloat((Float) value);
+      case DOUBLE:
+        return (value, out) -> out.writeDouble((Double) value);
+      case STRING:
+        return (value, out) -> out.writeString(value.toString());
+      case BYTES:
+        return (value, out) -> {
+          if (value instanceof ByteBuffer) {
+            out.writeBytes(((ByteBuffer) value).duplicate());
+          } else if (value instanceof byte[]) {
+            out.writeBytes((byte[]) value);
+          } else {
+            throw new IllegalStateException(String.format("Expected value of Field '%s' to be bytes but got '%s'",
+                                                          name, value.getClass().getSimpleName()));
+          }
+        };
+      case ENUM:
+        return (value, out) -> {
+          if (!schema.hasEnumSymbol(value.toString())) {
+            throw new IllegalArgumentException(
+              String.format("Value '%s' of Field '%s' is not one of the enum symbols %s",
+                            value, name, schema.getEnumSymbols()));
+          }
+          out.writeEnum(schema.getEnumOrdinal(value.toString()));
+        };
+      case ARRAY:
+        return createArrayEncoder(name, schema);
+      case MAP:
+        return createMapEncoder(name, schema);
+      case RECORD:
+        RecordEncoder recordEncoder = new RecordEncoder(schema);
+        return (value, out) -> {
+          if (!(value instanceof StructuredRecord)) {
+            throw new IllegalStateException(
+              String.format("Value is of type '%s', expected type is '%s'",
+                            value.getClass().getSimpleName(), StructuredRecord.class.getSimpleName()));
+          }
+          recordEncoder.encode((StructuredRecord) value, out);
+        };
+      case UNION:
+        return createUnionEncoder(name, schema);
+      default:
+        throw new IllegalStateException(String.format("Field '%s' is of unsupported type '%s'",
+                                                      name, schema.getType()));
+    }
+  }
+
+  private static ValueEncoder createArrayEncoder(String name, Schema schema) {
+    ValueEncoder elementEncoder = createEncoder(name, schema.getElementType());
+    return (value, out) -> {
+      Collection<?> collection;
+      if (value instanceof Collection) {
+        collection = (Collection<?>) value;
+      } else if (value instanceof Object[]) {
+        collection = Arrays.asList((Object[]) value);
+      } else {
+        throw new IllegalArgumentException(String.format(
+          "A value for the field '%s' is of type '%s' when it is expected to be a Collection or array.",
+          name, value.getClass().getSimpleName()));
+      }
+      out.writeArrayStart();
+      out.setItemCount(collection.size());
+      for (Object element : collection) {
+        out.startItem();
+        elementEncoder.encode(element, out);
+      }
+      out.writeArrayEnd();
+    };
+  }
+
+  private static ValueEncoder createMapEncoder(String name, Schema schema) {
+    ValueEncoder valueEncoder = createEncoder(name, schema.getValueType());
+    return (value, out) -> {
+      if (!(value instanceof Map)) {
+        throw new IllegalArgumentException(String.format(
+          "A value for the field '%s' is of type '%s' when it is expected to be a Map.",
+          name, value.getClass().getSimpleName()));
+      }
+      Map<?, ?> map = (Map<?, ?>) value;
+      out.writeMapStart();
+      out.setItemCount(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        out.startItem();
+        out.writeString(entry.getKey().toString());
+        valueEncoder.encode(entry.getValue(), out);
+      }
+      out.writeMapEnd();
+    };
+  }
+
+  private static ValueEncoder createUnionEncoder(String name, Schema schema) {
+    List<Schema> branches = schema.getTypes();
+    ValueEncoder[] encoders = new ValueEncoder[branches.size()];
+    int nullIndex = -1;
+    int nonNullIndex = -1;
+    int nonNullCount = 0;
+    for (int i = 0; i < branches.size(); i++) {
+      encoders[i] = createEncoder(name, branches.get(i));
+      if (branches.get(i).getType() == Schema.Type.NULL) {
+        nullIndex = i;
+      } else {
+        nonNullIndex = i;
+        nonNullCount++;
+      }
+    }
+
+    int nullBranch = nullIndex;
+    if (nonNullCount == 1) {
+      // Nullable fields are the common case, they don't need to inspect the value to pick the branch.
+      int valueBranch = nonNullIndex;
+      return (value, out) -> {
+        int branch = value == null ? nullBranch : valueBranch;
+        if (branch < 0) {
+          throw new IllegalArgumentException(String.format("Field '%s' is not nullable but has a null value.", name));
+        }
+        out.writeIndex(branch);
+        encoders[branch].encode(value, out);
+      };
+    }
+
+    return (value, out) -> {
+      int branch = value == null ? nullBranch : resolveUnion(branches, value);
+      if (branch < 0) {
+        throw new IllegalArgumentException(String.format("Value of Field '%s' of type '%s' does not match schema '%s'",
+                                                         name, value == null ? null : value.getClass().getSimpleName(),
+                                                         schema));
+      }
+      out.writeIndex(branch);
+      encoders[branch].encode(value, out);
+    };
+  }
+
+  private static int resolveUnion(List<Schema> branches, Object value) {
+    for (int i = 0; i < branches.size(); i++) {
+      Schema branch = branches.get(i);
+      if (matches(branch, value)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean matches(Schema schema, Object value) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return value instanceof Boolean;
+      case INT:
+        return value instanceof Integer;
+      case LONG:
+        return value instanceof Long;
+      case FLOAT:
+        return value instanceof Float;
+      case DOUBLE:
+        return value instanceof Double;
+      case STRING:
+        return value instanceof CharSequence;
+      case ENUM:
+        return (value instanceof CharSequence || value instanceof Enum) && schema.hasEnumSymbol(value.toString());
+      case BYTES:
+        return value instanceof byte[] || value instanceof ByteBuffer;
+      case ARRAY:
+        return value instanceof Collection || value instanceof Object[];
+      case MAP:
+        return value instanceof Map;
+      case RECORD:
+        return value instanceof StructuredRecord &&
+          schema.getName().equals(((StructuredRecord) value).getSchema().getRecordName());
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Encodes the value of a single field.
+   */
+  private interface ValueEncoder {
+    void encode(@Nullable Object value, Encoder out) throws IOException;
+  }
+
+  /**
+   * Encodes the fields of a record in schema order.
+   */
+  private static final class RecordEncoder {
+    private final String[] names;
+    private final ValueEncoder[] encoders;
+
+    private RecordEncoder(Schema schema) {
+      List<Schema.Field> fields = schema.getFields();
+      this.names = new String[fields.size()];
+      this.encoders = new ValueEncoder[fields.size()];
+      for (int i = 0; i < fields.size(); i++) {
+        Schema.Field field = fields.get(i);
+        names[i] = field.name();
+        encoders[i] = createEncoder(field.name(), field.schema());
+      }
+    }
+
+    private void encode(StructuredRecord record, Encoder out) throws IOException {
+      for (int i = 0; i < names.length; i++) {
+        encoders[i].encode(record.get(names[i]), out);
+      }
+    }
   }
 }
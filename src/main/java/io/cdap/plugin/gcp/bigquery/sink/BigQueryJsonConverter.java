@@ -15,35 +15,73 @@
  */
 package io.cdap.plugin.gcp.bigquery.sink;
 
-import com.google.gson.JsonObject;
-import com.google.gson.internal.bind.JsonTreeWriter;
+import com.google.gson.stream.JsonWriter;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.common.RecordConverter;
+import org.apache.hadoop.io.Text;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Objects;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import javax.annotation.Nullable;
 
 /**
- * BigQueryJsonConverter converts a {@link StructuredRecord} to {@link JsonObject}
+ * BigQueryJsonConverter converts a {@link StructuredRecord} to a json line.
+ * <p>
+ * Records are encoded by the plan of their schema straight into a reusable byte buffer, which is then copied into a
+ * reusable {@link Text}, so no json tree or intermediate string is built per record. The returned {@link Text} is
+ * overwritten by the next call, and a converter is not thread safe.
  */
-public class BigQueryJsonConverter extends RecordConverter<StructuredRecord, JsonObject> {
+public class BigQueryJsonConverter extends RecordConverter<StructuredRecord, Text> {
+  private final LineBuffer buffer = new LineBuffer();
+  private final Writer bufferWriter = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+  private final Text line = new Text();
+  private Schema planSchema;
+  private Schema planOutputSchema;
+  private BigQueryJsonWriterPlan plan;
 
   @Override
-  public JsonObject transform(StructuredRecord input, @Nullable Schema schema) throws IOException {
-    try (JsonTreeWriter writer = new JsonTreeWriter()) {
-      writer.beginObject();
-      for (Schema.Field recordField : Objects.requireNonNull(input.getSchema().getFields())) {
-        // From all the fields in input record, write only those fields that are present in output schema
-        if (schema != null && schema.getField(recordField.getName()) == null) {
-          continue;
-        }
-        BigQueryRecordToJson.write(writer, recordField.getName(), input.get(recordField.getName()),
-                                   recordField.getSchema());
-      }
-      writer.endObject();
-      return writer.get().getAsJsonObject();
+  public Text transform(StructuredRecord input, @Nullable Schema schema) throws IOException {
+    BigQueryJsonWriterPlan recordPlan = getPlan(input.getSchema(), schema);
+    // Flush what a previous record that failed may have left in the writer, so that it is discarded with the buffer
+    bufferWriter.flush();
+    buffer.reset();
+    // A json writer only accepts a single top level value, so each record gets its own, which only holds its nesting
+    // state. It is not closed, as that would close the buffer writer.
+    JsonWriter jsonWriter = new JsonWriter(bufferWriter);
+    recordPlan.write(jsonWriter, input);
+    jsonWriter.flush();
+    buffer.copyTo(line);
+    return line;
+  }
+
+  /**
+   * Returns the plan for the given schemas. All records written by a sink usually have the same schema, so only the
+   * plan of the most recent schemas is kept.
+   */
+  private BigQueryJsonWriterPlan getPlan(Schema inputSchema, @Nullable Schema outputSchema) {
+    if (plan == null || !isSameSchema(planSchema, inputSchema) || !isSameSchema(planOutputSchema, outputSchema)) {
+      plan = BigQueryJsonWriterPlan.compile(inputSchema, outputSchema);
+      planSchema = inputSchema;
+      planOutputSchema = outputSchema;
+    }
+    return plan;
+  }
+
+  private static boolean isSameSchema(@Nullable Schema cached, @Nullable Schema schema) {
+    return cached == schema || (cached != null && cached.equals(schema));
+  }
+
+  /**
+   * Byte buffer whose content can be copied without making a copy of the whole array first.
+   */
+  private static final class LineBuffer extends ByteArrayOutputStream {
+
+    void copyTo(Text text) {
+      text.set(buf, 0, count);
     }
   }
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.gson.stream.JsonWriter;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Writes {@link StructuredRecord} instances of a single schema as BigQuery json.
+ * <p>
+ * The output is the same as the output of {@link BigQueryRecordToJson}, but the schema is only inspected once, when
+ * the plan is compiled. Each field gets a writer for its type, and dates, times and timestamps are formatted directly
+ * into a reusable buffer. A plan is not thread safe.
+ */
+public final class BigQueryJsonWriterPlan {
+  private static final long MICROS_PER_SECOND = TimeUnit.SECONDS.toMicros(1);
+  private static final long SECONDS_PER_DAY = TimeUnit.DAYS.toSeconds(1);
+  private static final long NANOS_PER_DAY = TimeUnit.DAYS.toNanos(1);
+  // 'yyyy-MM-dd HH:mm:ss.SSSSSS'
+  private static final int BUFFER_SIZE = 26;
+
+  private final String[] names;
+  private final ValueWriter[] writers;
+  private final char[] buffer;
+
+  /**
+   * Compiles a plan for records of the given schema.
+   *
+   * @param schema schema of the records that will be written
+   * @param outputSchema if not null, only the fields that are also present in this schema will be written
+   * @return plan for the schema
+   */
+  public static BigQueryJsonWriterPlan compile(Schema schema, @Nullable Schema outputSchema) {
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Schema.Field field : Objects.requireNonNull(schema.getFields())) {
+      // From all the fields in input record, write only those fields that are present in output schema
+      if (outputSchema == null || outputSchema.getField(field.getName()) != null) {
+        fields.add(field);
+      }
+    }
+    return new BigQueryJsonWriterPlan(fields, new char[BUFFER_SIZE]);
+  }
+
+  private BigQueryJsonWriterPlan(List<Schema.Field> fields, char[] buffer) {
+    this.buffer = buffer;
+    this.names = new String[fields.size()];
+    this.writers = new ValueWriter[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      names[i] = field.getName();
+      writers[i] = createWriter(field.getName(), field.getSchema());
+    }
+  }
+
+  /**
+   * Writes a record as a json object.
+   *
+   * @param writer json writer to write the record to
+   * @param record record to write, which must be of the schema this plan was compiled for
+   */
+  public void write(JsonWriter writer, StructuredRecord record) throws IOException {
+    writer.beginObject();
+    for (int i = 0; i < names.length; i++) {
+      writer.name(names[i]);
+      writers[i].write(writer, record.get(names[i]));
+    }
+    writer.endObject();
+  }
+
+  private ValueWriter createWriter(String name, Schema fieldSchema) {
+    Schema schema = BigQueryUtil.getNonNullableSchema(fieldSchema);
+    switch (schema.getType()) {
+      case NULL:
+        return (writer, value) -> writer.nullValue();
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case BOOLEAN:
+      case STRING:
+      case BYTES:
+        return nullSafe(createSimpleWriter(name, schema));
+      case ARRAY:
+        return createArrayWriter(name, schema);
+      case RECORD:
+        return nullSafe(createRecordWriter(Objects.requireNonNull(schema.getFields())));
+      default:
+        return unsupported(String.format("Field '%s' is of unsupported type '%s'", name, fieldSchema.getType()));
+    }
+  }
+
+  private ValueWriter createSimpleWriter(String name, Schema schema) {
+    Schema.LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      switch (logicalType) {
+        case DATE:
+          return (writer, value) -> writer.value(formatDate((Integer) value));
+        case TIME_MILLIS:
+          return (writer, value) -> writer.value(formatTime(TimeUnit.MILLISECONDS.toNanos((Integer) value)));
+        case TIME_MICROS:
+          return (writer, value) -> writer.value(formatTime(TimeUnit.MICROSECONDS.toNanos((Long) value)));
+        case TIMESTAMP_MILLIS:
+          return (writer, value) -> writer.value(formatTimestamp((Long) value, TimeUnit.MILLISECONDS));
+        case TIMESTAMP_MICROS:
+          return (writer, value) -> writer.value(formatTimestamp((Long) value, TimeUnit.MICROSECONDS));
+        case DECIMAL:
+          return (writer, value) ->
+            writer.value(BigQueryRecordToJson.getDecimal(name, (byte[]) value, schema).toPlainString());
+        case DATETIME:
+          //datetime should be already an ISO-8601 string
+          return (writer, value) -> writer.value(value.toString());
+        default:
+          return unsupported(String.format("Field '%s' is of unsupported type '%s'", name, logicalType.getToken()));
+      }
+    }
+
+    switch (schema.getType()) {
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return (writer, value) -> writer.value((Number) value);
+      case BOOLEAN:
+        return (writer, value) -> writer.value((Boolean) value);
+      case STRING:
+        return (writer, value) -> writer.value(value.toString());
+      case BYTES:
+        return (writer, value) -> {
+          if (value instanceof byte[]) {
+            writer.value(Base64.getEncoder().encodeToString((byte[]) value));
+          } else if (value instanceof ByteBuffer) {
+            writer.value(Base64.getEncoder().encodeToString(Bytes.toBytes((ByteBuffer) value)));
+          } else {
+            throw new IllegalStateException(String.format("Expected value of Field '%s' to be bytes but got '%s'",
+                                                          name, value.getClass().getSimpleName()));
+          }
+        };
+      default:
+        return unsupported(String.format("Field '%s' is of unsupported type '%s'", name, schema.getType()));
+    }
+  }
+
+  private ValueWriter createArrayWriter(String name, Schema schema) {
+    Schema componentSchema = BigQueryUtil.getNonNullableSchema(Objects.requireNonNull(schema.getComponentSchema()));
+    if (BigQueryUtil.UNSUPPORTED_ARRAY_TYPES.contains(componentSchema.getType())) {
+      String message = String.format("Field '%s' is an array of '%s', which is not a valid BigQuery type.",
+                                     name, componentSchema);
+      return (writer, value) -> {
+        writer.beginArray();
+        if (value != null) {
+          throw new IllegalArgumentException(message);
+        }
+        writer.endArray();
+      };
+    }
+
+    ValueWriter elementWriter = componentSchema.getType() == Schema.Type.RECORD ?
+      createRecordWriter(Objects.requireNonNull(componentSchema.getFields())) : createWriter(name, componentSchema);
+    return (writer, value) -> {
+      writer.beginArray();
+      // If it's a null array, handle it as an empty array
+      if (value != null) {
+        for (Object element : toCollection(name, value)) {
+          // BigQuery does not allow null values in array items
+          if (element == null) {
+            throw new IllegalArgumentException(String.format("Field '%s' contains null values in its array, " +
+                                                               "which is not allowed by BigQuery.", name));
+          }
+          elementWriter.write(writer, element);
+        }
+      }
+      writer.endArray();
+    };
+  }
+
+  private ValueWriter createRecordWriter(List<Schema.Field> fields) {
+    BigQueryJsonWriterPlan nested = new BigQueryJsonWriterPlan(fields, buffer);
+    return (writer, value) -> {
+      if (!(value instanceof StructuredRecord)) {
+        throw new IllegalStateException(
+          String.format("Value is of type '%s', expected type is '%s'",
+                        value.getClass().getSimpleName(), StructuredRecord.class.getSimpleName()));
+      }
+      nested.write(writer, (StructuredRecord) value);
+    };
+  }
+
+  private static ValueWriter nullSafe(ValueWriter delegate) {
+    return (writer, value) -> {
+      if (value == null) {
+        writer.nullValue();
+      } else {
+        delegate.write(writer, value);
+      }
+    };
+  }
+
+  private static ValueWriter unsupported(String message) {
+    return (writer, value) -> {
+      throw new IllegalStateException(message);
+    };
+  }
+
+  private static Collection<?> toCollection(String name, Object value) {
+    if (value instanceof Collection) {
+      return (Collection<?>) value;
+    }
+    if (value instanceof Object[]) {
+      return Arrays.asList((Object[]) value);
+    }
+    throw new IllegalArgumentException(String.format(
+      "A value for the field '%s' is of type '%s' when it is expected to be a Collection or array.",
+      name, value.getClass().getSimpleName()));
+  }
+
+  /**
+   * Formats a date as yyyy-MM-dd, the same way as {@link LocalDate#toString()}.
+   */
+  private String formatDate(int epochDay) {
+    if (writeDate(epochDay) < 0) {
+      return LocalDate.ofEpochDay(epochDay).toString();
+    }
+    return new String(buffer, 0, 10);
+  }
+
+  /**
+   * Formats a timestamp as yyyy-MM-dd HH:mm:ss.SSSSSS in UTC.
+   */
+  private String formatTimestamp(long ts, TimeUnit unit) {
+    long micros = unit.toMicros(ts);
+    if (micros == Long.MIN_VALUE || micros == Long.MAX_VALUE) {
+      // the conversion saturated, let the formatter deal with it
+      return BigQueryRecordToJson.formatTimestamp(ts, unit);
+    }
+    long seconds = Math.floorDiv(micros, MICROS_PER_SECOND);
+    long epochDay = Math.floorDiv(seconds, SECONDS_PER_DAY);
+    if (epochDay < Integer.MIN_VALUE || epochDay > Integer.MAX_VALUE || writeDate((int) epochDay) < 0) {
+      return BigQueryRecordToJson.formatTimestamp(ts, unit);
+    }
+    int secondOfDay = (int) Math.floorMod(seconds, SECONDS_PER_DAY);
+    buffer[10] = ' ';
+    writeTime(11, secondOfDay, (int) Math.floorMod(micros, MICROS_PER_SECOND));
+    return new String(buffer, 0, BUFFER_SIZE);
+  }
+
+  /**
+   * Formats a time of day as HH:mm:ss.SSSSSS.
+   */
+  private String formatTime(long nanoOfDay) {
+    if (nanoOfDay < 0 || nanoOfDay >= NANOS_PER_DAY) {
+      // let the formatter raise the error for invalid values
+      return BigQueryRecordToJson.formatTime(nanoOfDay);
+    }
+    long seconds = TimeUnit.NANOSECONDS.toSeconds(nanoOfDay);
+    int micros = (int) TimeUnit.NANOSECONDS.toMicros(nanoOfDay - TimeUnit.SECONDS.toNanos(seconds));
+    writeTime(0, (int) seconds, micros);
+    return new String(buffer, 0, 15);
+  }
+
+  /**
+   * Writes the date as yyyy-MM-dd at the start of the buffer.
+   *
+   * @return the number of characters written, or -1 if the year is not between 1 and 9999, where the formatters
+   *         do not agree on the representation
+   */
+  private int writeDate(int epochDay) {
+    // Converts days since the epoch to a civil date, using eras of 400 years that start on March 1st.
+    long z = epochDay + 719468L;
+    long era = Math.floorDiv(z, 146097L);
+    int dayOfEra = (int) (z - era * 146097L);
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int shiftedMonth = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    if (year < 1 || year > 9999) {
+      return -1;
+    }
+    writeDigits(0, (int) year, 4);
+    buffer[4] = '-';
+    writeDigits(5, month, 2);
+    buffer[7] = '-';
+    writeDigits(8, day, 2);
+    return 10;
+  }
+
+  private void writeTime(int offset, int secondOfDay, int micros) {
+    writeDigits(offset, secondOfDay / 3600, 2);
+    buffer[offset + 2] = ':';
+    writeDigits(offset + 3, (secondOfDay / 60) % 60, 2);
+    buffer[offset + 5] = ':';
+    writeDigits(offset + 6, secondOfDay % 60, 2);
+    buffer[offset + 8] = '.';
+    writeDigits(offset + 9, micros, 6);
+  }
+
+  private void writeDigits(int offset, int value, int digits) {
+    for (int i = offset + digits - 1; i >= offset; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+  }
+
+  /**
+   * Writes a single value, which may be null, to a json writer.
+   */
+  private interface ValueWriter {
+    void write(JsonWriter writer, @Nullable Object value) throws IOException;
+  }
+}
@@ -83,6 +83,9 @@ public class BigQueryMultiSink extends AbstractBigQuerySink {
   @Override
   protected void prepareRunInternal(BatchSinkContext context, BigQuery bigQuery, String bucket) throws IOException {
     baseConfiguration.set(BigQueryConstants.CONFIG_OPERATION, Operation.INSERT.name());
+    baseConfiguration.setLong(BigQueryConstants.CONFIG_UPLOAD_BUFFER_MEMORY, config.getUploadBufferMemoryBytes());
+    baseConfiguration.setInt(BigQueryConstants.CONFIG_MAX_CONCURRENT_TABLE_COMMITS,
+                             config.getMaxConcurrentTableCommits());
     Map<String, String> arguments = new HashMap<>(context.getArguments().asMap());
     FailureCollector collector = context.getFailureCollector();
 
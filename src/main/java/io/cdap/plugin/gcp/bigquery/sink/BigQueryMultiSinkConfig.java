@@ -19,8 +19,10 @@ import com.google.common.base.Strings;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.gcp.bigquery.connector.BigQueryConnectorConfig;
 
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
@@ -30,6 +32,10 @@ public class BigQueryMultiSinkConfig extends AbstractBigQuerySinkConfig {
 
   private static final String SPLIT_FIELD_DEFAULT = "tablename";
   private static final String NAME_ALLOW_FLEXIBLE_SCHEMA = "allowFlexibleSchema";
+  public static final String NAME_UPLOAD_BUFFER_MEMORY = "uploadBufferMemory";
+  public static final int DEFAULT_UPLOAD_BUFFER_MEMORY_MB = 512;
+  public static final String NAME_MAX_CONCURRENT_TABLE_COMMITS = "maxConcurrentTableCommits";
+  public static final int DEFAULT_MAX_CONCURRENT_TABLE_COMMITS = 8;
 
   @Macro
   @Nullable
@@ -43,6 +49,23 @@ public class BigQueryMultiSinkConfig extends AbstractBigQuerySinkConfig {
     "arguments will be processed. If enabled, all records will be written as-is.")
   private Boolean allowFlexibleSchema;
 
+  @Name(NAME_UPLOAD_BUFFER_MEMORY)
+  @Macro
+  @Nullable
+  @Description("Memory in megabytes that each task can use for the buffers of the files it is uploading to GCS. " +
+    "Every open staging file needs a buffer of the GCS upload chunk size, so when a task needs more files than fit " +
+    "in this memory, the files of the least recently written tables are closed and their next records are written " +
+    "to new files. Defaults to 512.")
+  private Integer uploadBufferMemory;
+
+  @Name(NAME_MAX_CONCURRENT_TABLE_COMMITS)
+  @Macro
+  @Nullable
+  @Description("Maximum number of tables whose load jobs and schema updates run at the same time when the output " +
+    "is committed. Tables are committed independently, and the failures of all tables are reported together. " +
+    "Defaults to 8.")
+  private Integer maxConcurrentTableCommits;
+
   private BigQueryMultiSinkConfig(BigQueryConnectorConfig connection, String dataset, String cmekKey, String bucket) {
     super(connection, dataset, cmekKey, bucket);
   }
@@ -59,6 +82,38 @@ public class BigQueryMultiSinkConfig extends AbstractBigQuerySinkConfig {
     return allowFlexibleSchema != null ? allowFlexibleSchema : false;
   }
 
+  public long getUploadBufferMemoryBytes() {
+    return (uploadBufferMemory == null ? DEFAULT_UPLOAD_BUFFER_MEMORY_MB : uploadBufferMemory) * 1024L * 1024L;
+  }
+
+  public int getMaxConcurrentTableCommits() {
+    return maxConcurrentTableCommits == null ? DEFAULT_MAX_CONCURRENT_TABLE_COMMITS : maxConcurrentTableCommits;
+  }
+
+  @Override
+  public void validate(FailureCollector collector, Map<String, String> arguments) {
+    super.validate(collector, arguments);
+    if (!containsMacro(NAME_UPLOAD_BUFFER_MEMORY) && uploadBufferMemory != null && uploadBufferMemory < 1) {
+      collector.addFailure(String.format("Upload buffer memory has invalid value '%d'.", uploadBufferMemory),
+                           "Set it to a positive number of megabytes.")
+        .withConfigProperty(NAME_UPLOAD_BUFFER_MEMORY);
+    }
+    if (!containsMacro(NAME_MAX_CONCURRENT_TABLE_COMMITS) && maxConcurrentTableCommits != null
+      && maxConcurrentTableCommits < 1) {
+      collector.addFailure(String.format("Maximum concurrent table commits has invalid value '%d'.",
+                                         maxConcurrentTableCommits),
+                           "Set it to a positive number.")
+        .withConfigProperty(NAME_MAX_CONCURRENT_TABLE_COMMITS);
+    }
+    // Tasks commit the output of their tables when they finish, so write streams could not be committed atomically
+    // for the whole run.
+    if (!containsMacro(NAME_WRITE_METHOD) && WriteMethod.STORAGE_WRITE_API.name().equalsIgnoreCase(writeMethod)) {
+      collector.addFailure("The Storage Write API write method is not supported by the multi table sink.",
+                           "Change the write method to 'LOAD_JOB'.")
+        .withConfigProperty(NAME_WRITE_METHOD);
+    }
+  }
+
   /**
    * BigQuery MultiSink configuration builder.
    */
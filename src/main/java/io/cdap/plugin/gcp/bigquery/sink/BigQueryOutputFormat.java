@@ -16,12 +16,10 @@
 
 package io.cdap.plugin.gcp.bigquery.sink;
 
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.json.JsonParser;
 import com.google.api.client.json.jackson2.JacksonFactory;
-import com.google.api.client.util.BackOff;
-import com.google.api.client.util.ExponentialBackOff;
-import com.google.api.client.util.Sleeper;
-import com.google.api.services.bigquery.Bigquery;
+import com.google.api.gax.core.FixedCredentialsProvider;
 import com.google.api.services.bigquery.model.Clustering;
 import com.google.api.services.bigquery.model.Dataset;
 import com.google.api.services.bigquery.model.EncryptionConfiguration;
@@ -31,6 +29,7 @@ import com.google.api.services.bigquery.model.JobConfiguration;
 import com.google.api.services.bigquery.model.JobConfigurationLoad;
 import com.google.api.services.bigquery.model.JobConfigurationTableCopy;
 import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.ParquetOptions;
 import com.google.api.services.bigquery.model.RangePartitioning;
 import com.google.api.services.bigquery.model.RangePartitioning.Range;
 import com.google.api.services.bigquery.model.Table;
@@ -40,52 +39,76 @@ import com.google.api.services.bigquery.model.TableSchema;
 import com.google.api.services.bigquery.model.TimePartitioning;
 import com.google.auth.Credentials;
 import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
 import com.google.cloud.bigquery.BigQueryException;
 import com.google.cloud.bigquery.BigQueryOptions;
 import com.google.cloud.bigquery.Field;
 import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.JobException;
 import com.google.cloud.bigquery.JobId;
 import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.bigquery.QueryJobConfiguration;
 import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.storage.v1.BatchCommitWriteStreamsRequest;
+import com.google.cloud.bigquery.storage.v1.BatchCommitWriteStreamsResponse;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteClient;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteSettings;
+import com.google.cloud.bigquery.storage.v1.StorageError;
+import com.google.cloud.bigquery.storage.v1.TableName;
 import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
 import com.google.cloud.hadoop.io.bigquery.BigQueryFactory;
 import com.google.cloud.hadoop.io.bigquery.BigQueryFileFormat;
 import com.google.cloud.hadoop.io.bigquery.BigQueryHelper;
 import com.google.cloud.hadoop.io.bigquery.BigQueryStrings;
-import com.google.cloud.hadoop.io.bigquery.BigQueryUtils;
 import com.google.cloud.hadoop.io.bigquery.output.BigQueryOutputConfiguration;
 import com.google.cloud.hadoop.io.bigquery.output.ForwardingBigQueryFileOutputCommitter;
 import com.google.cloud.hadoop.io.bigquery.output.ForwardingBigQueryFileOutputFormat;
 import com.google.cloud.hadoop.util.ConfigurationUtil;
-import com.google.cloud.hadoop.util.ResilientOperation;
-import com.google.cloud.hadoop.util.RetryDeterminer;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobPoller;
 import io.cdap.plugin.gcp.common.GCPUtils;
+import io.cdap.plugin.gcp.common.UploadBufferManager;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
-import org.apache.hadoop.util.Progressable;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -96,6 +119,12 @@ import javax.annotation.Nullable;
  */
 public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<StructuredRecord, NullWritable> {
   private static final Logger LOG = LoggerFactory.getLogger(BigQueryOutputFormat.class);
+  private static final String STREAM_FILE_EXTENSION = ".stream";
+  // Same as FileOutputFormat.BASE_OUTPUT_NAME, which is not public
+  private static final String OUTPUT_BASE_NAME = "mapreduce.output.basename";
+  private static final String DEFAULT_OUTPUT_BASE_NAME = "part";
+  // Base name of the first Avro file of a task
+  private static final String AVRO_OUTPUT_BASE_NAME = "avro.mo.config.namedOutput";
 
   @Override
   public RecordWriter<StructuredRecord, NullWritable> getRecordWriter(TaskAttemptContext taskAttemptContext)
@@ -116,9 +145,83 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
                                                                       io.cdap.cdap.api.data.schema.Schema schema)
     throws IOException, InterruptedException {
     Configuration configuration = taskAttemptContext.getConfiguration();
-    return new BigQueryRecordWriter(getDelegate(configuration).getRecordWriter(taskAttemptContext),
-                                    BigQueryOutputConfiguration.getFileFormat(configuration),
-                                    schema);
+    String partitioning = configuration.get(BigQueryConstants.CONFIG_OVERWRITE_PARTITIONING);
+    if (partitioning != null) {
+      // The staging files of each partition are loaded separately, each one replacing its partition
+      PartitionedRecordWriter.PartitionWriterFactory writerFactory =
+        partitionId -> createRecordWriter(getPartitionContext(taskAttemptContext, partitionId), schema);
+      return new PartitionedRecordWriter(TablePartitioning.parse(partitioning), writerFactory,
+                                         DelegatingMultiSinkRecordWriter.limitOpenFiles(configuration));
+    }
+    RecordWriter<StructuredRecord, NullWritable> writer = createRecordWriter(taskAttemptContext, schema);
+    List<String> tableKey = getPreStageDedupeKey(configuration);
+    if (tableKey.isEmpty()) {
+      return writer;
+    }
+    return new DeduplicatingRecordWriter(writer, tableKey, configuration.get(BigQueryConstants.CONFIG_DEDUPE_BY),
+                                         configuration.getInt(BigQueryConstants.CONFIG_PRE_STAGE_DEDUPE_MAX_RECORDS,
+                                                              BigQuerySinkConfig.DEFAULT_PRE_STAGE_DEDUPE_MAX_RECORDS));
+  }
+
+  /**
+   * Returns the table key records are deduplicated by before they are staged, or an empty list if they are not.
+   */
+  private static List<String> getPreStageDedupeKey(Configuration configuration) {
+    String tableKey = configuration.get(BigQueryConstants.CONFIG_TABLE_KEY);
+    if (!configuration.getBoolean(BigQueryConstants.CONFIG_PRE_STAGE_DEDUPE, false) || tableKey == null
+      || Operation.INSERT.name().equals(configuration.get(BigQueryConstants.CONFIG_OPERATION))) {
+      return Collections.emptyList();
+    }
+    return Arrays.stream(tableKey.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+      .collect(Collectors.toList());
+  }
+
+  private RecordWriter<StructuredRecord, NullWritable> createRecordWriter(TaskAttemptContext taskAttemptContext,
+                                                                          io.cdap.cdap.api.data.schema.Schema schema)
+    throws IOException, InterruptedException {
+    Configuration configuration = taskAttemptContext.getConfiguration();
+    if (getWriteMethod(configuration) == WriteMethod.STORAGE_WRITE_API) {
+      // The stream file is created through the delegate so that it is promoted by the delegate committer.
+      Path streamFile = getDelegate(configuration).getDefaultWorkFile(taskAttemptContext, STREAM_FILE_EXTENSION);
+      return new BigQueryStorageWriteRecordWriter(configuration, schema, streamFile);
+    }
+    FileOutputFormat<StructuredRecord, NullWritable> delegate = getDelegate(configuration);
+    if (delegate instanceof AvroOutputFormat) {
+      // Avro files are encoded directly from the records, without converting them first.
+      return ((AvroOutputFormat) delegate).getRecordWriter(taskAttemptContext, schema);
+    }
+    if (delegate instanceof ParquetOutputFormat) {
+      return ((ParquetOutputFormat) delegate).getRecordWriter(taskAttemptContext, schema);
+    }
+    // Each staging file leases its upload buffer until it is closed
+    BigQueryRecordWriter.RecordWriterFactory writerFactory = index -> UploadBufferManager.getInstance()
+      .getRecordWriter(delegate, getStagingFileContext(taskAttemptContext, index));
+    return new BigQueryRecordWriter(writerFactory,
+                                    schema, configuration.getLong(BigQueryConstants.CONFIG_STAGING_MAX_FILE_SIZE, 0L));
+  }
+
+  /**
+   * Returns the context the delegate creates the given staging file with. Files after the first one get a different
+   * base name, so that they are written next to the first one in the task work directory.
+   */
+  private static TaskAttemptContext getStagingFileContext(TaskAttemptContext context, int index) {
+    if (index == 0) {
+      return context;
+    }
+    Configuration conf = new Configuration(context.getConfiguration());
+    conf.set(OUTPUT_BASE_NAME, conf.get(OUTPUT_BASE_NAME, DEFAULT_OUTPUT_BASE_NAME) + "-" + index);
+    return new TaskAttemptContextImpl(conf, context.getTaskAttemptID());
+  }
+
+  /**
+   * Returns the context the staging files of a partition are created with, whose base name tells their partition.
+   */
+  private static TaskAttemptContext getPartitionContext(TaskAttemptContext context, String partitionId) {
+    Configuration conf = new Configuration(context.getConfiguration());
+    String baseName = TablePartitioning.getFileBaseName(partitionId);
+    conf.set(OUTPUT_BASE_NAME, baseName);
+    conf.set(AVRO_OUTPUT_BASE_NAME, baseName);
+    return new TaskAttemptContextImpl(conf, context.getTaskAttemptID());
   }
 
   private io.cdap.cdap.api.data.schema.Schema getOutputSchema(Configuration configuration) throws IOException {
@@ -129,6 +232,10 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
     return io.cdap.cdap.api.data.schema.Schema.parseJson(schemaJson);
   }
 
+  private static WriteMethod getWriteMethod(Configuration configuration) {
+    return configuration.getEnum(BigQueryConstants.CONFIG_WRITE_METHOD, WriteMethod.LOAD_JOB);
+  }
+
   @Override
   public OutputCommitter createCommitter(TaskAttemptContext context) throws IOException {
     Configuration conf = context.getConfiguration();
@@ -140,6 +247,10 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
    * BigQuery Output committer.
    */
   public static class BigQueryOutputCommitter extends ForwardingBigQueryFileOutputCommitter {
+    private static final String PARQUET_SOURCE_FORMAT = "PARQUET";
+    // Types that can be partitioning or clustering fields and support MIN and MAX
+    private static final Set<String> RANGE_FILTER_TYPES =
+      ImmutableSet.of("INTEGER", "INT64", "NUMERIC", "BIGNUMERIC", "STRING", "DATE", "DATETIME", "TIMESTAMP");
     private BigQueryHelper bigQueryHelper;
 
     private Operation operation;
@@ -164,6 +275,17 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       }
     }
 
+    @Override
+    public void setupJob(JobContext jobContext) throws IOException {
+      super.setupJob(jobContext);
+
+      Configuration conf = jobContext.getConfiguration();
+      if (getWriteMethod(conf) == WriteMethod.STORAGE_WRITE_API) {
+        // Write streams can only be created on existing tables, so the table has to be ready before tasks start.
+        prepareTableForStorageWrite(conf);
+      }
+    }
+
     @Override
     public void commitJob(JobContext jobContext) throws IOException {
       // CDAP-15289 - add specific error message in case of exception. This method is copied from
@@ -173,6 +295,11 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       // Get the destination configuration information.
       Configuration conf = jobContext.getConfiguration();
       TableReference destTable = getTableReference(conf);
+      if (getWriteMethod(conf) == WriteMethod.STORAGE_WRITE_API) {
+        commitWriteStreams(conf, destTable, getOutputFileURIs());
+        cleanup(jobContext);
+        return;
+      }
       String destProjectId = BigQueryOutputConfiguration.getJobProjectId(conf);
       String writeDisposition = BigQueryOutputConfiguration.getWriteDisposition(conf);
       Optional<TableSchema> destSchema = getTableSchema(conf);
@@ -284,8 +411,13 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       }
       // Create load conf with minimal requirements.
       JobConfigurationLoad loadConfig = new JobConfigurationLoad();
-      loadConfig.setSourceFormat(sourceFormat.getFormatIdentifier());
-      loadConfig.setUseAvroLogicalTypes(true);
+      if (isParquetStaging(conf, sourceFormat)) {
+        loadConfig.setSourceFormat(PARQUET_SOURCE_FORMAT);
+        loadConfig.setParquetOptions(new ParquetOptions().setEnableListInference(true));
+      } else {
+        loadConfig.setSourceFormat(sourceFormat.getFormatIdentifier());
+        loadConfig.setUseAvroLogicalTypes(true);
+      }
 
       // If schema change is not allowed and if the destination table already exists, use the destination table schema
       // See PLUGIN-395
@@ -370,24 +502,34 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
 
       //Depending on Operation type and no of gcs paths present , trigger suitable BQ job.
       temporaryTableReference = null;
-      if (operation.equals(Operation.INSERT) &&  gcsPaths.size() <= BQ_IMPORT_MAX_BATCH_SIZE) {
-        // Directly load data into destination table when total no of input paths is loadable into BQ
-        loadConfig.setSourceUris(gcsPaths);
-        loadConfig.setWriteDisposition(writeDisposition);
-        loadConfig.setDestinationTable(tableRef);
-
-        JobConfiguration config = new JobConfiguration();
-        config.setLoad(loadConfig);
-        triggerBigqueryJob(projectId, jobId , dataset, config);
+      int maxConcurrentJobs = conf.getInt(BigQueryConstants.CONFIG_MAX_CONCURRENT_LOAD_JOBS,
+                                          AbstractBigQuerySinkConfig.DEFAULT_MAX_CONCURRENT_LOAD_JOBS);
+      if (operation.equals(Operation.INSERT) && tableExists
+        && conf.get(BigQueryConstants.CONFIG_OVERWRITE_PARTITIONING) != null) {
+        // Staging files were written per partition, and each partition is replaced with its own files
+        loadPartitions(tableRef, loadConfig, gcsPaths, conf, projectId, jobId, dataset, maxConcurrentJobs);
       } else {
-        // First load the data in a temp table.
-        loadInBatchesInTempTable(tableRef, loadConfig, gcsPaths, projectId, jobId, dataset);
-
-        if (operation.equals(Operation.INSERT)) { // For the case when gcs paths is more than 10000
-          handleInsertOperation(tableRef, writeDisposition, loadConfig.getDestinationEncryptionConfiguration(),
-                                projectId, jobId, dataset, tableExists);
+        // The staging directory is specific to this job, so its files can usually be loaded through a few wildcards
+        List<String> sourceUris = getSourceUris(gcsPaths, listDirectoryObjects(gcsPaths, conf));
+        if (operation.equals(Operation.INSERT) && sourceUris.size() <= BQ_IMPORT_MAX_BATCH_SIZE) {
+          // Directly load data into destination table when total no of input paths is loadable into BQ
+          loadConfig.setSourceUris(sourceUris);
+          loadConfig.setWriteDisposition(writeDisposition);
+          loadConfig.setDestinationTable(tableRef);
+
+          JobConfiguration config = new JobConfiguration();
+          config.setLoad(loadConfig);
+          triggerBigqueryJob(projectId, jobId , dataset, config);
         } else {
-          handleUpdateUpsertOperation(tableRef, tableExists, kmsKeyName, getJobIdForUpdateUpsert(conf), conf);
+          // First load the data in a temp table.
+          loadInBatchesInTempTable(tableRef, loadConfig, sourceUris, projectId, jobId, dataset, maxConcurrentJobs);
+
+          if (operation.equals(Operation.INSERT)) { // For the case when gcs paths is more than 10000
+            handleInsertOperation(tableRef, writeDisposition, loadConfig.getDestinationEncryptionConfiguration(),
+                                  projectId, jobId, dataset, tableExists);
+          } else {
+            handleUpdateUpsertOperation(tableRef, tableExists, kmsKeyName, getJobIdForUpdateUpsert(conf), conf);
+          }
         }
       }
 
@@ -400,7 +542,18 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
 
     private void triggerBigqueryJob(String projectId, String jobId, Dataset dataset, JobConfiguration jobConfiguration)
       throws IOException, InterruptedException {
+      JobReference jobReference = insertBigqueryJob(projectId, jobId, dataset, jobConfiguration);
+      // Wait until job is complete.
+      Job job = BigQueryJobPoller.await(trackBigqueryJob(projectId, jobReference));
+      checkJobErrors(job, jobReference);
+    }
+
+    private CompletableFuture<Job> trackBigqueryJob(String projectId, JobReference jobReference) {
+      return BigQueryJobPoller.getInstance().track(bigQueryHelper.getRawBigquery(), projectId, jobReference);
+    }
 
+    private JobReference insertBigqueryJob(String projectId, String jobId, Dataset dataset,
+                                           JobConfiguration jobConfiguration) throws IOException {
       JobReference jobReference =
         new JobReference().setProjectId(projectId)
           .setJobId(jobId)
@@ -411,13 +564,12 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       job.setJobReference(jobReference);
       // Insert and run job.
       bigQueryHelper.insertJobOrFetchDuplicate(projectId, job);
-      // Poll until job is complete.
-      waitForJobCompletion(bigQueryHelper.getRawBigquery(), projectId, jobReference);
+      return jobReference;
     }
 
     private void loadInBatchesInTempTable(TableReference tableRef, JobConfigurationLoad loadConfig,
-                                          List<String> gcsPaths, String projectId, String jobId, Dataset dataset)
-      throws IOException, InterruptedException {
+                                          List<String> gcsPaths, String projectId, String jobId, Dataset dataset,
+                                          int maxConcurrentJobs) throws IOException, InterruptedException {
 
       LOG.info(" Importing into a temporary table first in batches of 10000");
 
@@ -434,16 +586,158 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       // Split the list of files in batches 10000 (current bq load job limit) and import /append onto a temp table
       List<List<String>> gcsPathsInBatches = Lists.partition(gcsPaths, BQ_IMPORT_MAX_BATCH_SIZE);
 
-      int jobcount = 1;
-      for (List<String> gcsPathBatch :  gcsPathsInBatches) {
-        LOG.debug(" Running for Batch {} with number of gcs paths : {}", jobcount, gcsPathBatch.size());
-        loadConfig.setSourceUris(gcsPathBatch);
-        JobConfiguration config = new JobConfiguration();
-        config.setLoad(loadConfig);
+      // The first batch creates the temporary table, the remaining batches are appended to it concurrently.
+      LOG.debug(" Running for Batch 1 with number of gcs paths : {}", gcsPathsInBatches.get(0).size());
+      triggerBigqueryJob(projectId, jobId + "_1", dataset, createLoadJobConfig(loadConfig, gcsPathsInBatches.get(0)));
 
-        triggerBigqueryJob(projectId, jobId + "_" + jobcount, dataset, config);
+      Deque<CompletableFuture<Job>> runningJobs = new ArrayDeque<>();
+      int jobcount = 2;
+      for (List<String> gcsPathBatch : gcsPathsInBatches.subList(1, gcsPathsInBatches.size())) {
+        if (runningJobs.size() >= maxConcurrentJobs) {
+          awaitAnyJob(runningJobs);
+        }
+        LOG.debug(" Running for Batch {} with number of gcs paths : {}", jobcount, gcsPathBatch.size());
+        JobReference jobReference = insertBigqueryJob(projectId, jobId + "_" + jobcount, dataset,
+                                                      createLoadJobConfig(loadConfig, gcsPathBatch));
+        runningJobs.add(trackBigqueryJob(projectId, jobReference));
         jobcount++;
       }
+      while (!runningJobs.isEmpty()) {
+        awaitAnyJob(runningJobs);
+      }
+    }
+
+    /**
+     * Loads the staging files of each partition into that partition of the destination table, replacing its data.
+     * Partitions are loaded concurrently. When a partition has more files than a load job takes, its first batch
+     * replaces the partition, and the remaining batches are appended to it once all partitions are replaced.
+     */
+    private void loadPartitions(TableReference tableRef, JobConfigurationLoad loadConfig, List<String> gcsPaths,
+                                Configuration conf, String projectId, String jobId, Dataset dataset,
+                                int maxConcurrentJobs) throws IOException, InterruptedException {
+      Map<String, List<String>> partitionPaths = new TreeMap<>();
+      for (String gcsPath : gcsPaths) {
+        String partitionId = TablePartitioning.getPartitionIdOfFile(gcsPath.substring(gcsPath.lastIndexOf('/') + 1));
+        if (partitionId == null) {
+          throw new IOException(String.format("Staging file '%s' was not written for a single partition.", gcsPath));
+        }
+        partitionPaths.computeIfAbsent(partitionId, k -> new ArrayList<>()).add(gcsPath);
+      }
+      LOG.info("Overwriting {} partitions of table '{}'.", partitionPaths.size(), BigQueryStrings.toString(tableRef));
+      List<String> directoryObjects = listDirectoryObjects(gcsPaths, conf);
+
+      Map<String, JobConfiguration> truncateJobs = new LinkedHashMap<>();
+      Map<String, JobConfiguration> appendJobs = new LinkedHashMap<>();
+      for (Map.Entry<String, List<String>> entry : partitionPaths.entrySet()) {
+        // Partition decorators address a single partition of the table
+        TableReference partitionRef = tableRef.clone().setTableId(tableRef.getTableId() + "$" + entry.getKey());
+        List<String> partitionUris = getSourceUris(entry.getValue(), directoryObjects);
+        List<List<String>> batches = Lists.partition(partitionUris, BQ_IMPORT_MAX_BATCH_SIZE);
+        for (int i = 0; i < batches.size(); i++) {
+          JobConfigurationLoad partitionLoadConfig = loadConfig.clone();
+          partitionLoadConfig.setDestinationTable(partitionRef);
+          partitionLoadConfig.setWriteDisposition(i == 0 ? JobInfo.WriteDisposition.WRITE_TRUNCATE.toString()
+                                                    : JobInfo.WriteDisposition.WRITE_APPEND.toString());
+          (i == 0 ? truncateJobs : appendJobs).put(jobId + "_" + entry.getKey() + "_" + (i + 1),
+                                                   createLoadJobConfig(partitionLoadConfig, batches.get(i)));
+        }
+      }
+      runLoadJobs(projectId, dataset, truncateJobs, maxConcurrentJobs);
+      runLoadJobs(projectId, dataset, appendJobs, maxConcurrentJobs);
+    }
+
+    /**
+     * Lists the objects in the directories of the given staged files, including nested ones.
+     *
+     * @return the objects, or {@code null} if a file is not in a directory or the directories could not be listed
+     */
+    @Nullable
+    private List<String> listDirectoryObjects(List<String> gcsPaths, Configuration conf) {
+      if (gcsPaths.size() < 2 || gcsPaths.stream().anyMatch(gcsPath -> gcsPath.indexOf('/') < 0)) {
+        // There is nothing to collapse
+        return null;
+      }
+      Set<String> directories = gcsPaths.stream().map(gcsPath -> gcsPath.substring(0, gcsPath.lastIndexOf('/')))
+        .collect(Collectors.toSet());
+      List<String> objects = new ArrayList<>();
+      try {
+        for (String directory : directories) {
+          Path path = new Path(directory);
+          RemoteIterator<LocatedFileStatus> files = path.getFileSystem(conf).listFiles(path, true);
+          while (files.hasNext()) {
+            objects.add(files.next().getPath().toString());
+          }
+        }
+      } catch (IOException e) {
+        LOG.warn("Unable to list the staging directories, loading the staged files by name.", e);
+        return null;
+      }
+      return objects;
+    }
+
+    /**
+     * Returns wildcard URIs for the given staged files if the objects of their directories are known, and the staged
+     * file URIs otherwise.
+     */
+    private static List<String> getSourceUris(List<String> gcsPaths, @Nullable List<String> directoryObjects) {
+      List<String> sourceUris = directoryObjects == null ? gcsPaths
+        : BigQuerySinkUtils.getWildcardUris(gcsPaths, directoryObjects);
+      LOG.debug("Loading {} staged files through {} source URIs.", gcsPaths.size(), sourceUris.size());
+      return sourceUris;
+    }
+
+    /**
+     * Runs the given load jobs, keyed by job id, with at most the given number of them running at the same time.
+     */
+    private void runLoadJobs(String projectId, Dataset dataset, Map<String, JobConfiguration> jobs,
+                             int maxConcurrentJobs) throws IOException, InterruptedException {
+      Deque<CompletableFuture<Job>> runningJobs = new ArrayDeque<>();
+      for (Map.Entry<String, JobConfiguration> job : jobs.entrySet()) {
+        if (runningJobs.size() >= maxConcurrentJobs) {
+          awaitAnyJob(runningJobs);
+        }
+        JobReference jobReference = insertBigqueryJob(projectId, job.getKey(), dataset, job.getValue());
+        runningJobs.add(trackBigqueryJob(projectId, jobReference));
+      }
+      while (!runningJobs.isEmpty()) {
+        awaitAnyJob(runningJobs);
+      }
+    }
+
+    /**
+     * Waits until at least one of the given jobs completes, and removes the completed jobs from the collection.
+     *
+     * @throws IOException if a completed job failed, or its status could not be fetched
+     */
+    private static void awaitAnyJob(Collection<CompletableFuture<Job>> jobs) throws IOException, InterruptedException {
+      BigQueryJobPoller.await(CompletableFuture.anyOf(jobs.toArray(new CompletableFuture<?>[0])));
+      Iterator<CompletableFuture<Job>> iterator = jobs.iterator();
+      while (iterator.hasNext()) {
+        CompletableFuture<Job> future = iterator.next();
+        if (future.isDone()) {
+          iterator.remove();
+          Job job = BigQueryJobPoller.await(future);
+          checkJobErrors(job, job.getJobReference());
+        }
+      }
+    }
+
+    private static JobConfiguration createLoadJobConfig(JobConfigurationLoad loadConfig, List<String> gcsPaths) {
+      // Each job needs its own copy, since the jobs are submitted before the previous ones complete.
+      JobConfigurationLoad batchLoadConfig = loadConfig.clone();
+      batchLoadConfig.setSourceUris(gcsPaths);
+      JobConfiguration config = new JobConfiguration();
+      config.setLoad(batchLoadConfig);
+      return config;
+    }
+
+    /**
+     * The connector configuration only tells Avro and json files apart, so Parquet staging files are configured as
+     * Avro there, with the staging format telling which one was actually written.
+     */
+    private static boolean isParquetStaging(Configuration conf, BigQueryFileFormat fileFormat) {
+      return fileFormat == BigQueryFileFormat.AVRO
+        && conf.getEnum(BigQueryConstants.CONFIG_STAGING_FORMAT, StagingFormat.AVRO) == StagingFormat.PARQUET;
     }
 
     private void setTemporaryTableExpiration() throws IOException {
@@ -456,82 +750,30 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       }
     }
 
-    /**
-     * This method is copied from BigQueryUtils#waitForJobCompletion for getting useful error message.
-     */
-    private static void waitForJobCompletion(Bigquery bigquery, String projectId,
-                                             JobReference jobReference) throws IOException, InterruptedException {
-
-      Sleeper sleeper = Sleeper.DEFAULT;
-      BackOff pollBackOff =
-        new ExponentialBackOff.Builder()
-          .setMaxIntervalMillis(BigQueryUtils.POLL_WAIT_INTERVAL_MAX_MILLIS)
-          .setInitialIntervalMillis(BigQueryUtils.POLL_WAIT_INITIAL_MILLIS)
-          .setMaxElapsedTimeMillis(BigQueryUtils.POLL_WAIT_MAX_ELAPSED_MILLIS)
-          .build();
-
-      // Get starting time.
-      long startTime = System.currentTimeMillis();
-      long elapsedTime;
-      boolean notDone = true;
-
-      // While job is incomplete continue to poll.
-      while (notDone) {
-        BackOff operationBackOff = new ExponentialBackOff.Builder().build();
-        Bigquery.Jobs.Get get = bigquery.jobs().get(projectId, jobReference.getJobId())
-          .setLocation(jobReference.getLocation());
-
-        Job pollJob = ResilientOperation.retry(
-          ResilientOperation.getGoogleRequestCallable(get),
-          operationBackOff,
-          RetryDeterminer.RATE_LIMIT_ERRORS,
-          IOException.class,
-          sleeper);
-
-        elapsedTime = System.currentTimeMillis() - startTime;
-        LOG.debug("Job status ({} ms) {}: {}", elapsedTime, jobReference.getJobId(),
-                  pollJob.getStatus().getState());
-        if (pollJob.getStatus().getState().equals("DONE")) {
-          notDone = false;
-          if (pollJob.getStatus().getErrorResult() != null) {
-            List<ErrorProto> errors = pollJob.getStatus().getErrors();
-            int numOfErrors;
-            String errorMessage;
-            if (errors == null || errors.isEmpty()) {
-              errorMessage = pollJob.getStatus().getErrorResult().getMessage();
-              numOfErrors = 1;
-            } else {
-              errorMessage = errors.get(errors.size() - 1).getMessage();
-              numOfErrors = errors.size();
-            }
-            // Only add first error message in the exception. For other errors user should look at BigQuery job logs.
-            throw new IOException(String.format("Error occurred while importing data to BigQuery '%s'." +
-                                                  " There are total %s error(s) for BigQuery job %s. Please look at " +
-                                                  "BigQuery job logs for more information.",
-                                                errorMessage, numOfErrors, jobReference.getJobId()));
-          }
+    private static void checkJobErrors(Job pollJob, JobReference jobReference) throws IOException {
+      if (pollJob.getStatus().getErrorResult() != null) {
+        List<ErrorProto> errors = pollJob.getStatus().getErrors();
+        int numOfErrors;
+        String errorMessage;
+        if (errors == null || errors.isEmpty()) {
+          errorMessage = pollJob.getStatus().getErrorResult().getMessage();
+          numOfErrors = 1;
         } else {
-          long millisToWait = pollBackOff.nextBackOffMillis();
-          if (millisToWait == BackOff.STOP) {
-            throw new IOException(
-              String.format(
-                "Job %s failed to complete after %s millis.",
-                jobReference.getJobId(),
-                elapsedTime));
-          }
-          // Pause execution for the configured duration before polling job status again.
-          Thread.sleep(millisToWait);
-          // Call progress to ensure task doesn't time out.
-          Progressable progressable = () -> { };
-          progressable.progress();
+          errorMessage = errors.get(errors.size() - 1).getMessage();
+          numOfErrors = errors.size();
         }
+        // Only add first error message in the exception. For other errors user should look at BigQuery job logs.
+        throw new IOException(String.format("Error occurred while importing data to BigQuery '%s'." +
+                                              " There are total %s error(s) for BigQuery job %s. Please look at " +
+                                              "BigQuery job logs for more information.",
+                                            errorMessage, numOfErrors, jobReference.getJobId()));
       }
     }
 
     /**
      * This method is copied from BigQueryOutputConfiguration#getTableReference.
      */
-    private static TableReference getTableReference(Configuration conf) throws IOException {
+    static TableReference getTableReference(Configuration conf) throws IOException {
       // Ensure the BigQuery output information is valid.
       String projectId = BigQueryOutputConfiguration.getProjectId(conf);
       String datasetId =
@@ -591,17 +833,19 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       TableId destinationTableId = TableId.of(tableRef.getProjectId(),
                                               tableRef.getDatasetId(),
                                               tableRef.getTableId());
+      BigQuery bigquery = getBigQuery(config);
+      String stagedDataFilter = tableExists ? getStagedDataFilter(bigquery, tableRef, sourceTableId, cmekKey, config)
+        : null;
       String query = BigQuerySinkUtils.generateUpdateUpsertQuery(operation,
                                                                  sourceTableId,
                                                                  destinationTableId,
                                                                  tableFieldsList,
                                                                  tableKeyList,
                                                                  orderedByList,
-                                                                 partitionFilter);
+                                                                 partitionFilter,
+                                                                 stagedDataFilter);
       LOG.info("Update/Upsert query: " + query);
 
-      BigQuery bigquery = getBigQuery(config);
-
       QueryJobConfiguration queryConfig =
         QueryJobConfiguration.newBuilder(query)
           .setUseLegacySql(false)
@@ -613,7 +857,12 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
         com.google.cloud.bigquery.Job queryJob = bigquery.create(JobInfo.newBuilder(queryConfig)
                                                                    .setJobId(jobId).build());
         // Wait for the query to complete.
-        queryJob.waitFor();
+        queryJob = BigQueryJobPoller.await(BigQueryJobPoller.getInstance().track(queryJob));
+        // Failed queries are reported the same way as errors creating them
+        if (queryJob != null && queryJob.getStatus().getError() != null) {
+          BigQueryError error = queryJob.getStatus().getError();
+          throw new BigQueryException(0, error.getMessage(), error);
+        }
       } catch (BigQueryException e) {
         if (Operation.UPDATE.equals(operation) && !bigQueryHelper.tableExists(tableRef)) {
           // ignore the exception. This is because we do not want to fail the pipeline as per below discussion
@@ -626,6 +875,79 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       }
     }
 
+    /**
+     * Derives a filter on the destination table from the range of values of its partitioning and clustering fields
+     * in the staged data, so that the Update/Upsert query only scans the partitions and blocks that can match it.
+     *
+     * @return the filter, or null if none is enabled or can be derived
+     */
+    @Nullable
+    private String getStagedDataFilter(BigQuery bigquery, TableReference tableRef, TableId sourceTableId,
+                                       @Nullable String cmekKey, Configuration conf)
+      throws IOException, InterruptedException {
+      boolean derivePartitionFilter = conf.getBoolean(BigQueryConstants.CONFIG_DERIVE_PARTITION_FILTER, false);
+      boolean deriveClusteringFilter = conf.getBoolean(BigQueryConstants.CONFIG_DERIVE_CLUSTERING_FILTER, false);
+      if (!derivePartitionFilter && !deriveClusteringFilter) {
+        return null;
+      }
+
+      Table destination = bigQueryHelper.getTable(tableRef);
+      List<String> columns = new ArrayList<>();
+      if (derivePartitionFilter) {
+        // Tables partitioned by ingestion time have no partitioning field in the staged data
+        if (destination.getTimePartitioning() != null && destination.getTimePartitioning().getField() != null) {
+          columns.add(destination.getTimePartitioning().getField());
+        } else if (destination.getRangePartitioning() != null) {
+          columns.add(destination.getRangePartitioning().getField());
+        }
+      }
+      if (deriveClusteringFilter && destination.getClustering() != null) {
+        destination.getClustering().getFields().stream()
+          .filter(field -> !columns.contains(field))
+          .forEach(columns::add);
+      }
+      // Only keep the columns that were written and whose values can be ordered
+      Map<String, TableFieldSchema> stagedFields = bigQueryHelper.getTable(temporaryTableReference).getSchema()
+        .getFields().stream().collect(Collectors.toMap(TableFieldSchema::getName, field -> field));
+      columns.removeIf(column -> !stagedFields.containsKey(column) || !isRangeFilterable(stagedFields.get(column)));
+      if (columns.isEmpty()) {
+        LOG.debug("No partitioning or clustering field of table {} can be filtered on.", tableRef.getTableId());
+        return null;
+      }
+
+      String query = BigQuerySinkUtils.generateStagedRangeQuery(sourceTableId, columns);
+      LOG.debug("Staged data range query: {}", query);
+      QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(query)
+        .setUseLegacySql(false)
+        .setDestinationEncryptionConfiguration(
+          com.google.cloud.bigquery.EncryptionConfiguration.newBuilder().setKmsKeyName(cmekKey).build())
+        .build();
+      FieldValueList row;
+      try {
+        row = bigquery.query(queryConfig).iterateAll().iterator().next();
+      } catch (BigQueryException | JobException e) {
+        // The filter only reduces the data scanned, so the query can still run without it
+        LOG.warn("Unable to compute the range of the staged data, the Update/Upsert query will scan table {}.",
+                 tableRef.getTableId(), e);
+        return null;
+      }
+      if (row.get("row_count").getLongValue() == 0) {
+        return null;
+      }
+      List<String> filters = new ArrayList<>();
+      for (int i = 0; i < columns.size(); i++) {
+        filters.add(BigQuerySinkUtils.generateStagedRangeFilter(columns.get(i),
+                                                                row.get("min_" + i).getStringValue(),
+                                                                row.get("max_" + i).getStringValue(),
+                                                                row.get("nulls_" + i).getBooleanValue()));
+      }
+      return String.join(" AND ", filters);
+    }
+
+    private static boolean isRangeFilterable(TableFieldSchema field) {
+      return !"REPEATED".equals(field.getMode()) && RANGE_FILTER_TYPES.contains(field.getType());
+    }
+
     private void updateTableSchema(TableReference tableRef) {
       LOG.debug("Update/Upsert table schema update");
       BigQuery bigquery = BigQueryOptions.getDefaultInstance().getService();
@@ -650,6 +972,104 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       BigQuerySinkUtils.relaxTableSchema(bigquery, sourceTable, destinationTable);
     }
 
+    /**
+     * Creates the destination table if it does not exist yet, using the same partitioning and clustering settings as
+     * the load job would. If the table exists and schema relaxation is enabled, new fields are added and fields are
+     * relaxed, since the Storage Write API does not update the table schema by itself.
+     */
+    private void prepareTableForStorageWrite(Configuration conf) throws IOException {
+      TableReference tableRef = getTableReference(conf);
+      TableSchema schema = getTableSchema(conf).orElse(null);
+
+      if (!bigQueryHelper.tableExists(tableRef)) {
+        Table table = new Table();
+        table.setSchema(schema);
+        table.setTableReference(tableRef);
+
+        PartitionType partitionType = conf.getEnum(BigQueryConstants.CONFIG_PARTITION_TYPE, PartitionType.NONE);
+        String partitionByField = conf.get(BigQueryConstants.CONFIG_PARTITION_BY_FIELD, null);
+        boolean requirePartitionFilter = conf.getBoolean(BigQueryConstants.CONFIG_REQUIRE_PARTITION_FILTER, false);
+        switch (partitionType) {
+          case TIME:
+            table.setTimePartitioning(createTimePartitioning(partitionByField, requirePartitionFilter));
+            break;
+          case INTEGER:
+            table.setRangePartitioning(createRangePartitioning(partitionByField,
+                                                               createRangeForIntegerPartitioning(conf)));
+            table.setRequirePartitionFilter(requirePartitionFilter);
+            break;
+          case NONE:
+            break;
+        }
+        String clusteringOrder = conf.get(BigQueryConstants.CONFIG_CLUSTERING_ORDER, null);
+        if (PartitionType.NONE != partitionType && !Strings.isNullOrEmpty(clusteringOrder)) {
+          table.setClustering(new Clustering().setFields(Arrays.stream(clusteringOrder.split(","))
+                                                           .map(String::trim).collect(Collectors.toList())));
+        }
+        String kmsKeyName = BigQueryOutputConfiguration.getKmsKeyName(conf);
+        if (!Strings.isNullOrEmpty(kmsKeyName)) {
+          table.setEncryptionConfiguration(new EncryptionConfiguration().setKmsKeyName(kmsKeyName));
+        }
+
+        try {
+          bigQueryHelper.getRawBigquery().tables().insert(tableRef.getProjectId(), tableRef.getDatasetId(), table)
+            .execute();
+        } catch (GoogleJsonResponseException e) {
+          // A conflict means another committer created the table in the meantime, which is fine.
+          if (e.getStatusCode() != 409) {
+            throw e;
+          }
+        }
+        return;
+      }
+
+      String cdapSchema = conf.get(BigQueryConstants.CDAP_BQ_SINK_OUTPUT_SCHEMA);
+      if (conf.getBoolean(BigQueryConstants.CONFIG_ALLOW_SCHEMA_RELAXATION, false) && cdapSchema != null) {
+        BigQuery bigquery = getBigQuery(conf);
+        com.google.cloud.bigquery.Table destinationTable =
+          bigquery.getTable(TableId.of(tableRef.getProjectId(), tableRef.getDatasetId(), tableRef.getTableId()));
+        List<Field> sourceFields = BigQuerySinkUtils.convertCdapSchemaToBigQuerySchema(
+          io.cdap.cdap.api.data.schema.Schema.parseJson(cdapSchema)).getFields();
+        BigQuerySinkUtils.relaxTableSchema(bigquery, destinationTable, sourceFields,
+                                           destinationTable.getDefinition().getSchema().getFields());
+      }
+    }
+
+    /**
+     * Commits the write streams listed in the supplied stream files to the destination table in a single atomic
+     * operation.
+     */
+    private void commitWriteStreams(Configuration conf, TableReference tableRef,
+                                    List<String> streamFiles) throws IOException {
+      List<String> streamNames = new ArrayList<>();
+      for (String streamFile : streamFiles) {
+        Path path = new Path(streamFile);
+        try (InputStream in = path.getFileSystem(conf).open(path)) {
+          streamNames.add(new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8).trim());
+        }
+      }
+
+      if (streamNames.isEmpty()) {
+        LOG.info("No write streams to commit into table '{}'.", BigQueryStrings.toString(tableRef));
+        return;
+      }
+
+      String parent = TableName.of(tableRef.getProjectId(), tableRef.getDatasetId(), tableRef.getTableId()).toString();
+      try (BigQueryWriteClient client = getBigQueryWriteClient(conf)) {
+        BatchCommitWriteStreamsResponse response = client.batchCommitWriteStreams(
+          BatchCommitWriteStreamsRequest.newBuilder().setParent(parent).addAllWriteStreams(streamNames).build());
+        if (!response.hasCommitTime()) {
+          List<StorageError> errors = response.getStreamErrorsList();
+          String errorMessage = errors.isEmpty() ? "unknown error" : errors.get(0).getErrorMessage();
+          throw new IOException(String.format("Error occurred while committing %s write stream(s) to BigQuery " +
+                                                "table '%s': '%s'. There are total %s error(s).",
+                                              streamNames.size(), BigQueryStrings.toString(tableRef),
+                                              errorMessage, errors.size()));
+        }
+      }
+      LOG.info("Committed {} write streams into table '{}'.", streamNames.size(), BigQueryStrings.toString(tableRef));
+    }
+
     private static TableSchema createTableSchemaFromFields(String fieldsJson) throws IOException {
       List<TableFieldSchema> fields = new ArrayList<>();
       JsonParser parser = JacksonFactory.getDefaultInstance().createJsonParser(fieldsJson);
@@ -747,4 +1167,11 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
     Credentials credentials = GCPUtils.loadCredentialsFromConf(config);
     return GCPUtils.getBigQuery(projectId, credentials);
   }
+
+  static BigQueryWriteClient getBigQueryWriteClient(Configuration config) throws IOException {
+    Credentials credentials = GCPUtils.loadCredentialsFromConf(config);
+    return BigQueryWriteClient.create(BigQueryWriteSettings.newBuilder()
+                                        .setCredentialsProvider(FixedCredentialsProvider.create(credentials))
+                                        .build());
+  }
 }
@@ -0,0 +1,304 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.cloud.bigquery.storage.v1.ProtoSchema;
+import com.google.cloud.bigquery.storage.v1.ProtoSchemaConverter;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts {@link StructuredRecord} instances into protobuf messages that can be appended to a BigQuery Storage
+ * Write API stream.
+ *
+ * The protobuf descriptor is derived once from the CDAP schema, and the field lookups needed to populate messages are
+ * resolved at that point, so converting a record does not need to inspect the schema again.
+ */
+public class BigQueryProtoConverter {
+  private static final String MESSAGE_NAME = "CdapRecord";
+  private static final String NESTED_MESSAGE_PREFIX = "Struct";
+  private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss.SSSSSS");
+
+  private final MessagePlan plan;
+  private final ProtoSchema protoSchema;
+
+  public BigQueryProtoConverter(Schema schema) throws IOException {
+    Descriptor descriptor;
+    try {
+      FileDescriptorProto fileProto = FileDescriptorProto.newBuilder()
+        .addMessageType(buildMessageProto(MESSAGE_NAME, schema))
+        .build();
+      descriptor = FileDescriptor.buildFrom(fileProto, new FileDescriptor[0]).findMessageTypeByName(MESSAGE_NAME);
+    } catch (Descriptors.DescriptorValidationException e) {
+      throw new IOException(String.format("Unable to derive a protobuf descriptor from schema '%s'.", schema), e);
+    }
+    this.plan = new MessagePlan(schema, descriptor);
+    this.protoSchema = ProtoSchemaConverter.convert(descriptor);
+  }
+
+  /**
+   * @return the protobuf schema to use as the writer schema of the Storage Write API stream
+   */
+  public ProtoSchema getProtoSchema() {
+    return protoSchema;
+  }
+
+  /**
+   * Converts a record into a protobuf message. Fields that are not part of the schema this converter was created with
+   * are ignored, and fields of that schema that are missing from the record are left unset.
+   *
+   * @param record record to convert
+   * @return protobuf message for the record
+   */
+  public DynamicMessage transform(StructuredRecord record) {
+    return plan.toMessage(record);
+  }
+
+  private static DescriptorProto buildMessageProto(String name, Schema schema) {
+    DescriptorProto.Builder builder = DescriptorProto.newBuilder().setName(name);
+    int number = 1;
+    for (Schema.Field field : Objects.requireNonNull(schema.getFields(), "Schema must have fields")) {
+      FieldDescriptorProto.Builder fieldBuilder = FieldDescriptorProto.newBuilder()
+        .setName(field.getName())
+        .setNumber(number);
+
+      Schema fieldSchema = BigQueryUtil.getNonNullableSchema(field.getSchema());
+      if (fieldSchema.getType() == Schema.Type.ARRAY) {
+        fieldBuilder.setLabel(FieldDescriptorProto.Label.LABEL_REPEATED);
+        fieldSchema = BigQueryUtil.getNonNullableSchema(Objects.requireNonNull(fieldSchema.getComponentSchema()));
+      } else {
+        fieldBuilder.setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL);
+      }
+
+      if (fieldSchema.getType() == Schema.Type.RECORD) {
+        // Nested type names only need to be unique within the enclosing message.
+        String nestedName = NESTED_MESSAGE_PREFIX + number;
+        builder.addNestedType(buildMessageProto(nestedName, fieldSchema));
+        fieldBuilder.setType(FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(nestedName);
+      } else {
+        fieldBuilder.setType(getProtoType(field.getName(), fieldSchema));
+      }
+      builder.addField(fieldBuilder);
+      number++;
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the protobuf type used to send values of the given schema. The Storage Write API accepts string values for
+   * TIME, DATETIME, NUMERIC and BIGNUMERIC columns, which avoids their binary encodings.
+   */
+  private static FieldDescriptorProto.Type getProtoType(String name, Schema schema) {
+    Schema.LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      switch (logicalType) {
+        case DATE:
+          return FieldDescriptorProto.Type.TYPE_INT32;
+        case TIMESTAMP_MILLIS:
+        case TIMESTAMP_MICROS:
+          return FieldDescriptorProto.Type.TYPE_INT64;
+        case TIME_MILLIS:
+        case TIME_MICROS:
+        case DATETIME:
+        case DECIMAL:
+          return FieldDescriptorProto.Type.TYPE_STRING;
+        default:
+          throw new IllegalStateException(
+            String.format("Field '%s' is of unsupported type '%s'", name, logicalType.getToken()));
+      }
+    }
+
+    switch (schema.getType()) {
+      case INT:
+      case LONG:
+        return FieldDescriptorProto.Type.TYPE_INT64;
+      case FLOAT:
+      case DOUBLE:
+        return FieldDescriptorProto.Type.TYPE_DOUBLE;
+      case BOOLEAN:
+        return FieldDescriptorProto.Type.TYPE_BOOL;
+      case STRING:
+      case ENUM:
+        return FieldDescriptorProto.Type.TYPE_STRING;
+      case BYTES:
+        return FieldDescriptorProto.Type.TYPE_BYTES;
+      default:
+        throw new IllegalStateException(String.format("Field '%s' is of unsupported type '%s'",
+                                                      name, schema.getType()));
+    }
+  }
+
+  /**
+   * Pre-resolved mapping between the fields of a CDAP record schema and the fields of a protobuf message.
+   */
+  private static final class MessagePlan {
+    private final Descriptor descriptor;
+    private final String[] names;
+    private final FieldDescriptor[] protoFields;
+    private final Schema[] valueSchemas;
+    private final MessagePlan[] nestedPlans;
+
+    private MessagePlan(Schema schema, Descriptor descriptor) {
+      List<Schema.Field> fields = Objects.requireNonNull(schema.getFields());
+      this.descriptor = descriptor;
+      this.names = new String[fields.size()];
+      this.protoFields = new FieldDescriptor[fields.size()];
+      this.valueSchemas = new Schema[fields.size()];
+      this.nestedPlans = new MessagePlan[fields.size()];
+
+      for (int i = 0; i < fields.size(); i++) {
+        Schema.Field field = fields.get(i);
+        FieldDescriptor protoField = descriptor.findFieldByNumber(i + 1);
+        Schema valueSchema = BigQueryUtil.getNonNullableSchema(field.getSchema());
+        if (valueSchema.getType() == Schema.Type.ARRAY) {
+          valueSchema = BigQueryUtil.getNonNullableSchema(Objects.requireNonNull(valueSchema.getComponentSchema()));
+        }
+        names[i] = field.getName();
+        protoFields[i] = protoField;
+        valueSchemas[i] = valueSchema;
+        if (valueSchema.getType() == Schema.Type.RECORD) {
+          nestedPlans[i] = new MessagePlan(valueSchema, protoField.getMessageType());
+        }
+      }
+    }
+
+    private DynamicMessage toMessage(StructuredRecord record) {
+      DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+      for (int i = 0; i < names.length; i++) {
+        Object value = record.get(names[i]);
+        if (value == null) {
+          continue;
+        }
+        if (protoFields[i].isRepeated()) {
+          for (Object element : toCollection(names[i], value)) {
+            // BigQuery does not allow null values in array items
+            if (element == null) {
+              throw new IllegalArgumentException(String.format("Field '%s' contains null values in its array, " +
+                                                                 "which is not allowed by BigQuery.", names[i]));
+            }
+            builder.addRepeatedField(protoFields[i], toProtoValue(i, element));
+          }
+        } else {
+          builder.setField(protoFields[i], toProtoValue(i, value));
+        }
+      }
+      return builder.build();
+    }
+
+    private Object toProtoValue(int index, Object value) {
+      if (nestedPlans[index] != null) {
+        if (!(value instanceof StructuredRecord)) {
+          throw new IllegalStateException(
+            String.format("Value is of type '%s', expected type is '%s'",
+                          value.getClass().getSimpleName(), StructuredRecord.class.getSimpleName()));
+        }
+        return nestedPlans[index].toMessage((StructuredRecord) value);
+      }
+
+      Schema schema = valueSchemas[index];
+      Schema.LogicalType logicalType = schema.getLogicalType();
+      if (logicalType != null) {
+        switch (logicalType) {
+          case DATE:
+            return value;
+          case TIMESTAMP_MILLIS:
+            return TimeUnit.MILLISECONDS.toMicros((Long) value);
+          case TIMESTAMP_MICROS:
+            return value;
+          case TIME_MILLIS:
+            return TIME_FORMATTER.format(LocalTime.ofNanoOfDay(TimeUnit.MILLISECONDS.toNanos((Integer) value)));
+          case TIME_MICROS:
+            return TIME_FORMATTER.format(LocalTime.ofNanoOfDay(TimeUnit.MICROSECONDS.toNanos((Long) value)));
+          case DATETIME:
+            return value.toString();
+          case DECIMAL:
+            return new BigDecimal(new BigInteger(toBytes(names[index], value)), schema.getScale()).toPlainString();
+          default:
+            throw new IllegalStateException(
+              String.format("Field '%s' is of unsupported type '%s'", names[index], logicalType.getToken()));
+        }
+      }
+
+      switch (schema.getType()) {
+        case INT:
+          return ((Integer) value).longValue();
+        case FLOAT:
+          return ((Float) value).doubleValue();
+        case LONG:
+        case DOUBLE:
+        case BOOLEAN:
+          return value;
+        case STRING:
+        case ENUM:
+          return value.toString();
+        case BYTES:
+          return ByteString.copyFrom(toBytes(names[index], value));
+        default:
+          throw new IllegalStateException(String.format("Field '%s' is of unsupported type '%s'",
+                                                        names[index], schema.getType()));
+      }
+    }
+  }
+
+  private static Collection<?> toCollection(String name, Object value) {
+    if (value instanceof Collection) {
+      return (Collection<?>) value;
+    }
+    if (value instanceof Object[]) {
+      return Arrays.asList((Object[]) value);
+    }
+    throw new IllegalArgumentException(String.format(
+      "A value for the field '%s' is of type '%s' when it is expected to be a Collection or array.",
+      name, value.getClass().getSimpleName()));
+  }
+
+  private static byte[] toBytes(String name, Object value) {
+    if (value instanceof byte[]) {
+      return (byte[]) value;
+    }
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    throw new IllegalStateException(String.format("Expected value of Field '%s' to be bytes but got '%s'",
+                                                  name, value.getClass().getSimpleName()));
+  }
+}
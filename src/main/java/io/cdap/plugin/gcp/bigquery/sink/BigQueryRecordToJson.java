@@ -122,21 +122,17 @@ public final class BigQueryRecordToJson {
           writer.value(Objects.requireNonNull(LocalDate.ofEpochDay(((Integer) object).longValue()).toString()));
           break;
         case TIME_MILLIS:
-          writer.value(TIME_FORMATTER.format(
-            Objects.requireNonNull(LocalTime.ofNanoOfDay(TimeUnit.MILLISECONDS.toNanos(((Integer) object))))));
+          writer.value(formatTime(TimeUnit.MILLISECONDS.toNanos((Integer) object)));
           break;
         case TIME_MICROS:
-          writer.value(TIME_FORMATTER.format(
-            Objects.requireNonNull(LocalTime.ofNanoOfDay(TimeUnit.MICROSECONDS.toNanos((Long) object)))));
+          writer.value(formatTime(TimeUnit.MICROSECONDS.toNanos((Long) object)));
           break;
         case TIMESTAMP_MILLIS:
           //timestamp for json input should be in this format yyyy-MM-dd HH:mm:ss.SSSSSS
-          writer.value(DATETIME_FORMATTER.format(
-            Objects.requireNonNull(getZonedDateTime((long) object, TimeUnit.MILLISECONDS))));
+          writer.value(formatTimestamp((long) object, TimeUnit.MILLISECONDS));
           break;
         case TIMESTAMP_MICROS:
-          writer.value(DATETIME_FORMATTER.format(
-            Objects.requireNonNull(getZonedDateTime((long) object, TimeUnit.MICROSECONDS))));
+          writer.value(formatTimestamp((long) object, TimeUnit.MICROSECONDS));
           break;
         case DECIMAL:
           writer.value(Objects.requireNonNull(getDecimal(name, (byte[]) object, schema)).toPlainString());
@@ -260,6 +256,23 @@ public final class BigQueryRecordToJson {
     writer.endObject();
   }
 
+  /**
+   * Formats a timestamp in the format expected by BigQuery for json input, which is yyyy-MM-dd HH:mm:ss.SSSSSS.
+   * @param ts timestamp since the epoch
+   * @param unit unit of the timestamp
+   */
+  static String formatTimestamp(long ts, TimeUnit unit) {
+    return DATETIME_FORMATTER.format(Objects.requireNonNull(getZonedDateTime(ts, unit)));
+  }
+
+  /**
+   * Formats a time of day in the format expected by BigQuery for json input, which is HH:mm:ss.SSSSSS.
+   * @param nanoOfDay time of day in nanoseconds
+   */
+  static String formatTime(long nanoOfDay) {
+    return TIME_FORMATTER.format(Objects.requireNonNull(LocalTime.ofNanoOfDay(nanoOfDay)));
+  }
+
   private static ZonedDateTime getZonedDateTime(long ts, TimeUnit unit) {
     long mod = unit.convert(1, TimeUnit.SECONDS);
     int fraction = (int) (ts % mod);
@@ -269,7 +282,7 @@ public final class BigQueryRecordToJson {
     return ZonedDateTime.ofInstant(instant, ZoneId.ofOffset("UTC", ZoneOffset.UTC));
   }
 
-  private static BigDecimal getDecimal(String name, byte[] value, Schema schema) {
+  static BigDecimal getDecimal(String name, byte[] value, Schema schema) {
     int scale = schema.getScale();
     // Checks from https://cloud.google.com/bigquery/docs/reference/standard-sql/data-types#numeric_types
     BigDecimal decimal = new BigDecimal(new BigInteger(value), scale);
@@ -15,11 +15,10 @@
  */
 package io.cdap.plugin.gcp.bigquery.sink;
 
-import com.google.cloud.hadoop.io.bigquery.BigQueryFileFormat;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
-import io.cdap.plugin.common.RecordConverter;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
@@ -27,39 +26,83 @@ import java.io.IOException;
 import javax.annotation.Nullable;
 
 /**
- * BigQueryRecordWriter picks the  {@link RecordConverter} based on output file format
+ * BigQueryRecordWriter converts records to json lines before handing them to the delegate writer.
+ * Avro files are written by {@link AvroRecordWriter}, which encodes records directly.
+ * <p>
+ * When a maximum file size is set, the writer closes the current delegate once it has written that many bytes, and
+ * continues with a new delegate writing to the next file.
  */
-public class BigQueryRecordWriter extends RecordWriter<StructuredRecord, NullWritable> {
+public class BigQueryRecordWriter extends RecordWriter<StructuredRecord, NullWritable> implements StagingRecordWriter {
 
-  private final RecordWriter delegate;
-  private final BigQueryFileFormat fileFormat;
+  private final RecordWriterFactory writerFactory;
   private final Schema outputSchema;
-  private RecordConverter recordConverter;
+  private final long maxFileSize;
+  private final BigQueryJsonConverter recordConverter;
+  private RecordWriter delegate;
+  private int fileIndex;
+  private long fileSize;
 
-  public BigQueryRecordWriter(RecordWriter delegate, BigQueryFileFormat fileFormat, @Nullable Schema outputSchema) {
-    this.delegate = delegate;
-    this.fileFormat = fileFormat;
+  /**
+   * @param writerFactory creates the delegate writer for each file
+   * @param outputSchema schema of the written records
+   * @param maxFileSize number of bytes after which a new file is started, or 0 to write a single file
+   */
+  public BigQueryRecordWriter(RecordWriterFactory writerFactory, @Nullable Schema outputSchema, long maxFileSize) {
+    this.writerFactory = writerFactory;
     this.outputSchema = outputSchema;
-    initRecordConverter();
-  }
-
-  private void initRecordConverter() {
-    if (this.fileFormat == BigQueryFileFormat.NEWLINE_DELIMITED_JSON) {
-      recordConverter = new BigQueryJsonConverter();
-      return;
-    }
-    recordConverter = new BigQueryAvroConverter();
+    this.maxFileSize = maxFileSize;
+    this.recordConverter = new BigQueryJsonConverter();
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public void write(StructuredRecord structuredRecord, NullWritable nullWriter) throws IOException,
     InterruptedException {
-    delegate.write(recordConverter.transform(structuredRecord, outputSchema), nullWriter);
+    if (delegate == null) {
+      delegate = writerFactory.create(fileIndex++);
+      fileSize = 0L;
+    }
+    // Text is written as is by the line writer, so the json is encoded once, into a line reused across records
+    Text line = recordConverter.transform(structuredRecord, outputSchema);
+    delegate.write(line, nullWriter);
+    fileSize += line.getLength() + 1;
+    if (maxFileSize > 0 && fileSize >= maxFileSize) {
+      delegate.close(null);
+      delegate = null;
+    }
   }
 
   @Override
   public void close(TaskAttemptContext taskAttemptContext) throws IOException, InterruptedException {
-    delegate.close(taskAttemptContext);
+    if (delegate != null) {
+      delegate.close(taskAttemptContext);
+    } else if (fileIndex == 0) {
+      // Keep writing an empty file for tasks without records, same as the delegate does
+      writerFactory.create(fileIndex).close(taskAttemptContext);
+    }
+  }
+
+  @Override
+  public void closeOpenFiles() throws IOException, InterruptedException {
+    if (delegate != null) {
+      delegate.close(null);
+      delegate = null;
+    }
+  }
+
+  @Override
+  public int getOpenFileCount() {
+    return delegate == null ? 0 : 1;
+  }
+
+  /**
+   * Creates the writer of a staging file.
+   */
+  public interface RecordWriterFactory {
+
+    /**
+     * @param index index of the file written by the task, starting from 0
+     */
+    RecordWriter create(int index) throws IOException, InterruptedException;
   }
 }
@@ -125,7 +125,7 @@ public final class BigQuerySink extends AbstractBigQuerySink {
     Schema configSchema = config.getSchema(collector);
     Schema outputSchema = configSchema == null ? context.getInputSchema() : configSchema;
 
-    configureTable(outputSchema);
+    configureTable(outputSchema, collector);
     configureBigQuerySink();
     initOutput(context, bigQuery, config.getReferenceName(), config.getTable(), outputSchema, bucket, collector);
     initSQLEngineOutput(context, bigQuery, config.getReferenceName(), context.getStageName(), config.getTable(),
@@ -188,6 +188,10 @@ public final class BigQuerySink extends AbstractBigQuerySink {
     if (!succeeded) {
       return;
     }
+    if (config.getWriteMethod() == WriteMethod.STORAGE_WRITE_API) {
+      // Records are committed through write streams, so there is no BigQuery job to collect statistics from.
+      return;
+    }
     Job queryJob = bigQuery.getJob(getJobId());
     if (queryJob == null) {
       LOG.warn("Unable to find BigQuery job. No metric will be emitted for the number of affected rows.");
@@ -255,6 +259,13 @@ public final class BigQuerySink extends AbstractBigQuerySink {
     if (config.getPartitionFilter() != null) {
       baseConfiguration.set(BigQueryConstants.CONFIG_PARTITION_FILTER, getConfig().getPartitionFilter());
     }
+    baseConfiguration.setBoolean(BigQueryConstants.CONFIG_DERIVE_PARTITION_FILTER,
+                                 getConfig().isDerivePartitionFilter());
+    baseConfiguration.setBoolean(BigQueryConstants.CONFIG_DERIVE_CLUSTERING_FILTER,
+                                 getConfig().isDeriveClusteringFilter());
+    baseConfiguration.setBoolean(BigQueryConstants.CONFIG_PRE_STAGE_DEDUPE, getConfig().isPreStageDedupe());
+    baseConfiguration.setInt(BigQueryConstants.CONFIG_PRE_STAGE_DEDUPE_MAX_RECORDS,
+                             getConfig().getPreStageDedupeMaxRecords());
 
     PartitionType partitioningType = getConfig().getPartitioningType();
     baseConfiguration.setEnum(BigQueryConstants.CONFIG_PARTITION_TYPE, partitioningType);
@@ -273,8 +284,8 @@ public final class BigQuerySink extends AbstractBigQuerySink {
   /**
    * Sets the output table for the AbstractBigQuerySink's Hadoop configuration
    */
-  private void configureTable(Schema schema) {
-    AbstractBigQuerySinkConfig config = getConfig();
+  private void configureTable(Schema schema, FailureCollector collector) {
+    BigQuerySinkConfig config = getConfig();
     Table table = BigQueryUtil.getBigQueryTable(config.getDatasetProject(), config.getDataset(),
                                                 config.getTable(),
                                                 config.getServiceAccount(),
@@ -291,6 +302,18 @@ public final class BigQuerySink extends AbstractBigQuerySink {
     if (tableFieldsNames != null) {
       baseConfiguration.set(BigQueryConstants.CONFIG_TABLE_FIELDS, String.join(",", tableFieldsNames));
     }
+    // A table that does not exist yet has no partitions to keep, so it is loaded as a whole
+    if (config.isOverwritePartitions() && table != null) {
+      TablePartitioning partitioning = TablePartitioning.of(table);
+      if (partitioning == null) {
+        collector.addFailure(String.format("Table '%s' is not partitioned by a field, so its partitions cannot be " +
+                                             "overwritten.", config.getTable()),
+                             "Set Overwrite Partitions to false, or write to a table partitioned by a field.")
+          .withConfigProperty(BigQuerySinkConfig.NAME_OVERWRITE_PARTITIONS);
+        collector.getOrThrowException();
+      }
+      baseConfiguration.set(BigQueryConstants.CONFIG_OVERWRITE_PARTITIONING, partitioning.toString());
+    }
   }
 
   private void validateConfiguredSchema(Schema schema, FailureCollector collector) {
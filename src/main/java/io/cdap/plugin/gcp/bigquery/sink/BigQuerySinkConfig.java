@@ -72,6 +72,12 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
   public static final String NAME_RANGE_START = "rangeStart";
   public static final String NAME_RANGE_END = "rangeEnd";
   public static final String NAME_RANGE_INTERVAL = "rangeInterval";
+  public static final String NAME_DERIVE_PARTITION_FILTER = "derivePartitionFilter";
+  public static final String NAME_DERIVE_CLUSTERING_FILTER = "deriveClusteringFilter";
+  public static final String NAME_PRE_STAGE_DEDUPE = "preStageDedupe";
+  public static final String NAME_PRE_STAGE_DEDUPE_MAX_RECORDS = "preStageDedupeMaxRecords";
+  public static final int DEFAULT_PRE_STAGE_DEDUPE_MAX_RECORDS = 100000;
+  public static final String NAME_OVERWRITE_PARTITIONS = "overwritePartitions";
 
   public static final int MAX_NUMBER_OF_COLUMNS = 4;
 
@@ -170,6 +176,48 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
     "This value is ignored if operation is not UPDATE or UPSERT.")
   protected String partitionFilter;
 
+  @Name(NAME_DERIVE_PARTITION_FILTER)
+  @Macro
+  @Nullable
+  @Description("Whether to restrict Update and Upsert operations to the destination partitions between the minimum " +
+    "and maximum value of the partitioning field in the input records, so that only those partitions are scanned. " +
+    "Should only be enabled if the partitioning field of a record never changes, since existing rows outside of " +
+    "that range are not matched. This value is ignored if operation is not UPDATE or UPSERT.")
+  protected Boolean derivePartitionFilter;
+
+  @Name(NAME_DERIVE_CLUSTERING_FILTER)
+  @Macro
+  @Nullable
+  @Description("Whether to also restrict Update and Upsert operations to the range of values of each clustering " +
+    "field in the input records, so that fewer blocks of the destination table are scanned. Should only be enabled " +
+    "if the clustering fields of a record never change. This value is ignored if operation is not UPDATE or UPSERT.")
+  protected Boolean deriveClusteringFilter;
+
+  @Name(NAME_PRE_STAGE_DEDUPE)
+  @Macro
+  @Nullable
+  @Description("Whether to drop the input records that an Update or Upsert would not apply before they are staged. " +
+    "Of the records with the same table key, each task only stages the first one in the Dedupe By order, or the " +
+    "last one written if it is not set. This reduces the data staged and loaded when keys repeat within a task. " +
+    "This value is ignored if operation is not UPDATE or UPSERT.")
+  protected Boolean preStageDedupe;
+
+  @Name(NAME_PRE_STAGE_DEDUPE_MAX_RECORDS)
+  @Macro
+  @Nullable
+  @Description("Maximum number of records each task keeps in memory to drop duplicates before staging. When it is " +
+    "reached, the record of the least recently seen key is staged. Defaults to 100000.")
+  protected Integer preStageDedupeMaxRecords;
+
+  @Name(NAME_OVERWRITE_PARTITIONS)
+  @Macro
+  @Nullable
+  @Description("Whether to replace only the partitions of an existing partitioned table that the input records " +
+    "belong to, leaving the other partitions unchanged. Each of those partitions is truncated and loaded with its " +
+    "records, so running the pipeline again for the same day rewrites just that day. The table must be partitioned " +
+    "by a field. This value is only used if operation is INSERT and Truncate Table is not set.")
+  protected Boolean overwritePartitions;
+
   @VisibleForTesting
   public BigQuerySinkConfig(String referenceName, String dataset, String table,
                             @Nullable String bucket, @Nullable String schema, @Nullable String partitioningType,
@@ -246,6 +294,26 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
     return  partitionFilter;
   }
 
+  public boolean isDerivePartitionFilter() {
+    return derivePartitionFilter != null && derivePartitionFilter;
+  }
+
+  public boolean isDeriveClusteringFilter() {
+    return deriveClusteringFilter != null && deriveClusteringFilter;
+  }
+
+  public boolean isPreStageDedupe() {
+    return preStageDedupe != null && preStageDedupe;
+  }
+
+  public int getPreStageDedupeMaxRecords() {
+    return preStageDedupeMaxRecords == null ? DEFAULT_PRE_STAGE_DEDUPE_MAX_RECORDS : preStageDedupeMaxRecords;
+  }
+
+  public boolean isOverwritePartitions() {
+    return overwritePartitions != null && overwritePartitions;
+  }
+
   @Nullable
   public Long getRangeStart() {
     return rangeStart;
@@ -300,6 +368,42 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
                            "Set Truncate to false, or change the Operation to 'Insert'.")
         .withConfigProperty(NAME_TRUNCATE_TABLE).withConfigProperty(NAME_OPERATION);
     }
+
+    if (!containsMacro(NAME_WRITE_METHOD) && !containsMacro(NAME_OPERATION)
+      && WriteMethod.STORAGE_WRITE_API.name().equalsIgnoreCase(writeMethod)
+      && !getOperation().equals(Operation.INSERT)) {
+      collector.addFailure("The Storage Write API write method must only be used with operation 'Insert'.",
+                           "Change the write method to 'LOAD_JOB', or change the Operation to 'Insert'.")
+        .withConfigProperty(NAME_WRITE_METHOD).withConfigProperty(NAME_OPERATION);
+    }
+
+    if (!containsMacro(NAME_PRE_STAGE_DEDUPE_MAX_RECORDS) && preStageDedupeMaxRecords != null
+      && preStageDedupeMaxRecords <= 0) {
+      collector.addFailure("Pre-stage dedupe max records must be a positive number.", null)
+        .withConfigProperty(NAME_PRE_STAGE_DEDUPE_MAX_RECORDS);
+    }
+
+    if (!containsMacro(NAME_OVERWRITE_PARTITIONS) && isOverwritePartitions()) {
+      validateOverwritePartitions(collector);
+    }
+  }
+
+  private void validateOverwritePartitions(FailureCollector collector) {
+    if (!containsMacro(NAME_OPERATION) && !getOperation().equals(Operation.INSERT)) {
+      collector.addFailure("Overwrite partitions must only be used with operation 'Insert'.",
+                           "Set Overwrite Partitions to false, or change the Operation to 'Insert'.")
+        .withConfigProperty(NAME_OVERWRITE_PARTITIONS).withConfigProperty(NAME_OPERATION);
+    }
+    if (!containsMacro(NAME_TRUNCATE_TABLE) && isTruncateTableSet()) {
+      collector.addFailure("Overwrite partitions cannot be used together with Truncate Table.",
+                           "Set either Overwrite Partitions or Truncate Table to false.")
+        .withConfigProperty(NAME_OVERWRITE_PARTITIONS).withConfigProperty(NAME_TRUNCATE_TABLE);
+    }
+    if (!containsMacro(NAME_WRITE_METHOD) && WriteMethod.STORAGE_WRITE_API.name().equalsIgnoreCase(writeMethod)) {
+      collector.addFailure("Overwrite partitions cannot be used with the Storage Write API write method.",
+                           "Change the write method to 'LOAD_JOB', or set Overwrite Partitions to false.")
+        .withConfigProperty(NAME_OVERWRITE_PARTITIONS).withConfigProperty(NAME_WRITE_METHOD);
+    }
   }
 
   /**
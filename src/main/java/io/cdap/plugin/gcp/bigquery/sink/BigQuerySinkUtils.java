@@ -55,8 +55,10 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -88,6 +90,11 @@ public final class BigQuerySinkUtils {
   private static final String UPDATE_QUERY = "UPDATE %s T SET %s FROM %s S WHERE %s";
   private static final String UPSERT_QUERY = "MERGE %s T USING %s S ON %s WHEN MATCHED THEN UPDATE SET %s " +
     "WHEN NOT MATCHED THEN INSERT (%s) VALUES(%s)";
+  // FORMAT('%T') renders a value as a literal of its own type, so the bounds can be used in a query as they are.
+  private static final String STAGED_RANGE_TEMPLATE = "FORMAT('%%T', MIN(%1$s)) AS min_%2$d, " +
+    "FORMAT('%%T', MAX(%1$s)) AS max_%2$d, COUNTIF(%1$s IS NULL) > 0 AS nulls_%2$d";
+  private static final String STAGED_RANGE_QUERY = "SELECT COUNT(*) AS row_count, %s FROM %s";
+  private static final String NULL_LITERAL = "NULL";
   private static final List<String> COMPARISON_OPERATORS =
     Arrays.asList("=", "<", ">", "<=", ">=", "!=", "<>",
                   "LIKE", "NOT LIKE", "BETWEEN", "NOT BETWEEN", "IN", "NOT IN", "IS NULL", "IS NOT NULL",
@@ -250,7 +257,8 @@ public final class BigQuerySinkUtils {
   }
 
   /**
-   * Configures output for Sink
+   * Configures output for Sink. Files are staged in the format set in {@link BigQueryConstants#CONFIG_STAGING_FORMAT},
+   * unless the fields can only be staged as json.
    *
    * @param configuration Hadoop configuration instance
    * @param datasetId id of the dataset to use
@@ -278,7 +286,7 @@ public final class BigQuerySinkUtils {
       outputTableSchema,
       gcsPath,
       fileFormat,
-      getOutputFormat(fileFormat));
+      getOutputFormat(fileFormat, configuration.getEnum(BigQueryConstants.CONFIG_STAGING_FORMAT, StagingFormat.AVRO)));
   }
 
   /**
@@ -555,11 +563,12 @@ public final class BigQuerySinkUtils {
     return BigQueryFileFormat.AVRO;
   }
 
-  private static Class<? extends FileOutputFormat> getOutputFormat(BigQueryFileFormat fileFormat) {
+  private static Class<? extends FileOutputFormat> getOutputFormat(BigQueryFileFormat fileFormat,
+                                                                   StagingFormat stagingFormat) {
     if (fileFormat == BigQueryFileFormat.NEWLINE_DELIMITED_JSON) {
       return TextOutputFormat.class;
     }
-    return AvroOutputFormat.class;
+    return stagingFormat == StagingFormat.PARQUET ? ParquetOutputFormat.class : AvroOutputFormat.class;
   }
 
   public static String generateUpdateUpsertQuery(Operation operation,
@@ -569,6 +578,25 @@ public final class BigQuerySinkUtils {
                                                  List<String> tableKeyList,
                                                  List<String> orderedByList,
                                                  String partitionFilter) {
+    return generateUpdateUpsertQuery(operation, sourceTableId, destinationTableId, tableFieldsList, tableKeyList,
+                                     orderedByList, partitionFilter, null);
+  }
+
+  /**
+   * Generates the Update or Upsert query.
+   *
+   * @param partitionFilter filter on the destination table set by the user, with unqualified column names
+   * @param stagedDataFilter filter on the destination table derived from the staged data, with columns qualified
+   *                         by the destination alias, as generated by {@link #generateStagedRangeFilter}
+   */
+  public static String generateUpdateUpsertQuery(Operation operation,
+                                                 TableId sourceTableId,
+                                                 TableId destinationTableId,
+                                                 List<String> tableFieldsList,
+                                                 List<String> tableKeyList,
+                                                 List<String> orderedByList,
+                                                 @Nullable String partitionFilter,
+                                                 @Nullable String stagedDataFilter) {
 
     String source = String.format("`%s.%s.%s`",
                                   sourceTableId.getProject(),
@@ -583,6 +611,7 @@ public final class BigQuerySinkUtils {
       .collect(Collectors.joining(" AND "));
     criteria = partitionFilter != null ? String.format("(%s) AND %s",
                                                        formatPartitionFilter(partitionFilter), criteria) : criteria;
+    criteria = stagedDataFilter != null ? String.format("%s AND %s", stagedDataFilter, criteria) : criteria;
     String fieldsForUpdate = tableFieldsList.stream().filter(s -> !tableKeyList.contains(s))
       .map(s -> String.format(CRITERIA_TEMPLATE, s, s)).collect(Collectors.joining(", "));
     String orderedBy = orderedByList.isEmpty() ? "" : " ORDER BY " + String.join(", ", orderedByList);
@@ -599,6 +628,83 @@ public final class BigQuerySinkUtils {
     }
   }
 
+  /**
+   * Generates a query that returns the number of rows of the source table, and for each of the given columns, its
+   * minimum and maximum value as literals and whether it contains null values. The values of column {@code i} are
+   * returned as {@code min_i}, {@code max_i} and {@code nulls_i}.
+   */
+  public static String generateStagedRangeQuery(TableId sourceTableId, List<String> columns) {
+    String source = String.format("`%s.%s.%s`",
+                                  sourceTableId.getProject(),
+                                  sourceTableId.getDataset(),
+                                  sourceTableId.getTable());
+    List<String> ranges = new ArrayList<>();
+    for (int i = 0; i < columns.size(); i++) {
+      ranges.add(String.format(STAGED_RANGE_TEMPLATE, columns.get(i), i));
+    }
+    return String.format(STAGED_RANGE_QUERY, String.join(", ", ranges), source);
+  }
+
+  /**
+   * Generates a filter on a column of the destination table that matches the range of values found in the staged
+   * data by the {@link #generateStagedRangeQuery} query.
+   *
+   * @param column name of the column
+   * @param min minimum value as a literal, or NULL if all the staged values are null
+   * @param max maximum value as a literal, or NULL if all the staged values are null
+   * @param hasNulls whether the staged data has null values in the column
+   */
+  public static String generateStagedRangeFilter(String column, String min, String max, boolean hasNulls) {
+    if (NULL_LITERAL.equals(min) || NULL_LITERAL.equals(max)) {
+      return String.format("(T.%s IS NULL)", column);
+    }
+    String range = String.format("T.%s BETWEEN %s AND %s", column, min, max);
+    return hasNulls ? String.format("(%s OR T.%s IS NULL)", range, column) : String.format("(%s)", range);
+  }
+
+  /**
+   * Collapses the URIs of staged files into wildcard URIs that match exactly the same objects, one for each directory.
+   * The wildcard of a directory is the longest common prefix of its files followed by {@code *}, so it can only stand
+   * for them if no other object of the directory starts with that prefix.
+   *
+   * @param uris URIs of the staged files
+   * @param directoryObjects URIs of all the objects in the directories of the staged files, including nested ones
+   * @return the wildcard URIs, or the given URIs if any of the wildcards would match other objects, or if a URI is
+   *   not in a directory
+   */
+  public static List<String> getWildcardUris(List<String> uris, Collection<String> directoryObjects) {
+    Map<String, List<String>> directoryUris = new LinkedHashMap<>();
+    for (String uri : uris) {
+      if (uri.indexOf('/') < 0) {
+        return uris;
+      }
+      directoryUris.computeIfAbsent(uri.substring(0, uri.lastIndexOf('/') + 1), k -> new ArrayList<>()).add(uri);
+    }
+    Set<String> files = new HashSet<>(uris);
+    List<String> wildcardUris = new ArrayList<>();
+    for (List<String> group : directoryUris.values()) {
+      if (group.size() == 1) {
+        wildcardUris.add(group.get(0));
+        continue;
+      }
+      String prefix = group.get(0);
+      for (String uri : group) {
+        int length = 0;
+        while (length < Math.min(prefix.length(), uri.length()) && prefix.charAt(length) == uri.charAt(length)) {
+          length++;
+        }
+        prefix = prefix.substring(0, length);
+      }
+      for (String object : directoryObjects) {
+        if (object.startsWith(prefix) && !files.contains(object)) {
+          return uris;
+        }
+      }
+      wildcardUris.add(prefix + "*");
+    }
+    return wildcardUris;
+  }
+
   private static String formatPartitionFilter(String partitionFilter) {
     String[] queryWords = partitionFilter.split(" ");
     int index = 0;
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.services.bigquery.model.TableReference;
+import com.google.cloud.bigquery.storage.v1.AppendRowsResponse;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteClient;
+import com.google.cloud.bigquery.storage.v1.CreateWriteStreamRequest;
+import com.google.cloud.bigquery.storage.v1.ProtoRows;
+import com.google.cloud.bigquery.storage.v1.StreamWriter;
+import com.google.cloud.bigquery.storage.v1.TableName;
+import com.google.cloud.bigquery.storage.v1.WriteStream;
+import com.google.protobuf.ByteString;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * Record Writer which streams records into a BigQuery Storage Write API pending stream instead of staging them on GCS.
+ * <p>
+ * Rows are only visible in the destination table once the stream is committed. When the writer is closed, the stream
+ * is finalized and its name is written to the supplied stream file. The stream file is placed in the task's work
+ * directory, so only streams written by successful task attempts reach the job output directory, where
+ * {@link BigQueryOutputFormat.BigQueryOutputCommitter} collects and commits them atomically.
+ */
+public class BigQueryStorageWriteRecordWriter extends RecordWriter<StructuredRecord, NullWritable> {
+  private static final Logger LOG = LoggerFactory.getLogger(BigQueryStorageWriteRecordWriter.class);
+  // Append requests are limited to 10MB, keep batches well below that.
+  private static final int MAX_APPEND_BYTES = 5 * 1024 * 1024;
+  private static final int MAX_PENDING_APPENDS = 32;
+
+  private final Configuration configuration;
+  private final Path streamFile;
+  private final Schema outputSchema;
+  private final Deque<ApiFuture<AppendRowsResponse>> pendingAppends;
+
+  private BigQueryWriteClient client;
+  private StreamWriter streamWriter;
+  private String streamName;
+  private BigQueryProtoConverter converter;
+  private ProtoRows.Builder rows;
+  private int rowBytes;
+  private long offset;
+
+  public BigQueryStorageWriteRecordWriter(Configuration configuration, @Nullable Schema outputSchema,
+                                          Path streamFile) {
+    this.configuration = configuration;
+    this.outputSchema = outputSchema;
+    this.streamFile = streamFile;
+    this.pendingAppends = new ArrayDeque<>();
+  }
+
+  @Override
+  public void write(StructuredRecord record, NullWritable nullWritable) throws IOException, InterruptedException {
+    if (streamWriter == null) {
+      open(outputSchema == null ? record.getSchema() : outputSchema);
+    }
+    ByteString row = converter.transform(record).toByteString();
+    if (rowBytes > 0 && rowBytes + row.size() > MAX_APPEND_BYTES) {
+      flush();
+    }
+    rows.addSerializedRows(row);
+    rowBytes += row.size();
+  }
+
+  @Override
+  public void close(TaskAttemptContext taskAttemptContext) throws IOException, InterruptedException {
+    if (streamWriter == null) {
+      // Nothing was written by this task, so there is no stream to commit.
+      return;
+    }
+    try {
+      flush();
+      while (!pendingAppends.isEmpty()) {
+        awaitAppend(pendingAppends.poll());
+      }
+      streamWriter.close();
+      long rowCount = client.finalizeWriteStream(streamName).getRowCount();
+      LOG.debug("Finalized write stream '{}' with {} rows.", streamName, rowCount);
+      writeStreamFile();
+    } finally {
+      client.close();
+    }
+  }
+
+  private void open(Schema schema) throws IOException {
+    TableReference tableRef = BigQueryOutputFormat.BigQueryOutputCommitter.getTableReference(configuration);
+    TableName tableName = TableName.of(tableRef.getProjectId(), tableRef.getDatasetId(), tableRef.getTableId());
+
+    converter = new BigQueryProtoConverter(schema);
+    client = BigQueryOutputFormat.getBigQueryWriteClient(configuration);
+    WriteStream writeStream = client.createWriteStream(
+      CreateWriteStreamRequest.newBuilder()
+        .setParent(tableName.toString())
+        .setWriteStream(WriteStream.newBuilder().setType(WriteStream.Type.PENDING).build())
+        .build());
+    streamName = writeStream.getName();
+    streamWriter = StreamWriter.newBuilder(streamName, client)
+      .setWriterSchema(converter.getProtoSchema())
+      .build();
+    rows = ProtoRows.newBuilder();
+    LOG.debug("Created write stream '{}' for table '{}'.", streamName, tableName);
+  }
+
+  private void flush() throws IOException, InterruptedException {
+    if (rows.getSerializedRowsCount() == 0) {
+      return;
+    }
+    int rowCount = rows.getSerializedRowsCount();
+    // Offsets make appends idempotent, so rows are not duplicated if the client retries a request.
+    pendingAppends.add(streamWriter.append(rows.build(), offset));
+    offset += rowCount;
+    rows = ProtoRows.newBuilder();
+    rowBytes = 0;
+
+    // Surface append failures early and bound the number of outstanding requests.
+    while (!pendingAppends.isEmpty() &&
+      (pendingAppends.size() > MAX_PENDING_APPENDS || pendingAppends.peek().isDone())) {
+      awaitAppend(pendingAppends.poll());
+    }
+  }
+
+  private void awaitAppend(ApiFuture<AppendRowsResponse> future) throws IOException, InterruptedException {
+    AppendRowsResponse response;
+    try {
+      response = future.get();
+    } catch (ExecutionException e) {
+      throw new IOException(String.format("Failed to append rows to write stream '%s'.", streamName), e.getCause());
+    }
+    if (response.hasError()) {
+      throw new IOException(String.format("Failed to append rows to write stream '%s': %s",
+                                          streamName, response.getError().getMessage()));
+    }
+  }
+
+  private void writeStreamFile() throws IOException {
+    FileSystem fs = streamFile.getFileSystem(configuration);
+    try (FSDataOutputStream out = fs.create(streamFile, false)) {
+      out.write(streamName.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Record writer that drops the records an Update or Upsert would discard before they are staged.
+ * <p>
+ * Of the records with the same table key, the Update/Upsert query only applies the first one in the dedupe by order.
+ * This writer keeps the first record of each key seen by the task in memory, and only hands it to the delegate once
+ * the task completes, so that fewer records are staged and loaded. The number of records kept is bounded: when the
+ * limit is reached, the record of the least recently written key is passed on to the delegate. Records of that key
+ * written later are kept again, and the query still picks the right one among the staged records.
+ * <p>
+ * When no dedupe by order is set, the query applies any of the records of a key, and the last one written is kept.
+ */
+public class DeduplicatingRecordWriter extends RecordWriter<StructuredRecord, NullWritable> {
+
+  private final RecordWriter<StructuredRecord, NullWritable> delegate;
+  private final List<String> keyFields;
+  private final Comparator<StructuredRecord> order;
+  private final int maxRecords;
+  /** First record of each key, by least recently written key. */
+  private final LinkedHashMap<List<Object>, StructuredRecord> records;
+
+  /**
+   * @param delegate writer the remaining records are written to
+   * @param keyFields fields of the table key
+   * @param dedupeBy dedupe by order, as comma separated fields optionally followed by 'asc' or 'desc', or null
+   * @param maxRecords maximum number of records kept in memory
+   */
+  public DeduplicatingRecordWriter(RecordWriter<StructuredRecord, NullWritable> delegate, List<String> keyFields,
+                                   @Nullable String dedupeBy, int maxRecords) {
+    this.delegate = delegate;
+    this.keyFields = keyFields;
+    this.order = dedupeBy == null ? null : parseOrder(dedupeBy);
+    this.maxRecords = Math.max(1, maxRecords);
+    this.records = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  @Override
+  public void write(StructuredRecord record, NullWritable value) throws IOException, InterruptedException {
+    List<Object> key = getKey(record);
+    StructuredRecord current = records.get(key);
+    if (current == null && records.size() >= maxRecords) {
+      Iterator<StructuredRecord> iterator = records.values().iterator();
+      StructuredRecord eldest = iterator.next();
+      iterator.remove();
+      delegate.write(eldest, value);
+    }
+    // On ties the record written first is kept, which is as good as any other for the query.
+    if (current == null || order == null || order.compare(record, current) < 0) {
+      records.put(key, record);
+    }
+  }
+
+  @Override
+  public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+    for (StructuredRecord record : records.values()) {
+      delegate.write(record, NullWritable.get());
+    }
+    records.clear();
+    delegate.close(context);
+  }
+
+  private List<Object> getKey(StructuredRecord record) {
+    List<Object> key = new ArrayList<>(keyFields.size());
+    for (String field : keyFields) {
+      Object value = record.get(field);
+      // Byte arrays don't compare by content
+      key.add(value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value);
+    }
+    return key;
+  }
+
+  /**
+   * Parses a dedupe by order into a comparator that sorts records the same way as BigQuery's ORDER BY.
+   */
+  static Comparator<StructuredRecord> parseOrder(String dedupeBy) {
+    Comparator<StructuredRecord> comparator = null;
+    for (String part : dedupeBy.split(",")) {
+      String[] fieldAndDirection = part.trim().split("\\s+");
+      String field = fieldAndDirection[0];
+      boolean descending = fieldAndDirection.length > 1 && "desc".equalsIgnoreCase(fieldAndDirection[1]);
+      Comparator<StructuredRecord> fieldComparator = (r1, r2) -> compareFields(r1, r2, field);
+      fieldComparator = descending ? fieldComparator.reversed() : fieldComparator;
+      comparator = comparator == null ? fieldComparator : comparator.thenComparing(fieldComparator);
+    }
+    return Objects.requireNonNull(comparator);
+  }
+
+  /**
+   * Compares the values of a field in ascending order. Nulls come first, followed by NaN for floating point fields,
+   * as in BigQuery.
+   */
+  private static int compareFields(StructuredRecord r1, StructuredRecord r2, String field) {
+    Object v1 = r1.get(field);
+    Object v2 = r2.get(field);
+    if (v1 == null || v2 == null) {
+      return v1 == null ? (v2 == null ? 0 : -1) : 1;
+    }
+    Schema schema = r1.getSchema().getField(field).getSchema();
+    schema = schema.isNullable() ? schema.getNonNullable() : schema;
+    if (schema.getLogicalType() == Schema.LogicalType.DECIMAL) {
+      BigDecimal d1 = r1.getDecimal(field);
+      BigDecimal d2 = r2.getDecimal(field);
+      return d1.compareTo(d2);
+    }
+    if (v1 instanceof Double || v1 instanceof Float) {
+      double d1 = ((Number) v1).doubleValue();
+      double d2 = ((Number) v2).doubleValue();
+      if (Double.isNaN(d1) || Double.isNaN(d2)) {
+        return Double.isNaN(d1) ? (Double.isNaN(d2) ? 0 : -1) : 1;
+      }
+      return Double.compare(d1, d2);
+    }
+    if (v1 instanceof String) {
+      return compareCodePoints((String) v1, (String) v2);
+    }
+    if (v1 instanceof byte[] || v1 instanceof ByteBuffer) {
+      return compareUnsigned(toBytes(v1), toBytes(v2));
+    }
+    if (v1 instanceof Comparable) {
+      @SuppressWarnings("unchecked")
+      Comparable<Object> c1 = (Comparable<Object>) v1;
+      return c1.compareTo(v2);
+    }
+    throw new IllegalArgumentException(String.format("Field '%s' of type '%s' cannot be used to dedupe records.",
+                                                     field, schema.getDisplayName()));
+  }
+
+  /**
+   * Compares strings by code point, which is the order BigQuery uses for UTF-8 strings.
+   */
+  private static int compareCodePoints(String s1, String s2) {
+    int i1 = 0;
+    int i2 = 0;
+    while (i1 < s1.length() && i2 < s2.length()) {
+      int c1 = s1.codePointAt(i1);
+      int c2 = s2.codePointAt(i2);
+      if (c1 != c2) {
+        return Integer.compare(c1, c2);
+      }
+      i1 += Character.charCount(c1);
+      i2 += Character.charCount(c2);
+    }
+    return Boolean.compare(i1 < s1.length(), i2 < s2.length());
+  }
+
+  private static int compareUnsigned(byte[] b1, byte[] b2) {
+    int length = Math.min(b1.length, b2.length);
+    for (int i = 0; i < length; i++) {
+      int diff = (b1[i] & 0xff) - (b2[i] & 0xff);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return Integer.compare(b1.length, b2.length);
+  }
+
+  private static byte[] toBytes(Object value) {
+    if (value instanceof byte[]) {
+      return (byte[]) value;
+    }
+    ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
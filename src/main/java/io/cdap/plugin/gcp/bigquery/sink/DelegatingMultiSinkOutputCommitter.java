@@ -18,16 +18,27 @@ package io.cdap.plugin.gcp.bigquery.sink;
 
 import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.hadoop.io.bigquery.output.BigQueryTableFieldSchema;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Output Committer which creates and delegates operations to other Bigquery Output Committer instances.
@@ -50,7 +61,7 @@ public class DelegatingMultiSinkOutputCommitter extends OutputCommitter {
     this.datasetName = datasetName;
     this.bucketName = bucketName;
     this.bucketPathUniqueId = bucketPathUniqueId;
-    this.committerMap = new HashMap<>();
+    this.committerMap = new LinkedHashMap<>();
     this.schemaMap = new HashMap<>();
   }
 
@@ -105,13 +116,58 @@ public class DelegatingMultiSinkOutputCommitter extends OutputCommitter {
     }
   }
 
+  /**
+   * Commits the tables concurrently, each with its own copy of the job configuration, since their committers run
+   * load jobs and schema updates that only depend on their own table. All tables are committed even if some of them
+   * fail, and the failures are reported together.
+   */
   @Override
   public void commitJob(JobContext jobContext) throws IOException {
-    for (String tableName : committerMap.keySet()) {
-      configureContext(jobContext, tableName);
+    if (committerMap.isEmpty()) {
+      return;
+    }
+    int parallelism = Math.min(committerMap.size(),
+                               Math.max(1, jobContext.getConfiguration().getInt(
+                                 BigQueryConstants.CONFIG_MAX_CONCURRENT_TABLE_COMMITS,
+                                 BigQueryMultiSinkConfig.DEFAULT_MAX_CONCURRENT_TABLE_COMMITS)));
+    ExecutorService executor = Executors.newFixedThreadPool(
+      parallelism, new ThreadFactoryBuilder().setNameFormat("bigquery-table-commit-%d").setDaemon(true).build());
+    try {
+      Map<String, Future<?>> commits = new LinkedHashMap<>();
+      for (Map.Entry<String, OutputCommitter> entry : committerMap.entrySet()) {
+        JobContext tableContext = new JobContextImpl(new Configuration(jobContext.getConfiguration()),
+                                                     jobContext.getJobID());
+        configureContext(tableContext, entry.getKey());
+        commits.put(entry.getKey(), executor.submit(() -> {
+          entry.getValue().commitJob(tableContext);
+          return null;
+        }));
+      }
+      awaitCommits(commits);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-      committerMap.get(tableName).commitJob(jobContext);
+  private static void awaitCommits(Map<String, Future<?>> commits) throws IOException {
+    List<String> failedTables = new ArrayList<>();
+    List<Throwable> failures = new ArrayList<>();
+    for (Map.Entry<String, Future<?>> commit : commits.entrySet()) {
+      try {
+        Uninterruptibles.getUninterruptibly(commit.getValue());
+      } catch (ExecutionException e) {
+        failedTables.add(commit.getKey());
+        failures.add(e.getCause());
+      }
+    }
+    if (failures.isEmpty()) {
+      return;
     }
+    IOException exception = new IOException(
+      String.format("Failed to commit %d of %d tables: %s. Cause: %s", failedTables.size(), commits.size(),
+                    String.join(", ", failedTables), failures.get(0).getMessage()), failures.get(0));
+    failures.subList(1, failures.size()).forEach(exception::addSuppressed);
+    throw exception;
   }
 
   @Override
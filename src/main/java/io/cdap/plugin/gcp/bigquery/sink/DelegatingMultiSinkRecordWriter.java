@@ -17,9 +17,12 @@
 package io.cdap.plugin.gcp.bigquery.sink;
 
 import com.google.cloud.bigquery.DatasetId;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.cloud.hadoop.io.bigquery.output.BigQueryTableFieldSchema;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.RecordWriter;
@@ -34,8 +37,13 @@ import java.util.Map;
  * Record Writer which delegates writes to other Record Writers based on the record's Table name.
  * <p>
  * This Record Writer will initialize record writes and Output Committers as needed.
+ * <p>
+ * Each open staging file holds an upload buffer, so only as many files as fit in the upload buffer memory are kept
+ * open. When a record needs another file, the files of the least recently used delegates are closed, and those
+ * delegates write their next records to new files.
  */
 public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredRecord, NullWritable> {
+  private static final long DEFAULT_GCS_CHUNK_SIZE = 8 * 1024 * 1024;
 
   private final TaskAttemptContext initialContext;
   private final String tableNameField;
@@ -43,6 +51,7 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
   private final String bucketPathUniqueId;
   private final DatasetId datasetId;
   private final Map<String, RecordWriter<StructuredRecord, NullWritable>> delegateMap;
+  private final StagingFileBudget<String> openFiles;
   private final DelegatingMultiSinkOutputCommitter delegatingOutputCommitter;
 
   public DelegatingMultiSinkRecordWriter(TaskAttemptContext initialContext,
@@ -57,9 +66,39 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
     this.bucketPathUniqueId = bucketPathUniqueId;
     this.datasetId = datasetId;
     this.delegateMap = new HashMap<>();
+    this.openFiles = new StagingFileBudget<>(limitOpenFiles(initialContext.getConfiguration()));
     this.delegatingOutputCommitter = delegatingMultiSinkOutputCommitter;
   }
 
+  /**
+   * Returns how many staging files can be open within the upload buffer memory, and limits the files each delegate
+   * keeps open to that number.
+   */
+  static int limitOpenFiles(Configuration conf) {
+    int maxOpenFiles = getMaxOpenFiles(conf);
+    // Avro delegates keep a file open per schema
+    conf.setInt(BigQueryConstants.CONFIG_STAGING_MAX_OPEN_FILES,
+                Math.min(maxOpenFiles, conf.getInt(BigQueryConstants.CONFIG_STAGING_MAX_OPEN_FILES,
+                                                   AvroOutputFormat.DEFAULT_MAX_OPEN_FILES)));
+    return maxOpenFiles;
+  }
+
+  /**
+   * Returns how many staging files can be open within the upload buffer memory. Each open file holds a GCS upload
+   * chunk, and Parquet files also buffer a row group until it is written.
+   */
+  @VisibleForTesting
+  static int getMaxOpenFiles(Configuration conf) {
+    long bufferMemory = conf.getLong(BigQueryConstants.CONFIG_UPLOAD_BUFFER_MEMORY,
+                                     BigQueryMultiSinkConfig.DEFAULT_UPLOAD_BUFFER_MEMORY_MB * 1024L * 1024L);
+    long fileMemory = conf.getLong(BigQueryConstants.CONFIG_GCS_CHUNK_SIZE, DEFAULT_GCS_CHUNK_SIZE);
+    if (conf.getEnum(BigQueryConstants.CONFIG_STAGING_FORMAT, StagingFormat.AVRO) == StagingFormat.PARQUET) {
+      fileMemory += conf.getInt(BigQueryConstants.CONFIG_PARQUET_ROW_GROUP_SIZE,
+                                ParquetOutputFormat.DEFAULT_ROW_GROUP_SIZE);
+    }
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, bufferMemory / Math.max(1, fileMemory)));
+  }
+
   @Override
   public void write(StructuredRecord key, NullWritable value) throws IOException, InterruptedException {
     String tableName = key.get(tableNameField);
@@ -70,9 +109,17 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
       delegate = delegateMap.get(tableName);
     } else {
       delegate = getRecordWriterDelegate(tableName, key.getSchema());
+      delegateMap.put(tableName, delegate);
     }
 
-    delegate.write(key, value);
+    if (delegate instanceof StagingRecordWriter) {
+      StagingRecordWriter stagingDelegate = (StagingRecordWriter) delegate;
+      int delegateFiles = openFiles.beforeWrite(tableName, stagingDelegate);
+      delegate.write(key, value);
+      openFiles.afterWrite(stagingDelegate, delegateFiles);
+    } else {
+      delegate.write(key, value);
+    }
   }
 
   @Override
@@ -80,6 +127,7 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
     for (RecordWriter<StructuredRecord, NullWritable> delegate : delegateMap.values()) {
       delegate.close(context);
     }
+    openFiles.clear();
 
     // The task attempt context at this stage doesn't have all of the configuration properties we need to properly
     // execute the commit job step. For this reason, we use the original context instance that was used when
@@ -110,10 +158,7 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
     OutputCommitter bqOutputCommitter = bqOutputFormat.getOutputCommitter(initialContext);
     delegatingOutputCommitter.addCommitterAndSchema(bqOutputCommitter, tableName, schema, initialContext);
 
-    // Get record writer instance and add it to the delegate map.
-    RecordWriter<StructuredRecord, NullWritable> delegate = bqOutputFormat.getRecordWriter(initialContext, schema);
-    delegateMap.put(tableName, delegate);
-
-    return delegate;
+    // Get record writer instance, which is added to the delegate map by the caller.
+    return bqOutputFormat.getRecordWriter(initialContext, schema);
   }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.common.UploadBufferManager;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.avro.AvroWriteSupport;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * parquet output format.
+ */
+public class ParquetOutputFormat extends FileOutputFormat<StructuredRecord, NullWritable> {
+  public static final int DEFAULT_ROW_GROUP_SIZE = 32 * 1024 * 1024;
+  private static final String EXTENSION = ".parquet";
+
+  /**
+   * Get a Record Writer instance which uses the schema of each record to write it.
+   *
+   * @param context the execution context
+   * @return Record Writer Instance
+   */
+  @Override
+  public RecordWriter<StructuredRecord, NullWritable> getRecordWriter(TaskAttemptContext context) {
+    return getRecordWriter(context, null);
+  }
+
+  /**
+   * Get a Record Writer instance which uses a supplied schema to write output records.
+   *
+   * @param context the execution context
+   * @param schema output schema, if null the schema of each record is used
+   * @return Record Writer Instance
+   */
+  public RecordWriter<StructuredRecord, NullWritable> getRecordWriter(TaskAttemptContext context,
+                                                                      @Nullable Schema schema) {
+    return new ParquetRecordWriter(schema, (index, avroSchema) -> createWriter(context, index, avroSchema),
+                                   context.getConfiguration().getLong(BigQueryConstants.CONFIG_STAGING_MAX_FILE_SIZE,
+                                                                      0L));
+  }
+
+  /**
+   * Creates the writer of a file in the task work directory. The first file uses the default file name, additional
+   * files get the index appended to it. The upload buffer of each file is leased from the {@link UploadBufferManager}.
+   */
+  private ParquetWriter<GenericRecord> createWriter(TaskAttemptContext context, int index,
+                                                    org.apache.avro.Schema schema) throws IOException {
+    Configuration conf = new Configuration(context.getConfiguration());
+    // Write lists with the standard three level structure, which BigQuery reads as repeated fields
+    conf.setBoolean(AvroWriteSupport.WRITE_OLD_LIST_STRUCTURE, false);
+    Path path = getDefaultWorkFile(context, index == 0 ? EXTENSION : "-" + index + EXTENSION);
+    return AvroParquetWriter.<GenericRecord>builder(new LeasedOutputFile(path, conf))
+      .withConf(conf)
+      .withSchema(schema)
+      .withCompressionCodec(CompressionCodecName.SNAPPY)
+      .withDictionaryEncoding(true)
+      .withRowGroupSize(conf.getInt(BigQueryConstants.CONFIG_PARQUET_ROW_GROUP_SIZE, DEFAULT_ROW_GROUP_SIZE))
+      .build();
+  }
+
+  /**
+   * Output file whose upload buffer is leased from the {@link UploadBufferManager} until the file is closed.
+   */
+  private static final class LeasedOutputFile implements OutputFile {
+    private final Path path;
+    private final Configuration conf;
+
+    private LeasedOutputFile(Path path, Configuration conf) {
+      this.path = path;
+      this.conf = conf;
+    }
+
+    @Override
+    public PositionOutputStream create(long blockSizeHint) throws IOException {
+      OutputStream out = UploadBufferManager.getInstance().create(path, conf);
+      return new PositionOutputStream() {
+        private long position;
+
+        @Override
+        public long getPos() {
+          return position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+          out.write(b);
+          position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+          position += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+          out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+          out.close();
+        }
+      };
+    }
+
+    @Override
+    public PositionOutputStream createOrOverwrite(long blockSizeHint) throws IOException {
+      return create(blockSizeHint);
+    }
+
+    @Override
+    public boolean supportsBlockSize() {
+      return false;
+    }
+
+    @Override
+    public long defaultBlockSize() {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.format.avro.StructuredToAvroTransformer;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.parquet.hadoop.ParquetWriter;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Writes records into Parquet files.
+ * <p>
+ * Parquet files have a single schema, so a new file is started whenever a record has a different schema than the
+ * previous one. When a maximum file size is set, a new file is also started once the current one reaches it.
+ * Tasks that don't write any record don't create a file.
+ */
+public class ParquetRecordWriter extends RecordWriter<StructuredRecord, NullWritable> implements StagingRecordWriter {
+
+  private final Schema outputSchema;
+  private final ParquetWriterFactory writerFactory;
+  private final long maxFileSize;
+  private final StructuredToAvroTransformer transformer;
+  private ParquetWriter<GenericRecord> writer;
+  private Schema fileSchema;
+  private int fileIndex;
+
+  /**
+   * @param outputSchema schema of the written records, if null the schema of each record is used
+   * @param writerFactory creates the writer of each file
+   * @param maxFileSize number of bytes after which a new file is started, or 0 to only start new files on schema
+   *                    changes
+   */
+  public ParquetRecordWriter(@Nullable Schema outputSchema, ParquetWriterFactory writerFactory, long maxFileSize) {
+    this.outputSchema = outputSchema;
+    this.writerFactory = writerFactory;
+    this.maxFileSize = maxFileSize;
+    this.transformer = new StructuredToAvroTransformer(outputSchema);
+  }
+
+  @Override
+  public void write(StructuredRecord record, NullWritable nullWritable) throws IOException {
+    Schema schema = outputSchema == null ? record.getSchema() : outputSchema;
+    if (writer != null && schema != fileSchema && !schema.equals(fileSchema)) {
+      closeWriter();
+    }
+    if (writer == null) {
+      writer = writerFactory.create(fileIndex++, new org.apache.avro.Schema.Parser().parse(schema.toString()));
+      fileSchema = schema;
+    }
+    writer.write(transformer.transform(record, schema));
+    if (maxFileSize > 0 && writer.getDataSize() >= maxFileSize) {
+      closeWriter();
+    }
+  }
+
+  @Override
+  public void close(TaskAttemptContext context) throws IOException {
+    closeWriter();
+  }
+
+  @Override
+  public void closeOpenFiles() throws IOException {
+    closeWriter();
+  }
+
+  @Override
+  public int getOpenFileCount() {
+    return writer == null ? 0 : 1;
+  }
+
+  private void closeWriter() throws IOException {
+    if (writer != null) {
+      writer.close();
+      writer = null;
+      fileSchema = null;
+    }
+  }
+
+  /**
+   * Creates the writer of a Parquet file.
+   */
+  public interface ParquetWriterFactory {
+
+    /**
+     * @param index index of the file written by the task, starting from 0
+     * @param schema Avro schema of the records written to the file
+     */
+    ParquetWriter<GenericRecord> create(int index, org.apache.avro.Schema schema) throws IOException;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Record Writer which stages the records of each partition of the destination table in their own files, so that
+ * every partition can be loaded separately.
+ * <p>
+ * Like in {@link DelegatingMultiSinkRecordWriter}, only a limited number of staging files are kept open. When a record
+ * needs another file, the files of the least recently used partitions are closed.
+ */
+public class PartitionedRecordWriter extends RecordWriter<StructuredRecord, NullWritable> {
+  private final TablePartitioning partitioning;
+  private final PartitionWriterFactory writerFactory;
+  private final Map<String, RecordWriter<StructuredRecord, NullWritable>> writers;
+  private final StagingFileBudget<String> openFiles;
+
+  /**
+   * @param maxOpenFiles maximum number of staging files open at the same time, which must not be lower than the
+   *   number of files a single partition writer keeps open
+   */
+  public PartitionedRecordWriter(TablePartitioning partitioning, PartitionWriterFactory writerFactory,
+                                 int maxOpenFiles) {
+    this.partitioning = partitioning;
+    this.writerFactory = writerFactory;
+    this.writers = new HashMap<>();
+    this.openFiles = new StagingFileBudget<>(maxOpenFiles);
+  }
+
+  @Override
+  public void write(StructuredRecord record, NullWritable value) throws IOException, InterruptedException {
+    String partitionId = partitioning.getPartitionId(record);
+    RecordWriter<StructuredRecord, NullWritable> writer = writers.get(partitionId);
+    if (writer == null) {
+      writer = writerFactory.create(partitionId);
+      writers.put(partitionId, writer);
+    }
+    if (writer instanceof StagingRecordWriter) {
+      StagingRecordWriter stagingWriter = (StagingRecordWriter) writer;
+      int writerFiles = openFiles.beforeWrite(partitionId, stagingWriter);
+      writer.write(record, value);
+      openFiles.afterWrite(stagingWriter, writerFiles);
+    } else {
+      writer.write(record, value);
+    }
+  }
+
+  @Override
+  public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+    for (RecordWriter<StructuredRecord, NullWritable> writer : writers.values()) {
+      writer.close(context);
+    }
+    openFiles.clear();
+  }
+
+  /**
+   * Creates the record writer that stages the records of a partition.
+   */
+  public interface PartitionWriterFactory {
+    RecordWriter<StructuredRecord, NullWritable> create(String partitionId) throws IOException, InterruptedException;
+  }
+}
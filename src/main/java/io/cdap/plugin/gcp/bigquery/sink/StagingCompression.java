@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import org.apache.avro.file.CodecFactory;
+
+/**
+ * The compression codec of the Avro files staged in GCS before they are loaded into BigQuery.
+ * Only codecs that BigQuery can load are supported.
+ */
+public enum StagingCompression {
+  /**
+   * Blocks are not compressed.
+   */
+  NONE,
+  /**
+   * Blocks are compressed with snappy, which is fast but compresses less than deflate.
+   */
+  SNAPPY,
+  /**
+   * Blocks are compressed with deflate, at a configurable level.
+   */
+  DEFLATE;
+
+  public static final int MIN_DEFLATE_LEVEL = 1;
+  public static final int MAX_DEFLATE_LEVEL = 9;
+
+  /**
+   * @param deflateLevel compression level, only used by {@link #DEFLATE}
+   * @return the Avro codec for this compression
+   */
+  public CodecFactory getCodec(int deflateLevel) {
+    switch (this) {
+      case SNAPPY:
+        return CodecFactory.snappyCodec();
+      case DEFLATE:
+        return CodecFactory.deflateCodec(deflateLevel);
+      default:
+        return CodecFactory.nullCodec();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the number of staging files opened by a set of record writers within a maximum, by closing the files of the
+ * least recently used writers. Every record written to one of the writers is wrapped in calls to
+ * {@link #beforeWrite} and {@link #afterWrite}.
+ * <p>
+ * Writers can have several files open, like an Avro writer with one file per schema, so the files each writer has
+ * open are counted rather than the writers. A single writer must not keep more files open than the maximum.
+ *
+ * @param <K> type of the keys of the writers
+ */
+class StagingFileBudget<K> {
+  /** Writers with open staging files, in access order. */
+  private final LinkedHashMap<K, StagingRecordWriter> openWriters;
+  private final int maxOpenFiles;
+  /** Number of files open by the writers, as of their last write. */
+  private int openFiles;
+
+  StagingFileBudget(int maxOpenFiles) {
+    this.openWriters = new LinkedHashMap<>(16, 0.75f, true);
+    this.maxOpenFiles = Math.max(1, maxOpenFiles);
+  }
+
+  /**
+   * Marks the writer as the most recently used one. A writer without open files opens one for the record, so the
+   * files of the least recently used writers are closed first to make room for it.
+   *
+   * @return the number of files the writer has open before the write, to pass to {@link #afterWrite}
+   */
+  int beforeWrite(K key, StagingRecordWriter writer) throws IOException, InterruptedException {
+    int writerFiles = writer.getOpenFileCount();
+    if (openWriters.get(key) == null) {
+      openWriters.put(key, writer);
+    }
+    if (writerFiles == 0) {
+      closeLeastRecentlyUsed(maxOpenFiles - 1);
+    }
+    return writerFiles;
+  }
+
+  /**
+   * Counts the files the writer opened or closed for the record. A writer that already had files open may have opened
+   * one for a new schema, in which case the files of the least recently used writers are closed right away.
+   */
+  void afterWrite(StagingRecordWriter writer, int writerFiles) throws IOException, InterruptedException {
+    openFiles += writer.getOpenFileCount() - writerFiles;
+    closeLeastRecentlyUsed(maxOpenFiles);
+  }
+
+  /**
+   * Forgets all the writers, once they are closed.
+   */
+  void clear() {
+    openWriters.clear();
+    openFiles = 0;
+  }
+
+  /**
+   * Closes the files of the least recently used writers until at most the given number of files are open. The files
+   * of the most recently used writer, which is the one writing, are never closed.
+   */
+  private void closeLeastRecentlyUsed(int maxFiles) throws IOException, InterruptedException {
+    Iterator<StagingRecordWriter> iterator = openWriters.values().iterator();
+    while (openFiles > maxFiles && openWriters.size() > 1) {
+      StagingRecordWriter eldest = iterator.next();
+      openFiles -= eldest.getOpenFileCount();
+      iterator.remove();
+      eldest.closeOpenFiles();
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+/**
+ * The format of the files staged in GCS before they are loaded into BigQuery.
+ * Schemas with datetime fields are always staged as newline delimited json, whichever format is selected.
+ */
+public enum StagingFormat {
+  /**
+   * Avro container files, encoded row by row.
+   */
+  AVRO,
+  /**
+   * Parquet files, with dictionary encoding and snappy compressed column chunks.
+   */
+  PARQUET
+}
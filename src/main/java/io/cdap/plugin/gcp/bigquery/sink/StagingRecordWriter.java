@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import java.io.IOException;
+
+/**
+ * A record writer that stages records in files, and can close the files it has open while it is still in use.
+ */
+public interface StagingRecordWriter {
+
+  /**
+   * Closes the files that are currently open, so that they no longer hold any buffers. Records written afterwards go
+   * to new files.
+   */
+  void closeOpenFiles() throws IOException, InterruptedException;
+
+  /**
+   * @return the number of files that are currently open
+   */
+  int getOpenFileCount();
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.cloud.bigquery.RangePartitioning;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableDefinition;
+import com.google.cloud.bigquery.TimePartitioning;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Partitioning of a destination table by a field, which tells the partition each record belongs to.
+ * <p>
+ * Partitions are identified the same way as in BigQuery partition decorators: by the date of time partitions,
+ * formatted according to their granularity, and by the start of integer range partitions. Records with a null value
+ * go to the {@value #NULL_PARTITION} partition, and records outside of the integer range to the
+ * {@value #UNPARTITIONED} partition.
+ */
+public final class TablePartitioning {
+  static final String NULL_PARTITION = "__NULL__";
+  static final String UNPARTITIONED = "__UNPARTITIONED__";
+  private static final String RANGE_TYPE = "RANGE";
+  private static final String SEPARATOR = ":";
+  // Partition ids never contain dots, so they can be told apart from the rest of a file name
+  private static final String FILE_PREFIX = "partition.";
+  private static final String FILE_SUFFIX = ".part";
+
+  private final String type;
+  private final String field;
+  private final long rangeStart;
+  private final long rangeEnd;
+  private final long rangeInterval;
+  private final DateTimeFormatter formatter;
+
+  private TablePartitioning(String type, String field, long rangeStart, long rangeEnd, long rangeInterval) {
+    this.type = type;
+    this.field = field;
+    this.rangeStart = rangeStart;
+    this.rangeEnd = rangeEnd;
+    this.rangeInterval = rangeInterval;
+    this.formatter = RANGE_TYPE.equals(type) ? null : DateTimeFormatter.ofPattern(getDatePattern(type));
+  }
+
+  /**
+   * @param type granularity of the partitions, as a BigQuery time partitioning type
+   * @param field field the table is partitioned by
+   */
+  public static TablePartitioning ofTime(TimePartitioning.Type type, String field) {
+    return new TablePartitioning(type.name(), field, 0L, 0L, 0L);
+  }
+
+  /**
+   * @param field field the table is partitioned by
+   * @param start start of the range, inclusive
+   * @param end end of the range, exclusive
+   * @param interval width of each partition
+   */
+  public static TablePartitioning ofRange(String field, long start, long end, long interval) {
+    return new TablePartitioning(RANGE_TYPE, field, start, end, interval);
+  }
+
+  /**
+   * Returns the partitioning of an existing table, or null if it is not partitioned by a field.
+   */
+  @Nullable
+  public static TablePartitioning of(Table table) {
+    TableDefinition definition = table.getDefinition();
+    if (!(definition instanceof StandardTableDefinition)) {
+      return null;
+    }
+    TimePartitioning timePartitioning = ((StandardTableDefinition) definition).getTimePartitioning();
+    if (timePartitioning != null) {
+      // Tables partitioned by ingestion time have no field to tell the partition of a record
+      return timePartitioning.getField() == null ? null : ofTime(timePartitioning.getType(),
+                                                                 timePartitioning.getField());
+    }
+    RangePartitioning rangePartitioning = ((StandardTableDefinition) definition).getRangePartitioning();
+    if (rangePartitioning != null) {
+      RangePartitioning.Range range = rangePartitioning.getRange();
+      return ofRange(rangePartitioning.getField(), range.getStart(), range.getEnd(), range.getInterval());
+    }
+    return null;
+  }
+
+  /**
+   * Parses a partitioning returned by {@link #toString()}.
+   */
+  public static TablePartitioning parse(String partitioning) {
+    String[] parts = partitioning.split(SEPARATOR);
+    if (RANGE_TYPE.equals(parts[0])) {
+      return ofRange(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+    }
+    return ofTime(TimePartitioning.Type.valueOf(parts[0]), parts[1]);
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  /**
+   * Returns the id of the partition a record belongs to.
+   */
+  public String getPartitionId(StructuredRecord record) {
+    Schema.Field recordField = record.getSchema().getField(field);
+    if (recordField == null || record.get(field) == null) {
+      return NULL_PARTITION;
+    }
+    if (RANGE_TYPE.equals(type)) {
+      long value = ((Number) record.get(field)).longValue();
+      if (value < rangeStart || value >= rangeEnd) {
+        return UNPARTITIONED;
+      }
+      return String.valueOf(rangeStart + Math.floorDiv(value - rangeStart, rangeInterval) * rangeInterval);
+    }
+    Schema schema = recordField.getSchema();
+    Schema.LogicalType logicalType = (schema.isNullable() ? schema.getNonNullable() : schema).getLogicalType();
+    LocalDateTime value;
+    if (logicalType == Schema.LogicalType.DATE) {
+      value = Objects.requireNonNull(record.getDate(field)).atStartOfDay();
+    } else if (logicalType == Schema.LogicalType.DATETIME) {
+      value = record.getDateTime(field);
+    } else if (logicalType == Schema.LogicalType.TIMESTAMP_MICROS
+      || logicalType == Schema.LogicalType.TIMESTAMP_MILLIS) {
+      // Timestamps are partitioned by their UTC date
+      value = Objects.requireNonNull(record.getTimestamp(field)).withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime();
+    } else {
+      throw new IllegalArgumentException(String.format("Partitioning field '%s' must be a date, datetime or " +
+                                                         "timestamp.", field));
+    }
+    return formatter.format(value);
+  }
+
+  /**
+   * Returns the base name of the staging files of a partition.
+   */
+  public static String getFileBaseName(String partitionId) {
+    return FILE_PREFIX + partitionId + FILE_SUFFIX;
+  }
+
+  /**
+   * Returns the partition of a staging file, or null if it was not written for a single partition.
+   */
+  @Nullable
+  public static String getPartitionIdOfFile(String fileName) {
+    int end = fileName.indexOf(FILE_SUFFIX, FILE_PREFIX.length());
+    if (!fileName.startsWith(FILE_PREFIX) || end < 0) {
+      return null;
+    }
+    return fileName.substring(FILE_PREFIX.length(), end);
+  }
+
+  private static String getDatePattern(String type) {
+    switch (TimePartitioning.Type.valueOf(type)) {
+      case HOUR:
+        return "yyyyMMddHH";
+      case MONTH:
+        return "yyyyMM";
+      case YEAR:
+        return "yyyy";
+      default:
+        return "yyyyMMdd";
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (RANGE_TYPE.equals(type)) {
+      return String.join(SEPARATOR, type, field, String.valueOf(rangeStart), String.valueOf(rangeEnd),
+                         String.valueOf(rangeInterval));
+    }
+    return type + SEPARATOR + field;
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+/**
+ * The method used to move records from the sink tasks into the destination table.
+ */
+public enum WriteMethod {
+  /**
+   * Records are staged as files on GCS and loaded into BigQuery with one or more load jobs.
+   */
+  LOAD_JOB,
+  /**
+   * Records are streamed by each task into BigQuery Storage Write API pending streams, which are committed
+   * atomically when the job is committed.
+   */
+  STORAGE_WRITE_API
+}
@@ -30,16 +30,24 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
  * Create StructuredRecords from GenericRecords. Contains custom logic for BigQuery date and time types.
+ * <p>
+ * Records are converted with a plan compiled from the output schema, so that the schema is only inspected once
+ * instead of for every value. Each field gets a converter for its type. Only the plan of the most recent schema is
+ * kept, as all the records of a source usually have the same schema.
  */
 public class BigQueryAvroToStructuredTransformer extends RecordConverter<GenericRecord, StructuredRecord> {
 
   private Schema genericRecordSchema;
+  private Schema planSchema;
+  private RecordPlan plan;
 
   public StructuredRecord transform(GenericRecord genericRecord) throws IOException {
     if (genericRecordSchema == null) {
@@ -50,13 +58,11 @@ public class BigQueryAvroToStructuredTransformer extends RecordConverter<Generic
 
   @Override
   public StructuredRecord transform(GenericRecord genericRecord, Schema structuredSchema) throws IOException {
-    StructuredRecord.Builder builder = StructuredRecord.builder(structuredSchema);
-    for (Schema.Field field : structuredSchema.getFields()) {
-      String fieldName = field.getName();
-      Object value = convertField(genericRecord.get(fieldName), field);
-      builder.set(fieldName, value);
+    if (plan == null || (planSchema != structuredSchema && !planSchema.equals(structuredSchema))) {
+      plan = new RecordPlan(structuredSchema);
+      planSchema = structuredSchema;
     }
-    return builder.build();
+    return plan.convert(genericRecord);
   }
 
   @Override
@@ -65,68 +71,131 @@ public class BigQueryAvroToStructuredTransformer extends RecordConverter<Generic
     if (field == null) {
       return null;
     }
+    return compileField(fieldSchema).convert(field);
+  }
 
+  /**
+   * Creates the converter of the values of a field. Subclasses can override it to convert some types differently.
+   *
+   * @param fieldSchema schema of the field in the output record
+   * @return converter of the non-null values of the field
+   */
+  protected FieldConverter compileField(Schema fieldSchema) {
     // Union schema expected to be nullable schema. Underlying non-nullable type should always be a supported type
-    fieldSchema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
-    Schema.Type fieldType = fieldSchema.getType();
-    Schema.LogicalType logicalType = fieldSchema.getLogicalType();
+    Schema schema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
+    Schema.Type fieldType = schema.getType();
+    Schema.LogicalType logicalType = schema.getLogicalType();
 
-    try {
-      if (logicalType != null) {
-        switch (logicalType) {
-          case DATE:
-            // date will be in yyyy-mm-dd format
-            return Math.toIntExact(LocalDate.parse(field.toString()).toEpochDay());
-          case TIME_MILLIS:
-            // time will be in hh:mm:ss format
-            return Math.toIntExact(TimeUnit.NANOSECONDS.toMillis(LocalTime.parse(field.toString()).toNanoOfDay()));
-          case TIME_MICROS:
-            // time will be in hh:mm:ss format
-            return TimeUnit.NANOSECONDS.toMicros(LocalTime.parse(field.toString()).toNanoOfDay());
-          case TIMESTAMP_MILLIS:
-          case TIMESTAMP_MICROS:
-            return field;
-          case DATETIME:
+    if (logicalType != null) {
+      return compileLogicalType(schema, logicalType);
+    }
+
+    // Complex types like maps and unions are not supported in BigQuery plugins.
+    if (!BigQuerySourceConfig.SUPPORTED_TYPES.contains(fieldType)) {
+      return value -> {
+        throw new UnexpectedFormatException("Field type " + fieldType + " is not supported.");
+      };
+    }
+
+    switch (fieldType) {
+      case STRING:
+        return Object::toString;
+      case BYTES:
+        return this::convertBytes;
+      case ARRAY:
+        FieldConverter componentConverter = compileField(Objects.requireNonNull(schema.getComponentSchema()));
+        return value -> convertList(value, componentConverter);
+      case RECORD:
+        RecordPlan recordPlan = new RecordPlan(schema);
+        return value -> {
+          // Repeated records can be read with a record schema
+          if (value instanceof List) {
+            return convertList(value, element -> recordPlan.convert((GenericRecord) element));
+          }
+          return recordPlan.convert((GenericRecord) value);
+        };
+      default:
+        // Longs, doubles and booleans are read as they are
+        return value -> value;
+    }
+  }
+
+  private static FieldConverter compileLogicalType(Schema schema, Schema.LogicalType logicalType) {
+    switch (logicalType) {
+      case DATE:
+        // date is the number of days since the epoch when exported with Avro logical types or read with the Storage
+        // Read API, or a string in yyyy-mm-dd format otherwise
+        return value -> {
+          if (value instanceof Integer) {
+            return value;
+          }
+          return toIntExact(LocalDate.parse(value.toString()).toEpochDay(), schema);
+        };
+      case TIME_MILLIS:
+        // time is in microseconds when exported with Avro logical types or read with the Storage Read API, or a
+        // string in hh:mm:ss format otherwise
+        return value -> {
+          if (value instanceof Long) {
+            return toIntExact(TimeUnit.MICROSECONDS.toMillis((Long) value), schema);
+          }
+          return toIntExact(TimeUnit.NANOSECONDS.toMillis(LocalTime.parse(value.toString()).toNanoOfDay()), schema);
+        };
+      case TIME_MICROS:
+        return value -> {
+          if (value instanceof Long) {
+            return value;
+          }
+          return TimeUnit.NANOSECONDS.toMicros(LocalTime.parse(value.toString()).toNanoOfDay());
+        };
+      case TIMESTAMP_MILLIS:
+      case TIMESTAMP_MICROS:
+        return value -> value;
+      case DATETIME:
+        return value -> {
+          String datetime = value.toString();
+          // BigQuery writes datetimes as yyyy-MM-ddTHH:mm:ss[.SSSSSS], so values are only parsed, to report the
+          // error, if they do not have the ISO-8601 date and time separator
+          if (datetime.length() < 19 || datetime.charAt(10) != 'T') {
             try {
-              LocalDateTime.parse(field.toString());
+              LocalDateTime.parse(datetime);
             } catch (DateTimeParseException exception) {
               throw new UnexpectedFormatException(
-                String.format("Datetime field with value '%s' is not in ISO-8601 format.",
-                              fieldSchema.getDisplayName(),
-                              field.toString()),
-                exception);
+                String.format("Datetime field with value '%s' is not in ISO-8601 format.", datetime), exception);
             }
-            //If properly formatted return the string
-            return field.toString();
-          case DECIMAL:
-            ByteBuffer value = (ByteBuffer) field;
-            byte[] bytes = new byte[value.remaining()];
-            int pos = value.position();
-            value.get(bytes);
-            value.position(pos);
-            return bytes;
-          default:
-            throw new UnexpectedFormatException("Field type '" + fieldSchema.getDisplayName() + "' is not supported.");
-        }
-      }
-    } catch (ArithmeticException e) {
-      throw new IOException("Field type %s has value that is too large." + fieldType);
+          }
+          return datetime;
+        };
+      case DECIMAL:
+        return value -> {
+          ByteBuffer buffer = (ByteBuffer) value;
+          byte[] bytes = new byte[buffer.remaining()];
+          int pos = buffer.position();
+          buffer.get(bytes);
+          buffer.position(pos);
+          return bytes;
+        };
+      default:
+        return value -> {
+          throw new UnexpectedFormatException("Field type '" + schema.getDisplayName() + "' is not supported.");
+        };
     }
+  }
 
-    // Complex types like maps and unions are not supported in BigQuery plugins.
-    if (!BigQuerySourceConfig.SUPPORTED_TYPES.contains(fieldType)) {
-      throw new UnexpectedFormatException("Field type " + fieldType + " is not supported.");
+  private static int toIntExact(long value, Schema schema) throws IOException {
+    try {
+      return Math.toIntExact(value);
+    } catch (ArithmeticException e) {
+      throw new IOException(String.format("Field type %s has value that is too large.", schema.getDisplayName()), e);
     }
+  }
 
-    if (fieldSchema.getType() == Schema.Type.RECORD && field instanceof List) {
-      List<Object> valuesList = (List<Object>) field;
-      List<Object> resultList = new ArrayList<>(valuesList.size());
-      for (Object value : valuesList) {
-        resultList.add(super.convertField(value, fieldSchema));
-      }
-      return resultList;
+  private static List<Object> convertList(Object value, FieldConverter elementConverter) throws IOException {
+    Collection<?> values = (Collection<?>) value;
+    List<Object> result = new ArrayList<>(values.size());
+    for (Object element : values) {
+      result.add(element == null ? null : elementConverter.convert(element));
     }
-    return super.convertField(field, fieldSchema);
+    return result;
   }
 
   @Override
@@ -134,4 +203,39 @@ public class BigQueryAvroToStructuredTransformer extends RecordConverter<Generic
     return field instanceof ByteBuffer ? Bytes.toBytes((ByteBuffer) field) : field;
   }
 
+  /**
+   * Converts a non-null value read from BigQuery to the value of a field of a {@link StructuredRecord}.
+   */
+  protected interface FieldConverter {
+    Object convert(Object value) throws IOException;
+  }
+
+  /**
+   * Converts generic records to structured records of a single schema.
+   */
+  private final class RecordPlan {
+    private final Schema schema;
+    private final String[] names;
+    private final FieldConverter[] converters;
+
+    private RecordPlan(Schema schema) {
+      List<Schema.Field> fields = Objects.requireNonNull(schema.getFields());
+      this.schema = schema;
+      this.names = new String[fields.size()];
+      this.converters = new FieldConverter[fields.size()];
+      for (int i = 0; i < fields.size(); i++) {
+        names[i] = fields.get(i).getName();
+        converters[i] = compileField(fields.get(i).getSchema());
+      }
+    }
+
+    private StructuredRecord convert(GenericRecord genericRecord) throws IOException {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+      for (int i = 0; i < names.length; i++) {
+        Object value = genericRecord.get(names[i]);
+        builder.set(names[i], value == null ? null : converters[i].convert(value));
+      }
+      return builder.build();
+    }
+  }
 }
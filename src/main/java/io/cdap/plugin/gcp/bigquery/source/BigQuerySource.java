@@ -25,6 +25,7 @@ import com.google.cloud.bigquery.FieldList;
 import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.Table;
 import com.google.cloud.bigquery.TableDefinition.Type;
+import com.google.cloud.bigquery.TableId;
 import com.google.cloud.bigquery.TimePartitioning;
 import com.google.cloud.kms.v1.CryptoKeyName;
 import com.google.cloud.storage.Storage;
@@ -53,12 +54,14 @@ import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.CmekUtils;
 import io.cdap.plugin.gcp.common.GCPUtils;
+import io.cdap.plugin.gcp.gcs.GCSPath;
 import org.apache.avro.generic.GenericData;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.util.UUID;
@@ -83,6 +86,8 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
   private final BigQueryAvroToStructuredTransformer transformer = new BigQueryAvroToStructuredTransformer();
   // UUID for the run. Will be used as bucket name if bucket is not provided.
   private String bucketPath;
+  // Watermark to store once the run succeeds, if rows are read incrementally
+  private Long watermark;
 
   @Override
   public void configurePipeline(PipelineConfigurer configurer) {
@@ -102,6 +107,7 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
 
     Schema schema = getSchema(collector);
     validatePartitionProperties(collector);
+    validateWatermarkField(collector);
 
     if (configuredSchema == null) {
       stageConfigurer.setOutputSchema(schema);
@@ -140,26 +146,32 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
     configuration = BigQueryUtil.getBigQueryConfig(serviceAccount, config.getProject(), cmekKeyName,
                                                    config.getServiceAccountType());
 
-    // Configure GCS Bucket to use
-    String bucket = BigQuerySourceUtils.getOrCreateBucket(configuration,
-                                                          storage,
-                                                          config.getBucket(),
-                                                          dataset,
-                                                          bucketPath,
-                                                          cmekKeyName);
-
     // Configure Service account credentials
     BigQuerySourceUtils.configureServiceAccount(configuration, config.getConnection());
 
     // Configure BQ Source
-    configureBigQuerySource();
+    configureBigQuerySource(configuredSchema);
+    if (config.getWatermarkField() != null) {
+      configureWatermark(bigQuery, storage, collector);
+    }
 
-    // Configure BigQuery input format.
-    String temporaryGcsPath = BigQuerySourceUtils.getTemporaryGcsPath(bucket, bucketPath, bucketPath);
-    BigQuerySourceUtils.configureBigQueryInput(configuration,
-                                               DatasetId.of(config.getDatasetProject(), config.getDataset()),
-                                               config.getTable(),
-                                               temporaryGcsPath);
+    DatasetId datasetId = DatasetId.of(config.getDatasetProject(), config.getDataset());
+    if (config.getReadMethod() == ReadMethod.STORAGE_READ_API) {
+      // Rows are read directly from BigQuery, so no temporary bucket is needed
+      BigQuerySourceUtils.configureBigQueryInput(configuration, datasetId, config.getTable());
+    } else {
+      // Configure GCS Bucket to use
+      String bucket = BigQuerySourceUtils.getOrCreateBucket(configuration,
+                                                            storage,
+                                                            config.getBucket(),
+                                                            dataset,
+                                                            bucketPath,
+                                                            cmekKeyName);
+
+      // Configure BigQuery input format.
+      String temporaryGcsPath = BigQuerySourceUtils.getTemporaryGcsPath(bucket, bucketPath, bucketPath);
+      BigQuerySourceUtils.configureBigQueryInput(configuration, datasetId, config.getTable(), temporaryGcsPath);
+    }
 
     // Both emitLineage and setOutputFormat internally try to create an external dataset if it does not already exists.
     // We call emitLineage before since it creates the dataset with schema.
@@ -191,11 +203,58 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
 
   @Override
   public void onRunFinish(boolean succeeded, BatchSourceContext context) {
-    BigQuerySourceUtils.deleteGcsTemporaryDirectory(configuration, config.getBucket(), bucketPath);
+    if (config.getReadMethod() != ReadMethod.STORAGE_READ_API) {
+      BigQuerySourceUtils.deleteGcsTemporaryDirectory(configuration, config.getBucket(), bucketPath);
+    }
     BigQuerySourceUtils.deleteBigQueryTemporaryTable(configuration, config);
+    if (succeeded && watermark != null) {
+      try {
+        Storage storage = GCPUtils.getStorage(config.getProject(),
+                                              BigQuerySourceUtils.getCredentials(config.getConnection()));
+        BigQueryWatermark.write(storage, GCSPath.from(config.getWatermarkStatePath()), watermark);
+        LOG.debug("Stored watermark {} of field '{}'.", watermark, config.getWatermarkField());
+      } catch (IOException e) {
+        LOG.error("Failed to store the watermark, the next run will read the rows of this run again: {}",
+                  e.getMessage(), e);
+      }
+    }
   }
 
-  private void configureBigQuerySource() {
+  /**
+   * Restricts the rows to read to the ones between the watermark stored by the last successful run, minus the
+   * overlap, and the highest value of the watermark field, which is stored if this run succeeds.
+   */
+  private void configureWatermark(BigQuery bigQuery, Storage storage, FailureCollector collector)
+    throws IOException, InterruptedException {
+    Field field = getBQSchema(collector).getFields().get(config.getWatermarkField());
+    BigQueryWatermark bigQueryWatermark = BigQueryWatermark.of(field.getName(), field.getType());
+    Long previous = BigQueryWatermark.read(storage, GCSPath.from(config.getWatermarkStatePath()));
+    TableId tableId = TableId.of(config.getDatasetProject(), config.getDataset(), config.getTable());
+    // The highest value is only taken from the rows this run reads, so that rows of partitions outside the partition
+    // range don't move the watermark past rows that a later run would read. This also prunes the scanned partitions.
+    String rowFilter = config.getFilter();
+    Table table = bigQuery.getTable(tableId);
+    if (table != null && table.getDefinition() instanceof StandardTableDefinition) {
+      rowFilter = PartitionedBigQueryInputFormat.generateCondition(config.getPartitionFrom(), config.getPartitionTo(),
+                                                                   config.getFilter(), table.getDefinition());
+    }
+    watermark = bigQueryWatermark.queryMaximum(bigQuery, tableId, previous, rowFilter);
+    String condition = bigQueryWatermark.generateCondition(previous, watermark, config.getWatermarkOverlap());
+    LOG.info("Reading rows of field '{}' from watermark {} to {}.", field.getName(), previous, watermark);
+    if (condition != null) {
+      String filter = config.getFilter();
+      configuration.set(BigQueryConstants.CONFIG_FILTER,
+                        filter == null ? condition : String.format("(%s) and %s", filter, condition));
+    }
+  }
+
+  private void configureBigQuerySource(Schema outputSchema) {
+    configuration.setEnum(BigQueryConstants.CONFIG_READ_METHOD, config.getReadMethod());
+    if (outputSchema.getFields() != null) {
+      // Only the fields of the output schema are read from BigQuery
+      configuration.set(BigQueryConstants.CONFIG_SELECTED_FIELDS, outputSchema.getFields().stream()
+        .map(Schema.Field::getName).collect(Collectors.joining(",")));
+    }
     if (config.getPartitionFrom() != null) {
       configuration.set(BigQueryConstants.CONFIG_PARTITION_FROM_DATE, config.getPartitionFrom());
     }
@@ -283,10 +342,32 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
     Schema outputSchema = config.getSchema(collector);
     outputSchema = outputSchema == null ? getSchema(collector) : outputSchema;
     validatePartitionProperties(collector);
+    validateWatermarkField(collector);
     validateConfiguredSchema(outputSchema, collector);
     return outputSchema;
   }
 
+  private void validateWatermarkField(FailureCollector collector) {
+    String watermarkField = config.getWatermarkField();
+    if (watermarkField == null || config.containsMacro(BigQuerySourceConfig.NAME_WATERMARK_FIELD)) {
+      return;
+    }
+    Field field;
+    try {
+      field = getBQSchema(collector).getFields().get(watermarkField);
+    } catch (IllegalArgumentException e) {
+      collector.addFailure(String.format("Watermark field '%s' is not present in table '%s'.", watermarkField,
+                                         config.getTable()), "Set the watermark field to a field of the table.")
+        .withConfigProperty(BigQuerySourceConfig.NAME_WATERMARK_FIELD);
+      return;
+    }
+    if (!BigQueryWatermark.isSupported(field.getType()) || field.getMode() == Field.Mode.REPEATED) {
+      collector.addFailure(String.format("Watermark field '%s' is of unsupported type '%s'.", watermarkField,
+                                         field.getType()), "Set the watermark field to a timestamp or integer field.")
+        .withConfigProperty(BigQuerySourceConfig.NAME_WATERMARK_FIELD);
+    }
+  }
+
   private void validatePartitionProperties(FailureCollector collector) {
     String project = config.getDatasetProject();
     String dataset = config.getDataset();
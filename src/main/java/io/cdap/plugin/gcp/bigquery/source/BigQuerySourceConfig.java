@@ -69,6 +69,10 @@ public final class BigQuerySourceConfig extends BigQueryBaseConfig {
   public static final String NAME_ENABLE_QUERYING_VIEWS = "enableQueryingViews";
   public static final String NAME_VIEW_MATERIALIZATION_PROJECT = "viewMaterializationProject";
   public static final String NAME_VIEW_MATERIALIZATION_DATASET = "viewMaterializationDataset";
+  public static final String NAME_READ_METHOD = "readMethod";
+  public static final String NAME_WATERMARK_FIELD = "watermarkField";
+  public static final String NAME_WATERMARK_STATE_PATH = "watermarkStatePath";
+  public static final String NAME_WATERMARK_OVERLAP = "watermarkOverlap";
 
   @Name(Constants.Reference.REFERENCE_NAME)
   @Description("This will be used to uniquely identify this source for lineage, annotating metadata, etc.")
@@ -130,6 +134,37 @@ public final class BigQuerySourceConfig extends BigQueryBaseConfig {
     + "Defaults to the same dataset in which the table is located.")
   private String viewMaterializationDataset;
 
+  @Name(NAME_READ_METHOD)
+  @Macro
+  @Nullable
+  @Description("Method used to read records from BigQuery. 'EXPORT' exports the table, or the rows that match the " +
+    "partition range and filter, to the temporary bucket as Avro files, which are then read. 'STORAGE_READ_API' " +
+    "reads the rows directly from BigQuery using the Storage Read API, which only returns the fields of the schema " +
+    "and the rows that match the partition range and filter. Defaults to 'EXPORT'.")
+  private String readMethod;
+
+  @Name(NAME_WATERMARK_FIELD)
+  @Macro
+  @Nullable
+  @Description("Timestamp or integer field whose values increase as rows are added to the table. When it is set, " +
+    "each run only reads the rows whose value is greater than the highest value read by the last successful run.")
+  private String watermarkField;
+
+  @Name(NAME_WATERMARK_STATE_PATH)
+  @Macro
+  @Nullable
+  @Description("GCS path of the object where the highest value of the watermark field read by the last successful " +
+    "run is stored, for example 'gs://bucket/state/orders'. Required when the watermark field is set.")
+  private String watermarkStatePath;
+
+  @Name(NAME_WATERMARK_OVERLAP)
+  @Macro
+  @Nullable
+  @Description("How far below the stored watermark rows are read again, to pick up rows that arrived late. It is " +
+    "a number of seconds for timestamp fields, and a difference of values for integer fields. Rows in the overlap " +
+    "are read by more than one run. Defaults to 0.")
+  private Long watermarkOverlap;
+
   public String getTable() {
     return table;
   }
@@ -172,6 +207,45 @@ public final class BigQuerySourceConfig extends BigQueryBaseConfig {
     if (!containsMacro(NAME_CMEK_KEY)) {
       validateCmekKey(collector, arguments);
     }
+    if (!containsMacro(NAME_READ_METHOD)) {
+      try {
+        getReadMethod();
+      } catch (IllegalArgumentException e) {
+        collector.addFailure(String.format("Read method has incorrect value '%s'.", readMethod),
+                             "Set the read method to 'EXPORT' or 'STORAGE_READ_API'.")
+          .withConfigProperty(NAME_READ_METHOD);
+      }
+    }
+    if (!containsMacro(NAME_WATERMARK_FIELD) && !containsMacro(NAME_WATERMARK_STATE_PATH)) {
+      validateWatermark(collector);
+    }
+  }
+
+  private void validateWatermark(FailureCollector collector) {
+    if (Strings.isNullOrEmpty(watermarkField)) {
+      return;
+    }
+    if (Strings.isNullOrEmpty(watermarkStatePath)) {
+      collector.addFailure("Watermark state path must be set when a watermark field is set.",
+                           "Set the GCS path of the object where the watermark is stored.")
+        .withConfigProperty(NAME_WATERMARK_STATE_PATH);
+    } else {
+      String objectName;
+      try {
+        objectName = GCSPath.from(watermarkStatePath).getName();
+      } catch (IllegalArgumentException e) {
+        objectName = "";
+      }
+      if (objectName.isEmpty()) {
+        collector.addFailure(String.format("Watermark state path '%s' is not the path of a GCS object.",
+                                           watermarkStatePath), "Set a path of the form 'gs://<bucket>/<object>'.")
+          .withConfigProperty(NAME_WATERMARK_STATE_PATH);
+      }
+    }
+    if (!containsMacro(NAME_WATERMARK_OVERLAP) && watermarkOverlap != null && watermarkOverlap < 0) {
+      collector.addFailure(String.format("Watermark overlap '%d' must not be negative.", watermarkOverlap), null)
+        .withConfigProperty(NAME_WATERMARK_OVERLAP);
+    }
   }
 
   void validateCmekKey(FailureCollector collector, Map<String, String> arguments) {
@@ -300,6 +374,24 @@ public final class BigQuerySourceConfig extends BigQueryBaseConfig {
     return viewMaterializationDataset;
   }
 
+  @Nullable
+  public String getWatermarkField() {
+    return Strings.isNullOrEmpty(watermarkField) ? null : watermarkField;
+  }
+
+  @Nullable
+  public String getWatermarkStatePath() {
+    return watermarkStatePath;
+  }
+
+  public long getWatermarkOverlap() {
+    return watermarkOverlap == null ? 0L : watermarkOverlap;
+  }
+
+  public ReadMethod getReadMethod() {
+    return Strings.isNullOrEmpty(readMethod) ? ReadMethod.EXPORT : ReadMethod.valueOf(readMethod.toUpperCase());
+  }
+
   /**
    * Returns true if bigquery table can be connected and schema is not a macro.
    */
@@ -135,14 +135,28 @@ public class BigQuerySourceUtils {
     configuration.setBoolean("fs.gs.impl.disable.cache", true);
     configuration.setBoolean("fs.gs.metadata.cache.enable", false);
 
+    // Configure BigQuery input format.
+    PartitionedBigQueryInputFormat.setTemporaryCloudStorageDirectory(configuration,
+                                                                     gcsPath);
+    configureBigQueryInput(configuration, dataset, table);
+  }
+
+  /**
+   * Configure BigQuery input that is read without exporting it to GCS.
+   *
+   * @param configuration Hadoop configuration instance.
+   * @param dataset the dataset to use.
+   * @param table the name of the table to pull from.
+   * @throws IOException if the BigQuery input could not be configured.
+   */
+  public static void configureBigQueryInput(Configuration configuration,
+                                            DatasetId dataset,
+                                            String table) throws IOException {
     // Set up temporary table name. This will be used if the source table is a view
     String temporaryTableName = String.format("_%s_%s", table,
                                               UUID.randomUUID().toString().replaceAll("-", "_"));
     configuration.set(BigQueryConstants.CONFIG_TEMPORARY_TABLE_NAME, temporaryTableName);
 
-    // Configure BigQuery input format.
-    PartitionedBigQueryInputFormat.setTemporaryCloudStorageDirectory(configuration,
-                                                                     gcsPath);
     BigQueryConfiguration.configureBigQueryInput(configuration,
                                                  dataset.getProject(),
                                                  dataset.getDataset(),
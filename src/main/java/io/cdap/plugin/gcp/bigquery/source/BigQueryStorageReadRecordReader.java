@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.ReadRowsRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Record reader that reads the rows of a BigQuery Storage Read API stream. Rows are sent in blocks of Avro binary
+ * encoded records, which are decoded one at a time, so that only one block is held in memory.
+ * <p>
+ * The key of each record is its offset in the stream.
+ */
+public class BigQueryStorageReadRecordReader extends RecordReader<LongWritable, GenericData.Record> {
+  private final LongWritable key = new LongWritable();
+  private BigQueryReadClient client;
+  private ServerStream<ReadRowsResponse> stream;
+  private Iterator<ReadRowsResponse> responses;
+  private DatumReader<GenericData.Record> datumReader;
+  private BinaryDecoder decoder;
+  private GenericData.Record value;
+  private long offset;
+  private float progress;
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+    BigQueryStorageReadSplit readSplit = (BigQueryStorageReadSplit) split;
+    client = PartitionedBigQueryInputFormat.getBigQueryReadClient(context.getConfiguration());
+    // The client resumes the stream from the last offset it received if the connection breaks
+    stream = client.readRowsCallable().call(ReadRowsRequest.newBuilder()
+                                              .setReadStream(readSplit.getStreamName())
+                                              .build());
+    initialize(stream.iterator(), readSplit.getAvroSchema());
+  }
+
+  @VisibleForTesting
+  void initialize(Iterator<ReadRowsResponse> responses, String avroSchema) {
+    this.responses = responses;
+    this.datumReader = new GenericDatumReader<>(new Schema.Parser().parse(avroSchema));
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    while (decoder == null || decoder.isEnd()) {
+      if (!responses.hasNext()) {
+        return false;
+      }
+      ReadRowsResponse response = responses.next();
+      progress = response.getStats().getProgress().getAtResponseEnd();
+      if (response.hasAvroRows()) {
+        decoder = DecoderFactory.get().binaryDecoder(response.getAvroRows().getSerializedBinaryRows().toByteArray(),
+                                                     decoder);
+      }
+    }
+    value = datumReader.read(null, decoder);
+    key.set(offset++);
+    return true;
+  }
+
+  @Override
+  public LongWritable getCurrentKey() {
+    return key;
+  }
+
+  @Override
+  public GenericData.Record getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() {
+    return progress;
+  }
+
+  @Override
+  public void close() {
+    if (stream != null) {
+      stream.cancel();
+    }
+    if (client != null) {
+      client.close();
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.JobException;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import io.cdap.plugin.gcp.gcs.GCSPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * High-water mark of a field whose values increase as rows are added to a table, used to only read the rows added
+ * since the last successful run.
+ * <p>
+ * Watermarks are stored as a single number in a GCS object: the value itself for integer fields, and the number of
+ * microseconds since the epoch for timestamp fields.
+ */
+public final class BigQueryWatermark {
+  private static final Logger LOG = LoggerFactory.getLogger(BigQueryWatermark.class);
+  private static final DateTimeFormatter TIMESTAMP_FORMATTER =
+    DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS").withZone(ZoneOffset.UTC);
+
+  private final String field;
+  private final boolean timestamp;
+
+  private BigQueryWatermark(String field, boolean timestamp) {
+    this.field = field;
+    this.timestamp = timestamp;
+  }
+
+  /**
+   * @param field name of the watermark field
+   * @param type BigQuery type of the field, which must be a timestamp or an integer
+   */
+  public static BigQueryWatermark of(String field, LegacySQLTypeName type) {
+    if (!isSupported(type)) {
+      throw new IllegalArgumentException(String.format("Watermark field '%s' must be a timestamp or an integer.",
+                                                       field));
+    }
+    return new BigQueryWatermark(field, LegacySQLTypeName.TIMESTAMP.equals(type));
+  }
+
+  /**
+   * Returns whether fields of the given type can be used as watermarks.
+   */
+  public static boolean isSupported(LegacySQLTypeName type) {
+    return LegacySQLTypeName.TIMESTAMP.equals(type) || LegacySQLTypeName.INTEGER.equals(type);
+  }
+
+  /**
+   * Reads the watermark stored by the last successful run.
+   *
+   * @return the watermark, or null if none was stored yet
+   */
+  @Nullable
+  public static Long read(Storage storage, GCSPath statePath) throws IOException {
+    Blob blob;
+    try {
+      blob = storage.get(BlobId.of(statePath.getBucket(), statePath.getName()));
+    } catch (StorageException e) {
+      throw new IOException(String.format("Failed to read the watermark from '%s': %s",
+                                          statePath.getUri(), e.getMessage()), e);
+    }
+    if (blob == null) {
+      return null;
+    }
+    String content = new String(blob.getContent(), StandardCharsets.UTF_8).trim();
+    try {
+      return Long.parseLong(content);
+    } catch (NumberFormatException e) {
+      throw new IOException(String.format("Watermark '%s' stored in '%s' is not a number.",
+                                          content, statePath.getUri()), e);
+    }
+  }
+
+  /**
+   * Stores the watermark that the next run starts from.
+   */
+  public static void write(Storage storage, GCSPath statePath, long watermark) throws IOException {
+    BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(statePath.getBucket(), statePath.getName()))
+      .setContentType("text/plain")
+      .build();
+    try {
+      storage.create(blobInfo, String.valueOf(watermark).getBytes(StandardCharsets.UTF_8));
+    } catch (StorageException e) {
+      throw new IOException(String.format("Failed to store the watermark in '%s': %s",
+                                          statePath.getUri(), e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Queries the highest value of the field in the rows above the previous watermark. Fixing it before the run
+   * starts makes rows added while the run is reading the table count towards the next run.
+   *
+   * @param previous the previous watermark, or null if the whole table is read
+   * @param filter the condition on the rows that are read, or null if there is none
+   * @return the highest value, or the previous watermark if there is no such row
+   */
+  @Nullable
+  public Long queryMaximum(BigQuery bigQuery, TableId tableId, @Nullable Long previous, @Nullable String filter)
+    throws IOException, InterruptedException {
+    String value = timestamp ? String.format("UNIX_MICROS(MAX(`%s`))", field) : String.format("MAX(`%s`)", field);
+    String condition = previous == null ? null : String.format("`%s` > %s", field, toLiteral(previous));
+    if (filter != null) {
+      condition = condition == null ? filter : String.format("%s and (%s)", condition, filter);
+    }
+    String query = String.format("select %s from `%s.%s.%s`%s", value, tableId.getProject(), tableId.getDataset(),
+                                 tableId.getTable(), condition == null ? "" : " where " + condition);
+    LOG.debug("Watermark query: {}", query);
+    FieldValue maximum;
+    try {
+      maximum = bigQuery.query(QueryJobConfiguration.newBuilder(query).setUseLegacySql(false).build())
+        .iterateAll().iterator().next().get(0);
+    } catch (BigQueryException | JobException e) {
+      throw new IOException(String.format("Failed to query the highest value of watermark field '%s': %s",
+                                          field, e.getMessage()), e);
+    }
+    return maximum.isNull() ? previous : Long.valueOf(maximum.getLongValue());
+  }
+
+  /**
+   * Generates the condition on the rows to read, which are the rows above the previous watermark, moved back by the
+   * overlap, and up to the current one.
+   *
+   * @param previous the watermark stored by the last successful run, or null if there is none
+   * @param current the watermark of this run, or null if the table has no rows to read
+   * @param overlap number of seconds for timestamp fields, or difference of values for integer fields, that rows
+   *                below the previous watermark are read again
+   * @return the condition, or null if all the rows are read
+   */
+  @Nullable
+  public String generateCondition(@Nullable Long previous, @Nullable Long current, long overlap) {
+    String lowerBound = null;
+    if (previous != null) {
+      long start = previous - (timestamp ? TimeUnit.SECONDS.toMicros(overlap) : overlap);
+      lowerBound = String.format("`%s` > %s", field, toLiteral(start));
+    }
+    String upperBound = current == null ? null : String.format("`%s` <= %s", field, toLiteral(current));
+    if (lowerBound == null || upperBound == null) {
+      return lowerBound == null ? upperBound : lowerBound;
+    }
+    return lowerBound + " and " + upperBound;
+  }
+
+  private String toLiteral(long value) {
+    if (!timestamp) {
+      return String.valueOf(value);
+    }
+    Instant instant = Instant.ofEpochSecond(Math.floorDiv(value, 1000000L),
+                                            TimeUnit.MICROSECONDS.toNanos(Math.floorMod(value, 1000000L)));
+    // Cast from a string literal, which is supported by both queries and Storage Read API row restrictions
+    return String.format("CAST('%s UTC' AS TIMESTAMP)", TIMESTAMP_FORMATTER.format(instant));
+  }
+}
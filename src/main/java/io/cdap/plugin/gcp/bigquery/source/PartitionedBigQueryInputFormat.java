@@ -1,46 +1,65 @@
 package io.cdap.plugin.gcp.bigquery.source;
 
+import com.google.api.gax.core.FixedCredentialsProvider;
+import com.google.api.gax.rpc.ApiException;
 import com.google.api.services.bigquery.model.Job;
 import com.google.api.services.bigquery.model.JobConfiguration;
+import com.google.api.services.bigquery.model.JobConfigurationExtract;
 import com.google.api.services.bigquery.model.JobConfigurationQuery;
 import com.google.api.services.bigquery.model.JobReference;
 import com.google.api.services.bigquery.model.Table;
 import com.google.api.services.bigquery.model.TableReference;
+import com.google.auth.Credentials;
+import com.google.cloud.bigquery.Field;
 import com.google.cloud.bigquery.LegacySQLTypeName;
 import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.TableDefinition.Type;
 import com.google.cloud.bigquery.TimePartitioning;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadSettings;
+import com.google.cloud.bigquery.storage.v1.CreateReadSessionRequest;
+import com.google.cloud.bigquery.storage.v1.DataFormat;
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+import com.google.cloud.bigquery.storage.v1.ReadStream;
 import com.google.cloud.hadoop.io.bigquery.AbstractBigQueryInputFormat;
-import com.google.cloud.hadoop.io.bigquery.AvroBigQueryInputFormat;
 import com.google.cloud.hadoop.io.bigquery.AvroRecordReader;
 import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
 import com.google.cloud.hadoop.io.bigquery.BigQueryFactory;
 import com.google.cloud.hadoop.io.bigquery.BigQueryHelper;
-import com.google.cloud.hadoop.io.bigquery.BigQueryUtils;
 import com.google.cloud.hadoop.io.bigquery.ExportFileFormat;
 import com.google.cloud.hadoop.util.ConfigurationUtil;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobPoller;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.GCPUtils;
 import org.apache.avro.generic.GenericData;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
-import org.apache.hadoop.util.Progressable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
 /**
@@ -48,10 +67,9 @@ import javax.annotation.Nullable;
  * in order to create input splits.
  */
 public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<LongWritable, GenericData.Record> {
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionedBigQueryInputFormat.class);
   private static final String DEFAULT_COLUMN_NAME = "_PARTITIONTIME";
-
-  private InputFormat<LongWritable, GenericData.Record> delegateInputFormat =
-    new AvroBigQueryInputFormat();
+  private static final String EXPORT_FILE_PATTERN = "data-*.avro";
 
   @Override
   public ExportFileFormat getExportFileFormat() {
@@ -60,9 +78,22 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
 
   @Override
   public List<InputSplit> getSplits(JobContext context) throws IOException, InterruptedException {
-    processQuery(context);
+    String rowRestriction = processQuery(context);
+    if (getReadMethod(context.getConfiguration()) == ReadMethod.STORAGE_READ_API) {
+      return getStorageReadSplits(context.getConfiguration(), rowRestriction);
+    }
+
+    return getExportSplits(context.getConfiguration());
+  }
 
-    return delegateInputFormat.getSplits(context);
+  @Override
+  public RecordReader<LongWritable, GenericData.Record> createRecordReader(InputSplit split,
+                                                                           TaskAttemptContext context)
+    throws IOException, InterruptedException {
+    if (split instanceof BigQueryStorageReadSplit) {
+      return new BigQueryStorageReadRecordReader();
+    }
+    return createDelegateRecordReader(split, context.getConfiguration());
   }
 
 
@@ -71,7 +102,7 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
                                                                                    Configuration configuration)
     throws IOException, InterruptedException {
     Preconditions.checkState(
-      split instanceof FileSplit, "AvroBigQueryInputFormat requires FileSplit input splits");
+      split instanceof FileSplit, "Exported tables are read from FileSplit input splits");
     return new AvroRecordReader();
   }
 
@@ -89,7 +120,118 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
     return factory.getBigQueryHelper(config);
   }
 
-  private void processQuery(JobContext context) throws IOException, InterruptedException {
+  /**
+   * Exports the input table to the temporary GCS directory as Avro files, and returns a split for each file.
+   * The export uses Avro logical types, so that dates and times are exported as numbers instead of strings.
+   */
+  private List<InputSplit> getExportSplits(Configuration configuration) throws IOException, InterruptedException {
+    BigQueryHelper bigQueryHelper;
+    try {
+      bigQueryHelper = getBigQueryHelper(configuration);
+    } catch (GeneralSecurityException gse) {
+      throw new IOException("Failed to create BigQuery client", gse);
+    }
+    Map<String, String> mandatoryConfig = ConfigurationUtil.getMandatoryConfig(
+      configuration, BigQueryConfiguration.MANDATORY_CONFIG_PROPERTIES_INPUT);
+    String projectId = mandatoryConfig.get(BigQueryConfiguration.PROJECT_ID_KEY);
+    TableReference tableRef = new TableReference()
+      .setProjectId(mandatoryConfig.get(BigQueryConfiguration.INPUT_PROJECT_ID_KEY))
+      .setDatasetId(mandatoryConfig.get(BigQueryConfiguration.INPUT_DATASET_ID_KEY))
+      .setTableId(mandatoryConfig.get(BigQueryConfiguration.INPUT_TABLE_ID_KEY));
+    String exportPath = ConfigurationUtil.getMandatoryConfig(configuration, BigQueryConfiguration.TEMP_GCS_PATH_KEY);
+
+    JobConfigurationExtract extractConfig = new JobConfigurationExtract()
+      .setSourceTable(tableRef)
+      .setDestinationUris(Collections.singletonList(exportPath + "/" + EXPORT_FILE_PATTERN))
+      .setDestinationFormat(ExportFileFormat.AVRO.getFormatIdentifier())
+      .setUseAvroLogicalTypes(true);
+    String location = bigQueryHelper.getTable(tableRef).getLocation();
+    JobReference jobReference = bigQueryHelper.createJobReference(projectId, "export", location);
+    runJob(bigQueryHelper, projectId, jobReference, new JobConfiguration().setExtract(extractConfig));
+
+    Path path = new Path(exportPath);
+    FileStatus[] files = path.getFileSystem(configuration).listStatus(path);
+    List<InputSplit> splits = new ArrayList<>(files.length);
+    for (FileStatus file : files) {
+      splits.add(new FileSplit(file.getPath(), 0, file.getLen(), new String[0]));
+    }
+    LOG.debug("Exported table '{}' to {} files.", tableRef.getTableId(), splits.size());
+    return splits;
+  }
+
+  /**
+   * Creates a Storage Read API read session on the input table, and returns a split for each of its streams.
+   * The server only returns the selected fields of the rows that match the row restriction.
+   */
+  private static List<InputSplit> getStorageReadSplits(Configuration configuration, @Nullable String rowRestriction)
+    throws IOException {
+    Map<String, String> mandatoryConfig = ConfigurationUtil.getMandatoryConfig(
+      configuration, BigQueryConfiguration.MANDATORY_CONFIG_PROPERTIES_INPUT);
+    String table = String.format("projects/%s/datasets/%s/tables/%s",
+                                 mandatoryConfig.get(BigQueryConfiguration.INPUT_PROJECT_ID_KEY),
+                                 mandatoryConfig.get(BigQueryConfiguration.INPUT_DATASET_ID_KEY),
+                                 mandatoryConfig.get(BigQueryConfiguration.INPUT_TABLE_ID_KEY));
+    ReadSession.TableReadOptions.Builder readOptions = ReadSession.TableReadOptions.newBuilder();
+    List<String> selectedFields = getSelectedFields(configuration);
+    if (selectedFields != null) {
+      readOptions.addAllSelectedFields(selectedFields);
+    }
+    if (rowRestriction != null) {
+      readOptions.setRowRestriction(rowRestriction);
+    }
+    CreateReadSessionRequest request = CreateReadSessionRequest.newBuilder()
+      .setParent("projects/" + mandatoryConfig.get(BigQueryConfiguration.PROJECT_ID_KEY))
+      .setReadSession(ReadSession.newBuilder()
+                        .setTable(table)
+                        .setDataFormat(DataFormat.AVRO)
+                        .setReadOptions(readOptions))
+      // Zero lets the server choose the number of streams, depending on the size of the table
+      .setMaxStreamCount(0)
+      .build();
+
+    ReadSession session;
+    try (BigQueryReadClient client = getBigQueryReadClient(configuration)) {
+      session = client.createReadSession(request);
+    } catch (ApiException e) {
+      throw new IOException(String.format("Failed to create a read session on table '%s': %s",
+                                          table, e.getMessage()), e);
+    }
+    LOG.debug("Reading table '{}' through {} streams.", table, session.getStreamsCount());
+    List<InputSplit> splits = new ArrayList<>(session.getStreamsCount());
+    for (ReadStream stream : session.getStreamsList()) {
+      splits.add(new BigQueryStorageReadSplit(stream.getName(), session.getAvroSchema().getSchema()));
+    }
+    return splits;
+  }
+
+  static BigQueryReadClient getBigQueryReadClient(Configuration configuration) throws IOException {
+    Credentials credentials = GCPUtils.loadCredentialsFromConf(configuration);
+    return BigQueryReadClient.create(BigQueryReadSettings.newBuilder()
+                                       .setCredentialsProvider(FixedCredentialsProvider.create(credentials))
+                                       .build());
+  }
+
+  private static ReadMethod getReadMethod(Configuration configuration) {
+    return configuration.getEnum(BigQueryConstants.CONFIG_READ_METHOD, ReadMethod.EXPORT);
+  }
+
+  /**
+   * Returns the names of the fields to read, or null if all of them are read.
+   */
+  @Nullable
+  private static List<String> getSelectedFields(Configuration configuration) {
+    String selectedFields = configuration.get(BigQueryConstants.CONFIG_SELECTED_FIELDS);
+    return Strings.isNullOrEmpty(selectedFields) ? null : Arrays.asList(selectedFields.split(","));
+  }
+
+  /**
+   * Materializes the rows to read into a temporary table, and makes it the input table, if they have to be queried.
+   * With the Storage Read API, tables are read directly, with the partition range and filter applied by the server.
+   *
+   * @return the row restriction of the Storage Read API read session, or null if there is none
+   */
+  @Nullable
+  private String processQuery(JobContext context) throws IOException, InterruptedException {
     final Configuration configuration = context.getConfiguration();
     BigQueryHelper bigQueryHelper;
     try {
@@ -110,6 +252,7 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
     String partitionFromDate = configuration.get(BigQueryConstants.CONFIG_PARTITION_FROM_DATE, null);
     String partitionToDate = configuration.get(BigQueryConstants.CONFIG_PARTITION_TO_DATE, null);
     String filter = configuration.get(BigQueryConstants.CONFIG_FILTER, null);
+    List<String> selectedFields = getSelectedFields(configuration);
 
     com.google.cloud.bigquery.Table bigQueryTable = BigQueryUtil.getBigQueryTable(
       datasetProjectId, datasetId, tableName, serviceAccount, isServiceAccountFilePath);
@@ -117,10 +260,13 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
 
     String query;
     if (type == Type.VIEW || type == Type.MATERIALIZED_VIEW || type == Type.EXTERNAL) {
-      query = generateQueryForMaterializingView(datasetProjectId, datasetId, tableName, filter);
+      String columns = generateColumnList(selectedFields, bigQueryTable.getDefinition().getSchema());
+      query = generateQueryForMaterializingView(datasetProjectId, datasetId, tableName, columns, filter);
+    } else if (getReadMethod(configuration) == ReadMethod.STORAGE_READ_API) {
+      return generateCondition(partitionFromDate, partitionToDate, filter, bigQueryTable.getDefinition());
     } else {
-      query = generateQuery(partitionFromDate, partitionToDate, filter, projectId, datasetProjectId, datasetId,
-                            tableName, serviceAccount, isServiceAccountFilePath);
+      query = generateQuery(partitionFromDate, partitionToDate, filter, selectedFields, projectId, datasetProjectId,
+                            datasetId, tableName, serviceAccount, isServiceAccountFilePath);
     }
 
     if (query != null) {
@@ -139,22 +285,78 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
                         configuration.get(BigQueryConstants.CONFIG_VIEW_MATERIALIZATION_DATASET));
       configuration.set(BigQueryConfiguration.INPUT_TABLE_ID_KEY, temporaryTableName);
     }
+    return null;
   }
 
+  /**
+   * Generates the query that selects the columns and rows to read from a table.
+   *
+   * @return the query, or null if the whole table is read
+   */
   @VisibleForTesting
-  String generateQuery(String partitionFromDate, String partitionToDate, String filter, String project,
-                       String datasetProject, String dataset, String table, @Nullable String serviceAccount,
-                       @Nullable Boolean isServiceAccountFilePath) {
-    if (partitionFromDate == null && partitionToDate == null && filter == null) {
+  String generateQuery(String partitionFromDate, String partitionToDate, String filter,
+                       @Nullable List<String> selectedFields, String project, String datasetProject, String dataset,
+                       String table, @Nullable String serviceAccount, @Nullable Boolean isServiceAccountFilePath) {
+    if (partitionFromDate == null && partitionToDate == null && filter == null && selectedFields == null) {
       return null;
     }
-    String queryTemplate = "select * from `%s` where %s";
     com.google.cloud.bigquery.Table sourceTable = BigQueryUtil.getBigQueryTable(datasetProject, dataset, table,
                                                                                 serviceAccount,
                                                                                 isServiceAccountFilePath);
     StandardTableDefinition tableDefinition = Objects.requireNonNull(sourceTable).getDefinition();
+    String condition = generateCondition(partitionFromDate, partitionToDate, filter, tableDefinition);
+    String columns = generateColumnList(selectedFields, tableDefinition.getSchema());
+    if (condition == null && (columns == null || requiresPartitionFilter(sourceTable, tableDefinition))) {
+      // Tables that require a partition filter reject queries without one, but can still be exported whole.
+      // The fields that are not selected are then dropped when the exported records are read.
+      return null;
+    }
+
+    String tableName = datasetProject + "." + dataset + "." + table;
+    String query = String.format("select %s from `%s`", columns == null ? "*" : columns, tableName);
+    return condition == null ? query : String.format("%s where %s", query, condition);
+  }
+
+  /**
+   * Returns whether queries on the given table must filter its partitions.
+   */
+  private static boolean requiresPartitionFilter(com.google.cloud.bigquery.Table table,
+                                                 StandardTableDefinition tableDefinition) {
     TimePartitioning timePartitioning = tableDefinition.getTimePartitioning();
-    if (timePartitioning == null && filter == null) {
+    return Boolean.TRUE.equals(table.getRequirePartitionFilter())
+      || timePartitioning != null && Boolean.TRUE.equals(timePartitioning.getRequirePartitionFilter());
+  }
+
+  /**
+   * Generates the list of columns to select from a table, so that only the fields that are read are exported.
+   *
+   * @return the list of columns, or null if all the columns of the table have to be selected
+   */
+  @VisibleForTesting
+  @Nullable
+  static String generateColumnList(@Nullable List<String> selectedFields,
+                                   @Nullable com.google.cloud.bigquery.Schema tableSchema) {
+    if (selectedFields == null || tableSchema == null) {
+      return null;
+    }
+    Set<String> tableFields = tableSchema.getFields().stream().map(Field::getName).collect(Collectors.toSet());
+    // Selecting fields that are not columns of the table, like pseudo columns, is left to the export of all columns
+    if (!tableFields.containsAll(selectedFields) || new HashSet<>(selectedFields).containsAll(tableFields)) {
+      return null;
+    }
+    return selectedFields.stream().map(field -> "`" + field + "`").collect(Collectors.joining(", "));
+  }
+
+  /**
+   * Generates the condition on the rows of a table to read, from the partition range and the filter.
+   *
+   * @return the condition, or null if all the rows are read
+   */
+  @Nullable
+  static String generateCondition(@Nullable String partitionFromDate, @Nullable String partitionToDate,
+                                  @Nullable String filter, StandardTableDefinition tableDefinition) {
+    TimePartitioning timePartitioning = tableDefinition.getTimePartitioning();
+    if ((partitionFromDate == null && partitionToDate == null || timePartitioning == null) && filter == null) {
       return null;
     }
     StringBuilder condition = new StringBuilder();
@@ -172,14 +374,13 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
         condition.append(" and (").append(filter).append(")");
       }
     }
-
-    String tableName = datasetProject + "." + dataset + "." + table;
-    return String.format(queryTemplate, tableName, condition.toString());
+    return condition.toString();
   }
 
   @VisibleForTesting
-  String generateQueryForMaterializingView(String datasetProject, String dataset, String table, String filter) {
-    String queryTemplate = "select * from `%s`%s";
+  String generateQueryForMaterializingView(String datasetProject, String dataset, String table,
+                                          @Nullable String columns, String filter) {
+    String queryTemplate = "select " + (columns == null ? "*" : columns) + " from `%s`%s";
     StringBuilder condition = new StringBuilder();
 
     if (!Strings.isNullOrEmpty(filter)) {
@@ -241,25 +442,8 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
     config.setQuery(queryConfig);
 
     JobReference jobReference = getJobReference(configuration, bigQueryHelper, projectId, location);
+    runJob(bigQueryHelper, projectId, jobReference, config);
 
-    Job job = new Job();
-    job.setConfiguration(config);
-    job.setJobReference(jobReference);
-
-    // Run the job.
-    Job response = bigQueryHelper.insertJobOrFetchDuplicate(projectId, job);
-
-    // Create anonymous Progressable object
-    Progressable progressable = new Progressable() {
-      @Override
-      public void progress() {
-        // TODO(user): ensure task doesn't time out
-      }
-    };
-
-    // Poll until job is complete.
-    BigQueryUtils.waitForJobCompletion(
-      bigQueryHelper.getRawBigquery(), projectId, jobReference, progressable);
     if (bigQueryHelper.tableExists(tableRef)) {
       long expirationMillis = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
       Table table = bigQueryHelper.getTable(tableRef).setExpirationTime(expirationMillis);
@@ -268,6 +452,27 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
     }
   }
 
+  /**
+   * Runs a BigQuery job and waits until it is complete.
+   */
+  private static void runJob(BigQueryHelper bigQueryHelper, String projectId, JobReference jobReference,
+                             JobConfiguration config) throws IOException, InterruptedException {
+    Job job = new Job();
+    job.setConfiguration(config);
+    job.setJobReference(jobReference);
+
+    // Run the job.
+    bigQueryHelper.insertJobOrFetchDuplicate(projectId, job);
+
+    // Wait until job is complete.
+    Job completedJob = BigQueryJobPoller.await(
+      BigQueryJobPoller.getInstance().track(bigQueryHelper.getRawBigquery(), projectId, jobReference));
+    if (completedJob.getStatus().getErrorResult() != null) {
+      throw new IOException(String.format("Error during BigQuery job execution: %s",
+                                          completedJob.getStatus().getErrorResult()));
+    }
+  }
+
   /**
    * Gets the Job Reference for the BQ job to execute.
    *
@@ -290,7 +495,7 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
     return new JobReference().setProjectId(projectId).setJobId(savedJobId).setLocation(location);
   }
 
-  private String generateTimePartitionCondition(StandardTableDefinition tableDefinition,
+  private static String generateTimePartitionCondition(StandardTableDefinition tableDefinition,
                                                 TimePartitioning timePartitioning, String partitionFromDate,
                                                 String partitionToDate) {
     StringBuilder timePartitionCondition = new StringBuilder();
@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+/**
+ * The method used to move records from the source table into the source tasks.
+ */
+public enum ReadMethod {
+  /**
+   * The table, or the result of the query that filters it, is exported to GCS as Avro files, which the tasks read.
+   */
+  EXPORT,
+  /**
+   * Each task reads BigQuery Storage Read API streams of a read session on the table, with the selected fields and
+   * the row restriction applied by the server.
+   */
+  STORAGE_READ_API
+}
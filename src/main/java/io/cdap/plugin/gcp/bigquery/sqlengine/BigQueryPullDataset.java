@@ -26,8 +26,10 @@ import io.cdap.cdap.etl.api.engine.sql.dataset.SQLPullDataset;
 import io.cdap.cdap.etl.api.engine.sql.request.SQLPullRequest;
 import io.cdap.plugin.gcp.bigquery.source.BigQueryInputFormatProvider;
 import io.cdap.plugin.gcp.bigquery.source.BigQuerySourceUtils;
+import io.cdap.plugin.gcp.bigquery.source.ReadMethod;
 import io.cdap.plugin.gcp.bigquery.sqlengine.transform.PullTransform;
 import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQuerySQLEngineUtils;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
 import org.apache.avro.generic.GenericData;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
@@ -46,6 +48,7 @@ public class BigQueryPullDataset extends BigQueryInputFormatProvider
   private final Schema schema;
   private final DatasetId bqDataset;
   private final String bqTable;
+  @Nullable
   private final String gcsPath;
   private Long numRows;
 
@@ -55,7 +58,7 @@ public class BigQueryPullDataset extends BigQueryInputFormatProvider
                               BigQuery bigQuery,
                               DatasetId bqDataset,
                               String bqTable,
-                              String gcsPath) {
+                              @Nullable String gcsPath) {
     super(configuration);
     this.datasetName = datasetName;
     this.schema = schema;
@@ -71,14 +74,22 @@ public class BigQueryPullDataset extends BigQueryInputFormatProvider
                                                 DatasetId bqDataset,
                                                 String bqTable,
                                                 String bucket,
-                                                String runId) throws IOException {
+                                                String runId,
+                                                ReadMethod readMethod) throws IOException {
 
     // Clone configuration object
     Configuration configuration = new Configuration(baseConfiguration);
 
     // Configure BigQuery input format.
-    String gcsPath = BigQuerySQLEngineUtils.getGCSPath(bucket, runId, bqTable);
-    BigQuerySourceUtils.configureBigQueryInput(configuration, bqDataset, bqTable, gcsPath);
+    configuration.setEnum(BigQueryConstants.CONFIG_READ_METHOD, readMethod);
+    String gcsPath = null;
+    if (readMethod == ReadMethod.STORAGE_READ_API) {
+      // Records are read from Storage Read API streams on the table, so the table is not exported to GCS.
+      BigQuerySourceUtils.configureBigQueryInput(configuration, bqDataset, bqTable);
+    } else {
+      gcsPath = BigQuerySQLEngineUtils.getGCSPath(bucket, runId, bqTable);
+      BigQuerySourceUtils.configureBigQueryInput(configuration, bqDataset, bqTable, gcsPath);
+    }
 
     return new BigQueryPullDataset(configuration,
                                    pullRequest.getDatasetName(),
@@ -136,7 +147,19 @@ public class BigQueryPullDataset extends BigQueryInputFormatProvider
   }
 
   @Override
+  @Nullable
   public String getGCSPath() {
     return gcsPath;
   }
+
+  @Override
+  public boolean isPending() {
+    return false;
+  }
+
+  @Override
+  @Nullable
+  public String getPendingSQLStatement() {
+    return null;
+  }
 }
@@ -28,6 +28,7 @@ import io.cdap.cdap.etl.api.engine.sql.request.SQLPushRequest;
 import io.cdap.plugin.gcp.bigquery.sink.BigQueryOutputFormatProvider;
 import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
 import io.cdap.plugin.gcp.bigquery.sink.Operation;
+import io.cdap.plugin.gcp.bigquery.sink.WriteMethod;
 import io.cdap.plugin.gcp.bigquery.sqlengine.transform.PushTransform;
 import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQuerySQLEngineUtils;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
@@ -36,6 +37,7 @@ import org.apache.hadoop.io.NullWritable;
 
 import java.io.IOException;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * SQL Push Dataset implementation for BigQuery backed datasets.
@@ -74,7 +76,8 @@ public class BigQueryPushDataset extends BigQueryOutputFormatProvider
                                                    BigQuery bigQuery,
                                                    DatasetId dataset,
                                                    String bucket,
-                                                   String runId) throws IOException {
+                                                   String runId,
+                                                   List<String> clusteringFields) throws IOException {
     // Get new Job ID for this push operation
     String jobId = BigQuerySQLEngineUtils.newIdentifier();
 
@@ -90,6 +93,9 @@ public class BigQueryPushDataset extends BigQueryOutputFormatProvider
     configuration.setBoolean(BigQueryConstants.CONFIG_DESTINATION_TABLE_EXISTS, true);
     configuration.setBoolean(BigQueryConstants.CONFIG_ALLOW_SCHEMA_RELAXATION, true);
     configuration.setBoolean(BigQueryConstants.CONFIG_ALLOW_SCHEMA_RELAXATION_ON_EMPTY_OUTPUT, true);
+    WriteMethod writeMethod = sqlEngineConfig.shouldUseStorageWriteAPI() ?
+      WriteMethod.STORAGE_WRITE_API : WriteMethod.LOAD_JOB;
+    configuration.setEnum(BigQueryConstants.CONFIG_WRITE_METHOD, writeMethod);
 
     // Configure output.
     String gcsPath = BigQuerySQLEngineUtils.getGCSPath(bucket, runId, table);
@@ -97,9 +103,20 @@ public class BigQueryPushDataset extends BigQueryOutputFormatProvider
       BigQuerySinkUtils.getBigQueryTableFieldsFromSchema(pushRequest.getDatasetSchema());
     BigQuerySinkUtils.configureOutput(configuration, dataset, table, gcsPath, fields);
 
-    // Create empty table to store uploaded records.
-    BigQuerySQLEngineUtils.createEmptyTable(sqlEngineConfig, bigQuery, dataset.getProject(), dataset.getDataset(),
-                                            table);
+    if (writeMethod == WriteMethod.STORAGE_WRITE_API || !clusteringFields.isEmpty()) {
+      // Write streams are created for the table schema, so the table needs all fields before records are streamed.
+      // Each partition streams its records into a pending stream, and all streams are committed at once when the
+      // push completes.
+      // Clustering fields must also be part of the schema the table is created with. Clustering the table on the keys
+      // it is later joined on reduces the data that joins scan and shuffle.
+      BigQuerySQLEngineUtils.createEmptyTable(sqlEngineConfig, bigQuery, dataset.getProject(), dataset.getDataset(),
+                                              table, BigQuerySinkUtils.convertCdapSchemaToBigQuerySchema(
+                                                pushRequest.getDatasetSchema()), clusteringFields);
+    } else {
+      // Create empty table to store uploaded records.
+      BigQuerySQLEngineUtils.createEmptyTable(sqlEngineConfig, bigQuery, dataset.getProject(), dataset.getDataset(),
+                                              table);
+    }
 
     //Build new Instance
     return new BigQueryPushDataset(pushRequest.getDatasetName(),
@@ -161,4 +178,15 @@ public class BigQueryPushDataset extends BigQueryOutputFormatProvider
   public String getJobId() {
     return jobId;
   }
+
+  @Override
+  public boolean isPending() {
+    return false;
+  }
+
+  @Override
+  @Nullable
+  public String getPendingSQLStatement() {
+    return null;
+  }
 }
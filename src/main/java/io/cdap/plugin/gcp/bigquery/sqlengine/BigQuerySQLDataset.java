@@ -58,4 +58,19 @@ public interface BigQuerySQLDataset extends SQLDataset {
    */
   @Nullable
   String getGCSPath();
+
+  /**
+   * Checks if the records of this dataset are not stored in BigQuery yet, without building its SQL statement.
+   * @return whether operations that consume this dataset must select from {@link #getPendingSQLStatement()}.
+   */
+  boolean isPending();
+
+  /**
+   * Gets the SQL statement that produces the records of this dataset, if they are not stored in BigQuery yet.
+   * Operations that consume this dataset must select from this statement instead of the table. The statement is
+   * built on each call, so {@link #isPending()} should be used to only check if there is one.
+   * @return SQL statement, or null if the records are stored in the table returned by {@link #getBigQueryTable()}.
+   */
+  @Nullable
+  String getPendingSQLStatement();
 }
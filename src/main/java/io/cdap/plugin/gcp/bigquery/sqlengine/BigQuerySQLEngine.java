@@ -57,6 +57,7 @@ import io.cdap.cdap.etl.api.engine.sql.request.SQLWriteRequest;
 import io.cdap.cdap.etl.api.engine.sql.request.SQLWriteResult;
 import io.cdap.cdap.etl.api.join.JoinCondition;
 import io.cdap.cdap.etl.api.join.JoinDefinition;
+import io.cdap.cdap.etl.api.join.JoinKey;
 import io.cdap.cdap.etl.api.join.JoinStage;
 import io.cdap.cdap.etl.api.relational.Capability;
 import io.cdap.cdap.etl.api.relational.Engine;
@@ -68,8 +69,11 @@ import io.cdap.plugin.gcp.bigquery.relational.BigQueryRelation;
 import io.cdap.plugin.gcp.bigquery.relational.SQLExpressionFactory;
 import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
 import io.cdap.plugin.gcp.bigquery.source.BigQuerySourceUtils;
+import io.cdap.plugin.gcp.bigquery.source.ReadMethod;
 import io.cdap.plugin.gcp.bigquery.sqlengine.builder.BigQueryJoinSQLBuilder;
 import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQuerySQLEngineUtils;
+import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQueryTableStatistics;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.CmekUtils;
 import io.cdap.plugin.gcp.common.GCPUtils;
@@ -82,12 +86,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -119,6 +125,7 @@ public class BigQuerySQLEngine
   private String bucket;
   private String runId;
   private Map<String, BigQuerySQLDataset> datasets;
+  private Map<String, List<String>> stageToJoinKeysMap;
   private Metrics metrics;
 
   @SuppressWarnings("unused")
@@ -146,6 +153,7 @@ public class BigQuerySQLEngine
 
     runId = BigQuerySQLEngineUtils.newIdentifier();
     datasets = new HashMap<>();
+    stageToJoinKeysMap = new HashMap<>();
 
     String serviceAccount = sqlEngineConfig.getServiceAccount();
     Credentials credentials = serviceAccount == null ?
@@ -174,6 +182,11 @@ public class BigQuerySQLEngine
     // If the bucket is created for this run, mar it for deletion after executon is completed
     BigQuerySinkUtils.configureBucket(configuration, bucket, runId, sqlEngineConfig.getBucket() == null);
 
+    // Configure the format of the files staged when records are pushed
+    configuration.setEnum(BigQueryConstants.CONFIG_STAGING_FORMAT, sqlEngineConfig.getStagingFormat());
+    configuration.setInt(BigQueryConstants.CONFIG_PARQUET_ROW_GROUP_SIZE,
+                         sqlEngineConfig.getParquetRowGroupSizeBytes());
+
     // Configure credentials for the source
     BigQuerySourceUtils.configureServiceAccount(configuration, sqlEngineConfig.connection);
 
@@ -211,7 +224,8 @@ public class BigQuerySQLEngine
                                         bigQuery,
                                         DatasetId.of(datasetProject, dataset),
                                         bucket,
-                                        runId);
+                                        runId,
+                                        getClusteringFields(sqlPushRequest));
 
       LOG.info("Executing Push operation for dataset {} stored in table {}",
                sqlPushRequest.getDatasetName(),
@@ -232,10 +246,13 @@ public class BigQuerySQLEngine
                                                  sqlPullRequest.getDatasetName()));
     }
 
-    String table = datasets.get(sqlPullRequest.getDatasetName()).getBigQueryTable();
+    String table = getStoredDataset(sqlPullRequest.getDatasetName()).getBigQueryTable();
 
     LOG.info("Executing Pull operation for dataset {} stored in table {}", sqlPullRequest.getDatasetName(), table);
 
+    // When the Spark dataset producer is not used, Storage Read API streams are read through the input format.
+    ReadMethod readMethod = sqlEngineConfig.shouldUseStorageReadAPI() ? ReadMethod.STORAGE_READ_API : ReadMethod.EXPORT;
+
     try {
       return BigQueryPullDataset.getInstance(sqlPullRequest,
                                              configuration,
@@ -243,7 +260,8 @@ public class BigQuerySQLEngine
                                              DatasetId.of(datasetProject, dataset),
                                              table,
                                              bucket,
-                                             runId);
+                                             runId,
+                                             readMethod);
     } catch (IOException ioe) {
       throw new SQLEngineException(ioe);
     }
@@ -260,9 +278,49 @@ public class BigQuerySQLEngine
     LOG.info("Validating join for stage '{}' can be executed on BigQuery: {}",
              sqlJoinDefinition.getDatasetName(),
              canJoin);
+
+    // Join inputs are pushed after the join is validated, so the keys are known when their tables are created.
+    if (canJoin) {
+      addJoinKeys(sqlJoinDefinition.getJoinDefinition(), stageToJoinKeysMap);
+    }
     return canJoin;
   }
 
+  /**
+   * Records the key fields that each stage is joined on, for key equality joins.
+   * <p>
+   * When a stage is joined more than once, the keys of the first join are kept.
+   *
+   * @param joinDefinition     join definition
+   * @param stageToJoinKeysMap map of stage names to the key fields they are joined on
+   */
+  @VisibleForTesting
+  protected static void addJoinKeys(JoinDefinition joinDefinition, Map<String, List<String>> stageToJoinKeysMap) {
+    if (joinDefinition.getCondition().getOp() != JoinCondition.Op.KEY_EQUALITY) {
+      return;
+    }
+
+    for (JoinKey joinKey : ((JoinCondition.OnKeys) joinDefinition.getCondition()).getKeys()) {
+      stageToJoinKeysMap.putIfAbsent(joinKey.getStageName(), joinKey.getFields());
+    }
+  }
+
+  /**
+   * Gets the fields that the table of a pushed dataset is clustered on, which are the key fields the dataset is
+   * joined on.
+   *
+   * @param sqlPushRequest push request
+   * @return fields to cluster the table on, or an empty list if the dataset is not joined on keys
+   */
+  private List<String> getClusteringFields(SQLPushRequest sqlPushRequest) {
+    List<String> joinKeys = stageToJoinKeysMap.get(sqlPushRequest.getDatasetName());
+    if (joinKeys == null) {
+      return Collections.emptyList();
+    }
+
+    return BigQuerySQLEngineUtils.getClusteringFields(sqlPushRequest.getDatasetSchema(), joinKeys);
+  }
+
   @VisibleForTesting
   protected static boolean isValidJoinDefinition(SQLJoinDefinition sqlJoinDefinition) {
     List<String> validationProblems = new ArrayList<>();
@@ -302,17 +360,31 @@ public class BigQuerySQLEngine
 
   @Override
   public SQLDataset join(SQLJoinRequest sqlJoinRequest) throws SQLEngineException {
-    // Get SQL builder for this Join operation
-    BigQueryJoinSQLBuilder builder = new BigQueryJoinSQLBuilder(
-      sqlJoinRequest.getJoinDefinition(),
-      DatasetId.of(datasetProject, dataset),
-      getStageNameToBQTableNameMap());
+    JoinDefinition joinDefinition = sqlJoinRequest.getJoinDefinition();
+
+    // Collect the datasets for the stages in this join
+    Map<String, BigQuerySQLDataset> inputDatasets = new HashMap<>();
+    for (JoinStage stage : joinDefinition.getStages()) {
+      BigQuerySQLDataset inputDataset = datasets.get(stage.getStageName());
+      if (inputDataset != null) {
+        inputDatasets.put(stage.getStageName(), inputDataset);
+      }
+    }
+    addConsumer(inputDatasets.values());
 
-    // Execute Select job with the supplied query.
-    return executeSelect(sqlJoinRequest.getDatasetName(),
-                         sqlJoinRequest.getJoinDefinition().getOutputSchema(),
-                         BigQueryJobType.JOIN,
-                         builder.getQuery());
+    // Get SQL builder for this Join operation. The query is built when the join is executed or consumed, so input
+    // datasets that are not stored in tables by then are joined as nested queries.
+    Supplier<String> querySupplier = () -> new BigQueryJoinSQLBuilder(
+      joinDefinition,
+      DatasetId.of(datasetProject, dataset),
+      getStageNameToBQTableNameMap(inputDatasets),
+      getStageNameToPendingStatementMap(inputDatasets),
+      getStageNameToStatisticsMap(inputDatasets)).getQuery();
+
+    return createSelectDataset(sqlJoinRequest.getDatasetName(),
+                               joinDefinition.getOutputSchema(),
+                               BigQueryJobType.JOIN,
+                               querySupplier);
   }
 
   @Nullable
@@ -323,7 +395,7 @@ public class BigQuerySQLEngine
       return null;
     }
 
-    String table = datasets.get(pullRequest.getDatasetName()).getBigQueryTable();
+    String table = getStoredDataset(pullRequest.getDatasetName()).getBigQueryTable();
 
     return new BigQuerySparkDatasetProducer(sqlEngineConfig,
                                             datasetProject,
@@ -353,7 +425,7 @@ public class BigQuerySQLEngine
     }
 
     // Get source table information (from the stage we are attempting to write into the sink)
-    String sourceTable = datasets.get(writeRequest.getDatasetName()).getBigQueryTable();
+    String sourceTable = getStoredDataset(writeRequest.getDatasetName()).getBigQueryTable();
     TableId sourceTableId = TableId.of(datasetProject, dataset, sourceTable);
 
     // Build Big Query Write instance and execute write operation.
@@ -500,29 +572,29 @@ public class BigQuerySQLEngine
 
     // Set input datasets for relation.
     relation.setInputDatasets(bqDatasets);
+    addConsumer(bqDatasets.values());
 
-    // Execute select with the generated expression.
-    return executeSelect(context.getOutputDatasetName(),
-                         context.getOutputSchema(),
-                         BigQueryJobType.TRANSFORM,
-                         relation.getSQLStatement());
+    // Select using the generated expression, which is built when the transform is executed or consumed.
+    return createSelectDataset(context.getOutputDatasetName(),
+                               context.getOutputSchema(),
+                               BigQueryJobType.TRANSFORM,
+                               relation::getSQLStatement);
   }
 
-  private BigQuerySelectDataset executeSelect(String datasetName,
-                                              Schema outputSchema,
-                                              BigQueryJobType jobType,
-                                              String query) {
-    LOG.info("Executing {} operation for dataset {}", jobType.getType(), datasetName);
-
+  /**
+   * Creates a dataset for a select operation. The operation is not executed until its results are read, written or
+   * consumed by more than one operation. Until then, operations that consume it select from its query.
+   */
+  private BigQuerySelectDataset createSelectDataset(String datasetName,
+                                                    Schema outputSchema,
+                                                    BigQueryJobType jobType,
+                                                    Supplier<String> querySupplier) {
     // Get new Job ID for this push operation
     String jobId = BigQuerySQLEngineUtils.newIdentifier();
 
     // Build new table name for this dataset
     String table = BigQuerySQLEngineUtils.getNewTableName(runId);
 
-    // Create empty table to store query results.
-    BigQuerySQLEngineUtils.createEmptyTable(sqlEngineConfig, bigQuery, project, dataset, table);
-
     BigQuerySelectDataset selectDataset = BigQuerySelectDataset.getInstance(
       datasetName,
       outputSchema,
@@ -533,23 +605,53 @@ public class BigQuerySQLEngine
       table,
       jobId,
       jobType,
-      query,
+      querySupplier,
       metrics
-    ).execute();
+    );
 
     datasets.put(datasetName, selectDataset);
 
-    LOG.info("Executed {} operation for dataset {}", jobType.getType(), datasetName);
+    LOG.info("Created {} operation for dataset {} in table {}", jobType.getType(), datasetName, table);
     return selectDataset;
   }
 
+  /**
+   * Registers an operation that consumes the supplied datasets. Select datasets consumed by more than one operation
+   * are executed, so their query only runs once.
+   *
+   * @param inputDatasets datasets consumed by the operation
+   */
+  private void addConsumer(Collection<BigQuerySQLDataset> inputDatasets) {
+    for (BigQuerySQLDataset inputDataset : inputDatasets) {
+      if (inputDataset instanceof BigQuerySelectDataset) {
+        ((BigQuerySelectDataset) inputDataset).addConsumer();
+      }
+    }
+  }
+
+  /**
+   * Gets a dataset whose records are read from its table, executing the dataset operation if it was not executed yet.
+   *
+   * @param datasetName the name of the dataset
+   * @return the dataset, stored in its BigQuery table
+   */
+  private BigQuerySQLDataset getStoredDataset(String datasetName) {
+    BigQuerySQLDataset bqDataset = datasets.get(datasetName);
+    if (bqDataset instanceof BigQuerySelectDataset) {
+      ((BigQuerySelectDataset) bqDataset).execute();
+    }
+    return bqDataset;
+  }
+
   /**
    * Get a map that contains stage names as keys and BigQuery tables as Values.
    *
-   * @return map representing all stages currently pushed to BQ.
+   * @param bqDatasets the datasets to include in the map
+   * @return map representing the supplied stages pushed to BQ.
    */
-  protected Map<String, String> getStageNameToBQTableNameMap() {
-    return datasets.entrySet()
+  @VisibleForTesting
+  protected static Map<String, String> getStageNameToBQTableNameMap(Map<String, BigQuerySQLDataset> bqDatasets) {
+    return bqDatasets.entrySet()
       .stream()
       .collect(Collectors.toMap(
         Map.Entry::getKey,
@@ -557,6 +659,50 @@ public class BigQuerySQLEngine
       ));
   }
 
+  /**
+   * Get a map that contains stage names as keys and the SQL statements for datasets that are not stored in BigQuery
+   * tables yet as values.
+   *
+   * @param bqDatasets the datasets to include in the map
+   * @return map representing the supplied stages that are not stored in BQ tables.
+   */
+  @VisibleForTesting
+  protected static Map<String, String> getStageNameToPendingStatementMap(Map<String, BigQuerySQLDataset> bqDatasets) {
+    Map<String, String> pendingStatements = new HashMap<>();
+    for (Map.Entry<String, BigQuerySQLDataset> entry : bqDatasets.entrySet()) {
+      if (entry.getValue().isPending()) {
+        pendingStatements.put(entry.getKey(), entry.getValue().getPendingSQLStatement());
+      }
+    }
+    return pendingStatements;
+  }
+
+  /**
+   * Get a map that contains stage names as keys and the statistics of the BigQuery tables as values.
+   * <p>
+   * Datasets that are not stored in BigQuery tables yet are not included, as they would need to be executed first.
+   *
+   * @param bqDatasets the datasets to include in the map
+   * @return map representing the statistics of the supplied stages stored in BQ tables.
+   */
+  protected Map<String, BigQueryTableStatistics> getStageNameToStatisticsMap(
+    Map<String, BigQuerySQLDataset> bqDatasets) {
+    Map<String, BigQueryTableStatistics> statistics = new HashMap<>();
+    for (Map.Entry<String, BigQuerySQLDataset> entry : bqDatasets.entrySet()) {
+      BigQuerySQLDataset bqDataset = entry.getValue();
+      if (bqDataset.isPending()) {
+        continue;
+      }
+      BigQueryTableStatistics tableStatistics = BigQuerySQLEngineUtils.getTableStatistics(
+        bigQuery, DatasetId.of(bqDataset.getBigQueryProject(), bqDataset.getBigQueryDataset()),
+        bqDataset.getBigQueryTable());
+      if (tableStatistics != null) {
+        statistics.put(entry.getKey(), tableStatistics);
+      }
+    }
+    return statistics;
+  }
+
   /**
    * Stops the running job for the supplied dataset
    *
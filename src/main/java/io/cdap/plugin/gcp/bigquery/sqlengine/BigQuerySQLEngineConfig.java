@@ -28,9 +28,12 @@ import io.cdap.cdap.etl.api.engine.sql.SQLEngineException;
 import io.cdap.plugin.common.ConfigUtil;
 import io.cdap.plugin.gcp.bigquery.common.BigQueryBaseConfig;
 import io.cdap.plugin.gcp.bigquery.connector.BigQueryConnectorConfig;
+import io.cdap.plugin.gcp.bigquery.sink.ParquetOutputFormat;
+import io.cdap.plugin.gcp.bigquery.sink.StagingFormat;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.CmekUtils;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
@@ -50,6 +53,9 @@ public class BigQuerySQLEngineConfig extends BigQueryBaseConfig {
     public static final String NAME_INCLUDED_STAGES = "includedStages";
     public static final String NAME_EXCLUDED_STAGES = "excludedStages";
     public static final String NAME_USE_STORAGE_READ_API = "useStorageReadAPI";
+    public static final String NAME_USE_STORAGE_WRITE_API = "useStorageWriteAPI";
+    public static final String NAME_STAGING_FORMAT = "stagingFormat";
+    public static final String NAME_PARQUET_ROW_GROUP_SIZE = "parquetRowGroupSize";
 
     // Job priority options
     public static final String PRIORITY_BATCH = "batch";
@@ -96,6 +102,30 @@ public class BigQuerySQLEngineConfig extends BigQueryBaseConfig {
       "This requires Scala version 2.12 to be installed in the execution environment.")
     private Boolean useStorageReadAPI;
 
+    @Name(NAME_USE_STORAGE_WRITE_API)
+    @Macro
+    @Nullable
+    @Description("Select this option to use the BigQuery Storage Write API when pushing records into BigQuery " +
+      "during pipeline execution. Records are streamed into BigQuery from each partition and committed once all " +
+      "partitions have been written, instead of being staged in GCS and loaded with a load job. The usage of this " +
+      "API incurs additional costs.")
+    private Boolean useStorageWriteAPI;
+
+    @Name(NAME_STAGING_FORMAT)
+    @Macro
+    @Nullable
+    @Description("Format of the files staged in GCS when records are pushed into BigQuery. 'AVRO' writes Avro files " +
+      "row by row. 'PARQUET' writes columnar Parquet files, which are usually smaller for wide tables. Schemas with " +
+      "datetime fields are always staged as newline delimited json. Defaults to 'AVRO'.")
+    private String stagingFormat;
+
+    @Name(NAME_PARQUET_ROW_GROUP_SIZE)
+    @Macro
+    @Nullable
+    @Description("Size in megabytes of the row groups in the Parquet staging files. Only used when the staging " +
+      "format is 'PARQUET'. Defaults to 32.")
+    private Integer parquetRowGroupSize;
+
     @Name(NAME_INCLUDED_STAGES)
     @Macro
     @Nullable
@@ -155,6 +185,20 @@ public class BigQuerySQLEngineConfig extends BigQueryBaseConfig {
         return useStorageReadAPI != null ? useStorageReadAPI : false;
     }
 
+    public Boolean shouldUseStorageWriteAPI() {
+        return useStorageWriteAPI != null ? useStorageWriteAPI : false;
+    }
+
+    public StagingFormat getStagingFormat() {
+        return Strings.isNullOrEmpty(stagingFormat) ? StagingFormat.AVRO
+          : StagingFormat.valueOf(stagingFormat.toUpperCase());
+    }
+
+    public int getParquetRowGroupSizeBytes() {
+        return parquetRowGroupSize == null ? ParquetOutputFormat.DEFAULT_ROW_GROUP_SIZE
+          : parquetRowGroupSize * 1024 * 1024;
+    }
+
     public QueryJobConfiguration.Priority getJobPriority() {
         String priority = jobPriority != null ? jobPriority : "batch";
         return QueryJobConfiguration.Priority.valueOf(priority.toUpperCase());
@@ -170,6 +214,14 @@ public class BigQuerySQLEngineConfig extends BigQueryBaseConfig {
                 && !PRIORITY_INTERACTIVE.equalsIgnoreCase(jobPriority)) {
             throw new SQLEngineException("Property 'jobPriority' must be 'batch' or 'interactive'");
         }
+        if (stagingFormat != null && !containsMacro(NAME_STAGING_FORMAT)
+                && Arrays.stream(StagingFormat.values()).noneMatch(f -> f.name().equalsIgnoreCase(stagingFormat))) {
+            throw new SQLEngineException("Property 'stagingFormat' must be 'AVRO' or 'PARQUET'");
+        }
+        if (parquetRowGroupSize != null && !containsMacro(NAME_PARQUET_ROW_GROUP_SIZE)
+                && (parquetRowGroupSize < 1 || parquetRowGroupSize > 1024)) {
+            throw new SQLEngineException("Property 'parquetRowGroupSize' must be between 1 and 1024");
+        }
     }
 
     public void validate(FailureCollector failureCollector) {
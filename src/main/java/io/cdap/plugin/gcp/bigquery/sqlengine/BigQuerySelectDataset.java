@@ -16,16 +16,23 @@ import io.cdap.cdap.etl.api.engine.sql.SQLEngineException;
 import io.cdap.cdap.etl.api.engine.sql.dataset.SQLDataset;
 import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
 import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQuerySQLEngineUtils;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobPoller;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
 
 /**
  * SQL Dataset that represents the result of a "Select" operation, such as join, that is executed in BigQuery.
+ * <p>
+ * The operation is not executed when the dataset is created. Until it is executed, operations that consume this
+ * dataset select from its SQL statement as a nested query, so that chained operations run as a single query job.
+ * The results are only stored in a table once they are read, written or consumed by more than one operation.
  */
 public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
 
@@ -40,9 +47,11 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
   private final String bqTable;
   private final String jobId;
   private final BigQueryJobType operation;
-  private final String selectQuery;
+  private final Supplier<String> selectQuerySupplier;
   private final Metrics metrics;
   private Long numRows;
+  private boolean executed;
+  private int numConsumers;
 
   public static BigQuerySelectDataset getInstance(String datasetName,
                                                   Schema outputSchema,
@@ -53,7 +62,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
                                                   String bqTable,
                                                   String jobId,
                                                   BigQueryJobType jobType,
-                                                  String selectQuery,
+                                                  Supplier<String> selectQuerySupplier,
                                                   Metrics metrics) {
 
     return new BigQuerySelectDataset(datasetName,
@@ -65,7 +74,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
                                      bqTable,
                                      jobId,
                                      jobType,
-                                     selectQuery,
+                                     selectQuerySupplier,
                                      metrics);
   }
 
@@ -78,7 +87,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
                                 String bqTable,
                                 String jobId,
                                 BigQueryJobType operation,
-                                String selectQuery,
+                                Supplier<String> selectQuerySupplier,
                                 Metrics metrics) {
     this.datasetName = datasetName;
     this.outputSchema = outputSchema;
@@ -89,13 +98,42 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
     this.bqTable = bqTable;
     this.jobId = jobId;
     this.operation = operation;
-    this.selectQuery = selectQuery;
+    this.selectQuerySupplier = selectQuerySupplier;
     this.metrics = metrics;
   }
 
+  /**
+   * Registers an operation that selects from this dataset. Once a second operation does, the dataset is executed so
+   * that both read the stored results instead of running the same statement twice.
+   */
+  public void addConsumer() {
+    numConsumers++;
+    if (numConsumers > 1) {
+      execute();
+    }
+  }
+
+  /**
+   * Executes the operation, storing its results in the table for this dataset. This is a no-op if the operation was
+   * already executed.
+   *
+   * @return this dataset
+   */
   public BigQuerySelectDataset execute() {
+    if (executed) {
+      return this;
+    }
+
+    LOG.info("Executing {} operation for dataset {}", operation.getType(), datasetName);
+
+    // The statement is built now, as the datasets it selects from may have been executed since this one was created.
+    String selectQuery = selectQuerySupplier.get();
     TableId destinationTable = TableId.of(bqDataset.getProject(), bqDataset.getDataset(), bqTable);
 
+    // Create empty table to store query results.
+    BigQuerySQLEngineUtils.createEmptyTable(sqlEngineConfig, bigQuery, bqDataset.getProject(), bqDataset.getDataset(),
+                                            bqTable);
+
     // Get location for target dataset. This way, the job will run in the same location as the dataset
     Dataset dataset = bigQuery.getDataset(bqDataset);
     String location = dataset.getLocation();
@@ -123,9 +161,11 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
 
     // Wait for the query to complete.
     try {
-      queryJob = queryJob.waitFor();
+      queryJob = BigQueryJobPoller.await(BigQueryJobPoller.getInstance().track(queryJob));
     } catch (InterruptedException ie) {
       throw new SQLEngineException("Interrupted exception when executing Join operation", ie);
+    } catch (IOException ioe) {
+      throw new SQLEngineException("Failed to get the status of BigQuery job: " + jobId, ioe);
     }
 
     // Check for errors
@@ -140,6 +180,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
 
     LOG.info("Created BigQuery table `{}` using Job: {}", bqTable, jobId);
     BigQuerySQLEngineUtils.logJobMetrics(queryJob, metrics);
+    executed = true;
     return this;
   }
 
@@ -157,6 +198,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
   public long getNumRows() {
     // Get the number of rows from BQ if not known at this time.
     if (numRows == null) {
+      execute();
       numRows = BigQuerySQLEngineUtils.getNumRows(bigQuery, bqDataset, bqTable);
     }
 
@@ -189,6 +231,17 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
     return jobId;
   }
 
+  @Override
+  public boolean isPending() {
+    return !executed;
+  }
+
+  @Override
+  @Nullable
+  public String getPendingSQLStatement() {
+    return executed ? null : selectQuerySupplier.get();
+  }
+
   protected void updateTableSchema(TableId tableId, Schema schema) {
     // Get BigQuery schema for this table
     com.google.cloud.bigquery.Schema bqSchema = BigQuerySinkUtils.convertCdapSchemaToBigQuerySchema(schema);
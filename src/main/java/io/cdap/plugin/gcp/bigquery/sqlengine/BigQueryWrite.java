@@ -46,9 +46,11 @@ import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
 import io.cdap.plugin.gcp.bigquery.sink.Operation;
 import io.cdap.plugin.gcp.bigquery.sink.PartitionType;
 import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQuerySQLEngineUtils;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobPoller;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -133,7 +135,7 @@ public class BigQueryWrite {
 
   private SQLWriteResult writeInternal(SQLWriteRequest writeRequest,
                                        AtomicReference<TableId> newDestinationTable)
-    throws BigQueryException, InterruptedException {
+    throws BigQueryException, IOException, InterruptedException {
     // Check if this output matches the expected engine.
     String datasetName = writeRequest.getDatasetName();
     if (!BigQuerySQLEngine.class.getName().equals(writeRequest.getOutput().getSqlEngineClassName())) {
@@ -229,7 +231,7 @@ public class BigQueryWrite {
     TableResult result = null;
 
     // Wait for the query to complete.
-    queryJob = queryJob.waitFor();
+    queryJob = BigQueryJobPoller.await(BigQueryJobPoller.getInstance().track(queryJob));
     JobStatistics.QueryStatistics queryJobStats = queryJob.getStatistics();
 
     // Check for errors
@@ -24,11 +24,17 @@ import io.cdap.cdap.etl.api.join.JoinDefinition;
 import io.cdap.cdap.etl.api.join.JoinField;
 import io.cdap.cdap.etl.api.join.JoinKey;
 import io.cdap.cdap.etl.api.join.JoinStage;
+import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQueryTableStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -37,6 +43,7 @@ import java.util.stream.Collectors;
  * Many methods in this class have proteced visibility for the purposes of testing.
  */
 public class BigQueryJoinSQLBuilder extends BigQueryBaseSQLBuilder {
+  private static final Logger LOG = LoggerFactory.getLogger(BigQueryJoinSQLBuilder.class);
 
   private final JoinDefinition joinDefinition;
   private final StringBuilder builder;
@@ -44,6 +51,7 @@ public class BigQueryJoinSQLBuilder extends BigQueryBaseSQLBuilder {
   private final Map<String, String> stageToBQTableNameMap;
   private final Map<String, String> stageToFullTableNameMap;
   private final Map<String, String> stageToTableAliasMap;
+  private final Map<String, BigQueryTableStatistics> stageToStatisticsMap;
 
   public BigQueryJoinSQLBuilder(JoinDefinition joinDefinition,
                                 DatasetId dataset,
@@ -56,6 +64,43 @@ public class BigQueryJoinSQLBuilder extends BigQueryBaseSQLBuilder {
          new StringBuilder());
   }
 
+  /**
+   * Builds joins where some of the stages are not stored in tables yet. Those stages are joined as nested queries.
+   *
+   * @param stageToBQTableNameMap      tables that store the records of the stages
+   * @param stageToPendingStatementMap SQL statements that produce the records of the stages not stored in tables
+   */
+  public BigQueryJoinSQLBuilder(JoinDefinition joinDefinition,
+                                DatasetId dataset,
+                                Map<String, String> stageToBQTableNameMap,
+                                Map<String, String> stageToPendingStatementMap) {
+    this(joinDefinition, dataset, stageToBQTableNameMap, stageToPendingStatementMap, Collections.emptyMap());
+  }
+
+  /**
+   * Builds joins where some of the stages are not stored in tables yet, and inner joins are ordered based on the
+   * statistics of the stage tables.
+   *
+   * @param stageToBQTableNameMap      tables that store the records of the stages
+   * @param stageToPendingStatementMap SQL statements that produce the records of the stages not stored in tables
+   * @param stageToStatisticsMap       statistics of the tables that store the records of the stages
+   */
+  public BigQueryJoinSQLBuilder(JoinDefinition joinDefinition,
+                                DatasetId dataset,
+                                Map<String, String> stageToBQTableNameMap,
+                                Map<String, String> stageToPendingStatementMap,
+                                Map<String, BigQueryTableStatistics> stageToStatisticsMap) {
+    this(joinDefinition,
+         dataset,
+         stageToBQTableNameMap,
+         stageToPendingStatementMap.entrySet().stream()
+           .collect(Collectors.toMap(Map.Entry::getKey, e -> OPEN_GROUP + e.getValue() + CLOSE_GROUP,
+                                     (a, b) -> a, HashMap::new)),
+         new HashMap<>(),
+         stageToStatisticsMap,
+         new StringBuilder());
+  }
+
   @VisibleForTesting
   protected BigQueryJoinSQLBuilder(JoinDefinition joinDefinition,
                                    DatasetId dataset,
@@ -63,12 +108,30 @@ public class BigQueryJoinSQLBuilder extends BigQueryBaseSQLBuilder {
                                    Map<String, String> stageToFullTableNameMap,
                                    Map<String, String> stageToTableAliasMap,
                                    StringBuilder builder) {
+    this(joinDefinition,
+         dataset,
+         stageToBQTableNameMap,
+         stageToFullTableNameMap,
+         stageToTableAliasMap,
+         Collections.emptyMap(),
+         builder);
+  }
+
+  @VisibleForTesting
+  protected BigQueryJoinSQLBuilder(JoinDefinition joinDefinition,
+                                   DatasetId dataset,
+                                   Map<String, String> stageToBQTableNameMap,
+                                   Map<String, String> stageToFullTableNameMap,
+                                   Map<String, String> stageToTableAliasMap,
+                                   Map<String, BigQueryTableStatistics> stageToStatisticsMap,
+                                   StringBuilder builder) {
     this.joinDefinition = joinDefinition;
     this.builder = builder;
     this.dataset = dataset;
     this.stageToBQTableNameMap = stageToBQTableNameMap;
     this.stageToFullTableNameMap = stageToFullTableNameMap;
     this.stageToTableAliasMap = stageToTableAliasMap;
+    this.stageToStatisticsMap = stageToStatisticsMap;
   }
 
   @Override
@@ -134,7 +197,7 @@ public class BigQueryJoinSQLBuilder extends BigQueryBaseSQLBuilder {
   }
 
   private void appendFieldEqualityClause() {
-    List<JoinStage> stages = joinDefinition.getStages();
+    List<JoinStage> stages = getJoinOrder();
 
     Map<String, JoinKey> stageNameToJoinKeyMap = new HashMap<>();
     for (JoinKey joinKey : ((JoinCondition.OnKeys) joinDefinition.getCondition()).getKeys()) {
@@ -166,8 +229,9 @@ public class BigQueryJoinSQLBuilder extends BigQueryBaseSQLBuilder {
   private void appendOnExpressionClause() {
     JoinCondition.OnExpression onExpression = (JoinCondition.OnExpression) joinDefinition.getCondition();
 
-    JoinStage left = joinDefinition.getStages().get(0);
-    JoinStage right = joinDefinition.getStages().get(1);
+    List<JoinStage> stages = getJoinOrder();
+    JoinStage left = stages.get(0);
+    JoinStage right = stages.get(1);
 
     // Append Join Statement for these 2 stages
     // ...<left_table> <join_type> JOIN <left_table> ON ...
@@ -177,6 +241,50 @@ public class BigQueryJoinSQLBuilder extends BigQueryBaseSQLBuilder {
     builder.append(onExpression.getExpression());
   }
 
+  /**
+   * Gets the order in which the stages are joined.
+   * <p>
+   * Outer joins are kept in the order of the join definition. For inner joins, the largest stage is joined first, so
+   * that it is the side of the joins that is not moved, and the other stages follow smallest first, so that BigQuery
+   * can broadcast them and intermediate results stay small. Stages without statistics, such as stages that are joined
+   * as nested queries, are joined last in their original order.
+   *
+   * @return stages in the order they are joined
+   */
+  @VisibleForTesting
+  protected List<JoinStage> getJoinOrder() {
+    List<JoinStage> stages = joinDefinition.getStages();
+    if (!stages.stream().allMatch(JoinStage::isRequired)) {
+      return stages;
+    }
+
+    List<JoinStage> ordered = new ArrayList<>();
+    List<JoinStage> withoutStatistics = new ArrayList<>();
+    for (JoinStage stage : stages) {
+      if (stageToStatisticsMap.containsKey(stage.getStageName())) {
+        ordered.add(stage);
+      } else {
+        withoutStatistics.add(stage);
+      }
+    }
+    if (ordered.isEmpty()) {
+      return stages;
+    }
+
+    // Sort smallest first, then move the largest stage to the front.
+    ordered.sort(Comparator.comparing(stage -> stageToStatisticsMap.get(stage.getStageName())));
+    ordered.add(0, ordered.remove(ordered.size() - 1));
+    ordered.addAll(withoutStatistics);
+
+    if (!ordered.equals(stages)) {
+      LOG.info("Joining stages in order: {}", ordered.stream()
+        .map(stage -> String.format("%s (%s)", stage.getStageName(),
+                                    Objects.toString(stageToStatisticsMap.get(stage.getStageName()), "no statistics")))
+        .collect(Collectors.joining(", ")));
+    }
+    return ordered;
+  }
+
   /**
    * Appends join on key operation
    *
@@ -17,15 +17,16 @@
 package io.cdap.plugin.gcp.bigquery.sqlengine.util;
 
 import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Clustering;
 import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.bigquery.Job;
 import com.google.cloud.bigquery.JobStatistics;
 import com.google.cloud.bigquery.QueryStage;
 import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.Table;
-import com.google.cloud.bigquery.TableDefinition;
 import com.google.cloud.bigquery.TableId;
 import com.google.cloud.bigquery.TableInfo;
+import com.google.common.collect.ImmutableSet;
 import com.google.gson.Gson;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.metrics.Metrics;
@@ -36,6 +37,8 @@ import io.cdap.cdap.etl.api.join.JoinStage;
 import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
 import io.cdap.plugin.gcp.bigquery.sqlengine.BigQueryJobType;
 import io.cdap.plugin.gcp.bigquery.sqlengine.BigQuerySQLEngineConfig;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobPoller;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +47,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -62,6 +66,12 @@ public class BigQuerySQLEngineUtils {
   public static final String METRIC_BYTES_PROCESSED = "bytes.processed";
   public static final String METRIC_BYTES_BILLED = "bytes.billed";
   public static final String METRIC_SLOT_MS = "slot.ms";
+  public static final String METRIC_JOB_LATENCY_AVG_MS = "job.latency.avg.ms";
+  public static final String METRIC_JOB_LATENCY_MAX_MS = "job.latency.max.ms";
+  public static final int MAX_CLUSTERING_FIELDS = 4;
+  // Unlike the sink, bytes are left out as BigQuery can't cluster tables on them.
+  private static final Set<Schema.Type> CLUSTERING_TYPES =
+    ImmutableSet.of(Schema.Type.INT, Schema.Type.LONG, Schema.Type.STRING, Schema.Type.BOOLEAN);
 
   private BigQuerySQLEngineUtils() {
     // no-op
@@ -122,6 +132,27 @@ public class BigQuerySQLEngineUtils {
     return numRows;
   }
 
+  /**
+   * Get the number of rows and bytes stored in a BQ table.
+   *
+   * @param bigQuery BigQuery client
+   * @param dataset  Dataset Id
+   * @param table    Table Name
+   * @return statistics for this table, or null if the table could not be found or has no statistics.
+   */
+  @Nullable
+  public static BigQueryTableStatistics getTableStatistics(BigQuery bigQuery, DatasetId dataset, String table) {
+    TableId tableId = TableId.of(dataset.getProject(), dataset.getDataset(), table);
+    Table bgTable = bigQuery.getTable(tableId);
+
+    if (bgTable == null || bgTable.getNumRows() == null || bgTable.getNumBytes() == null) {
+      LOG.debug("Statistics for table {} are not available", table);
+      return null;
+    }
+
+    return new BigQueryTableStatistics(bgTable.getNumRows().longValue(), bgTable.getNumBytes());
+  }
+
   /**
    * Creates an empty table with an empty schema to store records.
    * <p>
@@ -138,13 +169,61 @@ public class BigQuerySQLEngineUtils {
                                       String project,
                                       String dataset,
                                       String table) {
+    createEmptyTable(config, bigQuery, project, dataset, table, com.google.cloud.bigquery.Schema.of());
+  }
+
+  /**
+   * Creates an empty table with the supplied schema to store records.
+   * <p>
+   * If the Engine Configuration specifies a TTL for tables, the table is created with the specified TTL.
+   *
+   * @param config   BigQuery SQL Engine Config instance
+   * @param bigQuery BigQuery client
+   * @param project  Project Name
+   * @param dataset  Dataset Name
+   * @param table    Table Name
+   * @param schema   BigQuery schema for the table
+   */
+  public static void createEmptyTable(BigQuerySQLEngineConfig config,
+                                      BigQuery bigQuery,
+                                      String project,
+                                      String dataset,
+                                      String table,
+                                      com.google.cloud.bigquery.Schema schema) {
+    createEmptyTable(config, bigQuery, project, dataset, table, schema, Collections.emptyList());
+  }
+
+  /**
+   * Creates an empty table with the supplied schema to store records, clustered on the supplied fields.
+   * <p>
+   * If the Engine Configuration specifies a TTL for tables, the table is created with the specified TTL.
+   *
+   * @param config           BigQuery SQL Engine Config instance
+   * @param bigQuery         BigQuery client
+   * @param project          Project Name
+   * @param dataset          Dataset Name
+   * @param table            Table Name
+   * @param schema           BigQuery schema for the table, which must contain the clustering fields
+   * @param clusteringFields fields to cluster the table on, or an empty list to create an unclustered table
+   */
+  public static void createEmptyTable(BigQuerySQLEngineConfig config,
+                                      BigQuery bigQuery,
+                                      String project,
+                                      String dataset,
+                                      String table,
+                                      com.google.cloud.bigquery.Schema schema,
+                                      List<String> clusteringFields) {
 
     LOG.debug("Creating empty table {} in dataset {} and project {}", table, dataset, project);
 
     // Define table name and create builder.
     TableId tableId = TableId.of(project, dataset, table);
-    TableDefinition tableDefinition = StandardTableDefinition.of(com.google.cloud.bigquery.Schema.of());
-    TableInfo.Builder tableInfoBuilder = TableInfo.newBuilder(tableId, tableDefinition);
+    StandardTableDefinition.Builder tableDefinitionBuilder = StandardTableDefinition.newBuilder().setSchema(schema);
+    if (!clusteringFields.isEmpty()) {
+      LOG.debug("Clustering table {} on fields {}", table, clusteringFields);
+      tableDefinitionBuilder.setClustering(Clustering.newBuilder().setFields(clusteringFields).build());
+    }
+    TableInfo.Builder tableInfoBuilder = TableInfo.newBuilder(tableId, tableDefinitionBuilder.build());
 
     // Set TTL for table if needed.
     if (!config.shouldRetainTables() && config.getTempTableTTLHours() > 0) {
@@ -255,6 +334,35 @@ public class BigQuerySQLEngineUtils {
     }
   }
 
+  /**
+   * Gets the fields a table can be clustered on, out of the key fields it is joined on.
+   * <p>
+   * Key fields that are missing from the schema or whose type can't be used for clustering are skipped, and at most
+   * {@link #MAX_CLUSTERING_FIELDS} fields are returned.
+   *
+   * @param schema    schema of the records stored in the table
+   * @param keyFields key fields in the order they appear in the join condition
+   * @return fields to cluster the table on, which may be empty
+   */
+  public static List<String> getClusteringFields(Schema schema, List<String> keyFields) {
+    return keyFields.stream()
+      .distinct()
+      .filter(keyField -> {
+        Schema.Field field = schema.getField(keyField);
+        return field != null && isSupportedClusteringSchema(BigQueryUtil.getNonNullableSchema(field.getSchema()));
+      })
+      .limit(MAX_CLUSTERING_FIELDS)
+      .collect(Collectors.toList());
+  }
+
+  private static boolean isSupportedClusteringSchema(Schema schema) {
+    Schema.LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      return BigQuerySinkUtils.isSupportedLogicalType(logicalType);
+    }
+    return CLUSTERING_TYPES.contains(schema.getType());
+  }
+
   /**
    * Check if the supplied schema is supported by the SQL Engine
    *
@@ -320,6 +428,11 @@ public class BigQuerySQLEngineUtils {
     String executionTimeStr = getExecutionTimeString(job.getStatistics().getStartTime(),
                                                      job.getStatistics().getEndTime());
 
+    // Time between submitting and seeing jobs complete, across all jobs tracked by this JVM
+    BigQueryJobPoller poller = BigQueryJobPoller.getInstance();
+    metrics.gauge(METRIC_JOB_LATENCY_AVG_MS, poller.getAverageCompletionLatencyMillis());
+    metrics.gauge(METRIC_JOB_LATENCY_MAX_MS, poller.getMaxCompletionLatencyMillis());
+
     // Print detailed query statistics if available
     if (job.getStatistics() instanceof JobStatistics.QueryStatistics) {
       JobStatistics.QueryStatistics queryStatistics = (JobStatistics.QueryStatistics) job.getStatistics();
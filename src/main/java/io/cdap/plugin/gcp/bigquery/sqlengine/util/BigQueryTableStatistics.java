@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sqlengine.util;
+
+/**
+ * Number of rows and bytes stored in a BigQuery table, used to plan the operations that read it.
+ */
+public final class BigQueryTableStatistics implements Comparable<BigQueryTableStatistics> {
+  private final long numRows;
+  private final long numBytes;
+
+  public BigQueryTableStatistics(long numRows, long numBytes) {
+    this.numRows = numRows;
+    this.numBytes = numBytes;
+  }
+
+  public long getNumRows() {
+    return numRows;
+  }
+
+  public long getNumBytes() {
+    return numBytes;
+  }
+
+  /**
+   * Compares tables by the number of bytes they store, which is what is shuffled or broadcast when they are joined,
+   * and then by their number of rows.
+   */
+  @Override
+  public int compareTo(BigQueryTableStatistics other) {
+    int result = Long.compare(numBytes, other.numBytes);
+    return result != 0 ? result : Long.compare(numRows, other.numRows);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d rows, %d bytes", numRows, numBytes);
+  }
+}
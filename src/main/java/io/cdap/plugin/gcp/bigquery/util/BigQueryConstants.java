@@ -35,6 +35,8 @@ public interface BigQueryConstants {
   String CONFIG_DEDUPE_BY = "cdap.bq.sink.dedupe.by";
   String CONFIG_TABLE_FIELDS = "cdap.bq.sink.table.fields";
   String CONFIG_FILTER = "cdap.bq.source.filter";
+  String CONFIG_READ_METHOD = "cdap.bq.source.read.method";
+  String CONFIG_SELECTED_FIELDS = "cdap.bq.source.selected.fields";
   String CONFIG_PARTITION_FILTER = "cdap.bq.sink.partition.filter";
   String CONFIG_JOB_ID = "cdap.bq.sink.job.id";
   String CONFIG_VIEW_MATERIALIZATION_PROJECT = "cdap.bq.source.view.materialization.project";
@@ -45,4 +47,20 @@ public interface BigQueryConstants {
   String CONFIG_PARTITION_INTEGER_RANGE_INTERVAL = "cdap.bq.sink.partition.integer.range.interval";
   String CONFIG_TEMPORARY_TABLE_NAME = "cdap.bq.source.temporary.table.name";
   String CDAP_BQ_SINK_OUTPUT_SCHEMA = "cdap.bq.sink.output.schema";
+  String CONFIG_WRITE_METHOD = "cdap.bq.sink.write.method";
+  String CONFIG_STAGING_MAX_OPEN_FILES = "cdap.bq.sink.staging.max.open.files";
+  String CONFIG_STAGING_MAX_FILE_SIZE = "cdap.bq.sink.staging.max.file.size";
+  String CONFIG_MAX_CONCURRENT_LOAD_JOBS = "cdap.bq.sink.load.max.concurrent.jobs";
+  String CONFIG_STAGING_FORMAT = "cdap.bq.sink.staging.format";
+  String CONFIG_PARQUET_ROW_GROUP_SIZE = "cdap.bq.sink.staging.parquet.row.group.size";
+  String CONFIG_STAGING_COMPRESSION = "cdap.bq.sink.staging.compression";
+  String CONFIG_STAGING_DEFLATE_LEVEL = "cdap.bq.sink.staging.deflate.level";
+  String CONFIG_DERIVE_PARTITION_FILTER = "cdap.bq.sink.derive.partition.filter";
+  String CONFIG_DERIVE_CLUSTERING_FILTER = "cdap.bq.sink.derive.clustering.filter";
+  String CONFIG_UPLOAD_BUFFER_MEMORY = "cdap.bq.sink.upload.buffer.memory";
+  String CONFIG_GCS_CHUNK_SIZE = "fs.gs.outputstream.upload.chunk.size";
+  String CONFIG_MAX_CONCURRENT_TABLE_COMMITS = "cdap.bq.sink.multi.max.concurrent.commits";
+  String CONFIG_PRE_STAGE_DEDUPE = "cdap.bq.sink.pre.stage.dedupe";
+  String CONFIG_PRE_STAGE_DEDUPE_MAX_RECORDS = "cdap.bq.sink.pre.stage.dedupe.max.records";
+  String CONFIG_OVERWRITE_PARTITIONING = "cdap.bq.sink.overwrite.partitioning";
 }
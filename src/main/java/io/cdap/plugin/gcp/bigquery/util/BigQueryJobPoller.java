@@ -0,0 +1,306 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.util;
+
+import com.google.api.client.util.ExponentialBackOff;
+import com.google.api.services.bigquery.Bigquery;
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.JobStatus;
+import com.google.cloud.hadoop.io.bigquery.BigQueryUtils;
+import com.google.cloud.hadoop.util.RetryDeterminer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Tracks the completion of BigQuery jobs.
+ * <p>
+ * Each caller gets a {@link CompletableFuture} that completes once its job is done, instead of sleeping on its own
+ * thread between polls. A single scheduler thread only hands the polls that are due to a small pool of threads, which
+ * make the status calls, so a slow status call does not delay the polls of other jobs. Each job is polled with its own
+ * exponential backoff, starting at {@link BigQueryUtils#POLL_WAIT_INITIAL_MILLIS} and capped at
+ * {@link BigQueryUtils#POLL_WAIT_INTERVAL_MAX_MILLIS}. Status calls that fail with a retryable error are rescheduled
+ * with the same backoff.
+ */
+public final class BigQueryJobPoller {
+  private static final Logger LOG = LoggerFactory.getLogger(BigQueryJobPoller.class);
+  private static final int POLL_THREADS = 4;
+  private static final BigQueryJobPoller INSTANCE = new BigQueryJobPoller(BigQueryUtils.POLL_WAIT_INITIAL_MILLIS,
+                                                                          BigQueryUtils.POLL_WAIT_INTERVAL_MAX_MILLIS,
+                                                                          BigQueryUtils.POLL_WAIT_MAX_ELAPSED_MILLIS);
+
+  private final long initialIntervalMillis;
+  private final long maxIntervalMillis;
+  private final long maxElapsedMillis;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService pollExecutor;
+  private final AtomicInteger pendingCount;
+  private final AtomicLong completedJobs;
+  private final AtomicLong failedJobs;
+  private final AtomicLong totalLatencyMillis;
+  private final AtomicLong maxLatencyMillis;
+
+  @VisibleForTesting
+  BigQueryJobPoller(long initialIntervalMillis, long maxIntervalMillis, long maxElapsedMillis) {
+    this.initialIntervalMillis = initialIntervalMillis;
+    this.maxIntervalMillis = maxIntervalMillis;
+    this.maxElapsedMillis = maxElapsedMillis;
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(
+      1, new ThreadFactoryBuilder().setNameFormat("bigquery-job-poller").setDaemon(true).build());
+    scheduler.setRemoveOnCancelPolicy(true);
+    this.scheduler = scheduler;
+    ThreadPoolExecutor pollExecutor = new ThreadPoolExecutor(
+      POLL_THREADS, POLL_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      new ThreadFactoryBuilder().setNameFormat("bigquery-job-poller-%d").setDaemon(true).build());
+    pollExecutor.allowCoreThreadTimeOut(true);
+    this.pollExecutor = pollExecutor;
+    this.pendingCount = new AtomicInteger();
+    this.completedJobs = new AtomicLong();
+    this.failedJobs = new AtomicLong();
+    this.totalLatencyMillis = new AtomicLong();
+    this.maxLatencyMillis = new AtomicLong();
+  }
+
+  /**
+   * @return the poller shared by all jobs in this JVM
+   */
+  public static BigQueryJobPoller getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Tracks a job submitted through the BigQuery REST API.
+   * The returned future completes with the finished job, which may have failed. Callers should check its error result.
+   */
+  public CompletableFuture<Job> track(Bigquery bigquery, String projectId, JobReference jobReference) {
+    return track(jobReference.getJobId(),
+                 () -> bigquery.jobs().get(projectId, jobReference.getJobId())
+                   .setLocation(jobReference.getLocation())
+                   .execute(),
+                 job -> "DONE".equals(job.getStatus().getState()),
+                 e -> e instanceof IOException && RetryDeterminer.RATE_LIMIT_ERRORS.shouldRetry((IOException) e));
+  }
+
+  /**
+   * Tracks a job submitted through the BigQuery client library.
+   * The returned future completes with the finished job, which may have failed. Callers should check its error status.
+   * It completes with {@code null} if the job no longer exists, same as {@link com.google.cloud.bigquery.Job#waitFor}.
+   */
+  public CompletableFuture<com.google.cloud.bigquery.Job> track(com.google.cloud.bigquery.Job job) {
+    return track(job.getJobId().getJob(), job::reload,
+                 reloaded -> reloaded == null || reloaded.getStatus().getState() == JobStatus.State.DONE,
+                 e -> e instanceof BigQueryException && ((BigQueryException) e).isRetryable());
+  }
+
+  /**
+   * Tracks a job whose status is fetched by the given callable. Errors fetching the status fail the job.
+   *
+   * @param jobId id of the job, used in logs and error messages
+   * @param poll fetches the current status of the job
+   * @param isDone tells whether the fetched status is final
+   * @return a future that completes with the final status, or fails if the status could not be fetched or the job
+   *   did not complete in time
+   */
+  public <T> CompletableFuture<T> track(String jobId, Callable<T> poll, Predicate<T> isDone) {
+    return track(jobId, poll, isDone, e -> false);
+  }
+
+  /**
+   * Tracks a job whose status is fetched by the given callable.
+   *
+   * @param jobId id of the job, used in logs and error messages
+   * @param poll fetches the current status of the job
+   * @param isDone tells whether the fetched status is final
+   * @param isRetryable tells whether an error fetching the status is retried at the next poll
+   * @return a future that completes with the final status, or fails if the status could not be fetched or the job
+   *   did not complete in time
+   */
+  public <T> CompletableFuture<T> track(String jobId, Callable<T> poll, Predicate<T> isDone,
+                                        Predicate<Exception> isRetryable) {
+    TrackedJob<T> job = new TrackedJob<>(jobId, poll, isDone, isRetryable, System.currentTimeMillis(),
+                                         initialIntervalMillis);
+    pendingCount.incrementAndGet();
+    job.schedulePoll(0);
+    return job.future;
+  }
+
+  /**
+   * Waits for the given future, unwrapping the exception it failed with.
+   */
+  public static <T> T await(Future<T> future) throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause.getMessage(), cause);
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      throw e;
+    }
+  }
+
+  /**
+   * @return number of jobs currently being tracked
+   */
+  public int getPendingJobs() {
+    return pendingCount.get();
+  }
+
+  /**
+   * @return number of jobs that were seen completing
+   */
+  public long getCompletedJobs() {
+    return completedJobs.get();
+  }
+
+  /**
+   * @return number of jobs whose status could not be fetched or that did not complete in time
+   */
+  public long getFailedJobs() {
+    return failedJobs.get();
+  }
+
+  /**
+   * @return average time in milliseconds between the start of tracking and the completion of a job
+   */
+  public long getAverageCompletionLatencyMillis() {
+    long completed = completedJobs.get();
+    return completed == 0 ? 0 : totalLatencyMillis.get() / completed;
+  }
+
+  /**
+   * @return longest time in milliseconds between the start of tracking and the completion of a job
+   */
+  public long getMaxCompletionLatencyMillis() {
+    return maxLatencyMillis.get();
+  }
+
+  /**
+   * A job being tracked, with its own backoff state. Only one poll of a job is scheduled or running at a time.
+   */
+  private final class TrackedJob<T> {
+    private final String jobId;
+    private final Callable<T> poll;
+    private final Predicate<T> isDone;
+    private final Predicate<Exception> isRetryable;
+    private final long startTime;
+    private final CompletableFuture<T> future;
+    private long interval;
+
+    private TrackedJob(String jobId, Callable<T> poll, Predicate<T> isDone, Predicate<Exception> isRetryable,
+                       long startTime, long interval) {
+      this.jobId = jobId;
+      this.poll = poll;
+      this.isDone = isDone;
+      this.isRetryable = isRetryable;
+      this.startTime = startTime;
+      this.future = new CompletableFuture<>();
+      this.interval = interval;
+    }
+
+    /**
+     * Schedules the next poll. The scheduler thread only hands it to the poll threads, which make the status call.
+     */
+    private void schedulePoll(long delayMillis) {
+      scheduler.schedule(() -> pollExecutor.execute(this::poll), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules the next poll after the current interval, and backs off the interval.
+     */
+    private void scheduleNextPoll() {
+      long delay = interval;
+      interval = Math.min(maxIntervalMillis, (long) (interval * ExponentialBackOff.DEFAULT_MULTIPLIER));
+      schedulePoll(delay);
+    }
+
+    /**
+     * Polls the job status once, and schedules the next poll if the job is not done.
+     */
+    private void poll() {
+      if (future.isDone()) {
+        // cancelled by the caller
+        pendingCount.decrementAndGet();
+        return;
+      }
+
+      T status;
+      boolean done;
+      try {
+        status = poll.call();
+        done = isDone.test(status);
+      } catch (Exception e) {
+        long elapsed = System.currentTimeMillis() - startTime;
+        if (isRetryable.test(e) && elapsed < maxElapsedMillis) {
+          LOG.debug("Failed to get the status of job {}, retrying: {}", jobId, e.getMessage());
+          scheduleNextPoll();
+          return;
+        }
+        pendingCount.decrementAndGet();
+        failedJobs.incrementAndGet();
+        future.completeExceptionally(e);
+        return;
+      }
+
+      long elapsed = System.currentTimeMillis() - startTime;
+      if (done) {
+        pendingCount.decrementAndGet();
+        long completed = completedJobs.incrementAndGet();
+        long totalLatency = totalLatencyMillis.addAndGet(elapsed);
+        long maxLatency = maxLatencyMillis.accumulateAndGet(elapsed, Math::max);
+        LOG.debug("Job {} completed after {} ms. Jobs completed: {}, average completion latency: {} ms, " +
+                    "max completion latency: {} ms.", jobId, elapsed, completed, totalLatency / completed, maxLatency);
+        future.complete(status);
+        return;
+      }
+
+      if (elapsed >= maxElapsedMillis) {
+        pendingCount.decrementAndGet();
+        failedJobs.incrementAndGet();
+        future.completeExceptionally(
+          new IOException(String.format("Job %s failed to complete after %s millis.", jobId, elapsed)));
+        return;
+      }
+      LOG.trace("Job {} is still running after {} ms.", jobId, elapsed);
+      scheduleNextPoll();
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.common;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Shares the memory of an executor between the upload buffers of the files written to GCS.
+ * <p>
+ * Every file open for writing in GCS buffers a chunk of the upload chunk size. When an upload buffer budget is set,
+ * each file is opened with a lease on a part of the budget, and its chunk size is reduced to fit in that part: a new
+ * file gets at most an equal share of the budget between the open files, and no more than what the open files have
+ * left. Leases are returned when the files are closed, so that the chunk size of the next files grows again.
+ * The chunk size never goes below the minimum GCS upload chunk size, so the budget can be exceeded when more files
+ * are open than it can hold at that size.
+ * <p>
+ * The budget is shared by all the writers of the executor, whichever plugin they belong to. Without a budget, files
+ * are opened with the configured chunk size.
+ */
+public final class UploadBufferManager {
+  private static final Logger LOG = LoggerFactory.getLogger(UploadBufferManager.class);
+  public static final String CONFIG_UPLOAD_BUFFER_BUDGET = "cdap.gcs.upload.buffer.budget";
+  public static final String CONFIG_CHUNK_SIZE = "fs.gs.outputstream.upload.chunk.size";
+  // Default chunk size of the GCS connector
+  private static final long DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+  private static final long MIN_CHUNK_SIZE = MediaHttpUploader.MINIMUM_CHUNK_SIZE;
+  private static final UploadBufferManager INSTANCE = new UploadBufferManager();
+
+  private long reserved;
+  private int leases;
+
+  @VisibleForTesting
+  UploadBufferManager() {
+  }
+
+  /**
+   * @return the manager shared by the writers of the executor
+   */
+  public static UploadBufferManager getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Acquires a lease on the upload buffer of a file.
+   *
+   * @param conf configuration the file is written with
+   * @return the lease, which must be closed once the file is closed
+   */
+  public Lease acquire(Configuration conf) {
+    long requested = conf.getLong(CONFIG_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+    long budget = conf.getLong(CONFIG_UPLOAD_BUFFER_BUDGET, 0L);
+    if (budget <= 0) {
+      return new Lease(conf, 0L);
+    }
+    long chunkSize;
+    synchronized (this) {
+      long share = Math.min(budget / (leases + 1), budget - reserved);
+      chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(requested, share) / MIN_CHUNK_SIZE * MIN_CHUNK_SIZE);
+      reserved += chunkSize;
+      leases++;
+      if (reserved > budget) {
+        LOG.debug("{} open GCS files use {} bytes of upload buffers, more than the budget of {} bytes.",
+                  leases, reserved, budget);
+      }
+    }
+    Configuration leaseConf = new Configuration(conf);
+    leaseConf.setLong(CONFIG_CHUNK_SIZE, chunkSize);
+    return new Lease(leaseConf, chunkSize);
+  }
+
+  /**
+   * Creates a file with a lease on its upload buffer, which is returned when the file is closed.
+   *
+   * @param path path of the file
+   * @param conf configuration the file is written with
+   * @return output stream of the file
+   */
+  public OutputStream create(Path path, Configuration conf) throws IOException {
+    Lease lease = acquire(conf);
+    try {
+      return lease.wrap(path.getFileSystem(lease.getConfiguration()).create(path, false));
+    } catch (IOException | RuntimeException e) {
+      lease.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets a record writer from an output format that writes a single file, with a lease on its upload buffer, which is
+   * returned when the record writer is closed.
+   *
+   * @param format output format of the file
+   * @param context context of the task attempt writing the file
+   * @return record writer of the file
+   */
+  public <K, V> RecordWriter<K, V> getRecordWriter(OutputFormat<K, V> format, TaskAttemptContext context)
+    throws IOException, InterruptedException {
+    Lease lease = acquire(context.getConfiguration());
+    RecordWriter<K, V> writer;
+    try {
+      writer = format.getRecordWriter(new TaskAttemptContextImpl(lease.getConfiguration(),
+                                                                 context.getTaskAttemptID()));
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      lease.close();
+      throw e;
+    }
+    return new RecordWriter<K, V>() {
+      @Override
+      public void write(K key, V value) throws IOException, InterruptedException {
+        writer.write(key, value);
+      }
+
+      @Override
+      public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+        try {
+          writer.close(context);
+        } finally {
+          lease.close();
+        }
+      }
+    };
+  }
+
+  @VisibleForTesting
+  synchronized long getReserved() {
+    return reserved;
+  }
+
+  private synchronized void release(long chunkSize) {
+    reserved -= chunkSize;
+    leases--;
+  }
+
+  /**
+   * Lease on the upload buffer of a file.
+   */
+  public final class Lease implements Closeable {
+    private final Configuration conf;
+    private final long chunkSize;
+    private boolean closed;
+
+    private Lease(Configuration conf, long chunkSize) {
+      this.conf = conf;
+      this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the configuration to open the file with, which sets the chunk size of the lease
+     */
+    public Configuration getConfiguration() {
+      return conf;
+    }
+
+    /**
+     * @return the chunk size of the lease, or 0 if no budget is set
+     */
+    public long getChunkSize() {
+      return chunkSize;
+    }
+
+    /**
+     * Returns an output stream that closes this lease after closing the given stream.
+     */
+    public OutputStream wrap(OutputStream out) {
+      return new FilterOutputStream(out) {
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            Lease.this.close();
+          }
+        }
+      };
+    }
+
+    @Override
+    public synchronized void close() {
+      if (!closed && chunkSize > 0) {
+        release(chunkSize);
+      }
+      closed = true;
+    }
+  }
+}
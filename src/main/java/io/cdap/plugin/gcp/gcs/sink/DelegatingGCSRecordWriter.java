@@ -17,6 +17,7 @@
 package io.cdap.plugin.gcp.gcs.sink;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.gcp.common.UploadBufferManager;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.RecordWriter;
@@ -65,8 +66,8 @@ public class DelegatingGCSRecordWriter extends RecordWriter<NullWritable, Struct
       //Initialize GCS Output Committer for this format.
       delegatingGCSOutputCommitter.addGCSOutputCommitterFromOutputFormat(format, context, tableName);
 
-      //Add record writer to delegate map.
-      delegate = format.getRecordWriter(context);
+      //Add record writer to delegate map. Its upload buffer is leased until it is closed.
+      delegate = UploadBufferManager.getInstance().getRecordWriter(format, context);
       delegateMap.put(tableName, delegate);
     }
 
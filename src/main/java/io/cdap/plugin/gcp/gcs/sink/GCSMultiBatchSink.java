@@ -46,6 +46,7 @@ import io.cdap.plugin.common.batch.sink.SinkOutputFormatProvider;
 import io.cdap.plugin.format.FileFormat;
 import io.cdap.plugin.gcp.common.CmekUtils;
 import io.cdap.plugin.gcp.common.GCPUtils;
+import io.cdap.plugin.gcp.common.UploadBufferManager;
 import io.cdap.plugin.gcp.gcs.connector.GCSConnector;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
@@ -131,6 +132,10 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
 
     Map<String, String> baseProperties = GCPUtils.getFileSystemProperties(config.connection,
                                                                           config.getPath(), new HashMap<>());
+    if (config.getExecutorUploadBufferMemory() != null) {
+      baseProperties.put(UploadBufferManager.CONFIG_UPLOAD_BUFFER_BUDGET,
+                         String.valueOf(config.getExecutorUploadBufferMemory() * 1024L * 1024L));
+    }
     Map<String, String> argumentCopy = new HashMap<>(context.getArguments().asMap());
 
     CryptoKeyName cmekKeyName = CmekUtils.getCmekKey(config.cmekKey, context.getArguments().asMap(), collector);
@@ -222,6 +227,7 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
    */
   public static class GCSMultiBatchSinkConfig extends GCSBatchSink.GCSBatchSinkConfig {
     private static final String NAME_ALLOW_FLEXIBLE_SCHEMA = "allowFlexibleSchema";
+    private static final String NAME_EXECUTOR_UPLOAD_BUFFER_MEMORY = "executorUploadBufferMemory";
 
     @Description("The codec to use when writing data. " +
       "The 'avro' format supports 'snappy' and 'deflate'. The parquet format supports 'snappy' and 'gzip'. " +
@@ -239,6 +245,26 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
       "arguments will be processed. If enabled, all records will be written as-is.")
     private Boolean allowFlexibleSchema;
 
+    @Name(NAME_EXECUTOR_UPLOAD_BUFFER_MEMORY)
+    @Macro
+    @Nullable
+    @Description("Memory in megabytes shared by the upload buffers of all the files written to GCS by an executor, " +
+      "across tasks and plugins. When set, the GCS chunk size of each new file is reduced so that the open files " +
+      "fit in this memory, down to the minimum chunk size of 256 KB. By default, every file uses the GCS chunk size.")
+    private Integer executorUploadBufferMemory;
+
+    @Override
+    public void validate(FailureCollector collector, Map<String, String> arguments) {
+      super.validate(collector, arguments);
+      if (!containsMacro(NAME_EXECUTOR_UPLOAD_BUFFER_MEMORY) && executorUploadBufferMemory != null
+        && executorUploadBufferMemory < 1) {
+        collector.addFailure(String.format("Executor upload buffer memory has invalid value '%d'.",
+                                           executorUploadBufferMemory),
+                             "Set it to a positive number of megabytes.")
+          .withConfigProperty(NAME_EXECUTOR_UPLOAD_BUFFER_MEMORY);
+      }
+    }
+
     protected String getOutputDir(long logicalStartTime, String context) {
       return String.format("%s/%s/%s", getOutputBaseDir(), context, getOutputSuffix(logicalStartTime));
     }
@@ -252,6 +278,11 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
       return suffixOk ? new SimpleDateFormat(getSuffix()).format(logicalStartTime) : "";
     }
 
+    @Nullable
+    public Integer getExecutorUploadBufferMemory() {
+      return executorUploadBufferMemory;
+    }
+
     public Boolean getAllowFlexibleSchema() {
       return allowFlexibleSchema != null ? allowFlexibleSchema : false;
     }
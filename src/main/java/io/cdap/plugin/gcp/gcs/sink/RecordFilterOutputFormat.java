@@ -18,6 +18,7 @@ package io.cdap.plugin.gcp.gcs.sink;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.common.UploadBufferManager;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.JobContext;
@@ -63,7 +64,9 @@ public class RecordFilterOutputFormat extends OutputFormat<NullWritable, Structu
   public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context)
     throws IOException, InterruptedException {
     Configuration hConf = context.getConfiguration();
-    RecordWriter<NullWritable, StructuredRecord> delegate = getDelegateFormat(hConf).getRecordWriter(context);
+    // The upload buffer of the file is leased until the writer is closed
+    RecordWriter<NullWritable, StructuredRecord> delegate =
+      UploadBufferManager.getInstance().getRecordWriter(getDelegateFormat(hConf), context);
     String filterField = hConf.get(FILTER_FIELD);
     String passthroughVal = hConf.get(PASS_VALUE);
     Schema schema = Schema.parseJson(hConf.get(ORIGINAL_SCHEMA));
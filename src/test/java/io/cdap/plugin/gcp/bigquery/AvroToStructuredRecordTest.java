@@ -18,6 +18,7 @@ package io.cdap.plugin.gcp.bigquery;
 
 import com.google.common.collect.ImmutableList;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.format.UnexpectedFormatException;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.gcp.bigquery.source.BigQueryAvroToStructuredTransformer;
 import org.apache.avro.generic.GenericRecord;
@@ -26,6 +27,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 
 /**
@@ -175,6 +177,57 @@ public class AvroToStructuredRecordTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void testAvroLogicalTypesToStructuredRecord() throws Exception {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("dt", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+                                    Schema.Field.of("time", Schema.of(Schema.LogicalType.TIME_MICROS)),
+                                    Schema.Field.of("timeMillis", Schema.of(Schema.LogicalType.TIME_MILLIS)),
+                                    Schema.Field.of("datetime", Schema.of(Schema.LogicalType.DATETIME)),
+                                    Schema.Field.of("dates",
+                                                    Schema.arrayOf(Schema.of(Schema.LogicalType.DATE))));
+    // Dates and times are exported as numbers with Avro logical types
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(
+      "{\"type\":\"record\",\"name\":\"record\",\"fields\":[" +
+        "{\"name\":\"dt\",\"type\":[{\"type\":\"int\",\"logicalType\":\"date\"},\"null\"]}," +
+        "{\"name\":\"time\",\"type\":{\"type\":\"long\",\"logicalType\":\"time-micros\"}}," +
+        "{\"name\":\"timeMillis\",\"type\":{\"type\":\"long\",\"logicalType\":\"time-micros\"}}," +
+        "{\"name\":\"datetime\",\"type\":{\"type\":\"string\",\"logicalType\":\"datetime\"}}," +
+        "{\"name\":\"dates\",\"type\":{\"type\":\"array\"," +
+        "\"items\":{\"type\":\"int\",\"logicalType\":\"date\"}}}]}");
+    LocalDate date = LocalDate.of(2018, 11, 11);
+    LocalTime time = LocalTime.of(11, 11, 11, 123000000);
+    long timeMicros = time.toNanoOfDay() / 1000;
+    GenericRecord record = new GenericRecordBuilder(avroSchema)
+      .set("dt", (int) date.toEpochDay())
+      .set("time", timeMicros)
+      .set("timeMillis", timeMicros)
+      .set("datetime", "2018-11-11T11:11:11.123456")
+      .set("dates", ImmutableList.of((int) date.toEpochDay(), (int) date.plusDays(1).toEpochDay()))
+      .build();
+
+    BigQueryAvroToStructuredTransformer transformer = new BigQueryAvroToStructuredTransformer();
+    StructuredRecord expected = StructuredRecord.builder(schema)
+      .setDate("dt", date)
+      .setTime("time", time)
+      .setTime("timeMillis", time)
+      .setDateTime("datetime", LocalDateTime.of(2018, 11, 11, 11, 11, 11, 123456000))
+      .set("dates", ImmutableList.of((int) date.toEpochDay(), (int) date.plusDays(1).toEpochDay()))
+      .build();
+    Assert.assertEquals(expected, transformer.transform(record, schema));
+    // The plan compiled for the first record is used for the next ones
+    Assert.assertEquals(expected, transformer.transform(record, schema));
+  }
+
+  @Test(expected = UnexpectedFormatException.class)
+  public void testInvalidDatetime() throws Exception {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("datetime", Schema.of(Schema.LogicalType.DATETIME)));
+    GenericRecord record = new GenericRecordBuilder(convertSchema(schema))
+      .set("datetime", "2018-11-11 11:11:11")
+      .build();
+    new BigQueryAvroToStructuredTransformer().transform(record, schema);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testUnionTypeUnsupported() throws Exception {
     Schema schema = Schema.recordOf("record",
@@ -74,6 +74,25 @@ BigQueryRelationTest {
     baseRelation.setInputDatasets(Collections.singletonMap("d s", ds));
   }
 
+  @Test
+  public void testBaseRelation() {
+    BigQuerySQLDataset ds = mock(BigQuerySQLDataset.class);
+    when(ds.getBigQueryProject()).thenReturn("p");
+    when(ds.getBigQueryDataset()).thenReturn("d");
+    when(ds.getBigQueryTable()).thenReturn("t");
+    Set<String> columns = new LinkedHashSet<>(Arrays.asList("a", "b"));
+
+    BigQueryRelation relation = BigQueryRelation.getInstance("ds", columns, featureFlagsProvider);
+    relation.setInputDatasets(Collections.singletonMap("ds", ds));
+    Assert.assertEquals("SELECT `a` AS `a` , `b` AS `b` FROM `p.d.t` AS `ds`", relation.getSQLStatement());
+
+    // Datasets that are not stored in a table yet are selected from as nested queries.
+    when(ds.isPending()).thenReturn(true);
+    when(ds.getPendingSQLStatement()).thenReturn("select * from tbl");
+    Assert.assertEquals("SELECT `a` AS `a` , `b` AS `b` FROM (select * from tbl) AS `ds`",
+                        relation.getSQLStatement());
+  }
+
   @Test
   public void testSetColumn() {
     Relation relation = baseRelation.setColumn("c", factory.compile("a+b"));
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link AvroRecordWriter}.
+ */
+public class AvroRecordWriterTest {
+  private static final Schema SCHEMA_A = Schema.recordOf("a", Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+  private static final Schema SCHEMA_B = Schema.recordOf("b", Schema.Field.of("y", Schema.of(Schema.Type.STRING)));
+  private static final Schema SCHEMA_C = Schema.recordOf("c", Schema.Field.of("z", Schema.of(Schema.Type.LONG)));
+
+  @Test
+  public void testInterleavedSchemas() throws IOException {
+    List<ByteArrayOutputStream> files = new ArrayList<>();
+    AvroRecordWriter writer = createWriter(files, 4, 0);
+    for (int i = 0; i < 10; i++) {
+      writer.write(StructuredRecord.builder(SCHEMA_A).set("x", i).build(), NullWritable.get());
+      writer.write(StructuredRecord.builder(SCHEMA_B).set("y", "v" + i).build(), NullWritable.get());
+    }
+    writer.close(null);
+
+    Assert.assertEquals(2, files.size());
+    List<GenericRecord> first = read(files.get(0));
+    List<GenericRecord> second = read(files.get(1));
+    Assert.assertEquals(10, first.size());
+    Assert.assertEquals(10, second.size());
+    Assert.assertEquals("a", first.get(0).getSchema().getName());
+    Assert.assertEquals(9, first.get(9).get("x"));
+    Assert.assertEquals("b", second.get(0).getSchema().getName());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedFile() throws IOException {
+    List<ByteArrayOutputStream> files = new ArrayList<>();
+    AvroRecordWriter writer = createWriter(files, 2, 0);
+    writer.write(StructuredRecord.builder(SCHEMA_A).set("x", 1).build(), NullWritable.get());
+    writer.write(StructuredRecord.builder(SCHEMA_B).set("y", "1").build(), NullWritable.get());
+    writer.write(StructuredRecord.builder(SCHEMA_A).set("x", 2).build(), NullWritable.get());
+    // closes the file of schema b, which is the least recently used one
+    writer.write(StructuredRecord.builder(SCHEMA_C).set("z", 1L).build(), NullWritable.get());
+    writer.write(StructuredRecord.builder(SCHEMA_B).set("y", "2").build(), NullWritable.get());
+    writer.close(null);
+
+    Assert.assertEquals(4, files.size());
+    Assert.assertEquals(2, read(files.get(0)).size());
+    Assert.assertEquals(1, read(files.get(1)).size());
+    Assert.assertEquals(1, read(files.get(2)).size());
+    Assert.assertEquals(1, read(files.get(3)).size());
+  }
+
+  @Test
+  public void testRollsOnFileSize() throws IOException {
+    List<ByteArrayOutputStream> files = new ArrayList<>();
+    AvroRecordWriter writer = createWriter(files, 4, 1);
+    for (int i = 0; i < 3; i++) {
+      writer.write(StructuredRecord.builder(SCHEMA_A).set("x", i).build(), NullWritable.get());
+    }
+    writer.close(null);
+
+    // the header alone exceeds the limit, so every record ends up in its own file
+    Assert.assertEquals(3, files.size());
+    for (ByteArrayOutputStream file : files) {
+      Assert.assertEquals(1, read(file).size());
+    }
+  }
+
+  @Test
+  public void testCompressedFiles() throws IOException {
+    for (StagingCompression compression : StagingCompression.values()) {
+      List<ByteArrayOutputStream> files = new ArrayList<>();
+      AvroRecordWriter writer = createWriter(files, compression.getCodec(1), 4, 0);
+      for (int i = 0; i < 100; i++) {
+        writer.write(StructuredRecord.builder(SCHEMA_B).set("y", "value").build(), NullWritable.get());
+      }
+      writer.close(null);
+
+      Assert.assertEquals(1, files.size());
+      Assert.assertEquals(100, read(files.get(0)).size());
+      try (DataFileStream<GenericRecord> stream =
+             new DataFileStream<>(new ByteArrayInputStream(files.get(0).toByteArray()), new GenericDatumReader<>())) {
+        String codec = compression == StagingCompression.NONE ? "null" : compression.name().toLowerCase();
+        Assert.assertEquals(codec, stream.getMetaString(DataFileConstants.CODEC));
+      }
+    }
+  }
+
+  private static AvroRecordWriter createWriter(List<ByteArrayOutputStream> files, int maxOpenFiles,
+                                               long maxFileSize) {
+    return createWriter(files, CodecFactory.nullCodec(), maxOpenFiles, maxFileSize);
+  }
+
+  private static AvroRecordWriter createWriter(List<ByteArrayOutputStream> files, CodecFactory codec,
+                                               int maxOpenFiles, long maxFileSize) {
+    return new AvroRecordWriter(null, codec, index -> {
+      Assert.assertEquals(files.size(), index);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      files.add(out);
+      return out;
+    }, DataFileConstants.DEFAULT_SYNC_INTERVAL, maxOpenFiles, maxFileSize);
+  }
+
+  private static List<GenericRecord> read(ByteArrayOutputStream file) throws IOException {
+    List<GenericRecord> records = new ArrayList<>();
+    try (DataFileStream<GenericRecord> stream = new DataFileStream<>(new ByteArrayInputStream(file.toByteArray()),
+                                                                     new GenericDatumReader<>())) {
+      for (GenericRecord record : stream) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.format.avro.StructuredToAvroTransformer;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tests for {@link BigQueryAvroConverter}.
+ */
+public class BigQueryAvroConverterTest {
+  private static final Schema NESTED_SCHEMA = Schema.recordOf(
+    "nested",
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("long", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("string", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("buffer", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("date", Schema.of(Schema.LogicalType.DATE)),
+    Schema.Field.of("timestamp", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+    Schema.Field.of("datetime", Schema.of(Schema.LogicalType.DATETIME)),
+    Schema.Field.of("decimal", Schema.decimalOf(10, 2)),
+    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.INT))),
+    Schema.Field.of("record", Schema.nullableOf(NESTED_SCHEMA)),
+    Schema.Field.of("records", Schema.arrayOf(NESTED_SCHEMA)));
+
+  @Test
+  public void testSameEncodingAsGenericRecord() throws IOException {
+    StructuredRecord nested = StructuredRecord.builder(NESTED_SCHEMA).set("name", "n").build();
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("int", 1)
+      .set("float", 1.5f)
+      .set("double", 2.5d)
+      .set("boolean", true)
+      .set("string", "str")
+      .set("bytes", new byte[] {1, 2, 3})
+      .set("buffer", ByteBuffer.wrap(new byte[] {4, 5}))
+      .setDate("date", LocalDate.of(2022, 1, 1))
+      .set("timestamp", 1650000000123456L)
+      .setDateTime("datetime", LocalDateTime.of(2022, 1, 1, 10, 0, 1))
+      .setDecimal("decimal", new BigDecimal("123.45"))
+      .set("array", ImmutableList.of("a", "b"))
+      .set("map", ImmutableMap.of("k", 1))
+      .set("records", ImmutableList.of(nested, nested))
+      .build();
+
+    BigQueryAvroConverter converter = new BigQueryAvroConverter(SCHEMA);
+    GenericRecord expected = new StructuredToAvroTransformer(null).transform(record, SCHEMA);
+
+    Assert.assertEquals(expected.getSchema(), converter.getAvroSchema());
+    Assert.assertArrayEquals(encodeGeneric(expected), encode(converter, record));
+  }
+
+  @Test
+  public void testOutputSchemaProjection() throws IOException {
+    Schema outputSchema = Schema.recordOf("record", Schema.Field.of("int", Schema.of(Schema.Type.INT)));
+    StructuredRecord record = StructuredRecord.builder(Schema.recordOf(
+      "record",
+      Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("extra", Schema.of(Schema.Type.STRING))))
+      .set("int", 7)
+      .set("extra", "dropped")
+      .build();
+
+    BigQueryAvroConverter converter = new BigQueryAvroConverter(outputSchema);
+    GenericRecord decoded = new GenericDatumReader<GenericRecord>(converter.getAvroSchema())
+      .read(null, DecoderFactory.get().binaryDecoder(encode(converter, record), null));
+    Assert.assertEquals(7, decoded.get("int"));
+    Assert.assertNull(decoded.getSchema().getField("extra"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullNonNullableField() throws IOException {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("int", Schema.of(Schema.Type.INT)));
+    StructuredRecord record = StructuredRecord.builder(Schema.recordOf(
+      "record", Schema.Field.of("int", Schema.nullableOf(Schema.of(Schema.Type.INT))))).build();
+    encode(new BigQueryAvroConverter(schema), record);
+  }
+
+  private static byte[] encode(BigQueryAvroConverter converter, StructuredRecord record) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    converter.write(record, encoder);
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  private static byte[] encodeGeneric(GenericRecord record) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    new GenericDatumWriter<GenericRecord>(record.getSchema()).write(record, encoder);
+    encoder.flush();
+    return out.toByteArray();
+  }
+}
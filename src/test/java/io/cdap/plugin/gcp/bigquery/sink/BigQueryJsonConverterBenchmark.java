@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.internal.bind.JsonTreeWriter;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BigQueryJsonConverter} against writing every field through {@link BigQueryRecordToJson} into a json
+ * tree and serializing it into a line, which is how records were staged before writer plans were introduced.
+ *
+ * Run with {@code java -cp <test classpath> io.cdap.plugin.gcp.bigquery.sink.BigQueryJsonConverterBenchmark}.
+ * Use the gc profiler ({@code -prof gc} on the JMH command line) to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BigQueryJsonConverterBenchmark {
+  private static final Schema NESTED_SCHEMA = Schema.recordOf(
+    "nested",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("score", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("active", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("created", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+    Schema.Field.of("updated", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MILLIS))),
+    Schema.Field.of("day", Schema.of(Schema.LogicalType.DATE)),
+    Schema.Field.of("time", Schema.of(Schema.LogicalType.TIME_MICROS)),
+    Schema.Field.of("datetime", Schema.of(Schema.LogicalType.DATETIME)),
+    Schema.Field.of("amount", Schema.decimalOf(18, 4)),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("nested", NESTED_SCHEMA),
+    Schema.Field.of("children", Schema.arrayOf(NESTED_SCHEMA)));
+
+  private StructuredRecord record;
+  private BigQueryJsonConverter converter;
+
+  @Setup
+  public void setup() {
+    StructuredRecord nested = StructuredRecord.builder(NESTED_SCHEMA)
+      .set("id", 42L)
+      .set("name", "child")
+      .build();
+    record = StructuredRecord.builder(SCHEMA)
+      .set("id", 1234567L)
+      .set("name", "benchmark")
+      .set("score", 99.5d)
+      .set("active", true)
+      .set("created", 1650000000123456L)
+      .set("updated", 1650000000123L)
+      .setDate("day", LocalDate.of(2022, 4, 15))
+      .setTime("time", LocalTime.of(12, 34, 56, 789000))
+      .setDateTime("datetime", LocalDateTime.of(2022, 4, 15, 12, 34, 56))
+      .setDecimal("amount", new BigDecimal("12345.6789"))
+      .set("tags", ImmutableList.of("a", "b", "c"))
+      .set("nested", nested)
+      .set("children", ImmutableList.of(nested, nested))
+      .build();
+    converter = new BigQueryJsonConverter();
+  }
+
+  @Benchmark
+  public Text fieldByField() throws IOException {
+    try (JsonTreeWriter writer = new JsonTreeWriter()) {
+      writer.beginObject();
+      for (Schema.Field field : Objects.requireNonNull(record.getSchema().getFields())) {
+        BigQueryRecordToJson.write(writer, field.getName(), record.get(field.getName()), field.getSchema());
+      }
+      writer.endObject();
+      return new Text(writer.get().toString());
+    }
+  }
+
+  @Benchmark
+  public Text writerPlan() throws IOException {
+    return converter.transform(record, SCHEMA);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(BigQueryJsonConverterBenchmark.class.getSimpleName()).build()).run();
+  }
+}
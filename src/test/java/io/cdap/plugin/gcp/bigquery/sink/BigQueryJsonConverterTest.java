@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests for {@link BigQueryJsonConverter}.
+ */
+public class BigQueryJsonConverterTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testLinesAreReused() throws IOException {
+    BigQueryJsonConverter converter = new BigQueryJsonConverter();
+    Assert.assertEquals("{\"id\":1,\"name\":\"Zoë <ü>\",\"tags\":[\"a\",\"b\"]}",
+                        converter.transform(record(1L, "Zoë <ü>", "a", "b"), SCHEMA).toString());
+    // A shorter record overwrites the whole line
+    Assert.assertEquals("{\"id\":2,\"name\":null,\"tags\":[]}",
+                        converter.transform(record(2L, null), SCHEMA).toString());
+  }
+
+  @Test
+  public void testFailedRecordIsDiscarded() throws IOException {
+    BigQueryJsonConverter converter = new BigQueryJsonConverter();
+    try {
+      converter.transform(record(1L, "first", "a", null), SCHEMA);
+      Assert.fail("Null array elements are not allowed by BigQuery");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    Assert.assertEquals("{\"id\":2,\"name\":\"second\",\"tags\":[\"b\"]}",
+                        converter.transform(record(2L, "second", "b"), SCHEMA).toString());
+  }
+
+  private static StructuredRecord record(long id, String name, String... tags) {
+    return StructuredRecord.builder(SCHEMA)
+      .set("id", id)
+      .set("name", name)
+      .set("tags", tags)
+      .build();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.bind.JsonTreeWriter;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Objects;
+
+/**
+ * Tests for {@link BigQueryJsonWriterPlan}.
+ */
+public class BigQueryJsonWriterPlanTest {
+  private static final Schema NESTED_SCHEMA = Schema.recordOf(
+    "nested",
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("string", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("date", Schema.of(Schema.LogicalType.DATE)),
+    Schema.Field.of("time_millis", Schema.of(Schema.LogicalType.TIME_MILLIS)),
+    Schema.Field.of("time_micros", Schema.of(Schema.LogicalType.TIME_MICROS)),
+    Schema.Field.of("ts_millis", Schema.of(Schema.LogicalType.TIMESTAMP_MILLIS)),
+    Schema.Field.of("ts_micros", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+    Schema.Field.of("datetime", Schema.of(Schema.LogicalType.DATETIME)),
+    Schema.Field.of("decimal", Schema.decimalOf(10, 3)),
+    Schema.Field.of("array", Schema.nullableOf(Schema.arrayOf(Schema.of(Schema.Type.LONG)))),
+    Schema.Field.of("record", Schema.nullableOf(NESTED_SCHEMA)),
+    Schema.Field.of("records", Schema.arrayOf(NESTED_SCHEMA)));
+
+  @Test
+  public void testSameOutputAsRecordToJson() throws IOException {
+    StructuredRecord nested = StructuredRecord.builder(NESTED_SCHEMA).set("name", "n").build();
+    long[] timestamps = {0L, 1L, -1L, 1650000000123456L, -62135596800000000L, 253402300799999999L, 951782400000000L};
+    long[] dates = {0L, -1L, 19000L, -719162L, 2932896L, 11016L};
+    for (int i = 0; i < timestamps.length; i++) {
+      StructuredRecord record = StructuredRecord.builder(SCHEMA)
+        .set("int", i)
+        .set("string", i % 2 == 0 ? null : "value \"" + i + "\"")
+        .set("bytes", new byte[] {1, 2, (byte) i})
+        .set("date", (int) dates[i % dates.length])
+        .setTime("time_millis", LocalTime.of(23, 59, 59, 999000000))
+        .setTime("time_micros", LocalTime.of(0, 0, i, 1000))
+        .set("ts_millis", timestamps[i] / 1000)
+        .set("ts_micros", i == 0 ? null : timestamps[i])
+        .setDateTime("datetime", LocalDateTime.of(2022, 1, 1, 0, 0, i))
+        .setDecimal("decimal", new BigDecimal("-1234.567"))
+        .set("array", i == 0 ? null : ImmutableList.of(1L, 2L))
+        .set("record", i == 1 ? null : nested)
+        .set("records", ImmutableList.of(nested))
+        .build();
+
+      Assert.assertEquals(writeFieldByField(record, SCHEMA), writeWithPlan(record, SCHEMA));
+    }
+  }
+
+  @Test
+  public void testOutputSchemaProjection() throws IOException {
+    Schema outputSchema = Schema.recordOf("output", Schema.Field.of("int", Schema.of(Schema.Type.INT)));
+    StructuredRecord record = StructuredRecord.builder(Schema.recordOf(
+      "input",
+      Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("extra", Schema.of(Schema.Type.STRING))))
+      .set("int", 1)
+      .set("extra", "dropped")
+      .build();
+
+    JsonObject actual = writeWithPlan(record, outputSchema);
+    Assert.assertEquals(1, actual.size());
+    Assert.assertEquals(1, actual.get("int").getAsInt());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullArrayElement() throws IOException {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("array", new String[] {"a", null})
+      .build();
+    writeWithPlan(record, schema);
+  }
+
+  private static JsonObject writeWithPlan(StructuredRecord record, Schema outputSchema) throws IOException {
+    try (JsonTreeWriter writer = new JsonTreeWriter()) {
+      BigQueryJsonWriterPlan.compile(record.getSchema(), outputSchema).write(writer, record);
+      return writer.get().getAsJsonObject();
+    }
+  }
+
+  private static JsonObject writeFieldByField(StructuredRecord record, Schema outputSchema) throws IOException {
+    try (JsonTreeWriter writer = new JsonTreeWriter()) {
+      writer.beginObject();
+      for (Schema.Field field : Objects.requireNonNull(record.getSchema().getFields())) {
+        if (outputSchema.getField(field.getName()) != null) {
+          BigQueryRecordToJson.write(writer, field.getName(), record.get(field.getName()), field.getSchema());
+        }
+      }
+      writer.endObject();
+      return writer.get().getAsJsonObject();
+    }
+  }
+}
@@ -16,7 +16,10 @@
 package io.cdap.plugin.gcp.bigquery.sink;
 
 import com.google.api.services.bigquery.model.Dataset;
+import com.google.api.services.bigquery.model.Job;
 import com.google.api.services.bigquery.model.JobConfiguration;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.JobStatus;
 import com.google.api.services.bigquery.model.TableReference;
 import com.google.cloud.bigquery.JobId;
 import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
@@ -26,8 +29,10 @@ import com.google.cloud.hadoop.io.bigquery.output.ForwardingBigQueryFileOutputCo
 import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.JobContext;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.mockito.internal.util.reflection.FieldSetter;
@@ -36,8 +41,12 @@ import org.powermock.api.support.membermodification.MemberMatcher;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
 
 import static org.mockito.Mockito.times;
 import static org.powermock.api.support.membermodification.MemberModifier.suppress;
@@ -53,12 +62,17 @@ public class BigQueryOutputFormatTest {
     StringBuilder sb = new StringBuilder();
 
     for (int i = 1; i <= pathListSize; i++) {
-      sb.append("test").append(i).append(",");
+      sb.append("gs://bucket/dir/part-").append(i).append(".avro,");
     }
     listOfStrings = Arrays.asList(sb.toString().split(","));
   }
 
-  private BigQueryOutputFormat.BigQueryOutputCommitter initMocks(String operation) throws Exception {
+  /**
+   * Creates the committer, with the given objects listed in the staging directory, or with a failed listing if null.
+   */
+  private BigQueryOutputFormat.BigQueryOutputCommitter initMocks(String operation,
+                                                                 @Nullable List<String> directoryObjects)
+    throws Exception {
 
     suppress(PowerMockito.constructor(BigQueryOutputFormat.BigQueryOutputCommitter.class));
     suppress(MemberMatcher.methodsDeclaredIn(ForwardingBigQueryFileOutputCommitter.class));
@@ -82,10 +96,22 @@ public class BigQueryOutputFormatTest {
 
     BigQueryOutputFormat.BigQueryOutputCommitter spy = PowerMockito.spy(bigQueryOutputCommitter);
     PowerMockito.doReturn(listOfStrings).when(spy, "getOutputFileURIs");
+    PowerMockito.doReturn(directoryObjects).when(spy, "listDirectoryObjects", ArgumentMatchers.anyList(),
+                                                 ArgumentMatchers.any(Configuration.class));
     PowerMockito.doNothing().when(spy, "triggerBigqueryJob", ArgumentMatchers.eq("test_project"),
                                   ArgumentMatchers.anyString(),
                                   ArgumentMatchers.any(Dataset.class),
                                   ArgumentMatchers.any(JobConfiguration.class));
+    PowerMockito.doReturn(new JobReference()).when(spy, "insertBigqueryJob", ArgumentMatchers.eq("test_project"),
+                                                   ArgumentMatchers.anyString(),
+                                                   ArgumentMatchers.any(Dataset.class),
+                                                   ArgumentMatchers.any(JobConfiguration.class));
+
+    // Concurrently running load jobs complete as soon as they are tracked
+    PowerMockito.doAnswer(invocation -> CompletableFuture.completedFuture(
+      new Job().setJobReference((JobReference) invocation.getArguments()[1])
+        .setStatus(new JobStatus().setState("DONE"))))
+      .when(spy, "trackBigqueryJob", ArgumentMatchers.eq("test_project"), ArgumentMatchers.any(JobReference.class));
 
     PowerMockito.doNothing().when(spy, "handleUpdateUpsertOperation", ArgumentMatchers.any(TableReference.class),
                                   ArgumentMatchers.anyBoolean(),
@@ -104,10 +130,10 @@ public class BigQueryOutputFormatTest {
   public void commitJobTestInsertBQInvocations() throws Exception {
 
     generateList(500);
-    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("INSERT");
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("INSERT", null);
     bqQueryOutputCommitterSpy.commitJob(jobContextMock);
 
-    // 3 batches in temp table and 1 batch for table copy
+    // 1 batch loaded directly in the table
     PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(1))
       .invoke("triggerBigqueryJob", ArgumentMatchers.eq("test_project"),
               ArgumentMatchers.anyString(),
@@ -119,27 +145,120 @@ public class BigQueryOutputFormatTest {
   public void commitJobTestInsert10000BQInvocations() throws Exception {
 
     generateList(20001);
-    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("INSERT");
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("INSERT", null);
+    bqQueryOutputCommitterSpy.commitJob(jobContextMock);
+
+    // first batch in temp table and 1 batch for table copy
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(2))
+      .invoke("triggerBigqueryJob", ArgumentMatchers.eq("test_project"),
+              ArgumentMatchers.anyString(),
+              ArgumentMatchers.any(Dataset.class),
+              ArgumentMatchers.any(JobConfiguration.class));
+
+    // remaining 2 batches in temp table run concurrently
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(2))
+      .invoke("insertBigqueryJob", ArgumentMatchers.eq("test_project"),
+              ArgumentMatchers.anyString(),
+              ArgumentMatchers.any(Dataset.class),
+              ArgumentMatchers.any(JobConfiguration.class));
+  }
+
+  @Test
+  public void commitJobTestInsertWildcardBQInvocations() throws Exception {
+
+    generateList(20001);
+    List<String> directoryObjects = new ArrayList<>(listOfStrings);
+    directoryObjects.add("gs://bucket/dir/_SUCCESS");
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("INSERT", directoryObjects);
     bqQueryOutputCommitterSpy.commitJob(jobContextMock);
 
-    // 3 batches in temp table and 1 batch for table copy
-    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(4))
+    // all the files are loaded directly in the table through a single wildcard
+    ArgumentCaptor<JobConfiguration> config = ArgumentCaptor.forClass(JobConfiguration.class);
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(1))
       .invoke("triggerBigqueryJob", ArgumentMatchers.eq("test_project"),
+              ArgumentMatchers.anyString(),
+              ArgumentMatchers.any(Dataset.class),
+              config.capture());
+    Assert.assertEquals(Collections.singletonList("gs://bucket/dir/part-*"),
+                        config.getValue().getLoad().getSourceUris());
+    Assert.assertEquals("test_table", config.getValue().getLoad().getDestinationTable().getTableId());
+
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, Mockito.never())
+      .invoke("insertBigqueryJob", ArgumentMatchers.eq("test_project"),
               ArgumentMatchers.anyString(),
               ArgumentMatchers.any(Dataset.class),
               ArgumentMatchers.any(JobConfiguration.class));
   }
 
+  @Test
+  public void commitJobTestInsertWildcardMatchingOtherObjects() throws Exception {
+
+    generateList(500);
+    List<String> directoryObjects = new ArrayList<>(listOfStrings);
+    directoryObjects.add("gs://bucket/dir/part-other.avro");
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("INSERT", directoryObjects);
+    bqQueryOutputCommitterSpy.commitJob(jobContextMock);
+
+    // a wildcard would also load the other object, so the files are loaded by name
+    ArgumentCaptor<JobConfiguration> config = ArgumentCaptor.forClass(JobConfiguration.class);
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(1))
+      .invoke("triggerBigqueryJob", ArgumentMatchers.eq("test_project"),
+              ArgumentMatchers.anyString(),
+              ArgumentMatchers.any(Dataset.class),
+              config.capture());
+    Assert.assertEquals(listOfStrings, config.getValue().getLoad().getSourceUris());
+  }
+
   @Test
   public void commitJobTestUpdateBQInvocations() throws Exception {
 
     generateList(20001);
-    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("UPDATE");
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("UPDATE", null);
+    bqQueryOutputCommitterSpy.commitJob(jobContextMock);
+
+    // first batch in temp table
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(1))
+      .invoke("triggerBigqueryJob", ArgumentMatchers.eq("test_project"),
+              ArgumentMatchers.anyString(),
+              ArgumentMatchers.any(Dataset.class),
+              ArgumentMatchers.any(JobConfiguration.class));
+
+    // remaining 2 batches in temp table run concurrently
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(2))
+      .invoke("insertBigqueryJob", ArgumentMatchers.eq("test_project"),
+              ArgumentMatchers.anyString(),
+              ArgumentMatchers.any(Dataset.class),
+              ArgumentMatchers.any(JobConfiguration.class));
+
+    //1 call to handleUpdateUpsertOperation
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(1))
+      .invoke("handleUpdateUpsertOperation",
+              ArgumentMatchers.any(TableReference.class),
+              ArgumentMatchers.anyBoolean(),
+              ArgumentMatchers.any(),
+              ArgumentMatchers.any(JobId.class),
+              ArgumentMatchers.any(Configuration.class));
+  }
+
+  @Test
+  public void commitJobTestUpdateWildcardBQInvocations() throws Exception {
+
+    generateList(20001);
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("UPDATE", listOfStrings);
     bqQueryOutputCommitterSpy.commitJob(jobContextMock);
 
-    // 3 batches in temp table
-    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(3))
+    // a single batch in temp table through a wildcard
+    ArgumentCaptor<JobConfiguration> config = ArgumentCaptor.forClass(JobConfiguration.class);
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(1))
       .invoke("triggerBigqueryJob", ArgumentMatchers.eq("test_project"),
+              ArgumentMatchers.anyString(),
+              ArgumentMatchers.any(Dataset.class),
+              config.capture());
+    Assert.assertEquals(Collections.singletonList("gs://bucket/dir/part-*"),
+                        config.getValue().getLoad().getSourceUris());
+
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, Mockito.never())
+      .invoke("insertBigqueryJob", ArgumentMatchers.eq("test_project"),
               ArgumentMatchers.anyString(),
               ArgumentMatchers.any(Dataset.class),
               ArgumentMatchers.any(JobConfiguration.class));
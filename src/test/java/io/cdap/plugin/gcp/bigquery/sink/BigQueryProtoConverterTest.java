@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Tests for {@link BigQueryProtoConverter}.
+ */
+public class BigQueryProtoConverterTest {
+
+  @Test
+  public void testTransform() throws IOException {
+    Schema nested = Schema.recordOf("nested",
+                                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+      Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+      Schema.Field.of("nullable", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("date", Schema.of(Schema.LogicalType.DATE)),
+      Schema.Field.of("timestamp", Schema.of(Schema.LogicalType.TIMESTAMP_MILLIS)),
+      Schema.Field.of("time", Schema.of(Schema.LogicalType.TIME_MICROS)),
+      Schema.Field.of("datetime", Schema.of(Schema.LogicalType.DATETIME)),
+      Schema.Field.of("decimal", Schema.decimalOf(10, 2)),
+      Schema.Field.of("record", nested),
+      Schema.Field.of("records", Schema.arrayOf(nested))
+    );
+
+    StructuredRecord nestedRecord = StructuredRecord.builder(nested).set("name", "n").build();
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("int", 1)
+      .set("float", 1.5f)
+      .set("bytes", "test".getBytes())
+      .set("array", ImmutableList.of(1L, 2L))
+      .setDate("date", LocalDate.of(1970, 1, 3))
+      .set("timestamp", 1000L)
+      .setTime("time", LocalTime.of(10, 20, 30))
+      .setDateTime("datetime", LocalDateTime.of(2020, 1, 1, 10, 0, 1))
+      .setDecimal("decimal", new BigDecimal("12.34"))
+      .set("record", nestedRecord)
+      .set("records", ImmutableList.of(nestedRecord, nestedRecord))
+      .build();
+
+    BigQueryProtoConverter converter = new BigQueryProtoConverter(schema);
+    DynamicMessage message = converter.transform(record);
+    Descriptor descriptor = message.getDescriptorForType();
+
+    Assert.assertEquals(1L, message.getField(descriptor.findFieldByName("int")));
+    Assert.assertEquals(1.5d, message.getField(descriptor.findFieldByName("float")));
+    Assert.assertEquals(ByteString.copyFromUtf8("test"), message.getField(descriptor.findFieldByName("bytes")));
+    Assert.assertFalse(message.hasField(descriptor.findFieldByName("nullable")));
+    Assert.assertEquals(ImmutableList.of(1L, 2L), message.getField(descriptor.findFieldByName("array")));
+    Assert.assertEquals(2, message.getField(descriptor.findFieldByName("date")));
+    Assert.assertEquals(1000000L, message.getField(descriptor.findFieldByName("timestamp")));
+    Assert.assertEquals("10:20:30.000000", message.getField(descriptor.findFieldByName("time")));
+    Assert.assertEquals("2020-01-01T10:00:01", message.getField(descriptor.findFieldByName("datetime")));
+    Assert.assertEquals("12.34", message.getField(descriptor.findFieldByName("decimal")));
+
+    DynamicMessage nestedMessage = (DynamicMessage) message.getField(descriptor.findFieldByName("record"));
+    Assert.assertEquals("n", nestedMessage.getField(nestedMessage.getDescriptorForType().findFieldByName("name")));
+    List<?> nestedMessages = (List<?>) message.getField(descriptor.findFieldByName("records"));
+    Assert.assertEquals(2, nestedMessages.size());
+
+    Assert.assertEquals(2, converter.getProtoSchema().getProtoDescriptor().getNestedTypeCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullArrayElement() throws IOException {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("array", new String[] {"a", null})
+      .build();
+    new BigQueryProtoConverter(schema).transform(record);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link BigQueryRecordWriter}.
+ */
+public class BigQueryRecordWriterTest {
+  private static final Schema SCHEMA = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+
+  @Test
+  public void testSingleFile() throws Exception {
+    List<FileWriter> files = new ArrayList<>();
+    BigQueryRecordWriter writer = createWriter(files, 0L);
+    for (int i = 0; i < 10; i++) {
+      writer.write(StructuredRecord.builder(SCHEMA).set("x", i).build(), NullWritable.get());
+    }
+    writer.close(null);
+
+    Assert.assertEquals(1, files.size());
+    Assert.assertEquals(10, files.get(0).lines.size());
+    Assert.assertEquals("{\"x\":0}", files.get(0).lines.get(0));
+    Assert.assertTrue(files.get(0).closed);
+  }
+
+  @Test
+  public void testRollsOnFileSize() throws Exception {
+    List<FileWriter> files = new ArrayList<>();
+    // each line is '{"x":n}' followed by a new line, which is 8 bytes
+    BigQueryRecordWriter writer = createWriter(files, 16L);
+    for (int i = 0; i < 5; i++) {
+      writer.write(StructuredRecord.builder(SCHEMA).set("x", i).build(), NullWritable.get());
+    }
+    writer.close(null);
+
+    Assert.assertEquals(3, files.size());
+    Assert.assertEquals(2, files.get(0).lines.size());
+    Assert.assertEquals(2, files.get(1).lines.size());
+    Assert.assertEquals(1, files.get(2).lines.size());
+    for (FileWriter file : files) {
+      Assert.assertTrue(file.closed);
+    }
+  }
+
+  @Test
+  public void testEmptyTaskWritesEmptyFile() throws Exception {
+    List<FileWriter> files = new ArrayList<>();
+    createWriter(files, 16L).close(null);
+
+    Assert.assertEquals(1, files.size());
+    Assert.assertTrue(files.get(0).lines.isEmpty());
+    Assert.assertTrue(files.get(0).closed);
+  }
+
+  private static BigQueryRecordWriter createWriter(List<FileWriter> files, long maxFileSize) {
+    return new BigQueryRecordWriter(index -> {
+      Assert.assertEquals(files.size(), index);
+      FileWriter file = new FileWriter();
+      files.add(file);
+      return file;
+    }, SCHEMA, maxFileSize);
+  }
+
+  /**
+   * Collects the lines written to a file.
+   */
+  private static class FileWriter extends RecordWriter<Object, NullWritable> {
+    private final List<String> lines = new ArrayList<>();
+    private boolean closed;
+
+    @Override
+    public void write(Object key, NullWritable value) {
+      Assert.assertFalse(closed);
+      lines.add(key.toString());
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) {
+      closed = true;
+    }
+  }
+}
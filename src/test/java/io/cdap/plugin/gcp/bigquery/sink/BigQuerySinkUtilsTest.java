@@ -22,6 +22,7 @@ import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.bigquery.DatasetInfo;
 import com.google.cloud.bigquery.Field;
 import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.TableId;
 import com.google.cloud.hadoop.io.bigquery.output.BigQueryTableFieldSchema;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryTypeSize;
@@ -33,6 +34,8 @@ import org.mockito.Mockito;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -522,4 +525,62 @@ public class BigQuerySinkUtilsTest {
     Assert.assertEquals("c", result.get(2).getName());
     Assert.assertEquals(Field.Mode.REPEATED, result.get(2).getMode());
   }
+
+  @Test
+  public void testGenerateStagedRangeQuery() {
+    String query = BigQuerySinkUtils.generateStagedRangeQuery(TableId.of("p", "d", "tmp"),
+                                                              Arrays.asList("day", "customer"));
+    Assert.assertEquals("SELECT COUNT(*) AS row_count, " +
+                          "FORMAT('%T', MIN(day)) AS min_0, FORMAT('%T', MAX(day)) AS max_0, " +
+                          "COUNTIF(day IS NULL) > 0 AS nulls_0, " +
+                          "FORMAT('%T', MIN(customer)) AS min_1, FORMAT('%T', MAX(customer)) AS max_1, " +
+                          "COUNTIF(customer IS NULL) > 0 AS nulls_1 FROM `p.d.tmp`", query);
+  }
+
+  @Test
+  public void testGenerateStagedRangeFilter() {
+    Assert.assertEquals("(T.day BETWEEN DATE \"2022-01-01\" AND DATE \"2022-01-31\")",
+                        BigQuerySinkUtils.generateStagedRangeFilter("day", "DATE \"2022-01-01\"",
+                                                                    "DATE \"2022-01-31\"", false));
+    Assert.assertEquals("(T.id BETWEEN 1 AND 10 OR T.id IS NULL)",
+                        BigQuerySinkUtils.generateStagedRangeFilter("id", "1", "10", true));
+    Assert.assertEquals("(T.id IS NULL)", BigQuerySinkUtils.generateStagedRangeFilter("id", "NULL", "NULL", true));
+  }
+
+  @Test
+  public void testUpsertQueryWithFilters() {
+    String query = BigQuerySinkUtils.generateUpdateUpsertQuery(Operation.UPSERT,
+                                                               TableId.of("p", "d", "tmp"),
+                                                               TableId.of("p", "d", "dest"),
+                                                               Arrays.asList("id", "day", "v"),
+                                                               Collections.singletonList("id"),
+                                                               Collections.emptyList(),
+                                                               "day > '2020-01-01'",
+                                                               "(T.id BETWEEN 1 AND 10)");
+    Assert.assertEquals("MERGE `p.d.dest` T USING (SELECT * FROM (SELECT row_number() OVER (PARTITION BY id) " +
+                          "as rowid, * FROM `p.d.tmp`) where rowid = 1) S " +
+                          "ON (T.id BETWEEN 1 AND 10) AND (T.day > '2020-01-01') AND T.id = S.id " +
+                          "WHEN MATCHED THEN UPDATE SET T.day = S.day, T.v = S.v " +
+                          "WHEN NOT MATCHED THEN INSERT (id, day, v) VALUES(id, day, v)", query);
+  }
+
+  @Test
+  public void testGetWildcardUris() {
+    List<String> uris = Arrays.asList("gs://b/run/input/t-run/part-m-00000.avro",
+                                      "gs://b/run/input/t-run/part-m-00001.avro",
+                                      "gs://b/run/input/t-run/part-r-00000.avro",
+                                      "gs://b/run/input/u-run/part-m-00000.avro");
+    List<String> objects = new ArrayList<>(uris);
+    objects.add("gs://b/run/input/t-run/_SUCCESS");
+    Assert.assertEquals(Arrays.asList("gs://b/run/input/t-run/part-*", "gs://b/run/input/u-run/part-m-00000.avro"),
+                        BigQuerySinkUtils.getWildcardUris(uris, objects));
+
+    // A wildcard must not match objects that are not staged files
+    objects.add("gs://b/run/input/t-run/part-other/file.avro");
+    Assert.assertEquals(uris, BigQuerySinkUtils.getWildcardUris(uris, objects));
+
+    // Files that are not in a directory are never collapsed
+    List<String> names = Arrays.asList("part-m-00000.avro", "part-m-00001.avro");
+    Assert.assertEquals(names, BigQuerySinkUtils.getWildcardUris(names, names));
+  }
 }
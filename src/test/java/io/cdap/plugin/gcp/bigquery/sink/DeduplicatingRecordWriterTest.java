@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.common.collect.ImmutableList;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * Tests for {@link DeduplicatingRecordWriter}.
+ */
+public class DeduplicatingRecordWriterTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("version", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("key", Schema.nullableOf(Schema.of(Schema.Type.BYTES))));
+
+  @Test
+  public void testKeepsFirstInDedupeByOrder() throws Exception {
+    CollectingRecordWriter delegate = new CollectingRecordWriter();
+    DeduplicatingRecordWriter writer = new DeduplicatingRecordWriter(delegate, ImmutableList.of("id"),
+                                                                     "version desc, name", 100);
+    writer.write(record(1L, "b", 1), NullWritable.get());
+    writer.write(record(1L, "c", 2), NullWritable.get());
+    writer.write(record(1L, "a", 2), NullWritable.get());
+    writer.write(record(1L, "d", null), NullWritable.get());
+    writer.write(record(2L, "x", null), NullWritable.get());
+    writer.write(record(2L, "y", 0), NullWritable.get());
+    Assert.assertTrue(delegate.records.isEmpty());
+    writer.close(null);
+
+    Assert.assertTrue(delegate.closed);
+    Assert.assertEquals(ImmutableList.of("a", "y"), names(delegate.records));
+  }
+
+  @Test
+  public void testAscendingOrderKeepsNulls() throws Exception {
+    CollectingRecordWriter delegate = new CollectingRecordWriter();
+    DeduplicatingRecordWriter writer = new DeduplicatingRecordWriter(delegate, ImmutableList.of("id"),
+                                                                     "version", 100);
+    writer.write(record(1L, "a", 1), NullWritable.get());
+    writer.write(record(1L, "b", null), NullWritable.get());
+    writer.write(record(1L, "c", null), NullWritable.get());
+    writer.close(null);
+
+    Assert.assertEquals(ImmutableList.of("b"), names(delegate.records));
+  }
+
+  @Test
+  public void testKeepsLastWithoutDedupeBy() throws Exception {
+    CollectingRecordWriter delegate = new CollectingRecordWriter();
+    DeduplicatingRecordWriter writer = new DeduplicatingRecordWriter(delegate, ImmutableList.of("id", "key"),
+                                                                     null, 100);
+    writer.write(record(1L, "a", 1, new byte[] {1}), NullWritable.get());
+    writer.write(record(1L, "b", 1, new byte[] {1}), NullWritable.get());
+    writer.write(record(1L, "c", 1, new byte[] {2}), NullWritable.get());
+    writer.close(null);
+
+    Assert.assertEquals(ImmutableList.of("b", "c"), names(delegate.records));
+  }
+
+  @Test
+  public void testSpillsLeastRecentlyWrittenKey() throws Exception {
+    CollectingRecordWriter delegate = new CollectingRecordWriter();
+    DeduplicatingRecordWriter writer = new DeduplicatingRecordWriter(delegate, ImmutableList.of("id"),
+                                                                     "version desc", 2);
+    writer.write(record(1L, "a", 1), NullWritable.get());
+    writer.write(record(2L, "b", 1), NullWritable.get());
+    writer.write(record(1L, "c", 2), NullWritable.get());
+    Assert.assertTrue(delegate.records.isEmpty());
+    // Key 2 is the least recently written one
+    writer.write(record(3L, "d", 1), NullWritable.get());
+    Assert.assertEquals(ImmutableList.of("b"), names(delegate.records));
+    writer.write(record(2L, "e", 0), NullWritable.get());
+    Assert.assertEquals(ImmutableList.of("b", "c"), names(delegate.records));
+    writer.close(null);
+
+    Assert.assertEquals(ImmutableList.of("b", "c", "d", "e"), names(delegate.records));
+  }
+
+  @Test
+  public void testOrderComparesStringsByCodePoint() {
+    StructuredRecord lower = record(1L, "\uFF5E", 1);
+    StructuredRecord higher = record(1L, new String(Character.toChars(0x1F600)), 1);
+    Assert.assertTrue(DeduplicatingRecordWriter.parseOrder("name").compare(lower, higher) < 0);
+    Assert.assertTrue(DeduplicatingRecordWriter.parseOrder("name DESC").compare(lower, higher) > 0);
+  }
+
+  private static StructuredRecord record(long id, String name, @Nullable Integer version) {
+    return record(id, name, version, null);
+  }
+
+  private static StructuredRecord record(long id, String name, @Nullable Integer version, @Nullable byte[] key) {
+    return StructuredRecord.builder(SCHEMA).set("id", id).set("name", name).set("version", version).set("key", key)
+      .build();
+  }
+
+  private static List<String> names(List<StructuredRecord> records) {
+    return records.stream().map(r -> r.<String>get("name")).collect(Collectors.toList());
+  }
+
+  private static class CollectingRecordWriter extends RecordWriter<StructuredRecord, NullWritable> {
+    private final List<StructuredRecord> records = new ArrayList<>();
+    private boolean closed;
+
+    @Override
+    public void write(StructuredRecord record, NullWritable value) {
+      records.add(record);
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) {
+      closed = true;
+    }
+  }
+}
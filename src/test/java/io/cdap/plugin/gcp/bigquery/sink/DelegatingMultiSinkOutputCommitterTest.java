@@ -17,19 +17,24 @@
 package io.cdap.plugin.gcp.bigquery.sink;
 
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.doNothing;
@@ -115,11 +120,64 @@ public class DelegatingMultiSinkOutputCommitterTest {
     committer.addCommitterAndSchema(c2, "table2", s2, ctx);
     committer.addCommitterAndSchema(c3, "table3", s3, ctx);
 
+    when(ctx.getConfiguration()).thenReturn(new Configuration());
+
+    committer.commitJob(ctx);
+
+    // each table is committed with its own copy of the context
+    verify(c1, times(1)).commitJob(any());
+    verify(c2, times(1)).commitJob(any());
+    verify(c3, times(1)).commitJob(any());
+  }
+
+  @Test(timeout = 10000)
+  public void testCommitJobRunsTablesConcurrently() throws IOException, InterruptedException {
+    committer.addCommitterAndSchema(c1, "table1", s1, ctx);
+    committer.addCommitterAndSchema(c2, "table2", s2, ctx);
+    Configuration conf = new Configuration();
+    conf.setInt(BigQueryConstants.CONFIG_MAX_CONCURRENT_TABLE_COMMITS, 2);
+    when(ctx.getConfiguration()).thenReturn(conf);
+
+    // each commit waits for the other one to start, so they only complete if they run at the same time
+    CountDownLatch started = new CountDownLatch(2);
+    Answer<Void> awaitOther = invocation -> {
+      started.countDown();
+      started.await();
+      return null;
+    };
+    doAnswer(awaitOther).when(c1).commitJob(any());
+    doAnswer(awaitOther).when(c2).commitJob(any());
+
     committer.commitJob(ctx);
 
-    verify(c1, times(1)).commitJob(ctx);
-    verify(c2, times(1)).commitJob(ctx);
-    verify(c3, times(1)).commitJob(ctx);
+    verify(c1, times(1)).commitJob(any());
+    verify(c2, times(1)).commitJob(any());
+  }
+
+  @Test
+  public void testCommitJobCollectsExceptions() throws IOException, InterruptedException {
+    committer.addCommitterAndSchema(c1, "table1", s1, ctx);
+    committer.addCommitterAndSchema(c2, "table2", s2, ctx);
+    committer.addCommitterAndSchema(c3, "table3", s3, ctx);
+    when(ctx.getConfiguration()).thenReturn(new Configuration());
+
+    doThrow(new IOException("e1")).when(c1).commitJob(any());
+    doThrow(new IOException("e3")).when(c3).commitJob(any());
+
+    IOException expected = null;
+    try {
+      committer.commitJob(ctx);
+    } catch (IOException ex) {
+      expected = ex;
+    }
+
+    Assert.assertNotNull(expected);
+    Assert.assertTrue(expected.getMessage().startsWith("Failed to commit 2 of 3 tables: table1, table3."));
+    Assert.assertEquals("e1", expected.getCause().getMessage());
+    Assert.assertEquals(1, expected.getSuppressed().length);
+    Assert.assertEquals("e3", expected.getSuppressed()[0].getMessage());
+    // the table that did not fail is still committed
+    verify(c2, times(1)).commitJob(any());
   }
 
   @Test
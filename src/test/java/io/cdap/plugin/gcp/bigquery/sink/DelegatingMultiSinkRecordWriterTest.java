@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.cloud.bigquery.DatasetId;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests for {@link DelegatingMultiSinkRecordWriter}.
+ */
+public class DelegatingMultiSinkRecordWriterTest {
+  private static final Schema SCHEMA = Schema.recordOf("record",
+                                                       Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)));
+  private static final long MB = 1024 * 1024;
+
+  @Test
+  public void testMaxOpenFiles() {
+    Configuration conf = new Configuration();
+    conf.setLong(BigQueryConstants.CONFIG_UPLOAD_BUFFER_MEMORY, 512 * MB);
+    conf.setLong(BigQueryConstants.CONFIG_GCS_CHUNK_SIZE, 8 * MB);
+    Assert.assertEquals(64, DelegatingMultiSinkRecordWriter.getMaxOpenFiles(conf));
+
+    conf.setEnum(BigQueryConstants.CONFIG_STAGING_FORMAT, StagingFormat.PARQUET);
+    conf.setInt(BigQueryConstants.CONFIG_PARQUET_ROW_GROUP_SIZE, (int) (24 * MB));
+    Assert.assertEquals(16, DelegatingMultiSinkRecordWriter.getMaxOpenFiles(conf));
+
+    conf.setLong(BigQueryConstants.CONFIG_UPLOAD_BUFFER_MEMORY, MB);
+    Assert.assertEquals(1, DelegatingMultiSinkRecordWriter.getMaxOpenFiles(conf));
+  }
+
+  @Test
+  public void testLimitOpenFilesOfDelegates() {
+    Configuration conf = new Configuration();
+    conf.setLong(BigQueryConstants.CONFIG_UPLOAD_BUFFER_MEMORY, 2 * MB);
+    conf.setLong(BigQueryConstants.CONFIG_GCS_CHUNK_SIZE, MB);
+    Assert.assertEquals(2, DelegatingMultiSinkRecordWriter.limitOpenFiles(conf));
+    Assert.assertEquals(2, conf.getInt(BigQueryConstants.CONFIG_STAGING_MAX_OPEN_FILES, 0));
+
+    conf.setLong(BigQueryConstants.CONFIG_UPLOAD_BUFFER_MEMORY, 64 * MB);
+    conf.unset(BigQueryConstants.CONFIG_STAGING_MAX_OPEN_FILES);
+    Assert.assertEquals(64, DelegatingMultiSinkRecordWriter.limitOpenFiles(conf));
+    Assert.assertEquals(AvroOutputFormat.DEFAULT_MAX_OPEN_FILES,
+                        conf.getInt(BigQueryConstants.CONFIG_STAGING_MAX_OPEN_FILES, 0));
+  }
+
+  @Test
+  public void testClosesFilesOfLeastRecentlyUsedDelegate() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong(BigQueryConstants.CONFIG_UPLOAD_BUFFER_MEMORY, 2 * MB);
+    conf.setLong(BigQueryConstants.CONFIG_GCS_CHUNK_SIZE, MB);
+    TaskAttemptContext context = Mockito.mock(TaskAttemptContext.class);
+    Mockito.when(context.getConfiguration()).thenReturn(conf);
+
+    Map<String, FakeWriter> delegates = new HashMap<>();
+    DelegatingMultiSinkRecordWriter writer = createWriter(context, delegates, Collections.emptyMap());
+
+    write(writer, "a");
+    write(writer, "b");
+    write(writer, "a");
+    Assert.assertEquals(0, delegates.get("a").closedFiles + delegates.get("b").closedFiles);
+
+    // b is the least recently used table
+    write(writer, "c");
+    Assert.assertEquals(1, delegates.get("b").closedFiles);
+    Assert.assertEquals(0, delegates.get("a").closedFiles);
+
+    // b is written again, which closes the files of a
+    write(writer, "b");
+    Assert.assertEquals(1, delegates.get("a").closedFiles);
+    Assert.assertEquals(1, delegates.get("b").closedFiles);
+    Assert.assertEquals(0, delegates.get("c").closedFiles);
+    Assert.assertEquals(3, delegates.size());
+    Assert.assertEquals(2, delegates.get("b").records);
+
+    writer.close(context);
+    for (FakeWriter delegate : delegates.values()) {
+      Assert.assertTrue(delegate.closed);
+    }
+  }
+
+  @Test
+  public void testCountsFilesOfEachDelegate() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong(BigQueryConstants.CONFIG_UPLOAD_BUFFER_MEMORY, 4 * MB);
+    conf.setLong(BigQueryConstants.CONFIG_GCS_CHUNK_SIZE, MB);
+    TaskAttemptContext context = Mockito.mock(TaskAttemptContext.class);
+    Mockito.when(context.getConfiguration()).thenReturn(conf);
+
+    // Each record of a opens a new file, like records of new schemas in an Avro delegate
+    Map<String, FakeWriter> delegates = new HashMap<>();
+    DelegatingMultiSinkRecordWriter writer = createWriter(context, delegates, Collections.singletonMap("a", 4));
+
+    write(writer, "a");
+    write(writer, "a");
+    write(writer, "b");
+    write(writer, "c");
+    Assert.assertEquals(0, delegates.get("a").closedFiles + delegates.get("b").closedFiles
+      + delegates.get("c").closedFiles);
+
+    // a opens a third file, which closes the file of b
+    write(writer, "a");
+    Assert.assertEquals(3, delegates.get("a").openFiles);
+    Assert.assertEquals(1, delegates.get("b").closedFiles);
+    Assert.assertEquals(0, delegates.get("c").closedFiles);
+
+    // a opens a fourth file, which closes the file of c
+    write(writer, "a");
+    Assert.assertEquals(4, delegates.get("a").openFiles);
+    Assert.assertEquals(1, delegates.get("c").closedFiles);
+
+    // b needs a file again, which closes the files of a
+    write(writer, "b");
+    Assert.assertEquals(1, delegates.get("a").closedFiles);
+    Assert.assertEquals(1, delegates.get("b").openFiles);
+  }
+
+  /**
+   * Creates a writer whose delegates are fake writers, opening a file per record up to the given number of files for
+   * each table, or a single file for the other tables.
+   */
+  private static DelegatingMultiSinkRecordWriter createWriter(TaskAttemptContext context,
+                                                              Map<String, FakeWriter> delegates,
+                                                              Map<String, Integer> maxFiles) {
+    return new DelegatingMultiSinkRecordWriter(
+      context, "tablename", "bucket", "id", DatasetId.of("project", "dataset"),
+      Mockito.mock(DelegatingMultiSinkOutputCommitter.class)) {
+      @Override
+      public RecordWriter<StructuredRecord, NullWritable> getRecordWriterDelegate(String tableName, Schema schema) {
+        FakeWriter delegate = new FakeWriter(maxFiles.getOrDefault(tableName, 1));
+        delegates.put(tableName, delegate);
+        return delegate;
+      }
+    };
+  }
+
+  private static void write(DelegatingMultiSinkRecordWriter writer, String table) throws Exception {
+    writer.write(StructuredRecord.builder(SCHEMA).set("tablename", table).build(), NullWritable.get());
+  }
+
+  /**
+   * Counts the records written to it, its open files, and how many times its files were closed.
+   */
+  private static class FakeWriter extends RecordWriter<StructuredRecord, NullWritable> implements StagingRecordWriter {
+    private final int maxFiles;
+    private int records;
+    private int openFiles;
+    private int closedFiles;
+    private boolean closed;
+
+    private FakeWriter(int maxFiles) {
+      this.maxFiles = maxFiles;
+    }
+
+    @Override
+    public void write(StructuredRecord key, NullWritable value) {
+      records++;
+      openFiles = Math.min(maxFiles, openFiles + 1);
+    }
+
+    @Override
+    public void closeOpenFiles() {
+      closedFiles++;
+      openFiles = 0;
+    }
+
+    @Override
+    public int getOpenFileCount() {
+      return openFiles;
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.common.collect.ImmutableList;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.avro.AvroWriteSupport;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link ParquetRecordWriter}.
+ */
+public class ParquetRecordWriterTest {
+  private static final Schema SCHEMA_A = Schema.recordOf(
+    "a",
+    Schema.Field.of("x", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("ts", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
+  private static final Schema SCHEMA_B = Schema.recordOf("b", Schema.Field.of("y", Schema.of(Schema.Type.STRING)));
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testWriteAndSchemaChange() throws IOException {
+    List<File> files = new ArrayList<>();
+    ParquetRecordWriter writer = createWriter(files, 0L);
+    for (int i = 0; i < 3; i++) {
+      writer.write(StructuredRecord.builder(SCHEMA_A)
+                     .set("x", i)
+                     .set("tags", ImmutableList.of("t" + i))
+                     .set("ts", i == 0 ? null : 1650000000000000L)
+                     .build(), NullWritable.get());
+    }
+    writer.write(StructuredRecord.builder(SCHEMA_B).set("y", "v").build(), NullWritable.get());
+    writer.close(null);
+
+    Assert.assertEquals(2, files.size());
+    List<GenericRecord> first = read(files.get(0));
+    Assert.assertEquals(3, first.size());
+    Assert.assertEquals(2, first.get(2).get("x"));
+    Assert.assertEquals("t2", ((List<?>) first.get(2).get("tags")).get(0).toString());
+    Assert.assertNull(first.get(0).get("ts"));
+    Assert.assertEquals(1650000000000000L, first.get(1).get("ts"));
+    List<GenericRecord> second = read(files.get(1));
+    Assert.assertEquals(1, second.size());
+    Assert.assertEquals("v", second.get(0).get("y").toString());
+  }
+
+  @Test
+  public void testOutputSchemaProjection() throws IOException {
+    Schema outputSchema = Schema.recordOf("b", Schema.Field.of("y", Schema.of(Schema.Type.STRING)));
+    Schema inputSchema = Schema.recordOf("b",
+                                         Schema.Field.of("y", Schema.of(Schema.Type.STRING)),
+                                         Schema.Field.of("extra", Schema.of(Schema.Type.INT)));
+    List<File> files = new ArrayList<>();
+    ParquetRecordWriter writer = new ParquetRecordWriter(outputSchema, (index, avroSchema) -> {
+      File file = new File(temporaryFolder.getRoot(), "part-" + index + ".parquet");
+      files.add(file);
+      return AvroParquetWriter.<GenericRecord>builder(new Path(file.toURI())).withSchema(avroSchema).build();
+    }, 0L);
+    writer.write(StructuredRecord.builder(inputSchema).set("y", "v").set("extra", 1).build(), NullWritable.get());
+    writer.close(null);
+
+    GenericRecord record = read(files.get(0)).get(0);
+    Assert.assertEquals("v", record.get("y").toString());
+    Assert.assertNull(record.getSchema().getField("extra"));
+  }
+
+  @Test
+  public void testRollsOnFileSize() throws IOException {
+    List<File> files = new ArrayList<>();
+    ParquetRecordWriter writer = createWriter(files, 1L);
+    for (int i = 0; i < 3; i++) {
+      writer.write(StructuredRecord.builder(SCHEMA_B).set("y", "v" + i).build(), NullWritable.get());
+    }
+    writer.close(null);
+
+    Assert.assertEquals(3, files.size());
+    for (File file : files) {
+      Assert.assertEquals(1, read(file).size());
+    }
+  }
+
+  @Test
+  public void testNoRecordsNoFile() throws IOException {
+    List<File> files = new ArrayList<>();
+    createWriter(files, 0L).close(null);
+    Assert.assertTrue(files.isEmpty());
+  }
+
+  private ParquetRecordWriter createWriter(List<File> files, long maxFileSize) {
+    Configuration conf = new Configuration();
+    conf.setBoolean(AvroWriteSupport.WRITE_OLD_LIST_STRUCTURE, false);
+    return new ParquetRecordWriter(null, (index, avroSchema) -> {
+      Assert.assertEquals(files.size(), index);
+      File file = new File(temporaryFolder.getRoot(), "part-" + index + ".parquet");
+      files.add(file);
+      return AvroParquetWriter.<GenericRecord>builder(new Path(file.toURI()))
+        .withConf(conf)
+        .withSchema(avroSchema)
+        .withDictionaryEncoding(true)
+        .build();
+    }, maxFileSize);
+  }
+
+  private static List<GenericRecord> read(File file) throws IOException {
+    List<GenericRecord> records = new ArrayList<>();
+    try (ParquetReader<GenericRecord> reader =
+           AvroParquetReader.<GenericRecord>builder(new Path(file.toURI())).build()) {
+      GenericRecord record;
+      while ((record = reader.read()) != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.hadoop.io.NullWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of writing Avro staging files with each staging compression, in records per second, for
+ * representative schemas. The number of bytes staged by the last invocation is printed after each iteration, so that
+ * the CPU cost of a codec can be weighed against the data it saves uploading to GCS.
+ *
+ * Files are written to a stream that only counts bytes, so the results don't depend on the local disk.
+ *
+ * Run with {@code java -cp <test classpath> io.cdap.plugin.gcp.bigquery.sink.StagingCompressionBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StagingCompressionBenchmark {
+  private static final int NUM_RECORDS = 20000;
+  private static final String[] WORDS = {"order", "shipped", "pending", "returned", "customer", "warehouse", "gcs"};
+
+  /**
+   * Staging compression, with the deflate level appended for deflate.
+   */
+  @Param({"NONE", "SNAPPY", "DEFLATE-1", "DEFLATE-6", "DEFLATE-9"})
+  private String codec;
+
+  /**
+   * narrow: a few numeric and short string fields.
+   * wide: many low cardinality strings and longs, as in denormalized fact tables.
+   * nested: arrays and nested records.
+   * text: long free text fields.
+   */
+  @Param({"narrow", "wide", "nested", "text"})
+  private String schemaType;
+
+  private StagingCompression compression;
+  private int deflateLevel;
+  private Schema schema;
+  private List<StructuredRecord> records;
+  private long stagedBytes;
+
+  @Setup
+  public void setup() {
+    String[] codecParts = codec.split("-");
+    compression = StagingCompression.valueOf(codecParts[0]);
+    deflateLevel = codecParts.length > 1 ? Integer.parseInt(codecParts[1]) : 0;
+
+    Random random = new Random(0);
+    records = new ArrayList<>(NUM_RECORDS);
+    switch (schemaType) {
+      case "narrow":
+        schema = Schema.recordOf("narrow",
+                                 Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                                 Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)),
+                                 Schema.Field.of("status", Schema.of(Schema.Type.STRING)),
+                                 Schema.Field.of("ts", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)));
+        for (int i = 0; i < NUM_RECORDS; i++) {
+          records.add(StructuredRecord.builder(schema)
+                        .set("id", (long) i)
+                        .set("price", random.nextInt(100000) / 100d)
+                        .set("status", word(random))
+                        .set("ts", 1650000000000000L + i * 1000L)
+                        .build());
+        }
+        break;
+      case "wide":
+        List<Schema.Field> fields = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+          fields.add(Schema.Field.of("s" + i, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+          fields.add(Schema.Field.of("l" + i, Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+        }
+        schema = Schema.recordOf("wide", fields);
+        for (int i = 0; i < NUM_RECORDS; i++) {
+          StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+          for (int j = 0; j < 25; j++) {
+            builder.set("s" + j, word(random)).set("l" + j, (long) random.nextInt(1000));
+          }
+          records.add(builder.build());
+        }
+        break;
+      case "nested":
+        Schema item = Schema.recordOf("item",
+                                      Schema.Field.of("sku", Schema.of(Schema.Type.STRING)),
+                                      Schema.Field.of("quantity", Schema.of(Schema.Type.INT)));
+        schema = Schema.recordOf("nested",
+                                 Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                                 Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+                                 Schema.Field.of("items", Schema.arrayOf(item)));
+        for (int i = 0; i < NUM_RECORDS; i++) {
+          List<StructuredRecord> items = new ArrayList<>();
+          for (int j = 0; j < 4; j++) {
+            items.add(StructuredRecord.builder(item)
+                        .set("sku", "SKU-" + random.nextInt(500))
+                        .set("quantity", random.nextInt(10))
+                        .build());
+          }
+          records.add(StructuredRecord.builder(schema)
+                        .set("id", (long) i)
+                        .set("tags", Collections.nCopies(3, word(random)))
+                        .set("items", items)
+                        .build());
+        }
+        break;
+      case "text":
+        schema = Schema.recordOf("text",
+                                 Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                                 Schema.Field.of("body", Schema.of(Schema.Type.STRING)));
+        for (int i = 0; i < NUM_RECORDS; i++) {
+          StringBuilder body = new StringBuilder();
+          for (int j = 0; j < 80; j++) {
+            body.append(word(random)).append(' ');
+          }
+          records.add(StructuredRecord.builder(schema).set("id", (long) i).set("body", body.toString()).build());
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown schema type " + schemaType);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void printStagedBytes() {
+    System.out.printf("%n%s %s staged %d bytes for %d records%n", codec, schemaType, stagedBytes, NUM_RECORDS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_RECORDS)
+  public long writeFile() throws IOException {
+    CountingOutputStream out = new CountingOutputStream();
+    AvroRecordWriter writer = new AvroRecordWriter(schema, compression.getCodec(deflateLevel), index -> out,
+                                                   DataFileConstants.DEFAULT_SYNC_INTERVAL, 1, 0L);
+    for (StructuredRecord record : records) {
+      writer.write(record, NullWritable.get());
+    }
+    writer.close(null);
+    stagedBytes = out.count;
+    return stagedBytes;
+  }
+
+  private static String word(Random random) {
+    return WORDS[random.nextInt(WORDS.length)];
+  }
+
+  /**
+   * Discards the bytes written to it, only counting them.
+   */
+  private static class CountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(StagingCompressionBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.avro.AvroWriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing Avro and Parquet staging files for a wide table, in time per file and in staged bytes. The number
+ * of bytes staged by the last invocation is printed after each iteration.
+ *
+ * Load times depend on BigQuery and are not covered, load the files written with {@code bq load} to compare them.
+ *
+ * Run with {@code java -cp <test classpath> io.cdap.plugin.gcp.bigquery.sink.StagingFormatBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StagingFormatBenchmark {
+  private static final int NUM_RECORDS = 50000;
+  private static final int NUM_STRING_FIELDS = 20;
+  private static final int NUM_LONG_FIELDS = 20;
+  private static final String[] CATEGORIES = {"alpha", "beta", "gamma", "delta", "epsilon"};
+
+  @Param({"AVRO", "PARQUET"})
+  private StagingFormat format;
+
+  private Schema schema;
+  private List<StructuredRecord> records;
+  private File directory;
+  private File file;
+
+  @Setup
+  public void setup() throws IOException {
+    List<Schema.Field> fields = new ArrayList<>();
+    fields.add(Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    fields.add(Schema.Field.of("created", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)));
+    for (int i = 0; i < NUM_STRING_FIELDS; i++) {
+      fields.add(Schema.Field.of("category" + i, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    }
+    for (int i = 0; i < NUM_LONG_FIELDS; i++) {
+      fields.add(Schema.Field.of("amount" + i, Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+    }
+    schema = Schema.recordOf("record", fields);
+
+    Random random = new Random(0);
+    records = new ArrayList<>(NUM_RECORDS);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema)
+        .set("id", (long) i)
+        .set("created", 1650000000000000L + i * 1000L);
+      for (int j = 0; j < NUM_STRING_FIELDS; j++) {
+        builder.set("category" + j, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+      }
+      for (int j = 0; j < NUM_LONG_FIELDS; j++) {
+        builder.set("amount" + j, (long) random.nextInt(1000));
+      }
+      records.add(builder.build());
+    }
+    directory = Files.createTempDirectory("staging").toFile();
+  }
+
+  @TearDown(Level.Iteration)
+  public void printStagedBytes() {
+    System.out.printf("%n%s staged %d bytes for %d records%n", format, file.length(), NUM_RECORDS);
+  }
+
+  @TearDown
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Benchmark
+  public long writeFile() throws Exception {
+    file = new File(directory, "part-" + format);
+    file.delete();
+    new File(directory, "." + file.getName() + ".crc").delete();
+    RecordWriter<StructuredRecord, NullWritable> writer = createWriter();
+    for (StructuredRecord record : records) {
+      writer.write(record, NullWritable.get());
+    }
+    writer.close(null);
+    return file.length();
+  }
+
+  private RecordWriter<StructuredRecord, NullWritable> createWriter() {
+    if (format == StagingFormat.AVRO) {
+      return new AvroRecordWriter(schema, CodecFactory.nullCodec(), index -> new FileOutputStream(file),
+                                  DataFileConstants.DEFAULT_SYNC_INTERVAL, 1, 0L);
+    }
+    Configuration conf = new Configuration();
+    conf.setBoolean(AvroWriteSupport.WRITE_OLD_LIST_STRUCTURE, false);
+    return new ParquetRecordWriter(schema, (index, avroSchema) -> AvroParquetWriter
+      .<GenericRecord>builder(new Path(file.toURI()))
+      .withConf(conf)
+      .withSchema(avroSchema)
+      .withCompressionCodec(CompressionCodecName.SNAPPY)
+      .withDictionaryEncoding(true)
+      .withRowGroupSize(ParquetOutputFormat.DEFAULT_ROW_GROUP_SIZE)
+      .build(), 0L);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(StagingFormatBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.cloud.bigquery.TimePartitioning;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Tests for {@link TablePartitioning}.
+ */
+public class TablePartitioningTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("date", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("datetime", Schema.nullableOf(Schema.of(Schema.LogicalType.DATETIME))),
+    Schema.Field.of("ts", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+    Schema.Field.of("number", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+
+  @Test
+  public void testTimePartitions() {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .setDate("date", LocalDate.of(2022, 3, 7))
+      .setDateTime("datetime", LocalDateTime.of(2022, 3, 7, 5, 30))
+      // 2022-03-07 02:00 in UTC
+      .setTimestamp("ts", ZonedDateTime.of(2022, 3, 6, 18, 0, 0, 0, ZoneId.of("America/Los_Angeles")))
+      .build();
+
+    Assert.assertEquals("20220307", TablePartitioning.ofTime(TimePartitioning.Type.DAY, "date")
+      .getPartitionId(record));
+    Assert.assertEquals("2022030705", TablePartitioning.ofTime(TimePartitioning.Type.HOUR, "datetime")
+      .getPartitionId(record));
+    Assert.assertEquals("2022030702", TablePartitioning.ofTime(TimePartitioning.Type.HOUR, "ts")
+      .getPartitionId(record));
+    Assert.assertEquals("202203", TablePartitioning.ofTime(TimePartitioning.Type.MONTH, "ts")
+      .getPartitionId(record));
+    Assert.assertEquals("2022", TablePartitioning.ofTime(TimePartitioning.Type.YEAR, "date")
+      .getPartitionId(record));
+    Assert.assertEquals(TablePartitioning.NULL_PARTITION, TablePartitioning.ofTime(TimePartitioning.Type.DAY, "number")
+      .getPartitionId(record));
+  }
+
+  @Test
+  public void testRangePartitions() {
+    TablePartitioning partitioning = TablePartitioning.ofRange("number", -20L, 100L, 10L);
+    Assert.assertEquals("-20", partitioning.getPartitionId(record(-11L)));
+    Assert.assertEquals("-10", partitioning.getPartitionId(record(-10L)));
+    Assert.assertEquals("90", partitioning.getPartitionId(record(99L)));
+    Assert.assertEquals(TablePartitioning.UNPARTITIONED, partitioning.getPartitionId(record(100L)));
+    Assert.assertEquals(TablePartitioning.UNPARTITIONED, partitioning.getPartitionId(record(-21L)));
+    Assert.assertEquals(TablePartitioning.NULL_PARTITION, partitioning.getPartitionId(record(null)));
+  }
+
+  @Test
+  public void testParse() {
+    TablePartitioning range = TablePartitioning.parse(TablePartitioning.ofRange("number", 0L, 100L, 10L).toString());
+    Assert.assertEquals("number", range.getField());
+    Assert.assertEquals("50", range.getPartitionId(record(55L)));
+
+    TablePartitioning time = TablePartitioning.parse(TablePartitioning.ofTime(TimePartitioning.Type.MONTH, "date")
+                                                       .toString());
+    Assert.assertEquals("date", time.getField());
+    Assert.assertEquals("202203",
+                        time.getPartitionId(StructuredRecord.builder(SCHEMA)
+                                              .setDate("date", LocalDate.of(2022, 3, 7)).build()));
+  }
+
+  @Test
+  public void testFileNames() {
+    String fileName = TablePartitioning.getFileBaseName("20220307") + "-m-00000-1.avro";
+    Assert.assertEquals("20220307", TablePartitioning.getPartitionIdOfFile(fileName));
+    Assert.assertEquals("__NULL__", TablePartitioning.getPartitionIdOfFile(
+      TablePartitioning.getFileBaseName(TablePartitioning.NULL_PARTITION) + "-r-00001.json"));
+    Assert.assertNull(TablePartitioning.getPartitionIdOfFile("part-m-00000.avro"));
+  }
+
+  private static StructuredRecord record(Long number) {
+    return StructuredRecord.builder(SCHEMA).set("number", number).build();
+  }
+}
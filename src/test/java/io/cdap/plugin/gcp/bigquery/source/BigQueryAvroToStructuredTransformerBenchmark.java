@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link BigQueryAvroToStructuredTransformer} on a date heavy schema, with dates and times exported as
+ * strings, which is how tables were exported before Avro logical types were requested, and as numbers.
+ *
+ * Run with {@code java -cp <test classpath>
+ * io.cdap.plugin.gcp.bigquery.source.BigQueryAvroToStructuredTransformerBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BigQueryAvroToStructuredTransformerBenchmark {
+  private static final int DATE_FIELDS = 8;
+  private static final Schema SCHEMA;
+
+  static {
+    Schema.Field[] fields = new Schema.Field[DATE_FIELDS * 3 + 1];
+    fields[0] = Schema.Field.of("id", Schema.of(Schema.Type.LONG));
+    for (int i = 0; i < DATE_FIELDS; i++) {
+      fields[i * 3 + 1] = Schema.Field.of("date" + i, Schema.nullableOf(Schema.of(Schema.LogicalType.DATE)));
+      fields[i * 3 + 2] = Schema.Field.of("time" + i, Schema.nullableOf(Schema.of(Schema.LogicalType.TIME_MICROS)));
+      fields[i * 3 + 3] = Schema.Field.of("datetime" + i,
+                                          Schema.nullableOf(Schema.of(Schema.LogicalType.DATETIME)));
+    }
+    SCHEMA = Schema.recordOf("record", fields);
+  }
+
+  private GenericRecord stringRecord;
+  private GenericRecord logicalTypeRecord;
+  private BigQueryAvroToStructuredTransformer transformer;
+
+  @Setup
+  public void setup() {
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(SCHEMA.toString());
+    LocalDate date = LocalDate.of(2022, 4, 15);
+    LocalTime time = LocalTime.of(12, 34, 56, 789000);
+    String datetime = LocalDateTime.of(date, time).toString();
+    stringRecord = new GenericData.Record(avroSchema);
+    logicalTypeRecord = new GenericData.Record(avroSchema);
+    stringRecord.put("id", 1234567L);
+    logicalTypeRecord.put("id", 1234567L);
+    for (int i = 0; i < DATE_FIELDS; i++) {
+      stringRecord.put("date" + i, date.toString());
+      stringRecord.put("time" + i, time.toString());
+      stringRecord.put("datetime" + i, datetime);
+      logicalTypeRecord.put("date" + i, (int) date.toEpochDay());
+      logicalTypeRecord.put("time" + i, TimeUnit.NANOSECONDS.toMicros(time.toNanoOfDay()));
+      logicalTypeRecord.put("datetime" + i, datetime);
+    }
+    transformer = new BigQueryAvroToStructuredTransformer();
+  }
+
+  @Benchmark
+  public StructuredRecord stringDates() throws IOException {
+    return transformer.transform(stringRecord, SCHEMA);
+  }
+
+  @Benchmark
+  public StructuredRecord logicalTypes() throws IOException {
+    return transformer.transform(logicalTypeRecord, SCHEMA);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(BigQueryAvroToStructuredTransformerBenchmark.class.getSimpleName())
+                 .build()).run();
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+import com.google.cloud.bigquery.storage.v1.AvroRows;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import com.google.cloud.bigquery.storage.v1.StreamStats;
+import com.google.protobuf.ByteString;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link BigQueryStorageReadRecordReader}.
+ */
+public class BigQueryStorageReadRecordReaderTest {
+  private static final Schema SCHEMA = new Schema.Parser().parse(
+    "{\"type\":\"record\",\"name\":\"__root__\",\"fields\":[" +
+      "{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"name\",\"type\":[\"null\",\"string\"]}]}");
+
+  @Test
+  public void testReadBlocks() throws IOException {
+    BigQueryStorageReadRecordReader reader = new BigQueryStorageReadRecordReader();
+    reader.initialize(Arrays.asList(response(0.5f, record(1L, "a"), record(2L, null)),
+                                    // Responses may carry no rows, only stats
+                                    ReadRowsResponse.getDefaultInstance(),
+                                    response(1f, record(3L, "c"))).iterator(),
+                      SCHEMA.toString());
+
+    Assert.assertTrue(reader.nextKeyValue());
+    Assert.assertEquals(0L, reader.getCurrentKey().get());
+    Assert.assertEquals(1L, reader.getCurrentValue().get("id"));
+    Assert.assertEquals("a", reader.getCurrentValue().get("name").toString());
+    Assert.assertEquals(0.5f, reader.getProgress(), 0f);
+
+    Assert.assertTrue(reader.nextKeyValue());
+    Assert.assertEquals(1L, reader.getCurrentKey().get());
+    Assert.assertEquals(2L, reader.getCurrentValue().get("id"));
+    Assert.assertNull(reader.getCurrentValue().get("name"));
+
+    Assert.assertTrue(reader.nextKeyValue());
+    Assert.assertEquals(2L, reader.getCurrentKey().get());
+    Assert.assertEquals(3L, reader.getCurrentValue().get("id"));
+    Assert.assertEquals(1f, reader.getProgress(), 0f);
+
+    Assert.assertFalse(reader.nextKeyValue());
+    reader.close();
+  }
+
+  @Test
+  public void testEmptyStream() throws IOException {
+    BigQueryStorageReadRecordReader reader = new BigQueryStorageReadRecordReader();
+    reader.initialize(Arrays.<ReadRowsResponse>asList().iterator(), SCHEMA.toString());
+    Assert.assertFalse(reader.nextKeyValue());
+  }
+
+  private static GenericData.Record record(long id, String name) {
+    GenericData.Record record = new GenericData.Record(SCHEMA);
+    record.put("id", id);
+    record.put("name", name);
+    return record;
+  }
+
+  private static ReadRowsResponse response(float progress, GenericData.Record... records) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    GenericDatumWriter<GenericData.Record> writer = new GenericDatumWriter<>(SCHEMA);
+    for (GenericData.Record record : records) {
+      writer.write(record, encoder);
+    }
+    encoder.flush();
+    return ReadRowsResponse.newBuilder()
+      .setAvroRows(AvroRows.newBuilder().setSerializedBinaryRows(ByteString.copyFrom(out.toByteArray())))
+      .setRowCount(records.length)
+      .setStats(StreamStats.newBuilder().setProgress(StreamStats.Progress.newBuilder().setAtResponseEnd(progress)))
+      .build();
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BigQueryWatermark}.
+ */
+public class BigQueryWatermarkTest {
+
+  @Test
+  public void testIntegerCondition() {
+    BigQueryWatermark watermark = BigQueryWatermark.of("id", LegacySQLTypeName.INTEGER);
+    Assert.assertEquals("`id` > 90 and `id` <= 250", watermark.generateCondition(100L, 250L, 10L));
+    Assert.assertEquals("`id` <= 250", watermark.generateCondition(null, 250L, 10L));
+    Assert.assertNull(watermark.generateCondition(null, null, 0L));
+  }
+
+  @Test
+  public void testTimestampCondition() {
+    BigQueryWatermark watermark = BigQueryWatermark.of("updated", LegacySQLTypeName.TIMESTAMP);
+    // 2022-03-07 02:00:00.000001 UTC
+    long previous = 1646618400000001L;
+    Assert.assertEquals("`updated` > CAST('2022-03-07 01:59:00.000001 UTC' AS TIMESTAMP) and " +
+                          "`updated` <= CAST('2022-03-07 03:00:00.500000 UTC' AS TIMESTAMP)",
+                        watermark.generateCondition(previous, previous + 3600499999L, 60L));
+    // Before the epoch
+    Assert.assertEquals("`updated` <= CAST('1969-12-31 23:59:59.999999 UTC' AS TIMESTAMP)",
+                        watermark.generateCondition(null, -1L, 0L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedType() {
+    BigQueryWatermark.of("name", LegacySQLTypeName.STRING);
+  }
+}
@@ -16,6 +16,8 @@
 
 package io.cdap.plugin.gcp.bigquery.source;
 
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.LegacySQLTypeName;
 import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.Table;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
@@ -27,6 +29,7 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -35,6 +38,10 @@ import java.util.Objects;
 @RunWith(PowerMockRunner.class)
 @PrepareForTest(BigQueryUtil.class)
 public class PartitionedBigQueryInputFormatTest {
+  private static final com.google.cloud.bigquery.Schema TABLE_SCHEMA = com.google.cloud.bigquery.Schema.of(
+    Field.of("a", LegacySQLTypeName.INTEGER),
+    Field.of("b", LegacySQLTypeName.STRING),
+    Field.of("c", LegacySQLTypeName.FLOAT));
 
   @Test
   public void testGenerateQueryForMaterializingView() {
@@ -44,13 +51,13 @@ public class PartitionedBigQueryInputFormatTest {
     String filter = "tableColumn = 'abc'";
     PartitionedBigQueryInputFormat partitionedBigQueryInputFormat = new PartitionedBigQueryInputFormat();
     String generatedQuery = partitionedBigQueryInputFormat.generateQueryForMaterializingView(datasetProject, dataset,
-                                                                                             table, filter);
+                                                                                             table, null, filter);
     String expectedQuery = String.format("select * from `%s.%s.%s` where %s", datasetProject, dataset, table, filter);
     Assert.assertEquals(expectedQuery, generatedQuery);
 
     String expectedQueryWithoutFilter = String.format("select * from `%s.%s.%s`", datasetProject, dataset, table);
     generatedQuery = partitionedBigQueryInputFormat.generateQueryForMaterializingView(datasetProject, dataset,
-                                                                                      table, null);
+                                                                                      table, null, null);
     Assert.assertEquals(expectedQueryWithoutFilter, generatedQuery);
   }
 
@@ -68,13 +75,97 @@ public class PartitionedBigQueryInputFormatTest {
                                                     ArgumentMatchers.anyString(), ArgumentMatchers.any(),
                                                     ArgumentMatchers.anyBoolean())).thenReturn(t);
     PowerMockito.when(t.getDefinition()).thenReturn(tableDefinition);
-    String generatedQuery = partitionedBigQueryInputFormat.generateQuery(null, null, filter, datasetProject,
+    String generatedQuery = partitionedBigQueryInputFormat.generateQuery(null, null, filter, null, datasetProject,
                                                                          datasetProject, dataset, table, null, true);
     String expectedQuery = String.format("select * from `%s.%s.%s` where %s", datasetProject, dataset, table, filter);
     Assert.assertEquals(expectedQuery, generatedQuery);
 
-    generatedQuery = partitionedBigQueryInputFormat.generateQuery(null, null, null, datasetProject, datasetProject,
-                                                                  dataset, table, null, true);
+    generatedQuery = partitionedBigQueryInputFormat.generateQuery(null, null, null, null, datasetProject,
+                                                                  datasetProject, dataset, table, null, true);
     Assert.assertNull(generatedQuery);
   }
+
+  @Test
+  public void testGenerateQueryWithSelectedFields() {
+    String datasetProject = "test_bq_dataset_project";
+    String dataset = "test_bq_dataset";
+    String table = "test_bq_table";
+    PartitionedBigQueryInputFormat partitionedBigQueryInputFormat = new PartitionedBigQueryInputFormat();
+    PowerMockito.mockStatic(BigQueryUtil.class);
+    Table t = PowerMockito.mock(Table.class);
+    StandardTableDefinition tableDefinition = PowerMockito.mock(StandardTableDefinition.class);
+    PowerMockito.when(BigQueryUtil.getBigQueryTable(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                                                    ArgumentMatchers.anyString(), ArgumentMatchers.any(),
+                                                    ArgumentMatchers.anyBoolean())).thenReturn(t);
+    PowerMockito.when(t.getDefinition()).thenReturn(tableDefinition);
+    PowerMockito.when(tableDefinition.getSchema()).thenReturn(TABLE_SCHEMA);
+
+    String generatedQuery = partitionedBigQueryInputFormat.generateQuery(null, null, null, Arrays.asList("a", "c"),
+                                                                         datasetProject, datasetProject, dataset,
+                                                                         table, null, true);
+    Assert.assertEquals(String.format("select `a`, `c` from `%s.%s.%s`", datasetProject, dataset, table),
+                        generatedQuery);
+
+    generatedQuery = partitionedBigQueryInputFormat.generateQuery(null, null, "a > 1", Arrays.asList("c"),
+                                                                  datasetProject, datasetProject, dataset, table,
+                                                                  null, true);
+    Assert.assertEquals(String.format("select `c` from `%s.%s.%s` where a > 1", datasetProject, dataset, table),
+                        generatedQuery);
+
+    // Tables are exported directly when all of their columns are read
+    generatedQuery = partitionedBigQueryInputFormat.generateQuery(null, null, null, Arrays.asList("c", "b", "a"),
+                                                                  datasetProject, datasetProject, dataset, table,
+                                                                  null, true);
+    Assert.assertNull(generatedQuery);
+  }
+
+  @Test
+  public void testGenerateQueryWithSelectedFieldsRequiringPartitionFilter() {
+    String datasetProject = "test_bq_dataset_project";
+    String dataset = "test_bq_dataset";
+    String table = "test_bq_table";
+    PartitionedBigQueryInputFormat partitionedBigQueryInputFormat = new PartitionedBigQueryInputFormat();
+    PowerMockito.mockStatic(BigQueryUtil.class);
+    Table t = PowerMockito.mock(Table.class);
+    StandardTableDefinition tableDefinition = PowerMockito.mock(StandardTableDefinition.class);
+    PowerMockito.when(BigQueryUtil.getBigQueryTable(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                                                    ArgumentMatchers.anyString(), ArgumentMatchers.any(),
+                                                    ArgumentMatchers.anyBoolean())).thenReturn(t);
+    PowerMockito.when(t.getDefinition()).thenReturn(tableDefinition);
+    PowerMockito.when(t.getRequirePartitionFilter()).thenReturn(true);
+    PowerMockito.when(tableDefinition.getSchema()).thenReturn(TABLE_SCHEMA);
+
+    // Without a partition range or filter, the table is exported directly instead of queried without a filter
+    String generatedQuery = partitionedBigQueryInputFormat.generateQuery(null, null, null, Arrays.asList("a", "c"),
+                                                                         datasetProject, datasetProject, dataset,
+                                                                         table, null, true);
+    Assert.assertNull(generatedQuery);
+
+    // With a filter, the selected columns are still queried
+    generatedQuery = partitionedBigQueryInputFormat.generateQuery(null, null, "a > 1", Arrays.asList("c"),
+                                                                  datasetProject, datasetProject, dataset, table,
+                                                                  null, true);
+    Assert.assertEquals(String.format("select `c` from `%s.%s.%s` where a > 1", datasetProject, dataset, table),
+                        generatedQuery);
+  }
+
+  @Test
+  public void testGenerateColumnList() {
+    Assert.assertEquals("`b`", PartitionedBigQueryInputFormat.generateColumnList(Arrays.asList("b"), TABLE_SCHEMA));
+    Assert.assertNull(PartitionedBigQueryInputFormat.generateColumnList(null, TABLE_SCHEMA));
+    Assert.assertNull(PartitionedBigQueryInputFormat.generateColumnList(Arrays.asList("a", "b", "c"), TABLE_SCHEMA));
+    Assert.assertNull(PartitionedBigQueryInputFormat.generateColumnList(Arrays.asList("a", "_PARTITIONTIME"),
+                                                                        TABLE_SCHEMA));
+  }
+
+  @Test
+  public void testGenerateCondition() {
+    String filter = "tableColumn = 'abc'";
+    PartitionedBigQueryInputFormat partitionedBigQueryInputFormat = new PartitionedBigQueryInputFormat();
+    StandardTableDefinition tableDefinition = PowerMockito.mock(StandardTableDefinition.class);
+    Assert.assertEquals(filter, partitionedBigQueryInputFormat.generateCondition(null, null, filter,
+                                                                                 tableDefinition));
+    // Partition dates are ignored for tables that are not partitioned
+    Assert.assertNull(partitionedBigQueryInputFormat.generateCondition("2022-01-01", null, null, tableDefinition));
+  }
 }
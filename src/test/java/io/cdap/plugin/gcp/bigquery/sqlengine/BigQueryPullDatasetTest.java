@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sqlengine;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.DatasetId;
+import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.etl.api.engine.sql.request.SQLPullRequest;
+import io.cdap.plugin.gcp.bigquery.source.ReadMethod;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Map;
+
+/**
+ * Tests for {@link BigQueryPullDataset}.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(BigQueryUtil.class)
+public class BigQueryPullDatasetTest {
+  private static final Schema SCHEMA = Schema.recordOf("record",
+                                                       Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+
+  @Test
+  public void testPullThroughExport() throws Exception {
+    BigQueryPullDataset dataset = getInstance(ReadMethod.EXPORT);
+
+    Map<String, String> inputConfiguration = dataset.getInputFormatConfiguration();
+    Assert.assertEquals(ReadMethod.EXPORT.name(), inputConfiguration.get(BigQueryConstants.CONFIG_READ_METHOD));
+    Assert.assertNotNull(dataset.getGCSPath());
+    Assert.assertEquals(dataset.getGCSPath(), inputConfiguration.get(BigQueryConfiguration.TEMP_GCS_PATH_KEY));
+  }
+
+  @Test
+  public void testPullThroughStorageReadAPI() throws Exception {
+    BigQueryPullDataset dataset = getInstance(ReadMethod.STORAGE_READ_API);
+
+    // The table is read from Storage Read API streams, without exporting it to a temporary GCS directory
+    Map<String, String> inputConfiguration = dataset.getInputFormatConfiguration();
+    Assert.assertEquals(ReadMethod.STORAGE_READ_API.name(),
+                        inputConfiguration.get(BigQueryConstants.CONFIG_READ_METHOD));
+    Assert.assertNull(dataset.getGCSPath());
+    Assert.assertFalse(inputConfiguration.containsKey(BigQueryConfiguration.TEMP_GCS_PATH_KEY));
+    Assert.assertEquals("project", inputConfiguration.get(BigQueryConfiguration.INPUT_PROJECT_ID_KEY));
+    Assert.assertEquals("dataset", inputConfiguration.get(BigQueryConfiguration.INPUT_DATASET_ID_KEY));
+    Assert.assertEquals("table", inputConfiguration.get(BigQueryConfiguration.INPUT_TABLE_ID_KEY));
+
+    // There is no temporary directory to delete once the dataset is removed
+    PowerMockito.mockStatic(BigQueryUtil.class);
+    BigQuerySQLEngine engine = new BigQuerySQLEngine(Mockito.mock(BigQuerySQLEngineConfig.class));
+    engine.deleteTempFolder(dataset);
+    PowerMockito.verifyStatic(BigQueryUtil.class, Mockito.never());
+    BigQueryUtil.deleteTemporaryDirectory(ArgumentMatchers.any(), ArgumentMatchers.anyString());
+  }
+
+  private static BigQueryPullDataset getInstance(ReadMethod readMethod) throws Exception {
+    SQLPullRequest pullRequest = Mockito.mock(SQLPullRequest.class);
+    Mockito.when(pullRequest.getDatasetName()).thenReturn("output");
+    Mockito.when(pullRequest.getDatasetSchema()).thenReturn(SCHEMA);
+    return BigQueryPullDataset.getInstance(pullRequest, new Configuration(), Mockito.mock(BigQuery.class),
+                                           DatasetId.of("project", "dataset"), "table", "bucket", "run",
+                                           readMethod);
+  }
+}
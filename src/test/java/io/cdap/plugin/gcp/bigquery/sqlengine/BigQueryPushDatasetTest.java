@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sqlengine;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.DatasetId;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.TableInfo;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.etl.api.engine.sql.request.SQLPushRequest;
+import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
+import io.cdap.plugin.gcp.bigquery.sink.WriteMethod;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+
+/**
+ * Tests for {@link BigQueryPushDataset}.
+ */
+public class BigQueryPushDatasetTest {
+  private static final Schema SCHEMA = Schema.recordOf("record",
+                                                       Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                                                       Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+
+  @Test
+  public void testPushThroughLoadJobByDefault() throws Exception {
+    BigQuerySQLEngineConfig config = Mockito.mock(BigQuerySQLEngineConfig.class);
+    BigQuery bigQuery = Mockito.mock(BigQuery.class);
+
+    BigQueryPushDataset dataset = getInstance(config, bigQuery);
+
+    Assert.assertEquals(WriteMethod.LOAD_JOB.name(),
+                        dataset.getOutputFormatConfiguration().get(BigQueryConstants.CONFIG_WRITE_METHOD));
+    // The schema of the table is set by the load job
+    StandardTableDefinition definition = getCreatedTable(bigQuery).getDefinition();
+    Assert.assertTrue(definition.getSchema().getFields().isEmpty());
+  }
+
+  @Test
+  public void testPushThroughStorageWriteAPI() throws Exception {
+    BigQuerySQLEngineConfig config = Mockito.mock(BigQuerySQLEngineConfig.class);
+    Mockito.when(config.shouldUseStorageWriteAPI()).thenReturn(true);
+    BigQuery bigQuery = Mockito.mock(BigQuery.class);
+
+    BigQueryPushDataset dataset = getInstance(config, bigQuery);
+
+    Assert.assertEquals(WriteMethod.STORAGE_WRITE_API.name(),
+                        dataset.getOutputFormatConfiguration().get(BigQueryConstants.CONFIG_WRITE_METHOD));
+    // Write streams are created for the schema of the table, so it is created with all fields
+    StandardTableDefinition definition = getCreatedTable(bigQuery).getDefinition();
+    Assert.assertEquals(BigQuerySinkUtils.convertCdapSchemaToBigQuerySchema(SCHEMA), definition.getSchema());
+    Assert.assertNull(definition.getClustering());
+  }
+
+  private static BigQueryPushDataset getInstance(BigQuerySQLEngineConfig config, BigQuery bigQuery) throws Exception {
+    SQLPushRequest pushRequest = Mockito.mock(SQLPushRequest.class);
+    Mockito.when(pushRequest.getDatasetName()).thenReturn("input");
+    Mockito.when(pushRequest.getDatasetSchema()).thenReturn(SCHEMA);
+    return BigQueryPushDataset.getInstance(pushRequest, config, new Configuration(), bigQuery,
+                                           DatasetId.of("project", "dataset"), "bucket", "run",
+                                           Collections.emptyList());
+  }
+
+  private static TableInfo getCreatedTable(BigQuery bigQuery) {
+    ArgumentCaptor<TableInfo> tableInfo = ArgumentCaptor.forClass(TableInfo.class);
+    Mockito.verify(bigQuery).create(tableInfo.capture());
+    return tableInfo.getValue();
+  }
+}
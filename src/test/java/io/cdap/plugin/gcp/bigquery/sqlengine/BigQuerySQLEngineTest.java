@@ -36,8 +36,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -405,4 +410,67 @@ public class BigQuerySQLEngineTest {
       "Unsupported stage name 'From`Address'. Stage names cannot contain backtick ` or backslash \\ "));
     Assert.assertTrue(issues.contains("Unsupported alias 'Shi\\\\pments' for stage 'Ship\\ments'"));
   }
+
+  @Test
+  public void testStageNameToPendingStatementMap() {
+    BigQuerySQLDataset stored = mock(BigQuerySQLDataset.class);
+    when(stored.getBigQueryTable()).thenReturn("stored_table");
+    BigQuerySQLDataset pending = mock(BigQuerySQLDataset.class);
+    when(pending.getBigQueryTable()).thenReturn("pending_table");
+    when(pending.isPending()).thenReturn(true);
+    when(pending.getPendingSQLStatement()).thenReturn("SELECT 1");
+
+    Map<String, BigQuerySQLDataset> datasets = new HashMap<>();
+    datasets.put("Stored", stored);
+    datasets.put("Pending", pending);
+
+    Map<String, String> tables = BigQuerySQLEngine.getStageNameToBQTableNameMap(datasets);
+    Assert.assertEquals(2, tables.size());
+    Assert.assertEquals("stored_table", tables.get("Stored"));
+    Assert.assertEquals("pending_table", tables.get("Pending"));
+    Assert.assertEquals(Collections.singletonMap("Pending", "SELECT 1"),
+                        BigQuerySQLEngine.getStageNameToPendingStatementMap(datasets));
+    // Statements are only built for pending datasets, once
+    verify(stored, never()).getPendingSQLStatement();
+    verify(pending, times(1)).getPendingSQLStatement();
+  }
+
+  @Test
+  public void testAddJoinKeys() {
+    JoinStage purchases = JoinStage.builder("Purchases", null).build();
+    JoinStage items = JoinStage.builder("Items", null).build();
+    JoinStage users = JoinStage.builder("Users", null).build();
+
+    Map<String, List<String>> joinKeys = new HashMap<>();
+    BigQuerySQLEngine.addJoinKeys(JoinDefinition.builder()
+                                    .select(new JoinField("Purchases", "id"))
+                                    .from(purchases, items)
+                                    .on(JoinCondition.onKeys()
+                                          .addKey(new JoinKey("Purchases", Arrays.asList("item_id", "region")))
+                                          .addKey(new JoinKey("Items", Arrays.asList("id", "region")))
+                                          .build())
+                                    .build(), joinKeys);
+    // Keys of the first join of a stage are kept
+    BigQuerySQLEngine.addJoinKeys(JoinDefinition.builder()
+                                    .select(new JoinField("Purchases", "id"))
+                                    .from(purchases, users)
+                                    .on(JoinCondition.onKeys()
+                                          .addKey(new JoinKey("Purchases", Collections.singletonList("user_id")))
+                                          .addKey(new JoinKey("Users", Collections.singletonList("id")))
+                                          .build())
+                                    .build(), joinKeys);
+    // Expression joins have no keys
+    BigQuerySQLEngine.addJoinKeys(JoinDefinition.builder()
+                                    .select(new JoinField("Items", "id"))
+                                    .from(JoinStage.builder("Stock", null).build(), items)
+                                    .on(JoinCondition.onExpression()
+                                          .setExpression("Stock.item_id = Items.id")
+                                          .build())
+                                    .build(), joinKeys);
+
+    Assert.assertEquals(3, joinKeys.size());
+    Assert.assertEquals(Arrays.asList("item_id", "region"), joinKeys.get("Purchases"));
+    Assert.assertEquals(Arrays.asList("id", "region"), joinKeys.get("Items"));
+    Assert.assertEquals(Collections.singletonList("id"), joinKeys.get("Users"));
+  }
 }
@@ -24,6 +24,7 @@ import io.cdap.cdap.etl.api.join.JoinDefinition;
 import io.cdap.cdap.etl.api.join.JoinField;
 import io.cdap.cdap.etl.api.join.JoinKey;
 import io.cdap.cdap.etl.api.join.JoinStage;
+import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQueryTableStatistics;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -128,6 +129,44 @@ public class BigQueryJoinSQLBuilderTest {
       helper.getQuery());
   }
 
+  @Test
+  public void testFieldEqualityQueryWithPendingStatement() {
+    JoinStage users = JoinStage.builder("Users", null).setRequired(true).build();
+    JoinStage purchases = JoinStage.builder("Purchases", null).setRequired(true).build();
+
+    JoinCondition condition = JoinCondition.onKeys()
+      .addKey(new JoinKey("Users", Arrays.asList("id")))
+      .addKey(new JoinKey("Purchases", Arrays.asList("user_id")))
+      .setNullSafe(false)
+      .build();
+
+    JoinDefinition joinDefinition = JoinDefinition.builder()
+      .select(new JoinField("Users", "id", "user_id"),
+              new JoinField("Purchases", "id", "purchase_id"))
+      .from(users, purchases)
+      .on(condition)
+      .build();
+
+    Map<String, String> stateToBqTableNames = new HashMap<>();
+    stateToBqTableNames.put("Users", "u");
+    stateToBqTableNames.put("Purchases", "p");
+
+    // Purchases is not stored in its table yet, so it's joined as a nested query.
+    Map<String, String> stageToPendingStatements =
+      Collections.singletonMap("Purchases", "SELECT * FROM `my-project.MY_DS.raw` AS `Raw` WHERE amount > 0");
+
+    BigQueryJoinSQLBuilder helper =
+      new BigQueryJoinSQLBuilder(joinDefinition, DatasetId.of("my-project", "MY_DS"), stateToBqTableNames,
+                                 stageToPendingStatements);
+
+    Assert.assertEquals(
+      "SELECT `Users`.id AS `user_id` , `Purchases`.id AS `purchase_id` "
+        + "FROM `my-project.MY_DS.u` AS `Users` "
+        + "INNER JOIN (SELECT * FROM `my-project.MY_DS.raw` AS `Raw` WHERE amount > 0) AS `Purchases` "
+        + "ON `Users`.id = `Purchases`.user_id",
+      helper.getQuery());
+  }
+
   @Test
   public void testFieldEqualityQueryMultipleTables() {
     // First join is a right join, second join is a left join
@@ -173,6 +212,92 @@ public class BigQueryJoinSQLBuilderTest {
       helper.getQuery());
   }
 
+  @Test
+  public void testFieldEqualityQueryOrderedByStatistics() {
+    JoinStage stores = JoinStage.builder("Stores", null).setRequired(true).build();
+    JoinStage sales = JoinStage.builder("Sales", null).setRequired(true).build();
+    JoinStage regions = JoinStage.builder("Regions", null).setRequired(true).build();
+    JoinStage managers = JoinStage.builder("Managers", null).setRequired(true).build();
+
+    JoinCondition condition = JoinCondition.onKeys()
+      .addKey(new JoinKey("Stores", Arrays.asList("id")))
+      .addKey(new JoinKey("Sales", Arrays.asList("store_id")))
+      .addKey(new JoinKey("Regions", Arrays.asList("store_id")))
+      .addKey(new JoinKey("Managers", Arrays.asList("store_id")))
+      .setNullSafe(false)
+      .build();
+
+    JoinDefinition joinDefinition = JoinDefinition.builder()
+      .select(new JoinField("Stores", "id", "store_id"),
+              new JoinField("Sales", "amount"),
+              new JoinField("Regions", "name", "region"),
+              new JoinField("Managers", "name", "manager"))
+      .from(stores, sales, regions, managers)
+      .on(condition)
+      .build();
+
+    Map<String, String> stateToBqTableNames = new HashMap<>();
+    stateToBqTableNames.put("Stores", "st");
+    stateToBqTableNames.put("Sales", "sa");
+    stateToBqTableNames.put("Regions", "re");
+
+    Map<String, BigQueryTableStatistics> statistics = new HashMap<>();
+    statistics.put("Stores", new BigQueryTableStatistics(1000, 100000));
+    statistics.put("Sales", new BigQueryTableStatistics(1000000000, 50000000000L));
+    statistics.put("Regions", new BigQueryTableStatistics(10, 1000));
+
+    // Managers is not stored in a table, so it has no statistics and is joined last.
+    BigQueryJoinSQLBuilder helper =
+      new BigQueryJoinSQLBuilder(joinDefinition, DatasetId.of("my-project", "MY_DS"), stateToBqTableNames,
+                                 Collections.singletonMap("Managers", "SELECT * FROM `my-project.MY_DS.ma`"),
+                                 statistics);
+
+    Assert.assertEquals(
+      "SELECT `Stores`.id AS `store_id` , `Sales`.amount , `Regions`.name AS `region` , `Managers`.name AS `manager` "
+        + "FROM `my-project.MY_DS.sa` AS `Sales` "
+        + "INNER JOIN `my-project.MY_DS.re` AS `Regions` ON `Sales`.store_id = `Regions`.store_id "
+        + "INNER JOIN `my-project.MY_DS.st` AS `Stores` ON `Regions`.store_id = `Stores`.id "
+        + "INNER JOIN (SELECT * FROM `my-project.MY_DS.ma`) AS `Managers` ON `Stores`.id = `Managers`.store_id",
+      helper.getQuery());
+  }
+
+  @Test
+  public void testJoinOrder() {
+    JoinStage left = JoinStage.builder("Left", null).setRequired(true).build();
+    JoinStage right = JoinStage.builder("Right", null).setRequired(true).build();
+    JoinStage optionalRight = JoinStage.builder("Right", null).setRequired(false).build();
+    Map<String, BigQueryTableStatistics> statistics = new HashMap<>();
+    statistics.put("Left", new BigQueryTableStatistics(10, 100));
+    statistics.put("Right", new BigQueryTableStatistics(10, 1000));
+
+    // The larger stage of inner joins is joined first
+    JoinDefinition joinDefinition = JoinDefinition.builder()
+      .select(new JoinField("Left", "id"))
+      .from(left, right)
+      .on(JoinCondition.onKeys()
+            .addKey(new JoinKey("Left", Arrays.asList("id")))
+            .addKey(new JoinKey("Right", Arrays.asList("id")))
+            .build())
+      .build();
+    BigQueryJoinSQLBuilder helper = new BigQueryJoinSQLBuilder(joinDefinition, DatasetId.of(project, dataset),
+                                                               stageToBQTableNameMap, Collections.emptyMap(),
+                                                               statistics);
+    Assert.assertEquals(Arrays.asList(right, left), helper.getJoinOrder());
+
+    // Outer joins are not reordered
+    joinDefinition = JoinDefinition.builder()
+      .select(new JoinField("Left", "id"))
+      .from(left, optionalRight)
+      .on(JoinCondition.onKeys()
+            .addKey(new JoinKey("Left", Arrays.asList("id")))
+            .addKey(new JoinKey("Right", Arrays.asList("id")))
+            .build())
+      .build();
+    helper = new BigQueryJoinSQLBuilder(joinDefinition, DatasetId.of(project, dataset), stageToBQTableNameMap,
+                                        Collections.emptyMap(), statistics);
+    Assert.assertEquals(Arrays.asList(left, optionalRight), helper.getJoinOrder());
+  }
+
   @Test
   public void testOnExpressionQuery() {
     Schema usersSchema = Schema.recordOf("Users",
@@ -16,9 +16,13 @@
 
 package io.cdap.plugin.gcp.bigquery.sqlengine.util;
 
+import io.cdap.cdap.api.data.schema.Schema;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 public class BigQuerySQLEngineUtilsTest {
 
 
@@ -32,4 +36,26 @@ public class BigQuerySQLEngineUtilsTest {
     Assert.assertTrue(BigQuerySQLEngineUtils.isValidIdentifier("コンピューター"));
     Assert.assertTrue(BigQuerySQLEngineUtils.isValidIdentifier("电脑"));
   }
+
+  @Test
+  public void testGetClusteringFields() {
+    Schema schema = Schema.recordOf(
+      "purchase",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("user", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("day", Schema.of(Schema.LogicalType.DATE)),
+      Schema.Field.of("time", Schema.of(Schema.LogicalType.TIME_MICROS)),
+      Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)),
+      Schema.Field.of("hash", Schema.of(Schema.Type.BYTES)),
+      Schema.Field.of("valid", Schema.of(Schema.Type.BOOLEAN)),
+      Schema.Field.of("store", Schema.of(Schema.Type.INT)));
+
+    // Unsupported and missing fields are skipped, and at most 4 fields are kept
+    Assert.assertEquals(Arrays.asList("user", "id", "day", "valid"),
+                        BigQuerySQLEngineUtils.getClusteringFields(
+                          schema, Arrays.asList("user", "time", "id", "price", "missing", "id", "hash", "day",
+                                                "valid", "store")));
+    Assert.assertEquals(Collections.emptyList(),
+                        BigQuerySQLEngineUtils.getClusteringFields(schema, Arrays.asList("price", "time")));
+  }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link BigQueryJobPoller}.
+ */
+public class BigQueryJobPollerTest {
+
+  @Test
+  public void testConcurrentJobs() throws Exception {
+    BigQueryJobPoller poller = new BigQueryJobPoller(1, 10, 60000);
+    AtomicInteger fastPolls = new AtomicInteger();
+    AtomicInteger slowPolls = new AtomicInteger();
+    CompletableFuture<Integer> slow = poller.track("slow", slowPolls::incrementAndGet, polls -> polls >= 5);
+    CompletableFuture<Integer> fast = poller.track("fast", fastPolls::incrementAndGet, polls -> polls >= 2);
+
+    Assert.assertEquals(2, (int) BigQueryJobPoller.await(fast));
+    Assert.assertEquals(5, (int) BigQueryJobPoller.await(slow));
+    Assert.assertEquals(0, poller.getPendingJobs());
+    Assert.assertEquals(2, poller.getCompletedJobs());
+    Assert.assertEquals(0, poller.getFailedJobs());
+    Assert.assertTrue(poller.getMaxCompletionLatencyMillis() >= poller.getAverageCompletionLatencyMillis());
+  }
+
+  @Test
+  public void testPollFailure() throws Exception {
+    BigQueryJobPoller poller = new BigQueryJobPoller(1, 10, 60000);
+    CompletableFuture<String> future = poller.track("job", () -> {
+      throw new IOException("not found");
+    }, status -> true);
+
+    try {
+      BigQueryJobPoller.await(future);
+      Assert.fail("Expected the job to fail");
+    } catch (IOException e) {
+      Assert.assertEquals("not found", e.getMessage());
+    }
+    Assert.assertEquals(1, poller.getFailedJobs());
+  }
+
+  @Test
+  public void testRetryableFailure() throws Exception {
+    BigQueryJobPoller poller = new BigQueryJobPoller(1, 10, 60000);
+    AtomicInteger polls = new AtomicInteger();
+    CompletableFuture<Integer> future = poller.track("job", () -> {
+      if (polls.incrementAndGet() < 3) {
+        throw new IOException("rate limited");
+      }
+      return polls.get();
+    }, status -> true, e -> "rate limited".equals(e.getMessage()));
+
+    Assert.assertEquals(3, (int) BigQueryJobPoller.await(future));
+    Assert.assertEquals(1, poller.getCompletedJobs());
+    Assert.assertEquals(0, poller.getFailedJobs());
+  }
+
+  @Test
+  public void testSlowPollDoesNotDelayOtherJobs() throws Exception {
+    BigQueryJobPoller poller = new BigQueryJobPoller(1, 10, 60000);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<String> slow = poller.track("slow", () -> {
+      release.await();
+      return "DONE";
+    }, "DONE"::equals);
+    AtomicInteger fastPolls = new AtomicInteger();
+    CompletableFuture<Integer> fast = poller.track("fast", fastPolls::incrementAndGet, polls -> polls >= 3);
+
+    Assert.assertEquals(3, (int) fast.get(10, TimeUnit.SECONDS));
+    Assert.assertFalse(slow.isDone());
+    release.countDown();
+    Assert.assertEquals("DONE", BigQueryJobPoller.await(slow));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTimeout() throws Exception {
+    BigQueryJobPoller poller = new BigQueryJobPoller(1, 10, 50);
+    BigQueryJobPoller.await(poller.track("job", () -> "RUNNING", "DONE"::equals));
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.common;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Tests for {@link UploadBufferManager}.
+ */
+public class UploadBufferManagerTest {
+  private static final long MB = 1024 * 1024;
+  private static final long MIN_CHUNK_SIZE = 256 * 1024;
+
+  @Test
+  public void testChunkSizeAdaptsToOpenFiles() {
+    UploadBufferManager manager = new UploadBufferManager();
+    Configuration conf = createConf(8 * MB, 16 * MB);
+
+    UploadBufferManager.Lease first = manager.acquire(conf);
+    UploadBufferManager.Lease second = manager.acquire(conf);
+    Assert.assertEquals(8 * MB, first.getChunkSize());
+    Assert.assertEquals(8 * MB, second.getChunkSize());
+    Assert.assertEquals(8 * MB, second.getConfiguration().getLong(UploadBufferManager.CONFIG_CHUNK_SIZE, 0L));
+
+    // The budget is used up, so the next file gets the minimum chunk size
+    UploadBufferManager.Lease third = manager.acquire(conf);
+    Assert.assertEquals(MIN_CHUNK_SIZE, third.getChunkSize());
+    Assert.assertEquals(16 * MB + MIN_CHUNK_SIZE, manager.getReserved());
+
+    // With two files open, a new file gets a third of the budget, rounded down to a multiple of the minimum
+    first.close();
+    first.close();
+    UploadBufferManager.Lease fourth = manager.acquire(conf);
+    Assert.assertEquals(16 * MB / 3 / MIN_CHUNK_SIZE * MIN_CHUNK_SIZE, fourth.getChunkSize());
+
+    second.close();
+    third.close();
+    fourth.close();
+    Assert.assertEquals(0L, manager.getReserved());
+  }
+
+  @Test
+  public void testNoBudget() {
+    UploadBufferManager manager = new UploadBufferManager();
+    Configuration conf = createConf(8 * MB, 0L);
+
+    UploadBufferManager.Lease lease = manager.acquire(conf);
+    Assert.assertEquals(0L, lease.getChunkSize());
+    Assert.assertSame(conf, lease.getConfiguration());
+    Assert.assertEquals(0L, manager.getReserved());
+    lease.close();
+    Assert.assertEquals(0L, manager.getReserved());
+  }
+
+  @Test
+  public void testStreamReleasesLeaseOnClose() throws IOException {
+    UploadBufferManager manager = new UploadBufferManager();
+    UploadBufferManager.Lease lease = manager.acquire(createConf(4 * MB, 16 * MB));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = lease.wrap(bytes)) {
+      out.write(new byte[] {1, 2, 3}, 1, 2);
+      Assert.assertEquals(4 * MB, manager.getReserved());
+    }
+    Assert.assertArrayEquals(new byte[] {2, 3}, bytes.toByteArray());
+    Assert.assertEquals(0L, manager.getReserved());
+  }
+
+  private static Configuration createConf(long chunkSize, long budget) {
+    Configuration conf = new Configuration(false);
+    conf.setLong(UploadBufferManager.CONFIG_CHUNK_SIZE, chunkSize);
+    conf.setLong(UploadBufferManager.CONFIG_UPLOAD_BUFFER_BUDGET, budget);
+    return conf;
+  }
+}